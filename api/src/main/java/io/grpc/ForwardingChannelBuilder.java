@@ -74,6 +74,12 @@ public abstract class ForwardingChannelBuilder<T extends ForwardingChannelBuilde
     return thisT();
   }
 
+  @Override
+  public T virtualThreadExecutor() {
+    delegate().virtualThreadExecutor();
+    return thisT();
+  }
+
   @Override
   public T offloadExecutor(Executor executor) {
     delegate().offloadExecutor(executor);
@@ -141,6 +147,12 @@ public abstract class ForwardingChannelBuilder<T extends ForwardingChannelBuilde
     return thisT();
   }
 
+  @Override
+  public T decompressionExecutor(@Nullable Executor executor) {
+    delegate().decompressionExecutor(executor);
+    return thisT();
+  }
+
   @Override
   public T compressorRegistry(CompressorRegistry registry) {
     delegate().compressorRegistry(registry);
@@ -207,6 +219,25 @@ public abstract class ForwardingChannelBuilder<T extends ForwardingChannelBuilde
     return thisT();
   }
 
+  @Override
+  public T retryBufferSerializedMessages() {
+    delegate().retryBufferSerializedMessages();
+    return thisT();
+  }
+
+  @Override
+  public T spareTransportsPerSubchannel(int count) {
+    delegate().spareTransportsPerSubchannel(count);
+    return thisT();
+  }
+
+  @Override
+  public T connectionsPerSubchannel(
+      int minConnections, int maxConnections, int maxStreamsPerConnection) {
+    delegate().connectionsPerSubchannel(minConnections, maxConnections, maxStreamsPerConnection);
+    return thisT();
+  }
+
   @Override
   public T disableRetry() {
     delegate().disableRetry();
@@ -61,12 +61,24 @@ public abstract class ForwardingServerBuilder<T extends ServerBuilder<T>> extend
     return thisT();
   }
 
+  @Override
+  public T virtualThreadExecutor() {
+    delegate().virtualThreadExecutor();
+    return thisT();
+  }
+
   @Override
   public T callExecutor(ServerCallExecutorSupplier executorSupplier) {
     delegate().callExecutor(executorSupplier);
     return thisT();
   }
 
+  @Override
+  public T admissionController(ServerCallAdmissionController admissionController) {
+    delegate().admissionController(admissionController);
+    return thisT();
+  }
+
   @Override
   public T addService(ServerServiceDefinition service) {
     delegate().addService(service);
@@ -121,6 +133,12 @@ public abstract class ForwardingServerBuilder<T extends ServerBuilder<T>> extend
     return thisT();
   }
 
+  @Override
+  public T decompressionExecutor(@Nullable Executor executor) {
+    delegate().decompressionExecutor(executor);
+    return thisT();
+  }
+
   @Override
   public T compressorRegistry(@Nullable CompressorRegistry registry) {
     delegate().compressorRegistry(registry);
@@ -133,6 +151,12 @@ public abstract class ForwardingServerBuilder<T extends ServerBuilder<T>> extend
     return thisT();
   }
 
+  @Override
+  public T coalesceMessages(int maxBytes, long maxDelay, TimeUnit unit) {
+    delegate().coalesceMessages(maxBytes, maxDelay, unit);
+    return thisT();
+  }
+
   @Override
   public T maxInboundMessageSize(int bytes) {
     delegate().maxInboundMessageSize(bytes);
@@ -1065,6 +1065,12 @@ public final class InternalChannelz {
     public final long lastMessageReceivedTimeNanos;
     public final long localFlowControlWindow;
     public final long remoteFlowControlWindow;
+    /** The initial flow control window of new streams, or -1 if not known. */
+    public final long localStreamFlowControlWindow;
+    /** The estimated bandwidth-delay product in bytes, or -1 if not known. */
+    public final long estimatedBdpBytes;
+    /** The estimated round trip time in nanoseconds, or -1 if not known. */
+    public final long estimatedRttNanos;
     // TODO(zpencer): report socket flags and other info
 
     /**
@@ -1083,6 +1089,43 @@ public final class InternalChannelz {
         long lastMessageReceivedTimeNanos,
         long localFlowControlWindow,
         long remoteFlowControlWindow) {
+      this(
+          streamsStarted,
+          lastLocalStreamCreatedTimeNanos,
+          lastRemoteStreamCreatedTimeNanos,
+          streamsSucceeded,
+          streamsFailed,
+          messagesSent,
+          messagesReceived,
+          keepAlivesSent,
+          lastMessageSentTimeNanos,
+          lastMessageReceivedTimeNanos,
+          localFlowControlWindow,
+          remoteFlowControlWindow,
+          /* localStreamFlowControlWindow= */ -1,
+          /* estimatedBdpBytes= */ -1,
+          /* estimatedRttNanos= */ -1);
+    }
+
+    /**
+     * Creates an instance, including the flow control estimates.
+     */
+    public TransportStats(
+        long streamsStarted,
+        long lastLocalStreamCreatedTimeNanos,
+        long lastRemoteStreamCreatedTimeNanos,
+        long streamsSucceeded,
+        long streamsFailed,
+        long messagesSent,
+        long messagesReceived,
+        long keepAlivesSent,
+        long lastMessageSentTimeNanos,
+        long lastMessageReceivedTimeNanos,
+        long localFlowControlWindow,
+        long remoteFlowControlWindow,
+        long localStreamFlowControlWindow,
+        long estimatedBdpBytes,
+        long estimatedRttNanos) {
       this.streamsStarted = streamsStarted;
       this.lastLocalStreamCreatedTimeNanos = lastLocalStreamCreatedTimeNanos;
       this.lastRemoteStreamCreatedTimeNanos = lastRemoteStreamCreatedTimeNanos;
@@ -1095,6 +1138,9 @@ public final class InternalChannelz {
       this.lastMessageReceivedTimeNanos = lastMessageReceivedTimeNanos;
       this.localFlowControlWindow = localFlowControlWindow;
       this.remoteFlowControlWindow = remoteFlowControlWindow;
+      this.localStreamFlowControlWindow = localStreamFlowControlWindow;
+      this.estimatedBdpBytes = estimatedBdpBytes;
+      this.estimatedRttNanos = estimatedRttNanos;
     }
   }
 
@@ -63,6 +63,16 @@ public final class InternalMetadata {
     return Metadata.Key.of(name, isPseudo, marshaller);
   }
 
+  /**
+   * Returns the ASCII-encoded name of {@code key}. The same array is returned on every call and is
+   * used as the name when values are added with the key, so transports may compare it by
+   * reference. The returned array <em>must not</em> be modified.
+   */
+  @Internal
+  public static byte[] asciiName(Metadata.Key<?> key) {
+    return key.asciiName();
+  }
+
   @Internal
   public static Metadata newMetadata(byte[]... binaryValues) {
     return new Metadata(binaryValues);
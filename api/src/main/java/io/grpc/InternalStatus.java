@@ -16,6 +16,8 @@
 
 package io.grpc;
 
+import javax.annotation.Nullable;
+
 /**
  * Accesses internal data.  Do not use this.
  */
@@ -34,4 +36,14 @@ public final class InternalStatus {
    */
   @Internal
   public static final Metadata.Key<Status> CODE_KEY = Status.CODE_KEY;
+
+  /**
+   * Creates a {@link StatusException} with the given status and trailers. Skipping the stack trace
+   * makes it cheap enough to create for every call that is rejected.
+   */
+  @Internal
+  public static StatusException asException(
+      Status status, @Nullable Metadata trailers, boolean fillInStackTrace) {
+    return new StatusException(status, trailers, fillInStackTrace);
+  }
 }
@@ -152,6 +152,16 @@ public final class LoadBalancerRegistry {
       // to be actually used there, we log it as a lower level.
       logger.log(Level.FINE, "Unable to find round-robin LoadBalancer", e);
     }
+    try {
+      list.add(Class.forName("io.grpc.util.SecretLeastRequestLoadBalancerProvider$Provider"));
+    } catch (ClassNotFoundException e) {
+      logger.log(Level.FINE, "Unable to find least-request LoadBalancer", e);
+    }
+    try {
+      list.add(Class.forName("io.grpc.util.SecretPeakEwmaLoadBalancerProvider$Provider"));
+    } catch (ClassNotFoundException e) {
+      logger.log(Level.FINE, "Unable to find peak-EWMA LoadBalancer", e);
+    }
     return Collections.unmodifiableList(list);
   }
 
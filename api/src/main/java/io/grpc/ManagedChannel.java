@@ -16,6 +16,7 @@
 
 package io.grpc;
 
+import com.google.common.util.concurrent.ListenableFuture;
 import java.util.concurrent.TimeUnit;
 import javax.annotation.concurrent.ThreadSafe;
 
@@ -143,4 +144,26 @@ public abstract class ManagedChannel extends Channel {
    */
   @ExperimentalApi("https://github.com/grpc/grpc-java/issues/4056")
   public void enterIdle() {}
+
+  /**
+   * Connects the channel now, instead of when the first RPC needs it. The subchannels that exist
+   * when this is called are connected right away, or if there are none yet, the subchannels that
+   * the load balancer creates until the returned future completes. Each new connection is pinged
+   * once it is ready, so that the first RPCs do not pay for the connection handshakes. This is
+   * intended for servers that should not take traffic before their backends are reachable, or for
+   * after a channel has been idle.
+   *
+   * <p>The returned future completes once at least {@code readyPercent} of the subchannels are
+   * READY. It fails if the channel is shut down first, and never completes if the subchannels
+   * cannot connect, so callers should apply their own timeout.
+   *
+   * @param readyPercent the percentage of subchannels, in (0, 100], that must be READY
+   * @throws IllegalArgumentException if readyPercent is out of range
+   * @throws UnsupportedOperationException if not supported by implementation
+   * @since 1.43.0
+   */
+  @ExperimentalApi("Channel warm-up; tracking issue to be filed")
+  public ListenableFuture<Void> warmUp(double readyPercent) {
+    throw new UnsupportedOperationException("Not implemented");
+  }
 }
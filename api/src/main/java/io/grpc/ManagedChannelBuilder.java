@@ -106,6 +106,23 @@ public abstract class ManagedChannelBuilder<T extends ManagedChannelBuilder<T>>
    */
   public abstract T executor(Executor executor);
 
+  /**
+   * Runs application callbacks on virtual threads, starting a new virtual thread for each task
+   * instead of using a cached thread pool. This lets applications that block in their callbacks
+   * scale past the number of platform threads. Replaces any executor set with {@link
+   * #executor(Executor)} or {@link #directExecutor()}.
+   *
+   * <p>Virtual threads are available on Java 21 and later.
+   *
+   * @return this
+   * @throws UnsupportedOperationException if unsupported by the builder or the runtime
+   * @since 1.43.0
+   */
+  @ExperimentalApi("Virtual thread executors; tracking issue to be filed")
+  public T virtualThreadExecutor() {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Provides a custom executor that will be used for operations that block or are expensive.
    *
@@ -272,6 +289,25 @@ public abstract class ManagedChannelBuilder<T extends ManagedChannelBuilder<T>>
   @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
   public abstract T decompressorRegistry(DecompressorRegistry registry);
 
+  /**
+   * Decompresses large compressed messages on {@code executor} instead of when the application
+   * reads them. Messages are still delivered in order and reading one waits until it has been
+   * decompressed, so no single message arrives sooner; instead the next messages are decompressed
+   * while the application handles the current one. Only messages of at least 1 MiB compressed are
+   * offloaded, and a message is decompressed when read if {@code executor} rejects it.
+   *
+   * <p>The executor is not shut down by the channel. Offloading is disabled by default, or when
+   * {@code executor} is {@code null}.
+   *
+   * @return this
+   * @throws UnsupportedOperationException if unsupported
+   * @since 1.43.0
+   */
+  @ExperimentalApi("Offloaded decompression; tracking issue to be filed")
+  public T decompressionExecutor(@Nullable Executor executor) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Set the compression registry for use in the channel.  This is an advanced API call and
    * shouldn't be used unless you are using custom message encoding.   The default supported
@@ -458,6 +494,67 @@ public abstract class ManagedChannelBuilder<T extends ManagedChannelBuilder<T>>
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Buffers the outbound messages of retriable and hedged RPCs in serialized form. Each message is
+   * then serialized once, and every retry or hedging attempt sends the same bytes, instead of
+   * serializing the message again for each attempt. This saves CPU for large messages that are
+   * sent more than once, at the cost of one extra copy for RPCs that only make one attempt. It does
+   * not have any effect if retry is disabled by the client.
+   *
+   * @return this
+   * @since 1.43.0
+   */
+  @ExperimentalApi("https://github.com/grpc/grpc-java/issues/3982")
+  public T retryBufferSerializedMessages() {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Sets the number of spare connections that each subchannel keeps open while it is READY. When
+   * the connection in use fails or is closed by the server, a spare takes over right away, so new
+   * RPCs do not wait for a reconnect. Spares that fail to connect are not retried until a spare
+   * takes over. The default is 0.
+   *
+   * @param count the number of spare connections per subchannel, which must not be negative
+   * @return this
+   * @throws IllegalArgumentException if count is negative
+   * @throws UnsupportedOperationException if unsupported
+   * @since 1.43.0
+   */
+  @ExperimentalApi("Channel warm-up; tracking issue to be filed")
+  public T spareTransportsPerSubchannel(int count) {
+    throw new UnsupportedOperationException();
+  }
+
+  /**
+   * Lets each subchannel spread its RPCs over several connections to the same address. A READY
+   * subchannel keeps at least {@code minConnections} connections open. When every connection has
+   * {@code maxStreamsPerConnection} active RPCs, it opens one more, up to {@code maxConnections}.
+   * Each new RPC uses the connection with the fewest active RPCs.
+   *
+   * <p>This lets a channel have more concurrent RPCs to a server than the server's
+   * MAX_CONCURRENT_STREAMS setting allows on one connection, and spreads the work of a busy channel
+   * over several connections and I/O threads. {@code maxStreamsPerConnection} should not be more
+   * than the MAX_CONCURRENT_STREAMS of the server, otherwise RPCs wait for a stream on a full
+   * connection before another one is opened. By default each subchannel has one connection.
+   *
+   * @param minConnections the number of connections to keep open while READY, which must be
+   *     positive
+   * @param maxConnections the maximum number of connections, which must be at least {@code
+   *     minConnections}
+   * @param maxStreamsPerConnection the number of active RPCs per connection after which another
+   *     connection is opened, which must be positive
+   * @return this
+   * @throws IllegalArgumentException if an argument is out of range
+   * @throws UnsupportedOperationException if unsupported
+   * @since 1.43.0
+   */
+  @ExperimentalApi("Subchannel connection pooling; tracking issue to be filed")
+  public T connectionsPerSubchannel(
+      int minConnections, int maxConnections, int maxStreamsPerConnection) {
+    throw new UnsupportedOperationException();
+  }
+
 
   /**
    * Disables the retry and hedging subsystem provided by the gRPC library. This is designed for the
@@ -0,0 +1,294 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+import javax.annotation.Nullable;
+
+/**
+ * Gzip streams that reuse {@link Deflater} and {@link Inflater} instances across messages instead
+ * of creating and ending one per message, which {@link java.util.zip.GZIPOutputStream} and {@link
+ * java.util.zip.GZIPInputStream} do. Instances are returned to a bounded pool when the stream is
+ * closed, or when the input stream reaches the end of the data. Streams that are never closed
+ * simply leave their instance to be garbage collected.
+ */
+final class PooledGzipStreams {
+  private static final int POOL_SIZE =
+      Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+  private static final BlockingQueue<Deflater> deflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+  private static final BlockingQueue<Inflater> inflaters = new ArrayBlockingQueue<>(POOL_SIZE);
+
+  private static final int GZIP_MAGIC = 0x8b1f;
+  private static final int CM_DEFLATE = 8;
+  private static final int FHCRC = 2;
+  private static final int FEXTRA = 4;
+  private static final int FNAME = 8;
+  private static final int FCOMMENT = 16;
+  private static final byte[] HEADER = {
+      (byte) GZIP_MAGIC, (byte) (GZIP_MAGIC >> 8), CM_DEFLATE, 0, 0, 0, 0, 0, 0, 0};
+  private static final int TRAILER_SIZE = 8;
+  private static final int BUFFER_SIZE = 512;
+
+  private PooledGzipStreams() {}
+
+  static OutputStream compress(OutputStream os) throws IOException {
+    Deflater deflater = deflaters.poll();
+    if (deflater == null) {
+      deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    }
+    return new GzipOutputStream(os, deflater);
+  }
+
+  static InputStream decompress(InputStream is) throws IOException {
+    Inflater inflater = inflaters.poll();
+    if (inflater == null) {
+      inflater = new Inflater(true);
+    }
+    try {
+      return new GzipInputStream(is, inflater);
+    } catch (IOException e) {
+      release(inflater);
+      throw e;
+    }
+  }
+
+  private static void release(Deflater deflater) {
+    deflater.reset();
+    if (!deflaters.offer(deflater)) {
+      deflater.end();
+    }
+  }
+
+  private static void release(Inflater inflater) {
+    inflater.reset();
+    if (!inflaters.offer(inflater)) {
+      inflater.end();
+    }
+  }
+
+  private static final class GzipOutputStream extends DeflaterOutputStream {
+    private final CRC32 crc = new CRC32();
+    private boolean finished;
+    private boolean closed;
+
+    GzipOutputStream(OutputStream out, Deflater deflater) throws IOException {
+      super(out, deflater, BUFFER_SIZE);
+      out.write(HEADER);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      super.write(b, off, len);
+      crc.update(b, off, len);
+    }
+
+    @Override
+    public void finish() throws IOException {
+      if (finished) {
+        return;
+      }
+      finished = true;
+      super.finish();
+      byte[] trailer = new byte[TRAILER_SIZE];
+      writeIntLe(trailer, 0, (int) crc.getValue());
+      writeIntLe(trailer, 4, (int) def.getBytesRead());
+      out.write(trailer);
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        finish();
+        out.close();
+      } finally {
+        // DeflaterOutputStream does not end a Deflater that was passed in.
+        release(def);
+      }
+    }
+
+    private static void writeIntLe(byte[] b, int off, int value) {
+      b[off] = (byte) value;
+      b[off + 1] = (byte) (value >> 8);
+      b[off + 2] = (byte) (value >> 16);
+      b[off + 3] = (byte) (value >> 24);
+    }
+  }
+
+  private static final class GzipInputStream extends InflaterInputStream {
+    private final CRC32 crc = new CRC32();
+    private boolean eos;
+    private boolean released;
+    private boolean closed;
+
+    GzipInputStream(InputStream in, Inflater inflater) throws IOException {
+      super(in, inflater, BUFFER_SIZE);
+      readHeader(in);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      if (eos) {
+        return -1;
+      }
+      int n = super.read(b, off, len);
+      if (n == -1) {
+        if (readTrailer()) {
+          eos = true;
+          releaseInflater();
+        } else {
+          return read(b, off, len);
+        }
+      } else {
+        crc.update(b, off, n);
+      }
+      return n;
+    }
+
+    @Override
+    public int available() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      // The inflater may already be back in the pool, so it must not be asked once done.
+      return eos ? 0 : super.available();
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      try {
+        in.close();
+      } finally {
+        releaseInflater();
+      }
+    }
+
+    private void releaseInflater() {
+      if (!released) {
+        released = true;
+        release(inf);
+      }
+    }
+
+    /**
+     * Reads the trailer of the current member. Returns {@code true} at the end of the data, or
+     * {@code false} if another member follows, in which case it is ready to be inflated.
+     */
+    private boolean readTrailer() throws IOException {
+      InputStream rest = in;
+      int remaining = inf.getRemaining();
+      if (remaining > 0) {
+        rest = new SequenceInputStream(
+            new ByteArrayInputStream(buf, len - remaining, remaining), in);
+      }
+      if (readIntLe(rest) != (int) crc.getValue()
+          || readIntLe(rest) != (int) inf.getBytesWritten()) {
+        throw new ZipException("Corrupt GZIP trailer");
+      }
+      // Like GZIPInputStream, treat a following member as part of the data, and ignore anything
+      // that is not a member.
+      if (remaining > TRAILER_SIZE || in.available() > 0) {
+        try {
+          readHeader(rest);
+        } catch (IOException e) {
+          return true;
+        }
+        inf.reset();
+        crc.reset();
+        in = rest;
+        return false;
+      }
+      return true;
+    }
+
+    private static void readHeader(InputStream in) throws IOException {
+      CRC32 headerCrc = new CRC32();
+      if (readShortLe(in, headerCrc) != GZIP_MAGIC) {
+        throw new ZipException("Not in GZIP format");
+      }
+      if (readByte(in, headerCrc) != CM_DEFLATE) {
+        throw new ZipException("Unsupported compression method");
+      }
+      int flags = readByte(in, headerCrc);
+      // Skip MTIME, XFL and OS.
+      skipBytes(in, headerCrc, 6);
+      if ((flags & FEXTRA) == FEXTRA) {
+        skipBytes(in, headerCrc, readShortLe(in, headerCrc));
+      }
+      if ((flags & FNAME) == FNAME) {
+        while (readByte(in, headerCrc) != 0) {}
+      }
+      if ((flags & FCOMMENT) == FCOMMENT) {
+        while (readByte(in, headerCrc) != 0) {}
+      }
+      if ((flags & FHCRC) == FHCRC) {
+        int expected = (int) headerCrc.getValue() & 0xffff;
+        if (readShortLe(in, null) != expected) {
+          throw new ZipException("Corrupt GZIP header");
+        }
+      }
+    }
+
+    private static int readIntLe(InputStream in) throws IOException {
+      return readShortLe(in, null) | (readShortLe(in, null) << 16);
+    }
+
+    private static int readShortLe(InputStream in, @Nullable CRC32 crc) throws IOException {
+      return readByte(in, crc) | (readByte(in, crc) << 8);
+    }
+
+    private static int readByte(InputStream in, @Nullable CRC32 crc) throws IOException {
+      int b = in.read();
+      if (b == -1) {
+        throw new EOFException();
+      }
+      if (crc != null) {
+        crc.update(b);
+      }
+      return b;
+    }
+
+    private static void skipBytes(InputStream in, CRC32 crc, int n) throws IOException {
+      for (int i = 0; i < n; i++) {
+        readByte(in, crc);
+      }
+    }
+  }
+}
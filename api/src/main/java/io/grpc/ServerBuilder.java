@@ -74,6 +74,23 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
    */
   public abstract T executor(@Nullable Executor executor);
 
+  /**
+   * Runs application callbacks on virtual threads, starting a new virtual thread for each task
+   * instead of using a cached thread pool. This lets services that block in their handlers scale
+   * past the number of platform threads. Replaces any executor set with {@link
+   * #executor(Executor)} or {@link #directExecutor()}.
+   *
+   * <p>Virtual threads are available on Java 21 and later.
+   *
+   * @return this
+   * @throws UnsupportedOperationException if unsupported by the builder or the runtime
+   * @since 1.43.0
+   */
+  @ExperimentalApi("Virtual thread executors; tracking issue to be filed")
+  public T virtualThreadExecutor() {
+    throw new UnsupportedOperationException();
+  }
+
 
   /**
    * Allows for defining a way to provide a custom executor to handle the server call.
@@ -95,6 +112,21 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
     return thisT();
   }
 
+  /**
+   * Sets a controller that decides whether each new call is accepted, before the call is queued
+   * on the executor. Calls that are rejected are closed with the status and trailers returned by
+   * {@link ServerCallAdmissionController#checkAdmission}. If not called, all calls are accepted.
+   *
+   * @param admissionController the controller consulted for every new call
+   * @return this
+   * @throws UnsupportedOperationException if unsupported
+   * @since 1.43.0
+   */
+  @ExperimentalApi("Server call admission control; tracking issue to be filed")
+  public T admissionController(ServerCallAdmissionController admissionController) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Adds a service implementation to the handler registry.
    *
@@ -218,6 +250,25 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
   @ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
   public abstract T decompressorRegistry(@Nullable DecompressorRegistry registry);
 
+  /**
+   * Decompresses large compressed messages on {@code executor} instead of when the application
+   * reads them. Messages are still delivered in order and reading one waits until it has been
+   * decompressed, so no single message arrives sooner; instead the next messages are decompressed
+   * while the application handles the current one. Only messages of at least 1 MiB compressed are
+   * offloaded, and a message is decompressed when read if {@code executor} rejects it.
+   *
+   * <p>The executor is not shut down by the server. Offloading is disabled by default, or when
+   * {@code executor} is {@code null}.
+   *
+   * @return this
+   * @throws UnsupportedOperationException if unsupported
+   * @since 1.43.0
+   */
+  @ExperimentalApi("Offloaded decompression; tracking issue to be filed")
+  public T decompressionExecutor(@Nullable Executor executor) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Set the compression registry for use in the channel.  This is an advanced API call and
    * shouldn't be used unless you are using custom message encoding.   The default supported
@@ -243,6 +294,28 @@ public abstract class ServerBuilder<T extends ServerBuilder<T>> {
     throw new UnsupportedOperationException();
   }
 
+  /**
+   * Coalesces the response messages of server-streaming and bidi-streaming calls, so that several
+   * messages are flushed to the transport together, packed into fewer HTTP/2 DATA frames and
+   * writes. Buffered messages are flushed once at least {@code maxBytes} are buffered, once
+   * {@code maxDelay} has passed since the first buffered message, or when the call is closed,
+   * whichever comes first. This trades latency of individual messages for throughput, and is
+   * disabled by default.
+   *
+   * <p>Unary and client-streaming calls send a single message, which is never delayed.
+   *
+   * @param maxBytes the number of buffered bytes that triggers a flush. Must be positive
+   * @param maxDelay the longest time a message may be buffered. Must be positive
+   * @return this
+   * @throws IllegalArgumentException if maxBytes or maxDelay is not positive
+   * @throws UnsupportedOperationException if unsupported
+   * @since 1.43.0
+   */
+  @ExperimentalApi("Server message coalescing; tracking issue to be filed")
+  public T coalesceMessages(int maxBytes, long maxDelay, TimeUnit unit) {
+    throw new UnsupportedOperationException();
+  }
+
   /**
    * Sets the maximum message size allowed to be received on the server. If not called,
    * defaults to 4 MiB. The default provides protection to servers who haven't considered the
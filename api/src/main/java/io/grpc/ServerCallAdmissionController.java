@@ -0,0 +1,38 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import javax.annotation.Nullable;
+
+/**
+ * Decides whether the server accepts each new call, so that an overloaded server can turn calls
+ * away before they are queued on its executor.
+ */
+@ExperimentalApi("Server call admission control; tracking issue to be filed")
+public interface ServerCallAdmissionController {
+
+  /**
+   * Returns null to accept the call, or the status and trailers to reject it with. A rejected call
+   * is closed without the method being looked up or the call being queued on any executor.
+   *
+   * <p>It is called on the transport thread as soon as the headers of the call are received, so it
+   * must be fast and must not block. The method name is what the client sent, and may not exist on
+   * the server. It should never throw.
+   */
+  @Nullable
+  StatusException checkAdmission(String fullMethodName, Metadata headers);
+}
@@ -32,16 +32,20 @@ public class LoadBalancerRegistryTest {
   @Test
   public void getClassesViaHardcoded_classesPresent() throws Exception {
     List<Class<?>> classes = LoadBalancerRegistry.getHardCodedClasses();
-    assertThat(classes).hasSize(2);
+    assertThat(classes).hasSize(4);
     assertThat(classes.get(0)).isEqualTo(PickFirstLoadBalancerProvider.class);
     assertThat(classes.get(1).getName()).isEqualTo(
         "io.grpc.util.SecretRoundRobinLoadBalancerProvider$Provider");
+    assertThat(classes.get(2).getName()).isEqualTo(
+        "io.grpc.util.SecretLeastRequestLoadBalancerProvider$Provider");
+    assertThat(classes.get(3).getName()).isEqualTo(
+        "io.grpc.util.SecretPeakEwmaLoadBalancerProvider$Provider");
   }
 
   @Test
   public void stockProviders() {
     LoadBalancerRegistry defaultRegistry = LoadBalancerRegistry.getDefaultRegistry();
-    assertThat(defaultRegistry.providers()).hasSize(3);
+    assertThat(defaultRegistry.providers()).hasSize(5);
 
     LoadBalancerProvider pickFirst = defaultRegistry.getProvider("pick_first");
     assertThat(pickFirst).isInstanceOf(PickFirstLoadBalancerProvider.class);
@@ -52,6 +56,16 @@ public class LoadBalancerRegistryTest {
         "io.grpc.util.SecretRoundRobinLoadBalancerProvider$Provider");
     assertThat(roundRobin.getPriority()).isEqualTo(5);
 
+    LoadBalancerProvider leastRequest = defaultRegistry.getProvider("least_request");
+    assertThat(leastRequest.getClass().getName()).isEqualTo(
+        "io.grpc.util.SecretLeastRequestLoadBalancerProvider$Provider");
+    assertThat(leastRequest.getPriority()).isEqualTo(5);
+
+    LoadBalancerProvider peakEwma = defaultRegistry.getProvider("peak_ewma");
+    assertThat(peakEwma.getClass().getName()).isEqualTo(
+        "io.grpc.util.SecretPeakEwmaLoadBalancerProvider$Provider");
+    assertThat(peakEwma.getPriority()).isEqualTo(5);
+
     LoadBalancerProvider grpclb = defaultRegistry.getProvider("grpclb");
     assertThat(grpclb).isInstanceOf(GrpclbLoadBalancerProvider.class);
     assertThat(grpclb.getPriority()).isEqualTo(5);
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import com.google.common.primitives.Bytes;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PooledGzipStreams}. */
+@RunWith(JUnit4.class)
+public class PooledGzipStreamsTest {
+  private final byte[] data = newData(100000);
+
+  @Test
+  public void compressedReadableByGzipInputStream() throws Exception {
+    for (int i = 0; i < 3; i++) {
+      byte[] compressed = compress(data);
+      assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(compressed))));
+    }
+  }
+
+  @Test
+  public void decompressesGzipOutputStream() throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    GZIPOutputStream gzip = new GZIPOutputStream(out);
+    gzip.write(data);
+    gzip.close();
+
+    for (int i = 0; i < 3; i++) {
+      assertArrayEquals(data, readAll(PooledGzipStreams.decompress(
+          new ByteArrayInputStream(out.toByteArray()))));
+    }
+  }
+
+  @Test
+  public void decompressesEmpty() throws Exception {
+    assertArrayEquals(new byte[0], readAll(PooledGzipStreams.decompress(
+        new ByteArrayInputStream(compress(new byte[0])))));
+  }
+
+  @Test
+  public void decompressesConcatenatedMembers() throws Exception {
+    byte[] compressed = compress(data);
+    assertArrayEquals(Bytes.concat(data, data), readAll(PooledGzipStreams.decompress(
+        new ByteArrayInputStream(Bytes.concat(compressed, compressed)))));
+  }
+
+  @Test
+  public void decompressesOptionalHeaderFields() throws Exception {
+    byte[] compressed = compress(data);
+    // FHCRC | FEXTRA | FNAME | FCOMMENT
+    byte[] header = Bytes.concat(
+        new byte[] {0x1f, (byte) 0x8b, 8, 2 | 4 | 8 | 16, 0, 0, 0, 0, 0, 0},
+        new byte[] {3, 0, 'a', 'b', 'c'},
+        new byte[] {'n', 'a', 'm', 'e', 0},
+        new byte[] {'c', 0});
+    CRC32 crc = new CRC32();
+    crc.update(header);
+    int headerCrc = (int) crc.getValue();
+    header = Bytes.concat(header, new byte[] {(byte) headerCrc, (byte) (headerCrc >> 8)});
+    byte[] withHeader = Bytes.concat(header, java.util.Arrays.copyOfRange(
+        compressed, 10, compressed.length));
+
+    assertArrayEquals(data, readAll(PooledGzipStreams.decompress(
+        new ByteArrayInputStream(withHeader))));
+  }
+
+  @Test
+  public void availableAfterEndAndClose() throws Exception {
+    InputStream first = PooledGzipStreams.decompress(new ByteArrayInputStream(compress(data)));
+    assertArrayEquals(data, ByteStreams.toByteArray(first));
+    // The inflater of the first stream has been returned to the pool, and is now reused.
+    InputStream second = PooledGzipStreams.decompress(new ByteArrayInputStream(compress(data)));
+    assertEquals(1, second.read(new byte[1]));
+
+    assertEquals(0, first.available());
+    first.close();
+    try {
+      first.available();
+      fail("Expected exception");
+    } catch (IOException expected) {
+      // expected
+    }
+    byte[] rest = readAll(second);
+    assertArrayEquals(java.util.Arrays.copyOfRange(data, 1, data.length), rest);
+  }
+
+  @Test
+  public void corruptTrailerFails() throws Exception {
+    byte[] compressed = compress(data);
+    compressed[compressed.length - 5] ^= 1;
+    InputStream in = PooledGzipStreams.decompress(new ByteArrayInputStream(compressed));
+    try {
+      readAll(in);
+      fail("Expected exception");
+    } catch (ZipException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void notGzipFails() throws Exception {
+    try {
+      PooledGzipStreams.decompress(new ByteArrayInputStream(data));
+      fail("Expected exception");
+    } catch (ZipException expected) {
+      // expected
+    }
+  }
+
+  private static byte[] compress(byte[] bytes) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    OutputStream gzip = PooledGzipStreams.compress(out);
+    gzip.write(bytes);
+    gzip.close();
+    return out.toByteArray();
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    try {
+      return ByteStreams.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  private static byte[] newData(int size) {
+    byte[] bytes = new byte[size];
+    Random random = new Random(1);
+    for (int i = 0; i < size; i++) {
+      // Compressible, but not trivially.
+      bytes[i] = (byte) random.nextInt(16);
+    }
+    return bytes;
+  }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.benchmarks.proto.BenchmarkServiceGrpc;
+import io.grpc.benchmarks.proto.Messages.SimpleRequest;
+import io.grpc.benchmarks.proto.Messages.SimpleResponse;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.stub.StreamObserver;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the default server executor with virtual threads when many concurrent unary calls
+ * block in the service implementation. Virtual threads require Java 21 or later.
+ */
+@State(Scope.Benchmark)
+public class BlockingHandlerExecutorBenchmark {
+  private static final int CONCURRENT_CALLS = 10000;
+  private static final long HANDLER_SLEEP_MILLIS = 1;
+
+  public enum ExecutorType {
+    DEFAULT, VIRTUAL
+  }
+
+  @Param({"DEFAULT", "VIRTUAL"})
+  public ExecutorType executor;
+
+  private Server server;
+  private ManagedChannel channel;
+  private BenchmarkServiceGrpc.BenchmarkServiceStub stub;
+
+  @Setup
+  public void setUp() throws Exception {
+    String name = "bench" + Math.random();
+    InProcessServerBuilder serverBuilder = InProcessServerBuilder.forName(name);
+    if (executor == ExecutorType.VIRTUAL) {
+      if (!GrpcUtil.isVirtualThreadSupported()) {
+        throw new IllegalStateException("Virtual threads require Java 21 or later");
+      }
+      serverBuilder.virtualThreadExecutor();
+    }
+    server = serverBuilder
+        .addService(new BlockingService())
+        .build()
+        .start();
+    channel = InProcessChannelBuilder.forName(name).build();
+    stub = BenchmarkServiceGrpc.newStub(channel);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    channel.shutdownNow();
+    server.shutdownNow();
+    channel.awaitTermination(5, TimeUnit.SECONDS);
+    server.awaitTermination(5, TimeUnit.SECONDS);
+  }
+
+  /**
+   * Starts {@link #CONCURRENT_CALLS} unary calls at once and waits for all of them to complete.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.Throughput)
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  @OperationsPerInvocation(CONCURRENT_CALLS)
+  public void concurrentBlockingUnaryCalls() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(CONCURRENT_CALLS);
+    StreamObserver<SimpleResponse> responseObserver = new StreamObserver<SimpleResponse>() {
+      @Override
+      public void onNext(SimpleResponse value) {}
+
+      @Override
+      public void onError(Throwable t) {
+        latch.countDown();
+      }
+
+      @Override
+      public void onCompleted() {
+        latch.countDown();
+      }
+    };
+    for (int i = 0; i < CONCURRENT_CALLS; i++) {
+      stub.unaryCall(SimpleRequest.getDefaultInstance(), responseObserver);
+    }
+    if (!latch.await(1, TimeUnit.MINUTES)) {
+      throw new IllegalStateException("Calls did not complete");
+    }
+  }
+
+  private static final class BlockingService
+      extends BenchmarkServiceGrpc.BenchmarkServiceImplBase {
+    @Override
+    public void unaryCall(
+        SimpleRequest request, StreamObserver<SimpleResponse> responseObserver) {
+      try {
+        Thread.sleep(HANDLER_SLEEP_MILLIS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      responseObserver.onNext(SimpleResponse.getDefaultInstance());
+      responseObserver.onCompleted();
+    }
+  }
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.benchmarks;
+
+import com.google.protobuf.ByteString;
+import io.grpc.Codec;
+import io.grpc.benchmarks.proto.Messages.Payload;
+import io.grpc.benchmarks.proto.Messages.SimpleResponse;
+import io.grpc.benchmarks.proto.Stats.ClientStats;
+import io.grpc.benchmarks.proto.Stats.HistogramData;
+import io.grpc.benchmarks.proto.Stats.RequestResultCount;
+import io.grpc.compression.Lz4Codec;
+import io.grpc.compression.SnappyCodec;
+import io.grpc.compression.ZstdCodec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares the throughput and compression ratio of the built-in gzip codec with the codecs of
+ * grpc-compression, on protobuf messages shaped like typical RPC traffic. The ratio is {@code
+ * uncompressedBytes / compressedBytes} of the {@link Sizes} counters reported by {@link
+ * #compress}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class CompressionBenchmark {
+  public enum CodecType {
+    GZIP, ZSTD, ZSTD_DICTIONARY, LZ4, SNAPPY
+  }
+
+  public enum PayloadType {
+    /** A small response with string fields and a short text payload. */
+    SMALL,
+    /** A large stats message made mostly of varint histogram buckets. */
+    LARGE
+  }
+
+  @Param
+  public CodecType codecType;
+
+  @Param
+  public PayloadType payloadType;
+
+  private static final int MESSAGE_COUNT = 64;
+
+  private Codec codec;
+  private byte[][] messages;
+  private byte[][] compressedMessages;
+  private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+  private final byte[] readBuffer = new byte[8192];
+  private int next;
+
+  @Setup
+  public void setUp() throws IOException {
+    messages = new byte[MESSAGE_COUNT][];
+    Random random = new Random(1);
+    for (int i = 0; i < MESSAGE_COUNT; i++) {
+      messages[i] = newMessage(payloadType, random);
+    }
+    codec = newCodec(codecType, payloadType);
+    compressedMessages = new byte[MESSAGE_COUNT][];
+    for (int i = 0; i < MESSAGE_COUNT; i++) {
+      compressedMessages[i] = compress(codec, messages[i], new ByteArrayOutputStream());
+    }
+  }
+
+  /** Counts bytes in and out of {@link #compress}, to report the compression ratio. */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Sizes {
+    public long uncompressedBytes;
+    public long compressedBytes;
+
+    @Setup(Level.Iteration)
+    public void reset() {
+      uncompressedBytes = 0;
+      compressedBytes = 0;
+    }
+  }
+
+  /** Compresses one message. */
+  @Benchmark
+  public int compress(Sizes sizes) throws IOException {
+    byte[] message = messages[next++ % MESSAGE_COUNT];
+    out.reset();
+    int compressedSize = compress(codec, message, out).length;
+    sizes.uncompressedBytes += message.length;
+    sizes.compressedBytes += compressedSize;
+    return compressedSize;
+  }
+
+  /** Decompresses one message. */
+  @Benchmark
+  public int decompress() throws IOException {
+    InputStream in =
+        codec.decompress(new ByteArrayInputStream(compressedMessages[next++ % MESSAGE_COUNT]));
+    int total = 0;
+    try {
+      int read;
+      while ((read = in.read(readBuffer)) != -1) {
+        total += read;
+      }
+    } finally {
+      in.close();
+    }
+    return total;
+  }
+
+  private static byte[] compress(Codec codec, byte[] message, ByteArrayOutputStream out)
+      throws IOException {
+    OutputStream compressing = codec.compress(out);
+    compressing.write(message);
+    compressing.close();
+    return out.toByteArray();
+  }
+
+  private static Codec newCodec(CodecType codecType, PayloadType payloadType) {
+    switch (codecType) {
+      case GZIP:
+        return new Codec.Gzip();
+      case ZSTD:
+        return ZstdCodec.create();
+      case ZSTD_DICTIONARY:
+        // Train on messages other than the ones being compressed.
+        Random random = new Random(2);
+        List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+          samples.add(newMessage(payloadType, random));
+        }
+        return ZstdCodec.withDictionary(
+            "zstd-benchmark", ZstdCodec.trainDictionary(samples, 16 * 1024));
+      case LZ4:
+        return new Lz4Codec();
+      case SNAPPY:
+        return new SnappyCodec();
+      default:
+        throw new AssertionError();
+    }
+  }
+
+  private static byte[] newMessage(PayloadType payloadType, Random random) {
+    switch (payloadType) {
+      case SMALL:
+        return SimpleResponse.newBuilder()
+            .setUsername(
+                "service-account-" + random.nextInt(100) + "@example.iam.gserviceaccount.com")
+            .setOauthScope("https://www.googleapis.com/auth/cloud-platform")
+            .setPayload(Payload.newBuilder()
+                .setBody(ByteString.copyFrom(
+                    "order=" + random.nextInt(1_000_000) + ";status=SHIPPED;region=us-east-"
+                        + random.nextInt(4) + ";items=" + random.nextInt(10),
+                    StandardCharsets.UTF_8)))
+            .build()
+            .toByteArray();
+      case LARGE:
+        HistogramData.Builder latencies = HistogramData.newBuilder();
+        for (int i = 0; i < 4000; i++) {
+          // Long-tailed counts, like a real latency histogram.
+          latencies.addBucket((int) (1000 * Math.exp(-i / 400.0) * (1 + random.nextDouble())));
+        }
+        return ClientStats.newBuilder()
+            .setLatencies(latencies
+                .setMinSeen(random.nextInt(1000))
+                .setMaxSeen(1e9 * random.nextDouble())
+                .setCount(1e6))
+            .setTimeElapsed(random.nextDouble())
+            .addRequestResults(RequestResultCount.newBuilder()
+                .setStatusCode(0)
+                .setCount(random.nextInt(1_000_000)))
+            .build()
+            .toByteArray();
+      default:
+        throw new AssertionError();
+    }
+  }
+}
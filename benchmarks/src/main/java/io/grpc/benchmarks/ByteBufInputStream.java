@@ -16,21 +16,33 @@
 
 package io.grpc.benchmarks;
 
+import io.grpc.Detachable;
 import io.grpc.Drainable;
+import io.grpc.HasByteBuffer;
 import io.grpc.KnownLength;
 import io.netty.buffer.ByteBuf;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import javax.annotation.Nullable;
 
 /**
- * A {@link Drainable} {@code InputStream} that reads an {@link ByteBuf}.
+ * A {@link Drainable} {@code InputStream} that reads an {@link ByteBuf}. Its content is also
+ * exposed through {@link HasByteBuffer}, so the transport can write it without copying.
  */
 @SuppressWarnings("InputStreamSlowMultibyteRead") // doesn't matter if slow. It'll throw
 public class ByteBufInputStream extends InputStream
-    implements Drainable, KnownLength {
+    implements Drainable, KnownLength, HasByteBuffer, Detachable {
 
   private ByteBuf buf;
+  // The readable content as of the first getByteBuffer() call, since nioBuffers() builds a new
+  // array each time. The cursor tracks the buffer containing the reader index.
+  @Nullable private ByteBuffer[] nioBuffers;
+  private int nioBuffersStart;
+  private int nioBufferIndex;
+  private int nioBufferOffset;
 
   ByteBufInputStream(ByteBuf buf) {
     this.buf = buf;
@@ -56,4 +68,71 @@ public class ByteBufInputStream extends InputStream
   public int read() throws IOException {
     throw new UnsupportedOperationException();
   }
+
+  @Override
+  public long skip(long n) {
+    if (buf == null) {
+      return 0;
+    }
+    int length = (int) Math.min(buf.readableBytes(), n);
+    buf.skipBytes(length);
+    return length;
+  }
+
+  @Override
+  public boolean markSupported() {
+    return true;
+  }
+
+  @Override
+  public void mark(int readlimit) {
+    if (buf != null) {
+      buf.markReaderIndex();
+    }
+  }
+
+  @Override
+  public void reset() {
+    if (buf != null) {
+      buf.resetReaderIndex();
+    }
+  }
+
+  @Override
+  public boolean byteBufferSupported() {
+    return buf != null && buf.nioBufferCount() > 0;
+  }
+
+  @Nullable
+  @Override
+  public ByteBuffer getByteBuffer() {
+    if (buf == null || !buf.isReadable()) {
+      return null;
+    }
+    int readerIndex = buf.readerIndex();
+    if (nioBuffers == null || readerIndex < nioBuffersStart) {
+      nioBuffers = buf.nioBuffers();
+      nioBuffersStart = readerIndex;
+      nioBufferIndex = 0;
+      nioBufferOffset = readerIndex;
+    } else if (readerIndex < nioBufferOffset) {
+      // Reset to an earlier mark.
+      nioBufferIndex = 0;
+      nioBufferOffset = nioBuffersStart;
+    }
+    while (nioBufferOffset + nioBuffers[nioBufferIndex].remaining() <= readerIndex) {
+      nioBufferOffset += nioBuffers[nioBufferIndex].remaining();
+      nioBufferIndex++;
+    }
+    ByteBuffer byteBuffer = nioBuffers[nioBufferIndex].duplicate();
+    ((Buffer) byteBuffer).position(byteBuffer.position() + readerIndex - nioBufferOffset);
+    return byteBuffer;
+  }
+
+  @Override
+  public InputStream detach() {
+    ByteBufInputStream detached = new ByteBufInputStream(buf);
+    buf = null;
+    return detached;
+  }
 }
@@ -32,6 +32,8 @@ import io.grpc.netty.GrpcSslContexts;
 import io.grpc.netty.NettyChannelBuilder;
 import io.grpc.okhttp.OkHttpChannelBuilder;
 import io.grpc.okhttp.internal.Platform;
+import io.netty.channel.Channel;
+import io.netty.channel.EventLoopGroup;
 import io.netty.channel.epoll.EpollDomainSocketChannel;
 import io.netty.channel.epoll.EpollEventLoopGroup;
 import io.netty.channel.epoll.EpollSocketChannel;
@@ -50,6 +52,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.ForkJoinPool.ForkJoinWorkerThreadFactory;
 import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.atomic.AtomicInteger;
 import javax.annotation.Nullable;
 import org.HdrHistogram.Histogram;
@@ -157,6 +160,25 @@ public final class Utils {
             .channelType(EpollSocketChannel.class);
         break;
 
+      case NETTY_IO_URING:
+        try {
+          // These classes only work on Linux, and are loaded reflectively since the io_uring
+          // transport is optional.
+          Class<? extends EventLoopGroup> groupClass =
+              Class.forName("io.netty.incubator.channel.uring.IOUringEventLoopGroup")
+                  .asSubclass(EventLoopGroup.class);
+          Class<? extends Channel> channelClass =
+              Class.forName("io.netty.incubator.channel.uring.IOUringSocketChannel")
+                  .asSubclass(Channel.class);
+          builder
+              .eventLoopGroup(
+                  groupClass.getConstructor(int.class, ThreadFactory.class).newInstance(0, tf))
+              .channelType(channelClass);
+        } catch (Exception e) {
+          throw new RuntimeException(e);
+        }
+        break;
+
       case NETTY_UNIX_DOMAIN_SOCKET:
         // These classes only work on Linux.
         builder
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.compression;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.collect.ImmutableMap;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.ExperimentalApi;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import java.util.Map;
+
+/**
+ * Utilities for registering the codecs of this package and for choosing a message encoding per
+ * method.
+ *
+ * <p>A typical setup registers the codecs on both peers, plus any {@link ZstdCodec#withDictionary
+ * dictionary codecs}, and then selects an encoding for the methods that benefit from it:
+ *
+ * <pre>{@code
+ * Codec orders = ZstdCodec.withDictionary("zstd-orders-v2", dictionary);
+ * CompressorRegistry compressors = CompressorRegistry.newEmptyInstance();
+ * CompressionCodecs.registerCompressors(compressors);
+ * compressors.register(orders);
+ * DecompressorRegistry decompressors =
+ *     CompressionCodecs.withDecompressors(DecompressorRegistry.getDefaultInstance())
+ *         .with(orders, true);
+ * ManagedChannel channel = ManagedChannelBuilder.forTarget(target)
+ *     .compressorRegistry(compressors)
+ *     .decompressorRegistry(decompressors)
+ *     .intercept(CompressionCodecs.newClientInterceptor(
+ *         ImmutableMap.of("example.Orders/Put", "zstd-orders-v2")))
+ *     .build();
+ * }</pre>
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+public final class CompressionCodecs {
+  private CompressionCodecs() {}
+
+  /**
+   * Registers the zstd, lz4 and snappy compressors with {@code registry}. Note that {@link
+   * CompressorRegistry#getDefaultInstance} is shared by all channels and servers.
+   */
+  public static void registerCompressors(CompressorRegistry registry) {
+    for (Codec codec : codecs()) {
+      registry.register(codec);
+    }
+  }
+
+  /**
+   * Returns a copy of {@code registry} with the zstd, lz4 and snappy decompressors added and
+   * advertised to the remote peer.
+   */
+  public static DecompressorRegistry withDecompressors(DecompressorRegistry registry) {
+    for (Codec codec : codecs()) {
+      registry = registry.with(codec, true);
+    }
+    return registry;
+  }
+
+  private static Codec[] codecs() {
+    return new Codec[] {ZstdCodec.create(), new Lz4Codec(), new SnappyCodec()};
+  }
+
+  /**
+   * Returns a client interceptor that compresses the requests of the methods in {@code
+   * encodingsByMethod}, which maps full method names to message encodings. Calls that already set
+   * a compressor in their {@link CallOptions} are left alone. The encodings must be registered in
+   * the channel's {@link CompressorRegistry} and the server's {@link DecompressorRegistry}.
+   */
+  public static ClientInterceptor newClientInterceptor(Map<String, String> encodingsByMethod) {
+    return new MethodCompressionClientInterceptor(encodingsByMethod);
+  }
+
+  /**
+   * Returns a server interceptor that compresses the responses of the methods in {@code
+   * encodingsByMethod}, which maps full method names to message encodings. The encodings must be
+   * registered in the server's {@link CompressorRegistry}. Responses are sent uncompressed to
+   * clients that do not accept the encoding.
+   */
+  public static ServerInterceptor newServerInterceptor(Map<String, String> encodingsByMethod) {
+    return new MethodCompressionServerInterceptor(encodingsByMethod);
+  }
+
+  private static final class MethodCompressionClientInterceptor implements ClientInterceptor {
+    private final Map<String, String> encodingsByMethod;
+
+    MethodCompressionClientInterceptor(Map<String, String> encodingsByMethod) {
+      this.encodingsByMethod =
+          ImmutableMap.copyOf(checkNotNull(encodingsByMethod, "encodingsByMethod"));
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+      String encoding = encodingsByMethod.get(method.getFullMethodName());
+      if (encoding != null && callOptions.getCompressor() == null) {
+        callOptions = callOptions.withCompression(encoding);
+      }
+      return next.newCall(method, callOptions);
+    }
+  }
+
+  private static final class MethodCompressionServerInterceptor implements ServerInterceptor {
+    private final Map<String, String> encodingsByMethod;
+
+    MethodCompressionServerInterceptor(Map<String, String> encodingsByMethod) {
+      this.encodingsByMethod =
+          ImmutableMap.copyOf(checkNotNull(encodingsByMethod, "encodingsByMethod"));
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+        ServerCall<ReqT, RespT> call, Metadata headers, ServerCallHandler<ReqT, RespT> next) {
+      String encoding = encodingsByMethod.get(call.getMethodDescriptor().getFullMethodName());
+      if (encoding != null) {
+        call.setCompression(encoding);
+      }
+      return next.startCall(call, headers);
+    }
+  }
+}
@@ -0,0 +1,50 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.compression;
+
+import io.grpc.Codec;
+import io.grpc.ExperimentalApi;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+/**
+ * An <a href="https://lz4.github.io/lz4/">LZ4</a> compressor and decompressor, using the LZ4 frame
+ * format. LZ4 compresses less than gzip or zstd, but at a small fraction of the CPU cost.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+public final class Lz4Codec implements Codec {
+  public static final String MESSAGE_ENCODING = "lz4";
+
+  @Override
+  public String getMessageEncoding() {
+    return MESSAGE_ENCODING;
+  }
+
+  @Override
+  public OutputStream compress(OutputStream os) throws IOException {
+    // The default 4 MiB block size allocates 4 MiB of buffers for every message.
+    return new LZ4FrameOutputStream(os, LZ4FrameOutputStream.BLOCKSIZE.SIZE_64KB);
+  }
+
+  @Override
+  public InputStream decompress(InputStream is) throws IOException {
+    return new LZ4FrameInputStream(is);
+  }
+}
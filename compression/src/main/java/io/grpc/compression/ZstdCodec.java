@@ -0,0 +1,146 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.compression;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import com.github.luben.zstd.ZstdInputStream;
+import com.github.luben.zstd.ZstdOutputStream;
+import io.grpc.Codec;
+import io.grpc.ExperimentalApi;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import javax.annotation.Nullable;
+
+/**
+ * A <a href="https://facebook.github.io/zstd/">zstd</a> compressor and decompressor.
+ *
+ * <p>Small messages that repeat the same field names and values compress much better with a
+ * dictionary trained on sample messages; see {@link #withDictionary}. Both peers must use the same
+ * dictionary, so a dictionary codec has its own message encoding, which should change whenever the
+ * dictionary does.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1704")
+public final class ZstdCodec implements Codec {
+  public static final String MESSAGE_ENCODING = "zstd";
+  public static final int DEFAULT_LEVEL = 3;
+
+  private final String messageEncoding;
+  private final int level;
+  @Nullable
+  private final ZstdDictCompress compressDictionary;
+  @Nullable
+  private final ZstdDictDecompress decompressDictionary;
+
+  /**
+   * Creates a codec with the {@value #MESSAGE_ENCODING} message encoding at the default level.
+   */
+  public static ZstdCodec create() {
+    return create(DEFAULT_LEVEL);
+  }
+
+  /**
+   * Creates a codec with the {@value #MESSAGE_ENCODING} message encoding at the given compression
+   * level. Lower levels are faster; 1 to 3 suit most RPC traffic.
+   */
+  public static ZstdCodec create(int level) {
+    return new ZstdCodec(MESSAGE_ENCODING, level, null);
+  }
+
+  /**
+   * Creates a codec that compresses with {@code dictionary} at the default level.
+   *
+   * @param messageEncoding the message encoding identifying this dictionary, for example {@code
+   *     "zstd-orders-v2"}
+   * @param dictionary a dictionary, such as one returned by {@link #trainDictionary}
+   */
+  public static ZstdCodec withDictionary(String messageEncoding, byte[] dictionary) {
+    return withDictionary(messageEncoding, dictionary, DEFAULT_LEVEL);
+  }
+
+  /**
+   * Creates a codec that compresses with {@code dictionary} at the given level.
+   *
+   * @param messageEncoding the message encoding identifying this dictionary, for example {@code
+   *     "zstd-orders-v2"}
+   * @param dictionary a dictionary, such as one returned by {@link #trainDictionary}
+   */
+  public static ZstdCodec withDictionary(String messageEncoding, byte[] dictionary, int level) {
+    checkNotNull(dictionary, "dictionary");
+    checkArgument(dictionary.length > 0, "dictionary is empty");
+    return new ZstdCodec(messageEncoding, level, dictionary);
+  }
+
+  /**
+   * Trains a dictionary of at most {@code maxDictionarySize} bytes from sample serialized
+   * messages. A few thousand samples of the messages of a method are usually enough; the
+   * dictionary is typically a few tens of kilobytes.
+   */
+  public static byte[] trainDictionary(Iterable<byte[]> samples, int maxDictionarySize) {
+    checkArgument(maxDictionarySize > 0, "maxDictionarySize must be positive");
+    int samplesSize = 0;
+    for (byte[] sample : samples) {
+      samplesSize += sample.length;
+    }
+    ZstdDictTrainer trainer = new ZstdDictTrainer(samplesSize, maxDictionarySize);
+    for (byte[] sample : samples) {
+      trainer.addSample(sample);
+    }
+    return trainer.trainSamples();
+  }
+
+  private ZstdCodec(String messageEncoding, int level, @Nullable byte[] dictionary) {
+    this.messageEncoding = checkNotNull(messageEncoding, "messageEncoding");
+    this.level = level;
+    if (dictionary != null) {
+      // Digesting a dictionary is expensive, so it is done once and shared by all streams.
+      this.compressDictionary = new ZstdDictCompress(dictionary, level);
+      this.decompressDictionary = new ZstdDictDecompress(dictionary);
+    } else {
+      this.compressDictionary = null;
+      this.decompressDictionary = null;
+    }
+  }
+
+  @Override
+  public String getMessageEncoding() {
+    return messageEncoding;
+  }
+
+  @Override
+  public OutputStream compress(OutputStream os) throws IOException {
+    ZstdOutputStream zos = new ZstdOutputStream(os, level);
+    if (compressDictionary != null) {
+      zos.setDict(compressDictionary);
+    }
+    return zos;
+  }
+
+  @Override
+  public InputStream decompress(InputStream is) throws IOException {
+    ZstdInputStream zis = new ZstdInputStream(is);
+    if (decompressDictionary != null) {
+      zis.setDict(decompressDictionary);
+    }
+    return zis;
+  }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.compression;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.grpc.compression.ZstdCodecTest.compress;
+import static io.grpc.compression.ZstdCodecTest.decompress;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.collect.ImmutableMap;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.Codec;
+import io.grpc.CompressorRegistry;
+import io.grpc.DecompressorRegistry;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.testing.TestMethodDescriptors;
+import java.util.Random;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for {@link CompressionCodecs}. */
+@RunWith(JUnit4.class)
+public class CompressionCodecsTest {
+  private final MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+
+  @Test
+  public void codecsRoundTrip() throws Exception {
+    byte[] message = new byte[100_000];
+    Random random = new Random(1);
+    for (int i = 0; i < message.length; i++) {
+      message[i] = (byte) random.nextInt(16);
+    }
+
+    for (Codec codec : new Codec[] {ZstdCodec.create(), new Lz4Codec(), new SnappyCodec()}) {
+      byte[] compressed = compress(codec, message);
+      assertThat(compressed.length).isLessThan(message.length);
+      assertArrayEquals(codec.getMessageEncoding(), message, decompress(codec, compressed));
+    }
+  }
+
+  @Test
+  public void registerCompressors() {
+    CompressorRegistry registry = CompressorRegistry.newEmptyInstance();
+    CompressionCodecs.registerCompressors(registry);
+
+    assertThat(registry.lookupCompressor("zstd")).isInstanceOf(ZstdCodec.class);
+    assertThat(registry.lookupCompressor("lz4")).isInstanceOf(Lz4Codec.class);
+    assertThat(registry.lookupCompressor("snappy")).isInstanceOf(SnappyCodec.class);
+  }
+
+  @Test
+  public void withDecompressors() {
+    DecompressorRegistry registry =
+        CompressionCodecs.withDecompressors(DecompressorRegistry.getDefaultInstance());
+
+    assertThat(registry.getAdvertisedMessageEncodings())
+        .containsAtLeast("gzip", "zstd", "lz4", "snappy");
+  }
+
+  @Test
+  public void clientInterceptor_setsCompressionForMethod() {
+    ClientInterceptor interceptor = CompressionCodecs.newClientInterceptor(
+        ImmutableMap.of(method.getFullMethodName(), "zstd"));
+    Channel channel = mock(Channel.class);
+
+    interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+
+    ArgumentCaptor<CallOptions> callOptions = ArgumentCaptor.forClass(CallOptions.class);
+    verify(channel).newCall(any(MethodDescriptor.class), callOptions.capture());
+    assertEquals("zstd", callOptions.getValue().getCompressor());
+  }
+
+  @Test
+  public void clientInterceptor_keepsExplicitCompression() {
+    ClientInterceptor interceptor = CompressionCodecs.newClientInterceptor(
+        ImmutableMap.of(method.getFullMethodName(), "zstd"));
+    Channel channel = mock(Channel.class);
+
+    interceptor.interceptCall(method, CallOptions.DEFAULT.withCompression("gzip"), channel);
+
+    ArgumentCaptor<CallOptions> callOptions = ArgumentCaptor.forClass(CallOptions.class);
+    verify(channel).newCall(any(MethodDescriptor.class), callOptions.capture());
+    assertEquals("gzip", callOptions.getValue().getCompressor());
+  }
+
+  @Test
+  public void clientInterceptor_ignoresOtherMethods() {
+    ClientInterceptor interceptor = CompressionCodecs.newClientInterceptor(
+        ImmutableMap.of("other.Service/Method", "zstd"));
+    Channel channel = mock(Channel.class);
+
+    interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+
+    ArgumentCaptor<CallOptions> callOptions = ArgumentCaptor.forClass(CallOptions.class);
+    verify(channel).newCall(any(MethodDescriptor.class), callOptions.capture());
+    assertNull(callOptions.getValue().getCompressor());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void serverInterceptor_setsCompressionForMethod() {
+    ServerInterceptor interceptor = CompressionCodecs.newServerInterceptor(
+        ImmutableMap.of(method.getFullMethodName(), "lz4"));
+    ServerCall<Void, Void> call = mock(ServerCall.class);
+    when(call.getMethodDescriptor()).thenReturn(method);
+    ServerCallHandler<Void, Void> handler = mock(ServerCallHandler.class);
+    Metadata headers = new Metadata();
+
+    interceptor.interceptCall(call, headers, handler);
+
+    verify(call).setCompression("lz4");
+    verify(handler).startCall(call, headers);
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void serverInterceptor_ignoresOtherMethods() {
+    ServerInterceptor interceptor = CompressionCodecs.newServerInterceptor(
+        ImmutableMap.of("other.Service/Method", "lz4"));
+    ServerCall<Void, Void> call = mock(ServerCall.class);
+    when(call.getMethodDescriptor()).thenReturn(method);
+
+    interceptor.interceptCall(call, new Metadata(), mock(ServerCallHandler.class));
+
+    verify(call, never()).setCompression(anyString());
+  }
+}
@@ -0,0 +1,123 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.compression;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.Codec;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ZstdCodec}. */
+@RunWith(JUnit4.class)
+public class ZstdCodecTest {
+  private final List<byte[]> samples = newSamples(2000);
+  private final byte[] dictionary = ZstdCodec.trainDictionary(samples, 16 * 1024);
+
+  @Test
+  public void messageEncoding() {
+    assertEquals("zstd", ZstdCodec.create().getMessageEncoding());
+    assertEquals("zstd-orders-v1",
+        ZstdCodec.withDictionary("zstd-orders-v1", dictionary).getMessageEncoding());
+  }
+
+  @Test
+  public void dictionaryRoundTrip() throws Exception {
+    Codec codec = ZstdCodec.withDictionary("zstd-orders-v1", dictionary);
+    byte[] message = samples.get(0);
+
+    assertArrayEquals(message, decompress(codec, compress(codec, message)));
+  }
+
+  @Test
+  public void dictionaryImprovesSmallMessages() throws Exception {
+    Codec plain = ZstdCodec.create();
+    Codec withDictionary = ZstdCodec.withDictionary("zstd-orders-v1", dictionary);
+    byte[] message = newSample(1_000_000);
+
+    assertThat(compress(withDictionary, message).length)
+        .isLessThan(compress(plain, message).length);
+  }
+
+  @Test
+  public void dictionaryMismatchFails() throws Exception {
+    Codec codec = ZstdCodec.withDictionary("zstd-orders-v1", dictionary);
+    byte[] compressed = compress(codec, samples.get(0));
+
+    try {
+      decompress(ZstdCodec.create(), compressed);
+      fail("Expected exception");
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void emptyDictionaryRejected() {
+    try {
+      ZstdCodec.withDictionary("zstd-empty", new byte[0]);
+      fail("Expected exception");
+    } catch (IllegalArgumentException expected) {
+      // expected
+    }
+  }
+
+  static byte[] compress(Codec codec, byte[] message) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    OutputStream compressing = codec.compress(out);
+    compressing.write(message);
+    compressing.close();
+    return out.toByteArray();
+  }
+
+  static byte[] decompress(Codec codec, byte[] compressed) throws IOException {
+    InputStream in = codec.decompress(new ByteArrayInputStream(compressed));
+    try {
+      return ByteStreams.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+
+  private static List<byte[]> newSamples(int count) {
+    List<byte[]> samples = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      samples.add(newSample(i));
+    }
+    return samples;
+  }
+
+  /** Returns a small message with the repetitive shape of a typical request. */
+  private static byte[] newSample(int id) {
+    return ("{\"orderId\":" + id + ",\"customer\":\"customer-" + (id % 97)
+        + "\",\"status\":\"PENDING\",\"currency\":\"USD\",\"warehouse\":\"us-east-"
+        + (id % 5) + "\"}").getBytes(StandardCharsets.UTF_8);
+  }
+}
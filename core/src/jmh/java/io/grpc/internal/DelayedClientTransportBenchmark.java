@@ -0,0 +1,237 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.LoadBalancer.SubchannelPicker;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.testing.TestMethodDescriptors;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures {@link DelayedClientTransport} with many buffered calls, as during channel startup or
+ * failover.
+ *
+ * <p>The {@code pickerUpdates} group re-picks all buffered calls with a picker that keeps them
+ * buffered, while other threads create and cancel calls, to see how much the picker updates and
+ * new calls get in each other's way. {@link #reprocessAll} measures assigning a transport to every
+ * buffered call.
+ */
+@State(Scope.Group)
+public class DelayedClientTransportBenchmark {
+
+  /** Number of calls buffered in the transport before each benchmark. */
+  @Param({"10000"})
+  public int pendingCalls;
+
+  private static final MethodDescriptor<Void, Void> METHOD = TestMethodDescriptors.voidMethod();
+  private static final ClientStreamTracer[] TRACERS = new ClientStreamTracer[0];
+
+  private final SynchronizationContext syncContext = new SynchronizationContext(
+      new Thread.UncaughtExceptionHandler() {
+        @Override
+        public void uncaughtException(Thread t, Throwable e) {
+          throw new AssertionError(e);
+        }
+      });
+  private final SubchannelPicker bufferingPicker = new SubchannelPicker() {
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      return PickResult.withNoResult();
+    }
+  };
+  private final SubchannelPicker readyPicker = new SubchannelPicker() {
+    private final PickResult result = PickResult.withSubchannel(new ReadySubchannel());
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      return result;
+    }
+  };
+
+  private DelayedClientTransport transport;
+
+  @Setup(Level.Iteration)
+  public void setUp() {
+    transport = newBufferingTransport();
+  }
+
+  @TearDown(Level.Iteration)
+  public void tearDown() {
+    transport.shutdownNow(Status.UNAVAILABLE);
+  }
+
+  /** Re-picks every buffered call, as on a picker update that does not make progress. */
+  @Benchmark
+  @Group("pickerUpdates")
+  @GroupThreads(1)
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void reprocess() {
+    transport.reprocess(bufferingPicker);
+  }
+
+  /** Buffers a new call and cancels it, concurrently with {@link #reprocess}. */
+  @Benchmark
+  @Group("pickerUpdates")
+  @GroupThreads(4)
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void newStream() {
+    ClientStream stream =
+        transport.newStream(METHOD, new Metadata(), CallOptions.DEFAULT, TRACERS);
+    stream.start(NoopClientStreamListener.INSTANCE);
+    stream.cancel(Status.CANCELLED);
+  }
+
+  /** State for {@link #reprocessAll}, which buffers a fresh batch of calls every invocation. */
+  @State(Scope.Thread)
+  public static class Drain {
+    DelayedClientTransport transport;
+
+    @Setup(Level.Invocation)
+    public void setUp(DelayedClientTransportBenchmark benchmark) {
+      transport = benchmark.newBufferingTransport();
+    }
+  }
+
+  /** Assigns a transport to every buffered call. */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public boolean reprocessAll(Drain drain) {
+    drain.transport.reprocess(readyPicker);
+    return drain.transport.hasPendingStreams();
+  }
+
+  DelayedClientTransport newBufferingTransport() {
+    DelayedClientTransport transport =
+        new DelayedClientTransport(MoreExecutors.directExecutor(), syncContext);
+    transport.start(new NoopTransportListener());
+    transport.reprocess(bufferingPicker);
+    for (int i = 0; i < pendingCalls; i++) {
+      transport.newStream(METHOD, new Metadata(), CallOptions.DEFAULT, TRACERS)
+          .start(NoopClientStreamListener.INSTANCE);
+    }
+    return transport;
+  }
+
+  private static final class NoopClientStreamListener implements ClientStreamListener {
+    static final NoopClientStreamListener INSTANCE = new NoopClientStreamListener();
+
+    @Override
+    public void messagesAvailable(MessageProducer producer) {}
+
+    @Override
+    public void onReady() {}
+
+    @Override
+    public void headersRead(Metadata headers) {}
+
+    @Override
+    public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {}
+  }
+
+  private static final class NoopTransportListener implements ManagedClientTransport.Listener {
+    @Override
+    public void transportShutdown(Status s) {}
+
+    @Override
+    public void transportTerminated() {}
+
+    @Override
+    public void transportReady() {}
+
+    @Override
+    public void transportInUse(boolean inUse) {}
+  }
+
+  /** A subchannel whose transport accepts every stream. */
+  private static final class ReadySubchannel extends Subchannel {
+    private final TransportProvider transportProvider = new TransportProvider() {
+      private final ClientTransport transport = new ClientTransport() {
+        private final InternalLogId logId = InternalLogId.allocate("ready-transport", null);
+
+        @Override
+        public ClientStream newStream(
+            MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+            ClientStreamTracer[] tracers) {
+          return NoopClientStream.INSTANCE;
+        }
+
+        @Override
+        public void ping(PingCallback callback, Executor executor) {}
+
+        @Override
+        public ListenableFuture<SocketStats> getStats() {
+          return null;
+        }
+
+        @Override
+        public InternalLogId getLogId() {
+          return logId;
+        }
+      };
+
+      @Override
+      public ClientTransport obtainActiveTransport() {
+        return transport;
+      }
+    };
+
+    @Override
+    public void shutdown() {}
+
+    @Override
+    public void requestConnection() {}
+
+    @Override
+    public Attributes getAttributes() {
+      return Attributes.EMPTY;
+    }
+
+    @Override
+    public Object getInternalSubchannel() {
+      return transportProvider;
+    }
+  }
+}
@@ -25,7 +25,9 @@ import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
 import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
 import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.TearDown;
 
@@ -62,10 +64,40 @@ public class SerializingExecutorBenchmark {
     }
   };
 
+  /** Number of threads concurrently submitting to the executor in {@link #manyProducers}. */
+  @Param({"1", "4", "16"})
+  public int producers;
+
+  private ExecutorService producerService;
+  private Phaser producersPhaser;
+  private final Runnable producersPhaserRunnable = new Runnable() {
+    @Override
+    public void run() {
+      producersPhaser.arrive();
+    }
+  };
+  private final Runnable produceRunnable = new Runnable() {
+    @Override
+    public void run() {
+      for (int i = 0; i < 500; i++) {
+        executor.execute(incrRunnable);
+      }
+      executor.execute(producersPhaserRunnable);
+    }
+  };
+
+  @Setup
+  public void setUp() {
+    producerService = Executors.newFixedThreadPool(producers);
+    producersPhaser = new Phaser(producers + 1);
+  }
+
   @TearDown
   public void tearDown() throws Exception {
     executorService.shutdownNow();
-    if (!executorService.awaitTermination(1, TimeUnit.SECONDS)) {
+    producerService.shutdownNow();
+    if (!executorService.awaitTermination(1, TimeUnit.SECONDS)
+        || !producerService.awaitTermination(1, TimeUnit.SECONDS)) {
       throw new RuntimeException("executor failed to shut down in a timely fashion");
     }
   }
@@ -95,4 +127,22 @@ public class SerializingExecutorBenchmark {
       throw new AssertionError();
     }
   }
+
+  /**
+   * Queue many runnables from several threads at once, to see the cost of contention between
+   * producers.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void manyProducers() throws Exception {
+    incrRunnable.val = 0;
+    for (int i = 0; i < producers; i++) {
+      producerService.execute(produceRunnable);
+    }
+    producersPhaser.arriveAndAwaitAdvance();
+    if (incrRunnable.val != 500 * producers) {
+      throw new AssertionError();
+    }
+  }
 }
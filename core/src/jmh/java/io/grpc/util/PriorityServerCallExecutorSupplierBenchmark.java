@@ -0,0 +1,128 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the latency of interactive tasks while batch tasks saturate the executor, with a
+ * plain first-in, first-out thread pool and with {@link PriorityServerCallExecutorSupplier}. With
+ * the supplier, interactive tasks only wait for a running batch task to finish, instead of for the
+ * whole backlog.
+ */
+@State(Scope.Thread)
+public class PriorityServerCallExecutorSupplierBenchmark {
+  private static final int THREADS = 2;
+  private static final long BATCH_TASK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+  /** Whether the tasks are queued in the thread pool, or by the priority supplier. */
+  @Param({"fifo", "priority"})
+  public String scheduler;
+
+  /** Number of batch tasks kept queued. */
+  @Param({"100", "1000"})
+  public int backlog;
+
+  private ExecutorService threadPool;
+  private Executor batchExecutor;
+  private Executor interactiveExecutor;
+  private Thread producer;
+  private volatile boolean stopped;
+
+  @Setup
+  public void setUp() {
+    threadPool = Executors.newFixedThreadPool(THREADS);
+    if ("fifo".equals(scheduler)) {
+      batchExecutor = threadPool;
+      interactiveExecutor = threadPool;
+    } else {
+      PriorityServerCallExecutorSupplier supplier =
+          PriorityServerCallExecutorSupplier.newBuilder(threadPool, THREADS)
+              .addPriorityClass("batch", 1)
+              .addPriorityClass("interactive", 100)
+              .build();
+      batchExecutor = supplier.getPriorityClassExecutor("batch");
+      interactiveExecutor = supplier.getPriorityClassExecutor("interactive");
+    }
+    final Semaphore outstanding = new Semaphore(backlog);
+    final Runnable batchTask = new Runnable() {
+      @Override
+      public void run() {
+        long deadline = System.nanoTime() + BATCH_TASK_NANOS;
+        while (System.nanoTime() < deadline) {
+          // Busy, like a call handler doing work.
+        }
+        outstanding.release();
+      }
+    };
+    producer = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        while (!stopped) {
+          try {
+            if (outstanding.tryAcquire(10, TimeUnit.MILLISECONDS)) {
+              batchExecutor.execute(batchTask);
+            }
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+      }
+    });
+    producer.setDaemon(true);
+    producer.start();
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    stopped = true;
+    producer.join();
+    threadPool.shutdownNow();
+    if (!threadPool.awaitTermination(1, TimeUnit.SECONDS)) {
+      throw new RuntimeException("executor failed to shut down in a timely fashion");
+    }
+  }
+
+  /** Latency of an interactive task submitted while the batch backlog is queued. */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.MICROSECONDS)
+  public void interactiveLatency() throws Exception {
+    final CountDownLatch latch = new CountDownLatch(1);
+    interactiveExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        latch.countDown();
+      }
+    });
+    latch.await();
+  }
+}
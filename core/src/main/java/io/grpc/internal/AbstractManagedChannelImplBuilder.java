@@ -89,6 +89,12 @@ public abstract class AbstractManagedChannelImplBuilder
     return thisT();
   }
 
+  @Override
+  public T virtualThreadExecutor() {
+    delegate().virtualThreadExecutor();
+    return thisT();
+  }
+
   @Override
   public T offloadExecutor(Executor executor) {
     delegate().offloadExecutor(executor);
@@ -156,6 +162,12 @@ public abstract class AbstractManagedChannelImplBuilder
     return thisT();
   }
 
+  @Override
+  public T decompressionExecutor(@Nullable Executor executor) {
+    delegate().decompressionExecutor(executor);
+    return thisT();
+  }
+
   @Override
   public T compressorRegistry(CompressorRegistry registry) {
     delegate().compressorRegistry(registry);
@@ -246,6 +258,25 @@ public abstract class AbstractManagedChannelImplBuilder
     return thisT();
   }
 
+  @Override
+  public T retryBufferSerializedMessages() {
+    delegate().retryBufferSerializedMessages();
+    return thisT();
+  }
+
+  @Override
+  public T spareTransportsPerSubchannel(int count) {
+    delegate().spareTransportsPerSubchannel(count);
+    return thisT();
+  }
+
+  @Override
+  public T connectionsPerSubchannel(
+      int minConnections, int maxConnections, int maxStreamsPerConnection) {
+    delegate().connectionsPerSubchannel(minConnections, maxConnections, maxStreamsPerConnection);
+    return thisT();
+  }
+
   @Override
   public T disableRetry() {
     delegate().disableRetry();
@@ -24,6 +24,7 @@ import io.grpc.DecompressorRegistry;
 import io.grpc.HandlerRegistry;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerCallAdmissionController;
 import io.grpc.ServerCallExecutorSupplier;
 import io.grpc.ServerInterceptor;
 import io.grpc.ServerServiceDefinition;
@@ -74,12 +75,24 @@ public abstract class AbstractServerImplBuilder
     return thisT();
   }
 
+  @Override
+  public T admissionController(ServerCallAdmissionController admissionController) {
+    delegate().admissionController(admissionController);
+    return thisT();
+  }
+
   @Override
   public T executor(@Nullable Executor executor) {
     delegate().executor(executor);
     return thisT();
   }
 
+  @Override
+  public T virtualThreadExecutor() {
+    delegate().virtualThreadExecutor();
+    return thisT();
+  }
+
   @Override
   public T addService(ServerServiceDefinition service) {
     delegate().addService(service);
@@ -134,6 +147,12 @@ public abstract class AbstractServerImplBuilder
     return thisT();
   }
 
+  @Override
+  public T decompressionExecutor(@Nullable Executor executor) {
+    delegate().decompressionExecutor(executor);
+    return thisT();
+  }
+
   @Override
   public T compressorRegistry(@Nullable CompressorRegistry registry) {
     delegate().compressorRegistry(registry);
@@ -146,6 +165,12 @@ public abstract class AbstractServerImplBuilder
     return thisT();
   }
 
+  @Override
+  public T coalesceMessages(int maxBytes, long maxDelay, TimeUnit unit) {
+    delegate().coalesceMessages(maxBytes, maxDelay, unit);
+    return thisT();
+  }
+
   @Override
   public T maxInboundMessageSize(int bytes) {
     delegate().maxInboundMessageSize(bytes);
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import javax.annotation.Nullable;
+
+/**
+ * An unbounded multi-producer, single-consumer queue that stores elements in linked fixed-size
+ * chunks, so that adding an element does not allocate a node. Producers claim a slot with a single
+ * atomic increment and only contend when a chunk fills up.
+ *
+ * <p>{@link #offer} may be called from any thread. {@link #poll} and {@link #remove} must only be
+ * called by one thread at a time, and each consumer must happen-after the previous one, as is the
+ * case when the consumer is guarded by a lock or an atomic state transition. {@link #isEmpty} may
+ * be called from any thread, but is only exact when called by the consumer.
+ */
+public final class ChunkedMpscQueue<E> {
+  @VisibleForTesting
+  static final int CHUNK_SIZE = 32;
+
+  /** Placeholder for an element that was removed before being polled. */
+  private static final Object REMOVED = new Object();
+
+  private final AtomicReference<Chunk> tail;
+  // Only accessed by the consumer.
+  private Chunk head;
+  private int consumerIndex;
+
+  public ChunkedMpscQueue() {
+    head = new Chunk();
+    tail = new AtomicReference<>(head);
+  }
+
+  /**
+   * Adds {@code element} to the end of the queue.
+   */
+  public void offer(E element) {
+    checkNotNull(element, "element");
+    while (true) {
+      Chunk chunk = tail.get();
+      int index = chunk.producerIndex.getAndIncrement();
+      if (index < CHUNK_SIZE) {
+        chunk.slots.set(index, element);
+        return;
+      }
+      // The chunk is full. Append a new chunk holding the element, or help whoever did.
+      Chunk next = chunk.next.get();
+      if (next == null) {
+        Chunk newChunk = new Chunk();
+        newChunk.producerIndex.set(1);
+        newChunk.slots.set(0, element);
+        if (chunk.next.compareAndSet(null, newChunk)) {
+          tail.compareAndSet(chunk, newChunk);
+          return;
+        }
+        next = chunk.next.get();
+      }
+      tail.compareAndSet(chunk, next);
+    }
+  }
+
+  /**
+   * Removes and returns the head of the queue, or returns {@code null} if the queue is empty.
+   */
+  @Nullable
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    while (true) {
+      if (consumerIndex == CHUNK_SIZE) {
+        Chunk next = head.next.get();
+        if (next == null) {
+          return null;
+        }
+        head = next;
+        consumerIndex = 0;
+      }
+      Object element = head.slots.get(consumerIndex);
+      if (element == null) {
+        if (head.producerIndex.get() <= consumerIndex) {
+          return null;
+        }
+        // The slot was claimed, but the producer has not stored the element yet. It is about to,
+        // so wait for it while letting the producer's thread run.
+        do {
+          Thread.yield();
+          element = head.slots.get(consumerIndex);
+        } while (element == null);
+      }
+      head.slots.lazySet(consumerIndex, null);
+      consumerIndex++;
+      if (element != REMOVED) {
+        return (E) element;
+      }
+    }
+  }
+
+  /**
+   * Removes the first occurrence of {@code element}, returning whether it was found. Elements
+   * that are still being added by other producers are not considered.
+   */
+  public boolean remove(Object element) {
+    int index = consumerIndex;
+    for (Chunk chunk = head; chunk != null; chunk = chunk.next.get(), index = 0) {
+      int limit = Math.min(chunk.producerIndex.get(), CHUNK_SIZE);
+      for (; index < limit; index++) {
+        if (chunk.slots.get(index) == element) {
+          chunk.slots.set(index, REMOVED);
+          return true;
+        }
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns whether there is no element left to poll. Elements that are still being added by other
+   * producers count as present.
+   */
+  public boolean isEmpty() {
+    // head and consumerIndex may be stale when read by a thread other than the consumer. That only
+    // matters if another consumer is running, which will check for new elements when it finishes.
+    Chunk chunk = head;
+    int index = consumerIndex;
+    if (index == CHUNK_SIZE) {
+      chunk = chunk.next.get();
+      if (chunk == null) {
+        return true;
+      }
+      index = 0;
+    }
+    return chunk.producerIndex.get() <= index;
+  }
+
+  private static final class Chunk {
+    final AtomicReferenceArray<Object> slots = new AtomicReferenceArray<>(CHUNK_SIZE);
+    final AtomicInteger producerIndex = new AtomicInteger();
+    final AtomicReference<Chunk> next = new AtomicReference<>();
+  }
+}
@@ -0,0 +1,251 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import io.grpc.Attributes;
+import io.grpc.Compressor;
+import io.grpc.Decompressor;
+import io.grpc.KnownLength;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+/**
+ * A {@link ServerStream} that delays {@link #flush} so that several messages are flushed to the
+ * transport together. Buffered messages are flushed once {@code maxBytes} are buffered, {@code
+ * maxDelayNanos} after the first buffered message, or when the stream is closed.
+ *
+ * <p>The delayed flush is triggered on the transport's scheduled executor, concurrently with the
+ * application, so every method that writes to the delegate holds a lock. The transport thread
+ * never waits for that lock, since the application may hold it while serializing a large message:
+ * if the lock is held, the flush is left to the thread holding it, which flushes before releasing
+ * it.
+ */
+final class CoalescingServerStream implements ServerStream {
+  private final ServerStream delegate;
+  private final int maxBytes;
+  private final long maxDelayNanos;
+  private final ScheduledExecutorService scheduler;
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Runnable delayedFlush = new Runnable() {
+    @Override
+    public void run() {
+      flushDue = true;
+      if (lock.tryLock()) {
+        unlock();
+      }
+    }
+  };
+
+  // Set when the delayed flush is due, and cleared by whoever performs it while holding the lock.
+  private volatile boolean flushDue;
+  @GuardedBy("lock")
+  private long bufferedBytes;
+  @GuardedBy("lock")
+  @Nullable
+  private ScheduledFuture<?> flushFuture;
+
+  CoalescingServerStream(
+      ServerStream delegate, int maxBytes, long maxDelayNanos,
+      ScheduledExecutorService scheduler) {
+    this.delegate = checkNotNull(delegate, "delegate");
+    this.maxBytes = maxBytes;
+    this.maxDelayNanos = maxDelayNanos;
+    this.scheduler = checkNotNull(scheduler, "scheduler");
+  }
+
+  @Override
+  public void writeMessage(InputStream message) {
+    int size = -1;
+    if (message instanceof KnownLength) {
+      try {
+        size = message.available();
+      } catch (IOException e) {
+        // Treat as unknown.
+      }
+    }
+    lock.lock();
+    try {
+      delegate.writeMessage(message);
+      // Messages of unknown size are flushed right away.
+      bufferedBytes = size < 0 ? maxBytes : bufferedBytes + size;
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void flush() {
+    lock.lock();
+    try {
+      if (bufferedBytes >= maxBytes) {
+        flushBuffered();
+      } else if (bufferedBytes > 0 && flushFuture == null) {
+        flushFuture = scheduler.schedule(delayedFlush, maxDelayNanos, TimeUnit.NANOSECONDS);
+      }
+    } finally {
+      unlock();
+    }
+  }
+
+  /**
+   * Releases the lock, performing the delayed flush first if it became due while the lock was
+   * held.
+   */
+  private void unlock() {
+    while (true) {
+      if (flushDue) {
+        flushDue = false;
+        if (bufferedBytes > 0) {
+          flushBuffered();
+        } else {
+          flushFuture = null;
+        }
+      }
+      lock.unlock();
+      // The flush may have become due after the check above, while its tryLock() failed.
+      if (!flushDue || !lock.tryLock()) {
+        return;
+      }
+    }
+  }
+
+  @GuardedBy("lock")
+  private void flushBuffered() {
+    bufferedBytes = 0;
+    cancelFlushFuture();
+    delegate.flush();
+  }
+
+  @GuardedBy("lock")
+  private void cancelFlushFuture() {
+    if (flushFuture != null) {
+      flushFuture.cancel(false);
+      flushFuture = null;
+    }
+  }
+
+  @Override
+  public void writeHeaders(Metadata headers) {
+    lock.lock();
+    try {
+      delegate.writeHeaders(headers);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void close(Status status, Metadata trailers) {
+    lock.lock();
+    try {
+      // Closing flushes everything buffered.
+      bufferedBytes = 0;
+      cancelFlushFuture();
+      delegate.close(status, trailers);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void cancel(Status status) {
+    lock.lock();
+    try {
+      bufferedBytes = 0;
+      cancelFlushFuture();
+    } finally {
+      unlock();
+    }
+    delegate.cancel(status);
+  }
+
+  @Override
+  public void setCompressor(Compressor compressor) {
+    lock.lock();
+    try {
+      delegate.setCompressor(compressor);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void setMessageCompression(boolean enable) {
+    lock.lock();
+    try {
+      delegate.setMessageCompression(enable);
+    } finally {
+      unlock();
+    }
+  }
+
+  @Override
+  public void request(int numMessages) {
+    delegate.request(numMessages);
+  }
+
+  @Override
+  public boolean isReady() {
+    return delegate.isReady();
+  }
+
+  @Override
+  public void optimizeForDirectExecutor() {
+    delegate.optimizeForDirectExecutor();
+  }
+
+  @Override
+  public void setDecompressor(Decompressor decompressor) {
+    delegate.setDecompressor(decompressor);
+  }
+
+  @Override
+  public Attributes getAttributes() {
+    return delegate.getAttributes();
+  }
+
+  @Override
+  @Nullable
+  public String getAuthority() {
+    return delegate.getAuthority();
+  }
+
+  @Override
+  public void setListener(ServerStreamListener serverStreamListener) {
+    delegate.setListener(serverStreamListener);
+  }
+
+  @Override
+  public StatsTraceContext statsTraceContext() {
+    return delegate.statsTraceContext();
+  }
+
+  @Override
+  public int streamId() {
+    return delegate.streamId();
+  }
+}
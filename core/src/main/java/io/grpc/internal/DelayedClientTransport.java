@@ -35,7 +35,9 @@ import io.grpc.internal.ClientStreamListener.RpcProgress;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
-import java.util.LinkedHashSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.Executor;
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
@@ -49,8 +51,27 @@ import javax.annotation.concurrent.GuardedBy;
  * <p>This transport owns every stream that it has created until a real transport has been picked
  * for that stream, at which point the ownership of the stream is transferred to the real transport,
  * thus the delayed transport stops owning the stream.
+ *
+ * <p>Pending streams are kept in a concurrent set ordered by creation, so {@link #reprocess} can
+ * pick transports for them without holding the lock. The lock is only held to add or remove
+ * streams, a batch at a time, so callers of {@link #newStream} are not serialized behind a picker
+ * update that has many streams to process.
  */
 final class DelayedClientTransport implements ManagedClientTransport {
+  /**
+   * The number of processed streams that {@link #reprocess} removes from {@link #pendingStreams}
+   * per lock acquisition.
+   */
+  @VisibleForTesting
+  static final int REPROCESS_BATCH_SIZE = 256;
+
+  private static final Comparator<PendingStream> CREATION_ORDER = new Comparator<PendingStream>() {
+    @Override
+    public int compare(PendingStream a, PendingStream b) {
+      return a.sequence < b.sequence ? -1 : (a.sequence == b.sequence ? 0 : 1);
+    }
+  };
+
   // lazily allocated, since it is infrequently used.
   private final InternalLogId logId =
       InternalLogId.allocate(DelayedClientTransport.class, /*details=*/ null);
@@ -65,27 +86,31 @@ final class DelayedClientTransport implements ManagedClientTransport {
   private Runnable reportTransportTerminated;
   private Listener listener;
 
+  /**
+   * Written while holding {@code lock}. It may be read without the lock, and is replaced by an
+   * empty list in {@link #shutdownNow}.
+   */
   @Nonnull
+  private volatile Collection<PendingStream> pendingStreams =
+      new ConcurrentSkipListSet<>(CREATION_ORDER);
+
   @GuardedBy("lock")
-  private Collection<PendingStream> pendingStreams = new LinkedHashSet<>();
+  private long nextStreamSequence;
 
   /**
    * When {@code shutdownStatus != null && !hasPendingStreams()}, then the transport is considered
-   * terminated.
+   * terminated. Written while holding {@code lock}.
    */
-  @GuardedBy("lock")
-  private Status shutdownStatus;
+  @Nullable
+  private volatile Status shutdownStatus;
 
   /**
-   * The last picker that {@link #reprocess} has used. May be set to null when the channel has moved
-   * to idle.
+   * Holds the last picker that {@link #reprocess} has used, which may be null when the channel has
+   * moved to idle. Every call to {@link #reprocess} sets a new instance, even for the same picker.
+   * Written while holding {@code lock}, so that a stream is only buffered if no newer picker has
+   * been set.
    */
-  @GuardedBy("lock")
-  @Nullable
-  private SubchannelPicker lastPicker;
-
-  @GuardedBy("lock")
-  private long lastPickerVersion;
+  private volatile PickerState pickerState = new PickerState(null);
 
   /**
    * Creates a new delayed transport.
@@ -138,24 +163,28 @@ final class DelayedClientTransport implements ManagedClientTransport {
       ClientStreamTracer[] tracers) {
     try {
       PickSubchannelArgs args = new PickSubchannelArgsImpl(method, headers, callOptions);
-      SubchannelPicker picker = null;
-      long pickerVersion = -1;
+      PickerState picked = null;
       while (true) {
-        synchronized (lock) {
-          if (shutdownStatus != null) {
-            return new FailingClientStream(shutdownStatus, tracers);
-          }
-          if (lastPicker == null) {
-            return createPendingStream(args, tracers);
-          }
-          // Check for second time through the loop, and whether anything changed
-          if (picker != null && pickerVersion == lastPickerVersion) {
-            return createPendingStream(args, tracers);
+        Status savedShutdownStatus = shutdownStatus;
+        if (savedShutdownStatus != null) {
+          return new FailingClientStream(savedShutdownStatus, tracers);
+        }
+        PickerState current = pickerState;
+        // Check for second time through the loop, and whether anything changed
+        if (current.picker == null || current == picked) {
+          synchronized (lock) {
+            if (shutdownStatus != null) {
+              return new FailingClientStream(shutdownStatus, tracers);
+            }
+            if (pickerState == current) {
+              return createPendingStream(args, tracers);
+            }
           }
-          picker = lastPicker;
-          pickerVersion = lastPickerVersion;
+          // A new picker was set while checking, so try it.
+          continue;
         }
-        PickResult pickResult = picker.pickSubchannel(args);
+        picked = current;
+        PickResult pickResult = picked.picker.pickSubchannel(args);
         ClientTransport transport = GrpcUtil.getTransportFromPickResult(pickResult,
             callOptions.isWaitForReady());
         if (transport != null) {
@@ -178,9 +207,10 @@ final class DelayedClientTransport implements ManagedClientTransport {
   @GuardedBy("lock")
   private PendingStream createPendingStream(
       PickSubchannelArgs args, ClientStreamTracer[] tracers) {
-    PendingStream pendingStream = new PendingStream(args, tracers);
+    PendingStream pendingStream = new PendingStream(args, tracers, nextStreamSequence++);
+    boolean wasEmpty = pendingStreams.isEmpty();
     pendingStreams.add(pendingStream);
-    if (getPendingStreamsCount() == 1) {
+    if (wasEmpty) {
       syncContext.executeLater(reportTransportInUse);
     }
     return pendingStream;
@@ -259,16 +289,12 @@ final class DelayedClientTransport implements ManagedClientTransport {
   }
 
   public final boolean hasPendingStreams() {
-    synchronized (lock) {
-      return !pendingStreams.isEmpty();
-    }
+    return !pendingStreams.isEmpty();
   }
 
   @VisibleForTesting
   final int getPendingStreamsCount() {
-    synchronized (lock) {
-      return pendingStreams.size();
-    }
+    return pendingStreams.size();
   }
 
   /**
@@ -282,18 +308,25 @@ final class DelayedClientTransport implements ManagedClientTransport {
    * <p>This method <strong>must not</strong> be called concurrently with itself.
    */
   final void reprocess(@Nullable SubchannelPicker picker) {
-    ArrayList<PendingStream> toProcess;
+    Collection<PendingStream> toProcess;
+    long endSequence;
     synchronized (lock) {
-      lastPicker = picker;
-      lastPickerVersion++;
+      pickerState = new PickerState(picker);
       if (picker == null || !hasPendingStreams()) {
         return;
       }
-      toProcess = new ArrayList<>(pendingStreams);
+      toProcess = pendingStreams;
+      // Streams created from here on have already been picked with this picker.
+      endSequence = nextStreamSequence;
     }
-    ArrayList<PendingStream> toRemove = new ArrayList<>();
+    List<PendingStream> toRemove = new ArrayList<>(REPROCESS_BATCH_SIZE);
 
+    // The iteration is weakly consistent: it sees the streams that were pending when it started,
+    // minus the ones cancelled since.
     for (final PendingStream stream : toProcess) {
+      if (stream.sequence >= endSequence) {
+        break;
+      }
       PickResult pickResult = picker.pickSubchannel(stream.args);
       CallOptions callOptions = stream.args.getCallOptions();
       final ClientTransport transport = GrpcUtil.getTransportFromPickResult(pickResult,
@@ -311,23 +344,36 @@ final class DelayedClientTransport implements ManagedClientTransport {
           executor.execute(runnable);
         }
         toRemove.add(stream);
+        if (toRemove.size() == REPROCESS_BATCH_SIZE) {
+          removeProcessedStreams(toRemove);
+          toRemove.clear();
+        }
       }  // else: stay pending
     }
+    removeProcessedStreams(toRemove);
+    syncContext.drain();
+  }
 
+  /**
+   * Caller must call {@code syncContext.drain()} outside of lock because this method may
+   * schedule tasks on syncContext.
+   */
+  private void removeProcessedStreams(List<PendingStream> toRemove) {
+    if (toRemove.isEmpty()) {
+      return;
+    }
     synchronized (lock) {
-      // Between this synchronized and the previous one:
+      // Since the streams were picked:
       //   - Streams may have been cancelled, which may turn pendingStreams into emptiness.
-      //   - shutdown() may be called, which may turn pendingStreams into null.
+      //   - shutdownNow() may be called, which may turn pendingStreams into an empty list.
       if (!hasPendingStreams()) {
         return;
       }
-      pendingStreams.removeAll(toRemove);
-      // Because delayed transport is long-lived, we take this opportunity to down-size the
-      // hashmap.
-      if (pendingStreams.isEmpty()) {
-        pendingStreams = new LinkedHashSet<>();
+      boolean removedAny = false;
+      for (PendingStream stream : toRemove) {
+        removedAny |= pendingStreams.remove(stream);
       }
-      if (!hasPendingStreams()) {
+      if (removedAny && !hasPendingStreams()) {
         // There may be a brief gap between delayed transport clearing in-use state, and first real
         // transport starting streams and setting in-use state.  During the gap the whole channel's
         // in-use state may be false. However, it shouldn't cause spurious switching to idleness
@@ -340,7 +386,6 @@ final class DelayedClientTransport implements ManagedClientTransport {
         }
       }
     }
-    syncContext.drain();
   }
 
   @Override
@@ -348,14 +393,25 @@ final class DelayedClientTransport implements ManagedClientTransport {
     return logId;
   }
 
+  private static final class PickerState {
+    @Nullable
+    final SubchannelPicker picker;
+
+    PickerState(@Nullable SubchannelPicker picker) {
+      this.picker = picker;
+    }
+  }
+
   private class PendingStream extends DelayedStream {
     private final PickSubchannelArgs args;
     private final Context context = Context.current();
     private final ClientStreamTracer[] tracers;
+    private final long sequence;
 
-    private PendingStream(PickSubchannelArgs args, ClientStreamTracer[] tracers) {
+    private PendingStream(PickSubchannelArgs args, ClientStreamTracer[] tracers, long sequence) {
       this.args = args;
       this.tracers = tracers;
+      this.sequence = sequence;
     }
 
     /** Runnable may be null. */
@@ -17,6 +17,7 @@
 package io.grpc.internal;
 
 import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.ListenableFuture;
 import io.grpc.CallOptions;
 import io.grpc.ClientCall;
 import io.grpc.ConnectivityState;
@@ -88,6 +89,11 @@ abstract class ForwardingManagedChannel extends ManagedChannel {
     delegate.enterIdle();
   }
 
+  @Override
+  public ListenableFuture<Void> warmUp(double readyPercent) {
+    return delegate.warmUp(readyPercent);
+  }
+
   @Override
   public String toString() {
     return MoreObjects.toStringHelper(this).add("delegate", delegate).toString();
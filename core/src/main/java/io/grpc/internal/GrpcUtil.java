@@ -553,6 +553,37 @@ public final class GrpcUtil {
         }
       };
 
+  /**
+   * Shared executor that runs each task on a new virtual thread. Only usable if {@link
+   * #isVirtualThreadSupported} returns {@code true}.
+   */
+  public static final Resource<Executor> VIRTUAL_THREAD_EXECUTOR =
+      new Resource<Executor>() {
+        private static final String NAME = "grpc-virtual-executor";
+        @Override
+        public Executor create() {
+          ThreadFactory threadFactory = newVirtualThreadFactory(NAME + "-");
+          checkState(threadFactory != null, "Virtual threads are not supported");
+          try {
+            return (ExecutorService) Executors.class
+                .getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                .invoke(null, threadFactory);
+          } catch (Exception e) {
+            throw new RuntimeException(e);
+          }
+        }
+
+        @Override
+        public void close(Executor instance) {
+          ((ExecutorService) instance).shutdown();
+        }
+
+        @Override
+        public String toString() {
+          return NAME;
+        }
+      };
+
   /**
    * Shared single-threaded executor for managing channel timers.
    */
@@ -606,6 +637,34 @@ public final class GrpcUtil {
         .build();
   }
 
+  /**
+   * Returns whether the runtime supports virtual threads, which were added in Java 21.
+   */
+  public static boolean isVirtualThreadSupported() {
+    return newVirtualThreadFactory("grpc-virtual-") != null;
+  }
+
+  /**
+   * Returns a factory of virtual threads named with {@code namePrefix} and a counter, or {@code
+   * null} if virtual threads are not supported. Reflection is used because the methods were added
+   * in Java 21.
+   */
+  @Nullable
+  private static ThreadFactory newVirtualThreadFactory(String namePrefix) {
+    try {
+      Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+      builder = Class.forName("java.lang.Thread$Builder$OfVirtual")
+          .getMethod("name", String.class, long.class)
+          .invoke(builder, namePrefix, 0L);
+      return (ThreadFactory) Class.forName("java.lang.Thread$Builder")
+          .getMethod("factory")
+          .invoke(builder);
+    } catch (Exception e) {
+      // Either not present, or a preview feature that isn't enabled.
+      return null;
+    }
+  }
+
   /**
    * The factory of default Stopwatches.
    */
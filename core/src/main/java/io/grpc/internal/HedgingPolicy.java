@@ -21,6 +21,7 @@ import com.google.common.base.Objects;
 import com.google.common.collect.ImmutableSet;
 import io.grpc.Status.Code;
 import java.util.Set;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 /**
@@ -31,15 +32,31 @@ final class HedgingPolicy {
   final int maxAttempts;
   final long hedgingDelayNanos;
   final Set<Code> nonFatalStatusCodes;
+  /**
+   * If set, hedges are sent after this percentile of the observed latency of the method's calls,
+   * and {@link #hedgingDelayNanos} is only used until enough latencies have been observed. Only
+   * allowed together with retry throttling or a retry budget.
+   */
+  @Nullable
+  final Double hedgingDelayPercentile;
 
   /**
    * The caller is supposed to have validated the arguments and handled throwing exception or
    * logging warnings already, so we avoid repeating args check here.
    */
-  HedgingPolicy(int maxAttempts, long hedgingDelayNanos, Set<Code> nonFatalStatusCodes) {
+  HedgingPolicy(
+      int maxAttempts, long hedgingDelayNanos, Set<Code> nonFatalStatusCodes,
+      @Nullable Double hedgingDelayPercentile) {
     this.maxAttempts = maxAttempts;
     this.hedgingDelayNanos = hedgingDelayNanos;
     this.nonFatalStatusCodes = ImmutableSet.copyOf(nonFatalStatusCodes);
+    this.hedgingDelayPercentile = hedgingDelayPercentile;
+  }
+
+  /** Returns a copy of this policy that sends hedges after the given delay. */
+  HedgingPolicy withHedgingDelayNanos(long hedgingDelayNanos) {
+    return new HedgingPolicy(
+        maxAttempts, hedgingDelayNanos, nonFatalStatusCodes, hedgingDelayPercentile);
   }
 
   @Override
@@ -53,12 +70,14 @@ final class HedgingPolicy {
     HedgingPolicy that = (HedgingPolicy) other;
     return maxAttempts == that.maxAttempts
         && hedgingDelayNanos == that.hedgingDelayNanos
-        && Objects.equal(nonFatalStatusCodes, that.nonFatalStatusCodes);
+        && Objects.equal(nonFatalStatusCodes, that.nonFatalStatusCodes)
+        && Objects.equal(hedgingDelayPercentile, that.hedgingDelayPercentile);
   }
 
   @Override
   public int hashCode() {
-    return Objects.hashCode(maxAttempts, hedgingDelayNanos, nonFatalStatusCodes);
+    return Objects.hashCode(
+        maxAttempts, hedgingDelayNanos, nonFatalStatusCodes, hedgingDelayPercentile);
   }
 
   @Override
@@ -67,6 +86,7 @@ final class HedgingPolicy {
         .add("maxAttempts", maxAttempts)
         .add("hedgingDelayNanos", hedgingDelayNanos)
         .add("nonFatalStatusCodes", nonFatalStatusCodes)
+        .add("hedgingDelayPercentile", hedgingDelayPercentile)
         .toString();
   }
 }
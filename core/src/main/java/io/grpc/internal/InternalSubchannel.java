@@ -28,6 +28,7 @@ import com.google.common.base.Preconditions;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
 import com.google.errorprone.annotations.ForOverride;
 import io.grpc.Attributes;
@@ -53,6 +54,7 @@ import java.net.SocketAddress;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -65,6 +67,13 @@ import javax.annotation.concurrent.ThreadSafe;
 @ThreadSafe
 final class InternalSubchannel implements InternalInstrumented<ChannelStats>, TransportProvider {
 
+  /**
+   * How often pooled transports beyond the minimum are checked for streams. One that had none
+   * since the previous check is shut down.
+   */
+  @VisibleForTesting
+  static final long POOL_IDLE_CHECK_NANOS = TimeUnit.MINUTES.toNanos(1);
+
   private final InternalLogId logId;
   private final String authority;
   private final String userAgent;
@@ -115,6 +124,8 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
   @Nullable
   private ScheduledHandle shutdownDueToUpdateTask;
   @Nullable
+  private ScheduledHandle poolIdleCheckTask;
+  @Nullable
   private ManagedClientTransport shutdownDueToUpdateTransport;
 
   /**
@@ -150,6 +161,45 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
   @Nullable
   private volatile ManagedClientTransport activeTransport;
 
+  /**
+   * The number of connected transports to keep in reserve while READY, so that a failed active
+   * transport can be replaced without reconnecting.
+   */
+  private final int spareTransportCount;
+
+  /**
+   * Spare transports that are not ready yet.
+   */
+  private final List<ConnectionClientTransport> pendingSpareTransports = new ArrayList<>();
+
+  /**
+   * Ready spare transports, in the order they became ready.
+   */
+  private final List<ConnectionClientTransport> spareTransports = new ArrayList<>();
+
+  /**
+   * Spreads new streams over the active transport and the other pooled transports while READY.
+   * {@code null} if connection pooling is disabled.
+   */
+  @Nullable
+  private final PooledClientTransport pool;
+
+  /**
+   * Pooled transports, other than the active transport, that are not ready yet.
+   */
+  private final List<ConnectionClientTransport> pendingPoolTransports = new ArrayList<>();
+
+  /**
+   * Ready pooled transports, other than the active transport.
+   */
+  private final List<ConnectionClientTransport> poolTransports = new ArrayList<>();
+
+  /**
+   * Whether the pending transport should be pinged once it is ready, as requested by {@link
+   * #warmUp}.
+   */
+  private boolean pingWhenReady;
+
   private volatile ConnectivityStateInfo state = ConnectivityStateInfo.forNonError(IDLE);
 
   private Status shutdownReason;
@@ -159,7 +209,8 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
       ClientTransportFactory transportFactory, ScheduledExecutorService scheduledExecutor,
       Supplier<Stopwatch> stopwatchSupplier, SynchronizationContext syncContext, Callback callback,
       InternalChannelz channelz, CallTracer callsTracer, ChannelTracer channelTracer,
-      InternalLogId logId, ChannelLogger channelLogger) {
+      InternalLogId logId, ChannelLogger channelLogger, int spareTransportCount,
+      @Nullable PooledClientTransport.Config poolConfig) {
     Preconditions.checkNotNull(addressGroups, "addressGroups");
     Preconditions.checkArgument(!addressGroups.isEmpty(), "addressGroups is empty");
     checkListHasNoNulls(addressGroups, "addressGroups contains null entry");
@@ -180,6 +231,25 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
     this.channelTracer = Preconditions.checkNotNull(channelTracer, "channelTracer");
     this.logId = Preconditions.checkNotNull(logId, "logId");
     this.channelLogger = Preconditions.checkNotNull(channelLogger, "channelLogger");
+    Preconditions.checkArgument(spareTransportCount >= 0, "spareTransportCount is negative");
+    this.spareTransportCount = spareTransportCount;
+    if (poolConfig != null) {
+      this.pool = new PooledClientTransport(
+          InternalLogId.allocate(PooledClientTransport.class, authority), poolConfig,
+          new Runnable() {
+            @Override
+            public void run() {
+              syncContext.execute(new Runnable() {
+                @Override
+                public void run() {
+                  maybeStartPoolTransports(true);
+                }
+              });
+            }
+          });
+    } else {
+      this.pool = null;
+    }
   }
 
   ChannelLogger getChannelLogger() {
@@ -190,7 +260,7 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
   public ClientTransport obtainActiveTransport() {
     ClientTransport savedTransport = activeTransport;
     if (savedTransport != null) {
-      return savedTransport;
+      return pool != null ? pool : savedTransport;
     }
     syncContext.execute(new Runnable() {
       @Override
@@ -205,12 +275,37 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
     return null;
   }
 
+  /**
+   * Connects if IDLE, like {@link #obtainActiveTransport}, and pings the new transport once it is
+   * ready. The round trip lets the transport finish its initial exchange with the server, e.g.
+   * SETTINGS and window updates for HTTP/2, before the first RPC needs it.
+   */
+  void warmUp() {
+    syncContext.execute(new Runnable() {
+      @Override
+      public void run() {
+        if (state.getState() == IDLE) {
+          channelLogger.log(ChannelLogLevel.INFO, "CONNECTING for warm-up");
+          gotoNonErrorState(CONNECTING);
+          startNewTransport();
+        }
+        if (state.getState() == CONNECTING) {
+          pingWhenReady = true;
+        }
+      }
+    });
+  }
+
   /**
    * Returns a READY transport if there is any, without trying to connect.
    */
   @Nullable
   ClientTransport getTransport() {
-    return activeTransport;
+    ClientTransport savedTransport = activeTransport;
+    if (savedTransport != null && pool != null) {
+      return pool;
+    }
+    return savedTransport;
   }
 
   /**
@@ -228,6 +323,152 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
     if (addressIndex.isAtBeginning()) {
       connectingTimer.reset().start();
     }
+    pendingTransport = createTransport();
+  }
+
+  /**
+   * Starts spare transports to the address of the active transport, until there are enough. Spare
+   * transports that fail to connect are not retried until the active transport is replaced, so an
+   * unreachable address does not cause a tight reconnect loop.
+   */
+  private void maybeStartSpareTransports() {
+    syncContext.throwIfNotInThisSynchronizationContext();
+
+    while (state.getState() == READY
+        && spareTransports.size() + pendingSpareTransports.size() < spareTransportCount) {
+      pendingSpareTransports.add(createTransport());
+    }
+  }
+
+  private void shutdownSpareTransports(Status status) {
+    syncContext.throwIfNotInThisSynchronizationContext();
+
+    List<ConnectionClientTransport> savedSpares = new ArrayList<>(spareTransports);
+    savedSpares.addAll(pendingSpareTransports);
+    spareTransports.clear();
+    pendingSpareTransports.clear();
+    for (ConnectionClientTransport spare : savedSpares) {
+      spare.shutdown(status);
+    }
+  }
+
+  /**
+   * Starts pooled transports to the address of the active transport, until the pool has its
+   * minimum size, or has one more transport if {@code grow} and none is connecting yet. Like
+   * spares, pooled transports that fail to connect are not retried right away, but only when the
+   * pool is saturated again or loses a transport.
+   */
+  private void maybeStartPoolTransports(boolean grow) {
+    syncContext.throwIfNotInThisSynchronizationContext();
+
+    if (pool == null) {
+      return;
+    }
+    PooledClientTransport.Config config = pool.getConfig();
+    int targetSize = config.minTransports;
+    if (grow && pendingPoolTransports.isEmpty()) {
+      targetSize = Math.max(targetSize, pool.size() + 1);
+    }
+    targetSize = Math.min(targetSize, config.maxTransports);
+    while (state.getState() == READY
+        && pool.size() + pendingPoolTransports.size() < targetSize) {
+      pendingPoolTransports.add(createTransport());
+    }
+    if (pendingPoolTransports.isEmpty()) {
+      pool.transportRequestDone();
+    }
+  }
+
+  /**
+   * Schedules a check for idle pooled transports if the pool has more than its minimum size.
+   */
+  private void maybeSchedulePoolIdleCheck() {
+    syncContext.throwIfNotInThisSynchronizationContext();
+
+    if (pool == null || poolIdleCheckTask != null
+        || pool.size() <= pool.getConfig().minTransports) {
+      return;
+    }
+    poolIdleCheckTask = syncContext.schedule(
+        new Runnable() {
+          @Override
+          public void run() {
+            poolIdleCheckTask = null;
+            shutdownIdlePoolTransports();
+            maybeSchedulePoolIdleCheck();
+          }
+        },
+        POOL_IDLE_CHECK_NANOS,
+        TimeUnit.NANOSECONDS,
+        scheduledExecutor);
+  }
+
+  /**
+   * Shuts down pooled transports that had no streams since the previous check, so that the pool
+   * shrinks back to its minimum size once a burst of RPCs is over.
+   */
+  private void shutdownIdlePoolTransports() {
+    int excess = pool.size() - pool.getConfig().minTransports;
+    if (excess <= 0) {
+      return;
+    }
+    List<ClientTransport> idle = pool.removeIdle(excess, activeTransport);
+    for (Iterator<ConnectionClientTransport> it = poolTransports.iterator(); it.hasNext(); ) {
+      ConnectionClientTransport transport = it.next();
+      if (idle.contains(transport)) {
+        it.remove();
+        channelLogger.log(
+            ChannelLogLevel.INFO, "Shutting down idle pooled {0}", transport.getLogId());
+        transport.shutdown(
+            Status.UNAVAILABLE.withDescription("InternalSubchannel closed idle pooled transport"));
+      }
+    }
+  }
+
+  /**
+   * Empties the pool, and shuts down the pooled transports other than the active transport, which
+   * is up to the caller.
+   */
+  private void shutdownPoolTransports(Status status) {
+    syncContext.throwIfNotInThisSynchronizationContext();
+
+    if (pool == null) {
+      return;
+    }
+    if (poolIdleCheckTask != null) {
+      poolIdleCheckTask.cancel();
+      poolIdleCheckTask = null;
+    }
+    List<ConnectionClientTransport> savedPoolTransports = new ArrayList<>(poolTransports);
+    savedPoolTransports.addAll(pendingPoolTransports);
+    poolTransports.clear();
+    pendingPoolTransports.clear();
+    pool.clear();
+    pool.transportRequestDone();
+    for (ConnectionClientTransport transport : savedPoolTransports) {
+      transport.shutdown(status);
+    }
+  }
+
+  private void ping(ConnectionClientTransport transport) {
+    final InternalLogId transportLogId = transport.getLogId();
+    transport.ping(new ClientTransport.PingCallback() {
+      @Override
+      public void onSuccess(long roundTripTimeNanos) {
+        channelLogger.log(
+            ChannelLogLevel.DEBUG, "{0} warm-up ping took {1} ns", transportLogId,
+            roundTripTimeNanos);
+      }
+
+      @Override
+      public void onFailure(Throwable cause) {
+        channelLogger.log(
+            ChannelLogLevel.DEBUG, "{0} warm-up ping failed: {1}", transportLogId, cause);
+      }
+    }, MoreExecutors.directExecutor());
+  }
+
+  private ConnectionClientTransport createTransport() {
     SocketAddress address = addressIndex.getCurrentAddress();
 
     HttpConnectProxiedSocketAddress proxiedAddr = null;
@@ -254,13 +495,13 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
                 .newClientTransport(address, options, transportLogger), callsTracer);
     transportLogger.logId = transport.getLogId();
     channelz.addClientSocket(transport);
-    pendingTransport = transport;
     transports.add(transport);
     Runnable runnable = transport.start(new TransportListener(transport, address));
     if (runnable != null) {
       syncContext.executeLater(runnable);
     }
     channelLogger.log(ChannelLogLevel.INFO, "Started transport {0}", transportLogger.logId);
+    return transport;
   }
 
   /**
@@ -353,6 +594,12 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
         if (state.getState() == READY || state.getState() == CONNECTING) {
           if (!addressIndex.seekTo(previousAddress)) {
             // Forced to drop the connection
+            shutdownSpareTransports(
+                Status.UNAVAILABLE.withDescription(
+                    "InternalSubchannel closed spare transport due to address change"));
+            shutdownPoolTransports(
+                Status.UNAVAILABLE.withDescription(
+                    "InternalSubchannel closed pooled transport due to address change"));
             if (state.getState() == READY) {
               savedTransport = activeTransport;
               activeTransport = null;
@@ -433,6 +680,8 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
         if (savedPendingTransport != null) {
           savedPendingTransport.shutdown(reason);
         }
+        shutdownSpareTransports(reason);
+        shutdownPoolTransports(reason);
       }
     });
   }
@@ -554,9 +803,28 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
                 "Unexpected non-null activeTransport");
             transport.shutdown(shutdownReason);
           } else if (pendingTransport == transport) {
+            if (pool != null) {
+              pool.add(transport);
+            }
             activeTransport = transport;
             pendingTransport = null;
             gotoNonErrorState(READY);
+            if (pingWhenReady) {
+              pingWhenReady = false;
+              ping(transport);
+            }
+            maybeStartSpareTransports();
+            maybeStartPoolTransports(false);
+          } else if (pendingSpareTransports.remove(transport)) {
+            spareTransports.add(transport);
+            ping(transport);
+          } else if (pendingPoolTransports.remove(transport)) {
+            poolTransports.add(transport);
+            pool.add(transport);
+            if (pendingPoolTransports.isEmpty()) {
+              pool.transportRequestDone();
+            }
+            maybeSchedulePoolIdleCheck();
           }
         }
       });
@@ -578,10 +846,58 @@ final class InternalSubchannel implements InternalInstrumented<ChannelStats>, Tr
           if (state.getState() == SHUTDOWN) {
             return;
           }
+          if (pendingSpareTransports.remove(transport)) {
+            // A spare that failed to connect is not retried until the active transport is replaced
+            return;
+          }
+          if (pendingPoolTransports.remove(transport)) {
+            // Not retried until the pool is saturated again
+            if (pendingPoolTransports.isEmpty()) {
+              pool.transportRequestDone();
+            }
+            return;
+          }
           if (activeTransport == transport) {
+            if (pool != null) {
+              pool.remove(transport);
+            }
+            if (!poolTransports.isEmpty()) {
+              // Another pooled transport is already serving RPCs. Make it the active one.
+              activeTransport = poolTransports.remove(0);
+              channelLogger.log(
+                  ChannelLogLevel.INFO, "Replaced transport with pooled {0}",
+                  activeTransport.getLogId());
+              maybeStartPoolTransports(false);
+              return;
+            }
+            if (!spareTransports.isEmpty()) {
+              // Replace it with a connected spare, so new RPCs need not wait for a reconnect.
+              ConnectionClientTransport spare = spareTransports.remove(0);
+              if (pool != null) {
+                pool.add(spare);
+              }
+              activeTransport = spare;
+              channelLogger.log(
+                  ChannelLogLevel.INFO, "Replaced transport with spare {0}", spare.getLogId());
+              maybeStartSpareTransports();
+              maybeStartPoolTransports(false);
+              return;
+            }
             activeTransport = null;
             addressIndex.reset();
+            shutdownSpareTransports(
+                Status.UNAVAILABLE.withDescription(
+                    "InternalSubchannel closed spare transport since it is no longer READY"));
+            shutdownPoolTransports(
+                Status.UNAVAILABLE.withDescription(
+                    "InternalSubchannel closed pooled transport since it is no longer READY"));
             gotoNonErrorState(IDLE);
+          } else if (spareTransports.remove(transport)) {
+            // A spare that was connected may be closed by the server while unused. Replace it.
+            maybeStartSpareTransports();
+          } else if (poolTransports.remove(transport)) {
+            pool.remove(transport);
+            maybeStartPoolTransports(false);
           } else if (pendingTransport == transport) {
             Preconditions.checkState(state.getState() == CONNECTING,
                 "Expected state is CONNECTING, actual state is %s", state.getState());
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free histogram of the latencies of successful calls, used to derive an adaptive
+ * hedging delay from the observed latency of a method.
+ *
+ * <p>Latencies are counted in log-linear buckets that are within 12.5% of each other, so a
+ * percentile is reported with that precision using a fixed amount of memory. The counts are
+ * halved every {@link #DECAY_INTERVAL} samples, so the histogram follows the recent latency of the
+ * method rather than its whole history.
+ */
+final class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  /** The fewest samples needed before a percentile is reported. */
+  @VisibleForTesting
+  static final int MIN_SAMPLES = 100;
+  @VisibleForTesting
+  static final int DECAY_INTERVAL = 1024;
+  /** How many samples a computed percentile is reused for. */
+  private static final int RECOMPUTE_INTERVAL = 32;
+
+  private final Ticker ticker;
+  private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong samples = new AtomicLong();
+  private volatile Percentile cached;
+
+  LatencyHistogram(Ticker ticker) {
+    this.ticker = checkNotNull(ticker, "ticker");
+  }
+
+  /**
+   * Returns a factory of tracers for the attempts of one call. The first attempt to close
+   * successfully records the time since this method was called. A winning hedge is thus measured
+   * from the start of the call rather than its own start, which would otherwise pull the
+   * percentile, and with it the hedging delay, ever lower.
+   */
+  ClientStreamTracer.Factory newCallTracerFactory() {
+    final long callStartNanos = ticker.read();
+    final AtomicBoolean recorded = new AtomicBoolean();
+    return new ClientStreamTracer.InternalLimitedInfoFactory() {
+      @Override
+      public ClientStreamTracer newClientStreamTracer(
+          ClientStreamTracer.StreamInfo info, Metadata headers) {
+        return new ClientStreamTracer() {
+          @Override
+          public void streamClosed(Status status) {
+            // Cancelled and failed attempts say nothing about how long a response takes
+            if (status.isOk() && recorded.compareAndSet(false, true)) {
+              record(ticker.read() - callStartNanos);
+            }
+          }
+        };
+      }
+    };
+  }
+
+  void record(long latencyNanos) {
+    counts.incrementAndGet(bucketIndex(latencyNanos));
+    if (samples.incrementAndGet() % DECAY_INTERVAL == 0) {
+      // Concurrent records may interleave with the halving, which only skews a few samples
+      for (int i = 0; i < BUCKET_COUNT; i++) {
+        long count = counts.get(i);
+        if (count > 1) {
+          counts.addAndGet(i, -(count / 2));
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the latency in nanoseconds below which {@code percentile} percent of the recent
+   * samples fall, or {@code -1} if too few samples have been recorded yet.
+   */
+  long getValueAtPercentile(double percentile) {
+    checkArgument(percentile > 0 && percentile < 100, "percentile must be in (0, 100)");
+    long sampleCount = samples.get();
+    if (sampleCount < MIN_SAMPLES) {
+      return -1;
+    }
+    long generation = sampleCount / RECOMPUTE_INTERVAL;
+    Percentile current = cached;
+    if (current != null && current.generation == generation && current.percentile == percentile) {
+      return current.valueNanos;
+    }
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      total += counts.get(i);
+    }
+    long rank = (long) Math.ceil(total * percentile / 100);
+    long seen = 0;
+    long value = bucketUpperBound(BUCKET_COUNT - 1);
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      seen += counts.get(i);
+      if (seen >= rank) {
+        value = bucketUpperBound(i);
+        break;
+      }
+    }
+    cached = new Percentile(generation, percentile, value);
+    return value;
+  }
+
+  @VisibleForTesting
+  static int bucketIndex(long valueNanos) {
+    if (valueNanos < SUB_BUCKETS) {
+      return (int) Math.max(valueNanos, 0);
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(valueNanos);
+    int subBucket = (int) (valueNanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  /** Returns the largest value that falls into the bucket. */
+  @VisibleForTesting
+  static long bucketUpperBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int shift = index / SUB_BUCKETS - 1;
+    long lowerBound = (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    return lowerBound + (1L << shift) - 1;
+  }
+
+  private static final class Percentile {
+    final long generation;
+    final double percentile;
+    final long valueNanos;
+
+    Percentile(long generation, double percentile, long valueNanos) {
+      this.generation = generation;
+      this.percentile = percentile;
+      this.valueNanos = valueNanos;
+    }
+  }
+}
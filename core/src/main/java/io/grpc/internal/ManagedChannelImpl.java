@@ -20,6 +20,7 @@ import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
 import static io.grpc.ConnectivityState.SHUTDOWN;
 import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
 import static io.grpc.EquivalentAddressGroup.ATTR_AUTHORITY_OVERRIDE;
@@ -28,6 +29,7 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.MoreObjects;
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
+import com.google.common.base.Ticker;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.grpc.Attributes;
@@ -84,6 +86,7 @@ import io.grpc.internal.ManagedChannelImplBuilder.FixedPortProvider;
 import io.grpc.internal.ManagedChannelServiceConfig.MethodInfo;
 import io.grpc.internal.ManagedChannelServiceConfig.ServiceConfigConvertedSelector;
 import io.grpc.internal.RetriableStream.ChannelBufferMeter;
+import io.grpc.internal.RetriableStream.RetryBudget;
 import io.grpc.internal.RetriableStream.Throttle;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -91,11 +94,14 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -230,6 +236,17 @@ final class ManagedChannelImpl extends ManagedChannel implements
   // switch to a ConcurrentHashMap.
   private final Set<InternalSubchannel> subchannels = new HashSet<>(16, .75f);
 
+  private final int spareTransportsPerSubchannel;
+  @Nullable
+  private final PooledClientTransport.Config subchannelPoolConfig;
+
+  // Set while a warm-up that found no subchannels is pending, so that the subchannels the load
+  // balancer creates in the meantime are warmed up. Must only be accessed from syncContext.
+  private boolean warmUpNewSubchannels;
+
+  // Futures returned by warmUp() that are not done yet. Must only be accessed from syncContext.
+  private final List<WarmUpWaiter> warmUpWaiters = new ArrayList<>();
+
   // Must be accessed from syncContext
   @Nullable
   private Collection<RealChannel.PendingCall<?, ?>> pendingCalls;
@@ -292,6 +309,10 @@ final class ManagedChannelImpl extends ManagedChannel implements
 
   private final long perRpcBufferLimit;
   private final long channelBufferLimit;
+  private final boolean retryBufferSerializedMessages;
+  // Latencies of the methods whose hedging delay follows a percentile, by full method name.
+  private final ConcurrentMap<String, LatencyHistogram> hedgingLatencies =
+      new ConcurrentHashMap<>();
 
   // Temporary false flag that can skip the retry code path.
   private final boolean retryEnabled;
@@ -544,9 +565,23 @@ final class ManagedChannelImpl extends ManagedChannel implements
         }
       } else {
         final Throttle throttle = lastServiceConfig.getRetryThrottling();
+        final RetryBudget retryBudget = lastServiceConfig.getRetryBudget();
         MethodInfo methodInfo = callOptions.getOption(MethodInfo.KEY);
         final RetryPolicy retryPolicy = methodInfo == null ? null : methodInfo.retryPolicy;
-        final HedgingPolicy hedgingPolicy = methodInfo == null ? null : methodInfo.hedgingPolicy;
+        HedgingPolicy methodHedgingPolicy = methodInfo == null ? null : methodInfo.hedgingPolicy;
+        final ClientStreamTracer.Factory latencyTracerFactory;
+        if (methodHedgingPolicy != null && methodHedgingPolicy.hedgingDelayPercentile != null) {
+          LatencyHistogram latencies = getHedgingLatencies(method.getFullMethodName());
+          long observedDelayNanos =
+              latencies.getValueAtPercentile(methodHedgingPolicy.hedgingDelayPercentile);
+          if (observedDelayNanos >= 0) {
+            methodHedgingPolicy = methodHedgingPolicy.withHedgingDelayNanos(observedDelayNanos);
+          }
+          latencyTracerFactory = latencies.newCallTracerFactory();
+        } else {
+          latencyTracerFactory = null;
+        }
+        final HedgingPolicy hedgingPolicy = methodHedgingPolicy;
         final class RetryStream<ReqT> extends RetriableStream<ReqT> {
           @SuppressWarnings("unchecked")
           RetryStream() {
@@ -556,11 +591,13 @@ final class ManagedChannelImpl extends ManagedChannel implements
                 channelBufferUsed,
                 perRpcBufferLimit,
                 channelBufferLimit,
+                retryBufferSerializedMessages,
                 getCallExecutor(callOptions),
                 transportFactory.getScheduledExecutorService(),
                 retryPolicy,
                 hedgingPolicy,
-                throttle);
+                throttle,
+                retryBudget);
           }
 
           @Override
@@ -578,6 +615,9 @@ final class ManagedChannelImpl extends ManagedChannel implements
               Metadata newHeaders, ClientStreamTracer.Factory factory, int previousAttempts,
               boolean isTransparentRetry) {
             CallOptions newOptions = callOptions.withStreamTracerFactory(factory);
+            if (latencyTracerFactory != null) {
+              newOptions = newOptions.withStreamTracerFactory(latencyTracerFactory);
+            }
             ClientStreamTracer[] tracers = GrpcUtil.getClientStreamTracers(
                 newOptions, newHeaders, previousAttempts, isTransparentRetry);
             ClientTransport transport =
@@ -596,6 +636,18 @@ final class ManagedChannelImpl extends ManagedChannel implements
     }
   }
 
+  private LatencyHistogram getHedgingLatencies(String fullMethodName) {
+    LatencyHistogram latencies = hedgingLatencies.get(fullMethodName);
+    if (latencies == null) {
+      LatencyHistogram newLatencies = new LatencyHistogram(Ticker.systemTicker());
+      latencies = hedgingLatencies.putIfAbsent(fullMethodName, newLatencies);
+      if (latencies == null) {
+        latencies = newLatencies;
+      }
+    }
+    return latencies;
+  }
+
   private final ClientStreamProvider transportProvider = new ChannelStreamProvider();
 
   private final Rescheduler idleTimer;
@@ -704,12 +756,23 @@ final class ManagedChannelImpl extends ManagedChannel implements
         transportFactory.getScheduledExecutorService(),
         stopwatchSupplier.get());
     this.fullStreamDecompression = builder.fullStreamDecompression;
-    this.decompressorRegistry = checkNotNull(builder.decompressorRegistry, "decompressorRegistry");
+    this.decompressorRegistry = OffloadedDecompressor.offload(
+        checkNotNull(builder.decompressorRegistry, "decompressorRegistry"),
+        builder.decompressionExecutor);
     this.compressorRegistry = checkNotNull(builder.compressorRegistry, "compressorRegistry");
     this.userAgent = builder.userAgent;
 
     this.channelBufferLimit = builder.retryBufferSize;
     this.perRpcBufferLimit = builder.perRpcBufferLimit;
+    this.retryBufferSerializedMessages = builder.retryBufferSerializedMessages;
+    this.spareTransportsPerSubchannel = builder.spareTransportsPerSubchannel;
+    if (builder.maxConnectionsPerSubchannel > 1) {
+      this.subchannelPoolConfig = new PooledClientTransport.Config(
+          builder.minConnectionsPerSubchannel, builder.maxConnectionsPerSubchannel,
+          builder.maxStreamsPerConnection);
+    } else {
+      this.subchannelPoolConfig = null;
+    }
     final class ChannelCallTracerFactory implements CallTracer.Factory {
       @Override
       public CallTracer create() {
@@ -811,6 +874,11 @@ final class ManagedChannelImpl extends ManagedChannel implements
       public void run() {
         channelLogger.log(ChannelLogLevel.INFO, "Entering SHUTDOWN state");
         channelStateManager.gotoState(SHUTDOWN);
+        for (WarmUpWaiter waiter : warmUpWaiters) {
+          waiter.future.setException(SHUTDOWN_STATUS.asException());
+        }
+        warmUpWaiters.clear();
+        warmUpNewSubchannels = false;
       }
     }
 
@@ -1349,6 +1417,83 @@ final class ManagedChannelImpl extends ManagedChannel implements
     syncContext.execute(new ResetConnectBackoff());
   }
 
+  /**
+   * Exits idle mode and warms up the subchannels that exist now. If there are none yet, e.g.
+   * because the channel was idle, the subchannels the load balancer creates are warmed up until
+   * the returned future completes. The channel may still enter idle mode again if it is not used.
+   */
+  @Override
+  public ListenableFuture<Void> warmUp(final double readyPercent) {
+    checkArgument(readyPercent > 0 && readyPercent <= 100,
+        "readyPercent is %s, but must be in (0, 100]", readyPercent);
+    final SettableFuture<Void> future = SettableFuture.create();
+    final class WarmUp implements Runnable {
+      @Override
+      public void run() {
+        if (shutdown.get()) {
+          future.setException(SHUTDOWN_STATUS.asException());
+          return;
+        }
+        channelLogger.log(ChannelLogLevel.INFO, "Warming up until {0}% READY", readyPercent);
+        exitIdleMode();
+        if (subchannels.isEmpty()) {
+          warmUpNewSubchannels = true;
+        }
+        for (InternalSubchannel subchannel : subchannels) {
+          subchannel.warmUp();
+        }
+        warmUpWaiters.add(new WarmUpWaiter(readyPercent, future));
+        maybeCompleteWarmUp();
+      }
+    }
+
+    syncContext.execute(new WarmUp());
+    return future;
+  }
+
+  // Must be run from syncContext
+  private void maybeCompleteWarmUp() {
+    if (warmUpWaiters.isEmpty()) {
+      return;
+    }
+    int total = 0;
+    int ready = 0;
+    for (InternalSubchannel subchannel : subchannels) {
+      ConnectivityState state = subchannel.getState();
+      if (state == SHUTDOWN) {
+        continue;
+      }
+      total++;
+      if (state == READY) {
+        ready++;
+      }
+    }
+    if (total == 0) {
+      return;
+    }
+    Iterator<WarmUpWaiter> iterator = warmUpWaiters.iterator();
+    while (iterator.hasNext()) {
+      WarmUpWaiter waiter = iterator.next();
+      if (ready * 100.0 >= waiter.readyPercent * total) {
+        iterator.remove();
+        waiter.future.set(null);
+      }
+    }
+    if (warmUpWaiters.isEmpty()) {
+      warmUpNewSubchannels = false;
+    }
+  }
+
+  private static final class WarmUpWaiter {
+    final double readyPercent;
+    final SettableFuture<Void> future;
+
+    WarmUpWaiter(double readyPercent, SettableFuture<Void> future) {
+      this.readyPercent = readyPercent;
+      this.future = future;
+    }
+  }
+
   @Override
   public void enterIdle() {
     final class PrepareToLoseNetworkRunnable implements Runnable {
@@ -1565,7 +1710,9 @@ final class ManagedChannelImpl extends ManagedChannel implements
           callTracerFactory.create(),
           subchannelTracer,
           subchannelLogId,
-          subchannelLogger);
+          subchannelLogger,
+          /* spareTransportCount= */ 0,
+          /* poolConfig= */ null);
       oobChannelTracer.reportEvent(new ChannelTrace.Event.Builder()
           .setDescription("Child Subchannel created")
           .setSeverity(ChannelTrace.Event.Severity.CT_INFO)
@@ -1967,12 +2114,14 @@ final class ManagedChannelImpl extends ManagedChannel implements
           subchannels.remove(is);
           channelz.removeSubchannel(is);
           maybeTerminateChannel();
+          maybeCompleteWarmUp();
         }
 
         @Override
         void onStateChange(InternalSubchannel is, ConnectivityStateInfo newState) {
           checkState(listener != null, "listener is null");
           listener.onSubchannelState(newState);
+          maybeCompleteWarmUp();
           if (newState.getState() == TRANSIENT_FAILURE || newState.getState() == IDLE) {
             if (!helper.ignoreRefreshNsCheck && !helper.nsRefreshedByLb) {
               logger.log(Level.WARNING,
@@ -2010,7 +2159,9 @@ final class ManagedChannelImpl extends ManagedChannel implements
           callTracerFactory.create(),
           subchannelTracer,
           subchannelLogId,
-          subchannelLogger);
+          subchannelLogger,
+          spareTransportsPerSubchannel,
+          subchannelPoolConfig);
 
       channelTracer.reportEvent(new ChannelTrace.Event.Builder()
           .setDescription("Child Subchannel started")
@@ -2022,6 +2173,9 @@ final class ManagedChannelImpl extends ManagedChannel implements
       this.subchannel = internalSubchannel;
       channelz.addSubchannel(internalSubchannel);
       subchannels.add(internalSubchannel);
+      if (warmUpNewSubchannels) {
+        internalSubchannel.warmUp();
+      }
     }
 
     @Override
@@ -134,6 +134,9 @@ public final class ManagedChannelImplBuilder
 
   DecompressorRegistry decompressorRegistry = DEFAULT_DECOMPRESSOR_REGISTRY;
 
+  @Nullable
+  Executor decompressionExecutor;
+
   CompressorRegistry compressorRegistry = DEFAULT_COMPRESSOR_REGISTRY;
 
   long idleTimeoutMillis = IDLE_MODE_DEFAULT_TIMEOUT_MILLIS;
@@ -142,6 +145,11 @@ public final class ManagedChannelImplBuilder
   int maxHedgedAttempts = 5;
   long retryBufferSize = DEFAULT_RETRY_BUFFER_SIZE_IN_BYTES;
   long perRpcBufferLimit = DEFAULT_PER_RPC_BUFFER_LIMIT_IN_BYTES;
+  boolean retryBufferSerializedMessages;
+  int spareTransportsPerSubchannel;
+  int minConnectionsPerSubchannel = 1;
+  int maxConnectionsPerSubchannel = 1;
+  int maxStreamsPerConnection = Integer.MAX_VALUE;
   boolean retryEnabled = true;
 
   InternalChannelz channelz = InternalChannelz.instance();
@@ -326,6 +334,15 @@ public final class ManagedChannelImplBuilder
     return this;
   }
 
+  @Override
+  public ManagedChannelImplBuilder virtualThreadExecutor() {
+    if (!GrpcUtil.isVirtualThreadSupported()) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+    this.executorPool = SharedResourcePool.forResource(GrpcUtil.VIRTUAL_THREAD_EXECUTOR);
+    return this;
+  }
+
   @Override
   public ManagedChannelImplBuilder offloadExecutor(Executor executor) {
     if (executor != null) {
@@ -387,6 +404,12 @@ public final class ManagedChannelImplBuilder
     return this;
   }
 
+  @Override
+  public ManagedChannelImplBuilder decompressionExecutor(@Nullable Executor executor) {
+    this.decompressionExecutor = executor;
+    return this;
+  }
+
   @Override
   public ManagedChannelImplBuilder compressorRegistry(CompressorRegistry registry) {
     if (registry != null) {
@@ -448,6 +471,33 @@ public final class ManagedChannelImplBuilder
     return this;
   }
 
+  @Override
+  public ManagedChannelImplBuilder retryBufferSerializedMessages() {
+    retryBufferSerializedMessages = true;
+    return this;
+  }
+
+  @Override
+  public ManagedChannelImplBuilder spareTransportsPerSubchannel(int count) {
+    checkArgument(count >= 0, "count is %s, but must not be negative", count);
+    spareTransportsPerSubchannel = count;
+    return this;
+  }
+
+  @Override
+  public ManagedChannelImplBuilder connectionsPerSubchannel(
+      int minConnections, int maxConnections, int maxStreamsPerConnection) {
+    checkArgument(minConnections > 0, "minConnections must be positive");
+    checkArgument(
+        maxConnections >= minConnections, "maxConnections %s is less than minConnections %s",
+        maxConnections, minConnections);
+    checkArgument(maxStreamsPerConnection > 0, "maxStreamsPerConnection must be positive");
+    minConnectionsPerSubchannel = minConnections;
+    maxConnectionsPerSubchannel = maxConnections;
+    this.maxStreamsPerConnection = maxStreamsPerConnection;
+    return this;
+  }
+
   @Override
   public ManagedChannelImplBuilder disableRetry() {
     retryEnabled = false;
@@ -28,6 +28,7 @@ import io.grpc.InternalConfigSelector;
 import io.grpc.LoadBalancer.PickSubchannelArgs;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status.Code;
+import io.grpc.internal.RetriableStream.RetryBudget;
 import io.grpc.internal.RetriableStream.Throttle;
 import java.util.Collections;
 import java.util.HashMap;
@@ -49,6 +50,8 @@ final class ManagedChannelServiceConfig {
   @Nullable
   private final Throttle retryThrottling;
   @Nullable
+  private final RetryBudget retryBudget;
+  @Nullable
   private final Object loadBalancingConfig;
   @Nullable
   private final Map<String, ?> healthCheckingConfig;
@@ -58,12 +61,14 @@ final class ManagedChannelServiceConfig {
       Map<String, MethodInfo> serviceMethodMap,
       Map<String, MethodInfo> serviceMap,
       @Nullable Throttle retryThrottling,
+      @Nullable RetryBudget retryBudget,
       @Nullable Object loadBalancingConfig,
       @Nullable Map<String, ?> healthCheckingConfig) {
     this.defaultMethodConfig = defaultMethodConfig;
     this.serviceMethodMap = Collections.unmodifiableMap(new HashMap<>(serviceMethodMap));
     this.serviceMap = Collections.unmodifiableMap(new HashMap<>(serviceMap));
     this.retryThrottling = retryThrottling;
+    this.retryBudget = retryBudget;
     this.loadBalancingConfig = loadBalancingConfig;
     this.healthCheckingConfig =
         healthCheckingConfig != null
@@ -79,6 +84,7 @@ final class ManagedChannelServiceConfig {
             new HashMap<String, MethodInfo>(),
             new HashMap<String, MethodInfo>(),
             /* retryThrottling= */ null,
+            /* retryBudget= */ null,
             /* loadBalancingConfig= */ null,
             /* healthCheckingConfig= */ null);
   }
@@ -93,8 +99,10 @@ final class ManagedChannelServiceConfig {
       int maxHedgedAttemptsLimit,
       @Nullable Object loadBalancingConfig) {
     Throttle retryThrottling = null;
+    RetryBudget retryBudget = null;
     if (retryEnabled) {
       retryThrottling = ServiceConfigUtil.getThrottlePolicy(serviceConfig);
+      retryBudget = ServiceConfigUtil.getRetryBudgetPolicy(serviceConfig);
     }
     Map<String, MethodInfo> serviceMethodMap = new HashMap<>();
     Map<String, MethodInfo> serviceMap = new HashMap<>();
@@ -114,6 +122,7 @@ final class ManagedChannelServiceConfig {
               serviceMethodMap,
               serviceMap,
               retryThrottling,
+              retryBudget,
               loadBalancingConfig,
               healthCheckingConfig);
     }
@@ -122,6 +131,11 @@ final class ManagedChannelServiceConfig {
     for (Map<String, ?> methodConfig : methodConfigs) {
       MethodInfo info = new MethodInfo(
           methodConfig, retryEnabled, maxRetryAttemptsLimit, maxHedgedAttemptsLimit);
+      // Without a brake, an adaptive delay lets hedges load a slow backend further.
+      checkArgument(
+          info.hedgingPolicy == null || info.hedgingPolicy.hedgingDelayPercentile == null
+              || retryThrottling != null || retryBudget != null,
+          "hedgingDelayPercentile requires retryThrottling or retryBudget");
 
       List<Map<String, ?>> nameList =
           ServiceConfigUtil.getNameListFromMethodConfig(methodConfig);
@@ -163,6 +177,7 @@ final class ManagedChannelServiceConfig {
             serviceMethodMap,
             serviceMap,
             retryThrottling,
+            retryBudget,
             loadBalancingConfig,
             healthCheckingConfig);
   }
@@ -196,6 +211,11 @@ final class ManagedChannelServiceConfig {
     return retryThrottling;
   }
 
+  @Nullable
+  RetryBudget getRetryBudget() {
+    return retryBudget;
+  }
+
   @Nullable
   MethodInfo getMethodConfig(MethodDescriptor<?, ?> method) {
     MethodInfo methodInfo = serviceMethodMap.get(method.getFullMethodName());
@@ -222,13 +242,15 @@ final class ManagedChannelServiceConfig {
         && Objects.equal(serviceMethodMap, that.serviceMethodMap)
         && Objects.equal(serviceMap, that.serviceMap)
         && Objects.equal(retryThrottling, that.retryThrottling)
+        && Objects.equal(retryBudget, that.retryBudget)
         && Objects.equal(loadBalancingConfig, that.loadBalancingConfig);
   }
 
   @Override
   public int hashCode() {
     return Objects.hashCode(
-        defaultMethodConfig, serviceMethodMap, serviceMap, retryThrottling, loadBalancingConfig);
+        defaultMethodConfig, serviceMethodMap, serviceMap, retryThrottling, retryBudget,
+        loadBalancingConfig);
   }
 
   @Override
@@ -238,6 +260,7 @@ final class ManagedChannelServiceConfig {
         .add("serviceMethodMap", serviceMethodMap)
         .add("serviceMap", serviceMap)
         .add("retryThrottling", retryThrottling)
+        .add("retryBudget", retryBudget)
         .add("loadBalancingConfig", loadBalancingConfig)
         .toString();
   }
@@ -391,9 +414,18 @@ final class ManagedChannelServiceConfig {
       checkArgument(
           hedgingDelayNanos >= 0, "hedgingDelay must not be negative: %s", hedgingDelayNanos);
 
+      Double hedgingDelayPercentile =
+          ServiceConfigUtil.getHedgingDelayPercentileFromHedgingPolicy(hedgingPolicy);
+      checkArgument(
+          hedgingDelayPercentile == null
+              || (hedgingDelayPercentile > 0 && hedgingDelayPercentile < 100),
+          "hedgingDelayPercentile must be greater than 0 and less than 100: %s",
+          hedgingDelayPercentile);
+
       return new HedgingPolicy(
           maxAttempts, hedgingDelayNanos,
-          ServiceConfigUtil.getNonFatalStatusCodesFromHedgingPolicy(hedgingPolicy));
+          ServiceConfigUtil.getNonFatalStatusCodesFromHedgingPolicy(hedgingPolicy),
+          hedgingDelayPercentile);
     }
   }
 
@@ -28,6 +28,7 @@ import java.io.Closeable;
 import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.concurrent.Executor;
 import java.util.zip.DataFormatException;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
@@ -429,11 +430,21 @@ public class MessageDeframer implements Closeable, Deframer {
     }
 
     try {
+      int compressedSize = nextFrame.readableBytes();
       // Enforce the maxMessageSize limit on the returned stream.
       InputStream unlimitedStream =
           decompressor.decompress(ReadableBuffers.openStream(nextFrame, true));
-      return new SizeEnforcingInputStream(
+      InputStream stream = new SizeEnforcingInputStream(
           unlimitedStream, maxInboundMessageSize, statsTraceCtx);
+      Executor decompressionExecutor = OffloadedDecompressor.executorFor(decompressor);
+      if (decompressionExecutor != null
+          && compressedSize >= OffloadedDecompressor.MIN_COMPRESSED_SIZE) {
+        InputStream offloaded = OffloadedDecompressor.start(stream, decompressionExecutor);
+        if (offloaded != null) {
+          return offloaded;
+        }
+      }
+      return stream;
     } catch (IOException e) {
       throw new RuntimeException(e);
     }
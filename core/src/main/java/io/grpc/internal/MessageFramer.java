@@ -21,18 +21,23 @@ import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static java.lang.Math.min;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.io.ByteStreams;
 import io.grpc.Codec;
 import io.grpc.Compressor;
+import io.grpc.Detachable;
 import io.grpc.Drainable;
+import io.grpc.HasByteBuffer;
 import io.grpc.KnownLength;
 import io.grpc.Status;
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import javax.annotation.Nullable;
 
@@ -68,6 +73,12 @@ public class MessageFramer implements Framer {
   private static final int HEADER_LENGTH = 5;
   private static final byte UNCOMPRESSED = 0;
   private static final byte COMPRESSED = 1;
+  /**
+   * Messages smaller than this are copied into the current buffer even if the transport could
+   * write their {@link ByteBuffer}s by reference, since an extra buffer costs more than the copy.
+   */
+  @VisibleForTesting
+  static final int MIN_WRAPPED_MESSAGE_SIZE = 8 * 1024;
 
   private final Sink sink;
   // effectively final.  Can only be set once.
@@ -220,6 +231,9 @@ public class MessageFramer implements Framer {
     }
     headerScratch.clear();
     headerScratch.put(UNCOMPRESSED).putInt(messageLength);
+    if (messageLength >= MIN_WRAPPED_MESSAGE_SIZE && canWrap(message)) {
+      return writeWrapped(message, messageLength);
+    }
     // Allocate the initial buffer chunk based on frame header + payload length.
     // Note that the allocator may allocate a buffer larger or smaller than this length
     if (buffer == null) {
@@ -229,10 +243,106 @@ public class MessageFramer implements Framer {
     return writeToOutputStream(message, outputStreamAdapter);
   }
 
+  private boolean canWrap(InputStream message) {
+    return bufferAllocator instanceof WrappingWritableBufferAllocator
+        && message instanceof HasByteBuffer
+        && message instanceof Detachable
+        && ((HasByteBuffer) message).byteBufferSupported()
+        && message.markSupported();
+  }
+
+  /**
+   * Write an uncompressed message by handing its {@link ByteBuffer}s to the transport instead of
+   * copying them. Only the header is copied, into a buffer placed in front of the payload, so the
+   * whole message is a single frame delivered by the next write, flush or close.
+   */
+  private int writeWrapped(InputStream message, int messageLength) throws IOException {
+    // Take ownership of the content; the transport closes it once the bytes have been written.
+    InputStream detached = ((Detachable) message).detach();
+    List<ByteBuffer> buffers;
+    try {
+      buffers = getByteBuffers(detached, messageLength);
+    } catch (RuntimeException | IOException e) {
+      detached.close();
+      throw e;
+    }
+    if (buffers == null) {
+      // The stream didn't expose all its bytes; fall back to copying them.
+      try {
+        writeRaw(headerScratch.array(), 0, headerScratch.position());
+        return writeToOutputStream(detached, outputStreamAdapter);
+      } finally {
+        detached.close();
+      }
+    }
+    buffers.add(0, ByteBuffer.wrap(Arrays.copyOf(headerScratch.array(), headerScratch.position())));
+    WritableBuffer wrapped =
+        ((WrappingWritableBufferAllocator) bufferAllocator).wrap(buffers, detached);
+    if (buffer != null) {
+      if (buffer.readableBytes() > 0) {
+        // Deliver the previous messages first, since the wrapped buffer can't be appended to.
+        sink.deliverFrame(buffer, false, false, messagesBuffered - 1);
+        messagesBuffered = 1;
+      } else {
+        buffer.release();
+      }
+    }
+    // The wrapped buffer has no writable bytes, so it is delivered by the next write, flush or
+    // close.
+    buffer = wrapped;
+    return messageLength;
+  }
+
+  /**
+   * Returns the {@link ByteBuffer}s holding the next {@code length} bytes of {@code stream}, or
+   * {@code null} if they aren't all exposed, in which case the stream is left unchanged.
+   */
+  @Nullable
+  private static List<ByteBuffer> getByteBuffers(InputStream stream, int length)
+      throws IOException {
+    if (!(stream instanceof HasByteBuffer)
+        || !((HasByteBuffer) stream).byteBufferSupported()
+        || !stream.markSupported()) {
+      return null;
+    }
+    // Marking keeps already skipped content alive, since the transport still references it.
+    stream.mark(length);
+    HasByteBuffer hasByteBuffer = (HasByteBuffer) stream;
+    List<ByteBuffer> buffers = new ArrayList<>();
+    int remaining = length;
+    while (remaining > 0) {
+      ByteBuffer byteBuffer = hasByteBuffer.getByteBuffer();
+      if (byteBuffer == null || !byteBuffer.hasRemaining()) {
+        stream.reset();
+        return null;
+      }
+      if (byteBuffer.remaining() > remaining) {
+        ((Buffer) byteBuffer).limit(byteBuffer.position() + remaining);
+      }
+      int toSkip = byteBuffer.remaining();
+      buffers.add(byteBuffer);
+      if (stream.skip(toSkip) != toSkip) {
+        throw new IllegalStateException("Message length inaccurate");
+      }
+      remaining -= toSkip;
+    }
+    return buffers;
+  }
+
   /**
    * Write a message that has been serialized to a sequence of buffers.
    */
   private void writeBufferChain(BufferChainOutputStream bufferChain, boolean compressed) {
+    if (buffer != null) {
+      if (buffer.readableBytes() > 0) {
+        // Deliver the previous messages first, since the current buffer is replaced below.
+        sink.deliverFrame(buffer, false, false, messagesBuffered - 1);
+        messagesBuffered = 1;
+      } else {
+        buffer.release();
+      }
+      buffer = null;
+    }
     int messageLength = bufferChain.readableBytes();
     headerScratch.clear();
     headerScratch.put(compressed ? COMPRESSED : UNCOMPRESSED).putInt(messageLength);
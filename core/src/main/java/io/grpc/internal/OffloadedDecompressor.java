@@ -0,0 +1,286 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import io.grpc.Codec;
+import io.grpc.Decompressor;
+import io.grpc.DecompressorRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+
+/**
+ * Decompresses large messages on an executor configured on the channel or server builder. The
+ * decompressed message is delivered in order like any other; reading it blocks until the executor
+ * has finished decompressing it.
+ *
+ * <p>Messages are normally decompressed lazily by the thread that parses them, so this does not
+ * make any single message available sooner. What it buys is pipelining: while the application
+ * parses and handles one large message, the next ones are already being decompressed, possibly in
+ * parallel.
+ */
+final class OffloadedDecompressor {
+  /** Compressed messages smaller than this are decompressed inline. */
+  static final int MIN_COMPRESSED_SIZE = 1024 * 1024;
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  private OffloadedDecompressor() {}
+
+  /**
+   * Returns a registry whose decompressors decompress large messages on {@code executor}, or
+   * {@code registry} itself if {@code executor} is {@code null}.
+   */
+  static DecompressorRegistry offload(
+      DecompressorRegistry registry, @Nullable Executor executor) {
+    if (executor == null) {
+      return registry;
+    }
+    Set<String> advertised = registry.getAdvertisedMessageEncodings();
+    DecompressorRegistry offloading = DecompressorRegistry.emptyInstance();
+    for (String encoding : registry.getKnownMessageEncodings()) {
+      Decompressor decompressor = registry.lookupDecompressor(encoding);
+      if (decompressor != Codec.Identity.NONE) {
+        decompressor = new OffloadingDecompressor(decompressor, executor);
+      }
+      offloading = offloading.with(decompressor, advertised.contains(encoding));
+    }
+    return offloading;
+  }
+
+  /**
+   * Returns the executor that large messages from {@code decompressor} should be decompressed on,
+   * or {@code null} if they should be decompressed when they are read.
+   */
+  @Nullable
+  static Executor executorFor(Decompressor decompressor) {
+    if (decompressor instanceof OffloadingDecompressor) {
+      return ((OffloadingDecompressor) decompressor).executor;
+    }
+    return null;
+  }
+
+  /**
+   * Starts reading {@code decompressingStream} to the end on {@code executor}, returning a stream
+   * of the result. {@code decompressingStream} is closed once read. Returns {@code null} if the
+   * executor rejected the work, in which case the caller still owns {@code decompressingStream}.
+   */
+  @Nullable
+  static InputStream start(InputStream decompressingStream, Executor executor) {
+    DecompressedInputStream result = new DecompressedInputStream(decompressingStream);
+    try {
+      executor.execute(result);
+    } catch (RejectedExecutionException e) {
+      return null;
+    }
+    return result;
+  }
+
+  /**
+   * Marks a decompressor whose large messages are decompressed on {@link #executor}. Decompression
+   * itself is left to the delegate.
+   */
+  private static final class OffloadingDecompressor implements Decompressor {
+    private final Decompressor delegate;
+    private final Executor executor;
+
+    OffloadingDecompressor(Decompressor delegate, Executor executor) {
+      this.delegate = delegate;
+      this.executor = executor;
+    }
+
+    @Override
+    public String getMessageEncoding() {
+      return delegate.getMessageEncoding();
+    }
+
+    @Override
+    public InputStream decompress(InputStream is) throws IOException {
+      return delegate.decompress(is);
+    }
+  }
+
+  /**
+   * The decompressed message. Closing it before the worker is done stops the worker after the
+   * current chunk, which closes the source, releasing its buffers and inflater.
+   */
+  private static final class DecompressedInputStream extends InputStream implements Runnable {
+    private final CountDownLatch done = new CountDownLatch(1);
+    // Whoever sets this first, the worker or close() before the worker runs, owns the source.
+    private final AtomicBoolean sourceClaimed = new AtomicBoolean();
+    private volatile boolean closed;
+    // Only accessed by the worker until done is counted down, then only by the reader.
+    private InputStream source;
+    private final List<byte[]> chunks = new ArrayList<>();
+    private int lastChunkLength;
+    private Throwable failure;
+    // Read position
+    private int chunkIndex;
+    private int chunkOffset;
+
+    DecompressedInputStream(InputStream source) {
+      this.source = source;
+    }
+
+    @Override
+    public void run() {
+      if (!sourceClaimed.compareAndSet(false, true)) {
+        // Closed before the worker got to it.
+        return;
+      }
+      try {
+        try {
+          byte[] chunk = new byte[CHUNK_SIZE];
+          int length = 0;
+          while (true) {
+            if (closed) {
+              chunks.clear();
+              return;
+            }
+            int read = source.read(chunk, length, chunk.length - length);
+            if (read == -1) {
+              break;
+            }
+            length += read;
+            if (length == chunk.length) {
+              chunks.add(chunk);
+              chunk = new byte[CHUNK_SIZE];
+              length = 0;
+            }
+          }
+          if (length > 0) {
+            chunks.add(chunk);
+            lastChunkLength = length;
+          } else {
+            lastChunkLength = CHUNK_SIZE;
+          }
+        } finally {
+          source.close();
+          source = null;
+        }
+      } catch (Throwable t) {
+        failure = t;
+        chunks.clear();
+      } finally {
+        done.countDown();
+      }
+    }
+
+    private void awaitDone() throws IOException {
+      if (closed) {
+        throw new IOException("Stream closed");
+      }
+      try {
+        done.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while decompressing");
+      }
+      if (failure != null) {
+        if (failure instanceof IOException) {
+          throw (IOException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+          throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+          throw (Error) failure;
+        }
+        throw new IOException(failure);
+      }
+    }
+
+    private int chunkLength(int index) {
+      return index == chunks.size() - 1 ? lastChunkLength : CHUNK_SIZE;
+    }
+
+    @Override
+    public int read() throws IOException {
+      awaitDone();
+      if (chunkIndex == chunks.size()) {
+        return -1;
+      }
+      int b = chunks.get(chunkIndex)[chunkOffset] & 0xFF;
+      advance(1);
+      return b;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      awaitDone();
+      if (len == 0) {
+        return 0;
+      }
+      if (chunkIndex == chunks.size()) {
+        return -1;
+      }
+      int total = 0;
+      while (total < len && chunkIndex < chunks.size()) {
+        int count = Math.min(len - total, chunkLength(chunkIndex) - chunkOffset);
+        System.arraycopy(chunks.get(chunkIndex), chunkOffset, b, off + total, count);
+        total += count;
+        advance(count);
+      }
+      return total;
+    }
+
+    private void advance(int count) {
+      chunkOffset += count;
+      if (chunkOffset == chunkLength(chunkIndex)) {
+        // Let the chunk be collected once it has been read.
+        chunks.set(chunkIndex, null);
+        chunkIndex++;
+        chunkOffset = 0;
+      }
+    }
+
+    @Override
+    public int available() {
+      if (closed || done.getCount() != 0 || failure != null) {
+        return 0;
+      }
+      int available = 0;
+      for (int i = chunkIndex; i < chunks.size(); i++) {
+        available += chunkLength(i);
+      }
+      return available - chunkOffset;
+    }
+
+    @Override
+    public void close() {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      if (sourceClaimed.compareAndSet(false, true)) {
+        GrpcUtil.closeQuietly(source);
+        source = null;
+        done.countDown();
+      } else if (done.getCount() == 0) {
+        chunks.clear();
+      }
+      // Otherwise the worker stops after the current chunk and closes the source itself.
+    }
+  }
+}
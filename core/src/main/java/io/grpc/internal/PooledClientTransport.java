@@ -0,0 +1,315 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ClientTransport} that spreads streams over a pool of READY transports to the same
+ * address. Each stream is placed on the transport with the fewest active streams. Once every
+ * transport has {@code maxStreamsPerTransport} active streams, the pool asks its owner for one more
+ * transport, and does not ask again until the owner calls {@link #transportRequestDone}. The owner
+ * shrinks the pool again with {@link #removeIdle}.
+ *
+ * <p>Transports are added and removed by the owner, while streams may be created concurrently from
+ * any thread.
+ */
+@ThreadSafe
+final class PooledClientTransport implements ClientTransport {
+  private final InternalLogId logId;
+  private final Config config;
+  private final Runnable requestTransport;
+  private final AtomicBoolean transportRequested = new AtomicBoolean();
+  private final Object lock = new Object();
+  // Copy-on-write, guarded by lock for writes
+  private volatile Member[] members = new Member[0];
+
+  PooledClientTransport(InternalLogId logId, Config config, Runnable requestTransport) {
+    this.logId = checkNotNull(logId, "logId");
+    this.config = checkNotNull(config, "config");
+    this.requestTransport = checkNotNull(requestTransport, "requestTransport");
+  }
+
+  Config getConfig() {
+    return config;
+  }
+
+  /** Adds a READY transport to the pool. */
+  void add(ClientTransport transport) {
+    checkNotNull(transport, "transport");
+    synchronized (lock) {
+      Member[] newMembers = Arrays.copyOf(members, members.length + 1);
+      newMembers[members.length] = new Member(transport);
+      members = newMembers;
+    }
+  }
+
+  /**
+   * Removes a transport from the pool, so no new streams are placed on it. Returns {@code false}
+   * if it was not in the pool.
+   */
+  boolean remove(ClientTransport transport) {
+    synchronized (lock) {
+      Member[] oldMembers = members;
+      for (int i = 0; i < oldMembers.length; i++) {
+        if (oldMembers[i].transport == transport) {
+          Member[] newMembers = new Member[oldMembers.length - 1];
+          System.arraycopy(oldMembers, 0, newMembers, 0, i);
+          System.arraycopy(oldMembers, i + 1, newMembers, i, newMembers.length - i);
+          members = newMembers;
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  /**
+   * Removes up to {@code maxCount} transports, other than {@code keep}, that have had no active
+   * streams since the previous call, and returns them. Transports that were added since the
+   * previous call are not removed.
+   */
+  List<ClientTransport> removeIdle(int maxCount, @Nullable ClientTransport keep) {
+    List<ClientTransport> removed = new ArrayList<>();
+    synchronized (lock) {
+      List<Member> kept = new ArrayList<>(members.length);
+      for (Member member : members) {
+        if (removed.size() < maxCount && member.transport != keep && !member.used
+            && member.activeStreams.get() == 0) {
+          removed.add(member.transport);
+        } else {
+          member.used = false;
+          kept.add(member);
+        }
+      }
+      if (!removed.isEmpty()) {
+        members = kept.toArray(new Member[0]);
+      }
+    }
+    return removed;
+  }
+
+  /** Removes all transports from the pool. */
+  void clear() {
+    synchronized (lock) {
+      members = new Member[0];
+    }
+  }
+
+  /** Returns the number of transports in the pool. */
+  int size() {
+    return members.length;
+  }
+
+  /**
+   * Called by the owner once a transport it started in response to a request has become READY or
+   * failed, so the pool may request another one.
+   */
+  void transportRequestDone() {
+    transportRequested.set(false);
+  }
+
+  @VisibleForTesting
+  int getActiveStreams(ClientTransport transport) {
+    for (Member member : members) {
+      if (member.transport == transport) {
+        return member.activeStreams.get();
+      }
+    }
+    return 0;
+  }
+
+  @Override
+  public ClientStream newStream(
+      MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+      ClientStreamTracer[] tracers) {
+    Member[] savedMembers = members;
+    if (savedMembers.length == 0) {
+      // The last transport was removed after the caller obtained the pool. The RPC has not been
+      // sent anywhere, so it can be retried transparently.
+      return new FailingClientStream(
+          Status.UNAVAILABLE.withDescription("Connection pool is empty"), RpcProgress.REFUSED,
+          tracers);
+    }
+    Member picked = savedMembers[0];
+    int pickedStreams = picked.activeStreams.get();
+    for (int i = 1; i < savedMembers.length; i++) {
+      int streams = savedMembers[i].activeStreams.get();
+      if (streams < pickedStreams) {
+        picked = savedMembers[i];
+        pickedStreams = streams;
+      }
+    }
+    // Count the stream right away, so that concurrent streams are spread over the transports.
+    picked.used = true;
+    picked.activeStreams.incrementAndGet();
+    if (pickedStreams >= config.maxStreamsPerTransport
+        && savedMembers.length < config.maxTransports
+        && transportRequested.compareAndSet(false, true)) {
+      requestTransport.run();
+    }
+    return new CountingStream(
+        picked.transport.newStream(method, headers, callOptions, tracers), picked.activeStreams);
+  }
+
+  @Override
+  public void ping(PingCallback callback, Executor executor) {
+    Member[] savedMembers = members;
+    if (savedMembers.length == 0) {
+      Http2Ping.notifyFailed(
+          callback, executor,
+          Status.UNAVAILABLE.withDescription("Connection pool is empty").asException());
+      return;
+    }
+    savedMembers[0].transport.ping(callback, executor);
+  }
+
+  @Override
+  public ListenableFuture<SocketStats> getStats() {
+    // Each pooled transport reports its own socket stats
+    SettableFuture<SocketStats> ret = SettableFuture.create();
+    ret.set(null);
+    return ret;
+  }
+
+  @Override
+  public InternalLogId getLogId() {
+    return logId;
+  }
+
+  @Override
+  public String toString() {
+    return MoreObjects.toStringHelper(this)
+        .add("logId", logId.getId())
+        .add("size", members.length)
+        .toString();
+  }
+
+  /** The limits of a connection pool. */
+  static final class Config {
+    final int minTransports;
+    final int maxTransports;
+    final int maxStreamsPerTransport;
+
+    Config(int minTransports, int maxTransports, int maxStreamsPerTransport) {
+      checkArgument(minTransports > 0, "minTransports must be positive");
+      checkArgument(
+          maxTransports >= minTransports, "maxTransports must not be less than minTransports");
+      checkArgument(maxStreamsPerTransport > 0, "maxStreamsPerTransport must be positive");
+      this.minTransports = minTransports;
+      this.maxTransports = maxTransports;
+      this.maxStreamsPerTransport = maxStreamsPerTransport;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("minTransports", minTransports)
+          .add("maxTransports", maxTransports)
+          .add("maxStreamsPerTransport", maxStreamsPerTransport)
+          .toString();
+    }
+  }
+
+  private static final class Member {
+    final ClientTransport transport;
+    final AtomicInteger activeStreams = new AtomicInteger();
+    // Whether a stream was placed on the transport since the last removeIdle(). A new transport
+    // counts as used, so it is not removed before it had a chance to get streams.
+    volatile boolean used = true;
+
+    Member(ClientTransport transport) {
+      this.transport = transport;
+    }
+  }
+
+  /**
+   * Counts the stream as active on its transport from when it is created until it is closed, or
+   * cancelled without having been started.
+   */
+  private static final class CountingStream extends ForwardingClientStream {
+    private final ClientStream delegate;
+    private final AtomicInteger activeStreams;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile boolean started;
+
+    /** {@code activeStreams} must already include this stream. */
+    CountingStream(ClientStream delegate, AtomicInteger activeStreams) {
+      this.delegate = delegate;
+      this.activeStreams = activeStreams;
+    }
+
+    @Override
+    protected ClientStream delegate() {
+      return delegate;
+    }
+
+    @Override
+    public void start(final ClientStreamListener listener) {
+      started = true;
+      super.start(new ForwardingClientStreamListener() {
+        @Override
+        protected ClientStreamListener delegate() {
+          return listener;
+        }
+
+        @Override
+        public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
+          release();
+          super.closed(status, rpcProgress, trailers);
+        }
+      });
+    }
+
+    @Override
+    public void cancel(Status reason) {
+      if (!started) {
+        // The listener is never closed for a stream that was not started.
+        release();
+      }
+      super.cancel(reason);
+    }
+
+    private void release() {
+      if (released.compareAndSet(false, true)) {
+        activeStreams.decrementAndGet();
+      }
+    }
+  }
+}
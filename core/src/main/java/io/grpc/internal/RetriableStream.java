@@ -22,17 +22,23 @@ import static com.google.common.base.Preconditions.checkState;
 
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Objects;
+import com.google.common.io.ByteStreams;
 import io.grpc.Attributes;
 import io.grpc.ClientStreamTracer;
 import io.grpc.Compressor;
 import io.grpc.Deadline;
 import io.grpc.DecompressorRegistry;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import io.grpc.SynchronizationContext;
 import io.grpc.internal.ClientStreamListener.RpcProgress;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.lang.Thread.UncaughtExceptionHandler;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -91,8 +97,11 @@ abstract class RetriableStream<ReqT> implements ClientStream {
   private final ChannelBufferMeter channelBufferUsed;
   private final long perRpcBufferLimit;
   private final long channelBufferLimit;
+  private final boolean bufferSerializedMessages;
   @Nullable
   private final Throttle throttle;
+  @Nullable
+  private final RetryBudget retryBudget;
   @GuardedBy("lock")
   private final InsightBuilder closedSubstreamsInsight = new InsightBuilder();
 
@@ -122,13 +131,15 @@ abstract class RetriableStream<ReqT> implements ClientStream {
   RetriableStream(
       MethodDescriptor<ReqT, ?> method, Metadata headers,
       ChannelBufferMeter channelBufferUsed, long perRpcBufferLimit, long channelBufferLimit,
-      Executor callExecutor, ScheduledExecutorService scheduledExecutorService,
+      boolean bufferSerializedMessages, Executor callExecutor,
+      ScheduledExecutorService scheduledExecutorService,
       @Nullable RetryPolicy retryPolicy, @Nullable HedgingPolicy hedgingPolicy,
-      @Nullable Throttle throttle) {
+      @Nullable Throttle throttle, @Nullable RetryBudget retryBudget) {
     this.method = method;
     this.channelBufferUsed = channelBufferUsed;
     this.perRpcBufferLimit = perRpcBufferLimit;
     this.channelBufferLimit = channelBufferLimit;
+    this.bufferSerializedMessages = bufferSerializedMessages;
     this.callExecutor = callExecutor;
     this.scheduledExecutorService = scheduledExecutorService;
     this.headers = headers;
@@ -142,6 +153,7 @@ abstract class RetriableStream<ReqT> implements ClientStream {
         "Should not provide both retryPolicy and hedgingPolicy");
     this.isHedging = hedgingPolicy != null;
     this.throttle = throttle;
+    this.retryBudget = retryBudget;
   }
 
   @SuppressWarnings("GuardedBy")
@@ -370,7 +382,8 @@ abstract class RetriableStream<ReqT> implements ClientStream {
       synchronized (lock) {
         state = state.addActiveHedge(substream);
         if (hasPotentialHedging(state)
-            && (throttle == null || throttle.isAboveThreshold())) {
+            && (throttle == null || throttle.isAboveThreshold())
+            && (retryBudget == null || retryBudget.hasToken())) {
           scheduledHedging = scheduledHedgingRef = new FutureCanceller(lock);
         }
       }
@@ -436,6 +449,15 @@ abstract class RetriableStream<ReqT> implements ClientStream {
             @SuppressWarnings("GuardedBy")
             @Override
             public void run() {
+              if (retryBudget != null && !retryBudget.tryAcquire()) {
+                synchronized (lock) {
+                  if (!scheduledHedgingRef.isCancelled()) {
+                    state = state.freezeHedging();
+                    scheduledHedging = null;
+                  }
+                }
+                return;
+              }
               // It's safe to read state.hedgingAttemptCount here.
               // If this run is not cancelled, the value of state.hedgingAttemptCount won't change
               // until state.addActiveHedge() is called subsequently, even the state could possibly
@@ -453,7 +475,8 @@ abstract class RetriableStream<ReqT> implements ClientStream {
                 } else {
                   state = state.addActiveHedge(newSubstream);
                   if (hasPotentialHedging(state)
-                      && (throttle == null || throttle.isAboveThreshold())) {
+                      && (throttle == null || throttle.isAboveThreshold())
+                      && (retryBudget == null || retryBudget.hasToken())) {
                     scheduledHedging = future = new FutureCanceller(lock);
                   } else {
                     state = state.freezeHedging();
@@ -543,6 +566,20 @@ abstract class RetriableStream<ReqT> implements ClientStream {
       return;
     }
 
+    if (bufferSerializedMessages) {
+      final byte[] serialized = serialize(method.streamRequest(message));
+
+      class SendSerializedMessageEntry implements BufferEntry {
+        @Override
+        public void runWith(Substream substream) {
+          substream.stream.writeMessage(new SerializedMessageStream(serialized));
+        }
+      }
+
+      delayOrExecute(new SendSerializedMessageEntry());
+      return;
+    }
+
     class SendMessageEntry implements BufferEntry {
       @Override
       public void runWith(Substream substream) {
@@ -553,6 +590,44 @@ abstract class RetriableStream<ReqT> implements ClientStream {
     delayOrExecute(new SendMessageEntry());
   }
 
+  private static byte[] serialize(InputStream message) {
+    try {
+      try {
+        if (message instanceof KnownLength) {
+          // Lets a protobuf message serialize directly into an array of the exact size.
+          byte[] serialized = new byte[message.available()];
+          ByteStreams.readFully(message, serialized);
+          return serialized;
+        }
+        return ByteStreams.toByteArray(message);
+      } finally {
+        message.close();
+      }
+    } catch (IOException e) {
+      throw Status.INTERNAL.withDescription("Failed to serialize message").withCause(e)
+          .asRuntimeException();
+    }
+  }
+
+  /**
+   * A view of a serialized message for one attempt. All attempts share the same array, which is
+   * never modified.
+   */
+  private static final class SerializedMessageStream extends ByteArrayInputStream
+      implements KnownLength, Drainable {
+    SerializedMessageStream(byte[] serialized) {
+      super(serialized);
+    }
+
+    @Override
+    public synchronized int drainTo(OutputStream target) throws IOException {
+      int length = count - pos;
+      target.write(buf, pos, length);
+      pos = count;
+      return length;
+    }
+  }
+
   @Override
   public final void request(final int numMessages) {
     State savedState = state;
@@ -815,6 +890,9 @@ abstract class RetriableStream<ReqT> implements ClientStream {
         if (throttle != null) {
           throttle.onSuccess();
         }
+        if (retryBudget != null) {
+          retryBudget.onSuccess();
+        }
         listenerSerializeExecutor.execute(
             new Runnable() {
               @Override
@@ -966,7 +1044,8 @@ abstract class RetriableStream<ReqT> implements ClientStream {
     /**
      * Decides in current situation whether or not the RPC should retry and if it should retry how
      * long the backoff should be. The decision does not take the commitment status into account, so
-     * caller should check it separately. It also updates the throttle. It does not change state.
+     * caller should check it separately. It also updates the throttle and the retry budget. It does
+     * not change state.
      */
     private RetryPlan makeRetryDecision(Status status, Metadata trailer) {
       if (retryPolicy == null) {
@@ -999,6 +1078,9 @@ abstract class RetriableStream<ReqT> implements ClientStream {
         } // else no retry
       } // else no retry
 
+      if (shouldRetry && retryBudget != null && !retryBudget.tryAcquire()) {
+        shouldRetry = false;
+      }
       return new RetryPlan(shouldRetry, backoffNanos);
     }
 
@@ -1456,6 +1538,89 @@ abstract class RetriableStream<ReqT> implements ClientStream {
     }
   }
 
+  /**
+   * Caps the retries and hedged attempts of a channel at a percentage of its successful RPCs.
+   * Each successful RPC earns a fraction of a token and each extra attempt spends a whole one, so
+   * a backend that stops succeeding only sees the tokens saved up before, never a retry storm.
+   */
+  static final class RetryBudget {
+
+    private static final int THREE_DECIMAL_PLACES_SCALE_UP = 1000;
+
+    /**
+     * 1000 times the maxTokens field of the retryBudget policy in service config. The number of
+     * tokens starts at maxTokens.
+     */
+    final int maxTokens;
+
+    /**
+     * 1000 times the share of a token earned by each successful RPC, i.e. ten times the
+     * budgetPercent field of the retryBudget policy in service config.
+     */
+    final int tokenRatio;
+
+    final AtomicInteger tokenCount = new AtomicInteger();
+
+    RetryBudget(float maxTokens, float budgetPercent) {
+      // budgetPercent is up to 1 decimal place
+      this.tokenRatio = Math.round(budgetPercent * THREE_DECIMAL_PLACES_SCALE_UP / 100);
+      this.maxTokens = (int) (maxTokens * THREE_DECIMAL_PLACES_SCALE_UP);
+      tokenCount.set(this.maxTokens);
+    }
+
+    @VisibleForTesting
+    boolean hasToken() {
+      return tokenCount.get() >= THREE_DECIMAL_PLACES_SCALE_UP;
+    }
+
+    /** Spends a token for an extra attempt, returning {@code false} if the budget is exhausted. */
+    @VisibleForTesting
+    boolean tryAcquire() {
+      while (true) {
+        int currentCount = tokenCount.get();
+        if (currentCount < THREE_DECIMAL_PLACES_SCALE_UP) {
+          return false;
+        }
+        if (tokenCount.compareAndSet(
+            currentCount, currentCount - THREE_DECIMAL_PLACES_SCALE_UP)) {
+          return true;
+        }
+      }
+    }
+
+    @VisibleForTesting
+    void onSuccess() {
+      while (true) {
+        int currentCount = tokenCount.get();
+        if (currentCount == maxTokens) {
+          break;
+        }
+        int incremented = currentCount + tokenRatio;
+        boolean updated = tokenCount.compareAndSet(currentCount, Math.min(incremented, maxTokens));
+        if (updated) {
+          break;
+        }
+      }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof RetryBudget)) {
+        return false;
+      }
+      RetryBudget that = (RetryBudget) o;
+      return maxTokens == that.maxTokens && tokenRatio == that.tokenRatio;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(maxTokens, tokenRatio);
+    }
+  }
+
   private static final class RetryPlan {
     final boolean shouldRetry;
     final long backoffNanos;
@@ -17,10 +17,10 @@
 package io.grpc.internal;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 
+import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 import java.util.logging.Level;
@@ -58,11 +58,22 @@ public final class SerializingExecutor implements Executor, Runnable {
   private static final int STOPPED = 0;
   private static final int RUNNING = -1;
 
+  /**
+   * Maximum number of Runnables run before yielding the thread by rescheduling on the executor, so
+   * that a busy SerializingExecutor doesn't starve others sharing the same executor. There is no
+   * yield on a direct executor, which has no other tasks to share the thread with.
+   */
+  @VisibleForTesting
+  static final int MAX_BATCH_SIZE = 1024;
+
   /** Underlying executor that all submitted Runnable objects are run on. */
   private Executor executor;
 
-  /** A list of Runnables to be run in order. */
-  private final Queue<Runnable> runQueue = new ConcurrentLinkedQueue<>();
+  /**
+   * A list of Runnables to be run in order. It is only consumed while in the RUNNING state, which
+   * guarantees there is a single consumer at a time.
+   */
+  private final ChunkedMpscQueue<Runnable> runQueue = new ChunkedMpscQueue<>();
 
   private volatile int runState = STOPPED;
 
@@ -91,7 +102,7 @@ public final class SerializingExecutor implements Executor, Runnable {
    */
   @Override
   public void execute(Runnable r) {
-    runQueue.add(checkNotNull(r, "'r' must not be null."));
+    runQueue.offer(checkNotNull(r, "'r' must not be null."));
     schedule(r);
   }
 
@@ -109,10 +120,9 @@ public final class SerializingExecutor implements Executor, Runnable {
         if (!success) {
           if (removable != null) {
             // This case can only be reached if 'this' was not currently running, and we failed to
-            // reschedule.  The item should still be in the queue for removal.
-            // ConcurrentLinkedQueue claims that null elements are not allowed, but seems to not
-            // throw if the item to remove is null.  If removable is present in the queue twice,
-            // the wrong one may be removed.  It doesn't seem possible for this case to exist today.
+            // reschedule.  The item should still be in the queue for removal, and we are the only
+            // consumer.  If removable is present in the queue twice, the wrong one may be removed.
+            // It doesn't seem possible for this case to exist today.
             // This is important to run in case of RejectedExectuionException, so that future calls
             // to execute don't succeed and accidentally run a previous runnable.
             runQueue.remove(removable);
@@ -126,8 +136,10 @@ public final class SerializingExecutor implements Executor, Runnable {
   @Override
   public void run() {
     Runnable r;
+    boolean yielded = false;
     try {
       Executor oldExecutor = executor;
+      int batchSize = 0;
       while (oldExecutor == executor && (r = runQueue.poll()) != null ) {
         try {
           r.run();
@@ -135,9 +147,24 @@ public final class SerializingExecutor implements Executor, Runnable {
           // Log it and keep going.
           log.log(Level.SEVERE, "Exception while executing runnable " + r, e);
         }
+        // A direct executor would run this again on the same stack instead of yielding.
+        if (++batchSize == MAX_BATCH_SIZE && oldExecutor == executor
+            && oldExecutor != directExecutor() && !runQueue.isEmpty()) {
+          batchSize = 0;
+          try {
+            // Stay RUNNING and continue on a fresh execution of the executor.
+            executor.execute(this);
+            yielded = true;
+            return;
+          } catch (RuntimeException e) {
+            // Keep the thread instead; the executor may be saturated.
+          }
+        }
       }
     } finally {
-      atomicHelper.runStateSet(this, STOPPED);
+      if (!yielded) {
+        atomicHelper.runStateSet(this, STOPPED);
+      }
     }
     if (!runQueue.isEmpty()) {
       // we didn't enqueue anything but someone else did.
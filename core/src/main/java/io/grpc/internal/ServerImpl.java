@@ -47,6 +47,7 @@ import io.grpc.InternalLogId;
 import io.grpc.InternalServerInterceptors;
 import io.grpc.Metadata;
 import io.grpc.ServerCall;
+import io.grpc.ServerCallAdmissionController;
 import io.grpc.ServerCallExecutorSupplier;
 import io.grpc.ServerCallHandler;
 import io.grpc.ServerInterceptor;
@@ -54,6 +55,7 @@ import io.grpc.ServerMethodDefinition;
 import io.grpc.ServerServiceDefinition;
 import io.grpc.ServerTransportFilter;
 import io.grpc.Status;
+import io.grpc.StatusException;
 import io.perfmark.Link;
 import io.perfmark.PerfMark;
 import io.perfmark.Tag;
@@ -73,6 +75,7 @@ import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
 /**
@@ -104,6 +107,8 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
   // creations.
   private final ServerInterceptor[] interceptors;
   private final long handshakeTimeoutMillis;
+  private final int coalescingMaxBytes;
+  private final long coalescingMaxDelayNanos;
   @GuardedBy("lock") private boolean started;
   @GuardedBy("lock") private boolean shutdown;
   /** non-{@code null} if immediate shutdown has been requested. */
@@ -128,6 +133,8 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
   private final CallTracer serverCallTracer;
   private final Deadline.Ticker ticker;
   private final ServerCallExecutorSupplier executorSupplier;
+  @Nullable
+  private final ServerCallAdmissionController admissionController;
 
   /**
    * Construct a server.
@@ -150,19 +157,23 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
     // Fork from the passed in context so that it does not propagate cancellation, it only
     // inherits values.
     this.rootContext = Preconditions.checkNotNull(rootContext, "rootContext").fork();
-    this.decompressorRegistry = builder.decompressorRegistry;
+    this.decompressorRegistry =
+        OffloadedDecompressor.offload(builder.decompressorRegistry, builder.decompressionExecutor);
     this.compressorRegistry = builder.compressorRegistry;
     this.transportFilters = Collections.unmodifiableList(
         new ArrayList<>(builder.transportFilters));
     this.interceptors =
         builder.interceptors.toArray(new ServerInterceptor[builder.interceptors.size()]);
     this.handshakeTimeoutMillis = builder.handshakeTimeoutMillis;
+    this.coalescingMaxBytes = builder.coalescingMaxBytes;
+    this.coalescingMaxDelayNanos = builder.coalescingMaxDelayNanos;
     this.binlog = builder.binlog;
     this.channelz = builder.channelz;
     this.serverCallTracer = builder.callTracerFactory.create();
     this.ticker = checkNotNull(builder.ticker, "ticker");
     channelz.addServer(this);
     this.executorSupplier = builder.executorSupplier;
+    this.admissionController = builder.admissionController;
   }
 
   /**
@@ -470,6 +481,18 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
 
     private void streamCreatedInternal(
         final ServerStream stream, final String methodName, final Metadata headers, final Tag tag) {
+      if (admissionController != null) {
+        // Checked before anything is queued on the executor, so rejecting a call stays cheap
+        // however far behind the executor is.
+        StatusException rejection = admissionController.checkAdmission(methodName, headers);
+        if (rejection != null) {
+          Metadata trailers = rejection.getTrailers();
+          stream.setListener(NOOP_LISTENER);
+          stream.close(rejection.getStatus(), trailers != null ? trailers : new Metadata());
+          return;
+        }
+      }
+
       final Executor wrappedExecutor;
       // This is a performance optimization that avoids the synchronization and queuing overhead
       // that comes with SerializingExecutor.
@@ -571,8 +594,15 @@ public final class ServerImpl extends io.grpc.Server implements InternalInstrume
             final Metadata headers,
             final Context.CancellableContext context,
             final Tag tag) {
+          ServerStream callStream = stream;
+          if (coalescingMaxBytes > 0
+              && !methodDef.getMethodDescriptor().getType().serverSendsOneMessage()) {
+            callStream = new CoalescingServerStream(
+                stream, coalescingMaxBytes, coalescingMaxDelayNanos,
+                transport.getScheduledExecutorService());
+          }
           final ServerCallImpl<ReqT, RespT> call = new ServerCallImpl<>(
-                  stream,
+                  callStream,
                   methodDef.getMethodDescriptor(),
                   headers,
                   context,
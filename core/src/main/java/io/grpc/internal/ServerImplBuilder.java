@@ -32,6 +32,7 @@ import io.grpc.HandlerRegistry;
 import io.grpc.InternalChannelz;
 import io.grpc.Server;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerCallAdmissionController;
 import io.grpc.ServerCallExecutorSupplier;
 import io.grpc.ServerInterceptor;
 import io.grpc.ServerMethodDefinition;
@@ -83,8 +84,12 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
   HandlerRegistry fallbackRegistry = DEFAULT_FALLBACK_REGISTRY;
   ObjectPool<? extends Executor> executorPool = DEFAULT_EXECUTOR_POOL;
   DecompressorRegistry decompressorRegistry = DEFAULT_DECOMPRESSOR_REGISTRY;
+  @Nullable Executor decompressionExecutor;
   CompressorRegistry compressorRegistry = DEFAULT_COMPRESSOR_REGISTRY;
   long handshakeTimeoutMillis = DEFAULT_HANDSHAKE_TIMEOUT_MILLIS;
+  // Coalescing is disabled when 0.
+  int coalescingMaxBytes;
+  long coalescingMaxDelayNanos;
   Deadline.Ticker ticker = Deadline.getSystemTicker();
   private boolean statsEnabled = true;
   private boolean recordStartedRpcs = true;
@@ -96,6 +101,8 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
   CallTracer.Factory callTracerFactory = CallTracer.getDefaultFactory();
   @Nullable
   ServerCallExecutorSupplier executorSupplier;
+  @Nullable
+  ServerCallAdmissionController admissionController;
 
   /**
    * An interface to provide to provide transport specific information for the server. This method
@@ -125,12 +132,28 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
     return this;
   }
 
+  @Override
+  public ServerImplBuilder virtualThreadExecutor() {
+    if (!GrpcUtil.isVirtualThreadSupported()) {
+      throw new UnsupportedOperationException("Virtual threads require Java 21 or later");
+    }
+    this.executorPool = SharedResourcePool.forResource(GrpcUtil.VIRTUAL_THREAD_EXECUTOR);
+    return this;
+  }
+
   @Override
   public ServerImplBuilder callExecutor(ServerCallExecutorSupplier executorSupplier) {
     this.executorSupplier = checkNotNull(executorSupplier);
     return this;
   }
 
+  @Override
+  public ServerImplBuilder admissionController(
+      ServerCallAdmissionController admissionController) {
+    this.admissionController = checkNotNull(admissionController, "admissionController");
+    return this;
+  }
+
   @Override
   public ServerImplBuilder addService(ServerServiceDefinition service) {
     registryBuilder.addService(checkNotNull(service, "service"));
@@ -172,6 +195,12 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
     return this;
   }
 
+  @Override
+  public ServerImplBuilder decompressionExecutor(@Nullable Executor executor) {
+    this.decompressionExecutor = executor;
+    return this;
+  }
+
   @Override
   public ServerImplBuilder compressorRegistry(@Nullable CompressorRegistry registry) {
     this.compressorRegistry = registry != null ? registry : DEFAULT_COMPRESSOR_REGISTRY;
@@ -185,6 +214,15 @@ public final class ServerImplBuilder extends ServerBuilder<ServerImplBuilder> {
     return this;
   }
 
+  @Override
+  public ServerImplBuilder coalesceMessages(int maxBytes, long maxDelay, TimeUnit unit) {
+    checkArgument(maxBytes > 0, "maxBytes is %s, but must be positive", maxBytes);
+    checkArgument(maxDelay > 0, "maxDelay is %s, but must be positive", maxDelay);
+    this.coalescingMaxBytes = maxBytes;
+    this.coalescingMaxDelayNanos = checkNotNull(unit, "unit").toNanos(maxDelay);
+    return this;
+  }
+
   @Override
   public ServerImplBuilder setBinaryLog(@Nullable BinaryLog binaryLog) {
     this.binlog = binaryLog;
@@ -28,6 +28,7 @@ import io.grpc.LoadBalancerProvider;
 import io.grpc.LoadBalancerRegistry;
 import io.grpc.NameResolver.ConfigOrError;
 import io.grpc.Status;
+import io.grpc.internal.RetriableStream.RetryBudget;
 import io.grpc.internal.RetriableStream.Throttle;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -47,6 +48,8 @@ import javax.annotation.Nullable;
  */
 public final class ServiceConfigUtil {
 
+  private static final double MAX_RETRY_BUDGET_TOKENS = 1000;
+
   private ServiceConfigUtil() {}
 
   /**
@@ -120,6 +123,52 @@ public final class ServiceConfigUtil {
     return new Throttle(maxTokens, tokenRatio);
   }
 
+  @Nullable
+  static RetryBudget getRetryBudgetPolicy(@Nullable Map<String, ?> serviceConfig) {
+    if (serviceConfig == null) {
+      return null;
+    }
+
+    /* schema as follows
+    {
+      "retryBudget": {
+        // The percentage of successful RPCs that may be followed by a retry or a hedged
+        // attempt, e.g., 10.
+        //
+        // This field is required and must be between 0.1 and 100. Up to 1 decimal place is
+        // supported.
+        "budgetPercent": number,
+
+        // The number of retries and hedged attempts that can be saved up for bursts of failures,
+        // and that are available before any RPC has succeeded.
+        //
+        // This field is optional and defaults to 10. It must be at least 1. Values greater than
+        // 1000 are treated as 1000.
+        "maxTokens": number
+      }
+    }
+    */
+
+    Map<String, ?> budget = JsonUtil.getObject(serviceConfig, "retryBudget");
+    if (budget == null) {
+      return null;
+    }
+
+    Double budgetPercent = JsonUtil.getNumber(budget, "budgetPercent");
+    checkState(budgetPercent != null, "budgetPercent is required in retryBudget");
+    Double maxTokens = JsonUtil.getNumber(budget, "maxTokens");
+    if (maxTokens == null) {
+      maxTokens = 10D;
+    }
+    checkState(
+        budgetPercent >= 0.1 && budgetPercent <= 100,
+        "budgetPercent should be between 0.1 and 100");
+    checkState(maxTokens >= 1, "maxTokens should be at least 1");
+    // Keeps the token count, scaled up by 1000, well within an int.
+    maxTokens = Math.min(maxTokens, MAX_RETRY_BUDGET_TOKENS);
+    return new RetryBudget(maxTokens.floatValue(), budgetPercent.floatValue());
+  }
+
   @Nullable
   static Integer getMaxAttemptsFromRetryPolicy(Map<String, ?> retryPolicy) {
     return JsonUtil.getNumberAsInteger(retryPolicy, "maxAttempts");
@@ -197,6 +246,11 @@ public final class ServiceConfigUtil {
     return JsonUtil.getStringAsDuration(hedgingPolicy, "hedgingDelay");
   }
 
+  @Nullable
+  static Double getHedgingDelayPercentileFromHedgingPolicy(Map<String, ?> hedgingPolicy) {
+    return JsonUtil.getNumber(hedgingPolicy, "hedgingDelayPercentile");
+  }
+
   static Set<Status.Code> getNonFatalStatusCodesFromHedgingPolicy(Map<String, ?> hedgingPolicy) {
     String nonFatalStatusCodesKey = "nonFatalStatusCodes";
     Set<Status.Code> codes = getListOfStatusCodesAsSet(hedgingPolicy, nonFatalStatusCodesKey);
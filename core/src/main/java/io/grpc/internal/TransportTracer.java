@@ -28,6 +28,7 @@ import io.grpc.InternalChannelz.TransportStats;
  */
 public final class TransportTracer {
   private static final Factory DEFAULT_FACTORY = new Factory(SYSTEM_TIME_PROVIDER);
+  private static final FlowControlWindows UNKNOWN_WINDOWS = new FlowControlWindows(-1, -1);
 
   private final TimeProvider timeProvider;
   private long streamsStarted;
@@ -43,6 +44,9 @@ public final class TransportTracer {
   // deframing happens on the application thread, and there's no easy way to avoid synchronization
   private final LongCounter messagesReceived = LongCounterFactory.create();
   private volatile long lastMessageReceivedTimeNanos;
+  // framing happens on the application thread, so these are also updated concurrently
+  private final LongCounter buffersAllocated = LongCounterFactory.create();
+  private final LongCounter bytesAllocated = LongCounterFactory.create();
 
   public TransportTracer() {
     this.timeProvider = SYSTEM_TIME_PROVIDER;
@@ -56,10 +60,8 @@ public final class TransportTracer {
    * Returns a read only set of current stats.
    */
   public TransportStats getStats() {
-    long localFlowControlWindow =
-        flowControlWindowReader == null ? -1 : flowControlWindowReader.read().localBytes;
-    long remoteFlowControlWindow =
-        flowControlWindowReader == null ? -1 : flowControlWindowReader.read().remoteBytes;
+    FlowControlWindows windows =
+        flowControlWindowReader == null ? UNKNOWN_WINDOWS : flowControlWindowReader.read();
     return new TransportStats(
         streamsStarted,
         lastLocalStreamCreatedTimeNanos,
@@ -71,8 +73,11 @@ public final class TransportTracer {
         keepAlivesSent,
         lastMessageSentTimeNanos,
         lastMessageReceivedTimeNanos,
-        localFlowControlWindow,
-        remoteFlowControlWindow);
+        windows.localBytes,
+        windows.remoteBytes,
+        windows.localStreamBytes,
+        windows.estimatedBdpBytes,
+        windows.estimatedRttNanos);
   }
 
   /**
@@ -121,6 +126,30 @@ public final class TransportTracer {
     lastMessageReceivedTimeNanos = timeProvider.currentTimeNanos();
   }
 
+  /**
+   * Reports that a buffer of {@code capacity} bytes was allocated for outbound messages. This
+   * method is thread safe.
+   */
+  public void reportBufferAllocated(int capacity) {
+    buffersAllocated.add(1);
+    bytesAllocated.add(capacity);
+  }
+
+  /**
+   * Returns the number of buffers allocated for outbound messages. This method is thread safe.
+   */
+  public long getBuffersAllocated() {
+    return buffersAllocated.value();
+  }
+
+  /**
+   * Returns the total capacity of the buffers allocated for outbound messages. This method is
+   * thread safe.
+   */
+  public long getBytesAllocated() {
+    return bytesAllocated.value();
+  }
+
   /**
    * Reports that a keep alive message was sent.
    */
@@ -137,15 +166,36 @@ public final class TransportTracer {
   }
 
   /**
-   * A container that holds the local and remote flow control window sizes.
+   * A container that holds the local and remote flow control window sizes, along with the
+   * estimates the local window is tuned from. Values that are not known are -1.
    */
   public static final class FlowControlWindows {
     public final long remoteBytes;
     public final long localBytes;
+    /** The initial window of new streams advertised to the remote. */
+    public final long localStreamBytes;
+    public final long estimatedBdpBytes;
+    public final long estimatedRttNanos;
 
     public FlowControlWindows(long localBytes, long remoteBytes) {
+      this(localBytes, remoteBytes, -1, -1, -1);
+    }
+
+    /**
+     * Creates an instance including the stream window and the estimates of the bandwidth-delay
+     * product and round trip time.
+     */
+    public FlowControlWindows(
+        long localBytes,
+        long remoteBytes,
+        long localStreamBytes,
+        long estimatedBdpBytes,
+        long estimatedRttNanos) {
       this.localBytes = localBytes;
       this.remoteBytes = remoteBytes;
+      this.localStreamBytes = localStreamBytes;
+      this.estimatedBdpBytes = estimatedBdpBytes;
+      this.estimatedRttNanos = estimatedRttNanos;
     }
   }
 
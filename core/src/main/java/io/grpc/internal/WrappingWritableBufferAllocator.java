@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * A {@link WritableBufferAllocator} that can also hand existing {@link ByteBuffer}s to the
+ * transport by reference. {@link MessageFramer} uses it to avoid copying messages whose stream
+ * exposes its content through {@link io.grpc.HasByteBuffer}.
+ */
+public interface WrappingWritableBufferAllocator extends WritableBufferAllocator {
+
+  /**
+   * Returns a buffer whose readable bytes are the remaining bytes of {@code buffers}, in order,
+   * without copying them. The returned buffer has no writable bytes. The content of
+   * {@code buffers} must not be modified afterwards.
+   *
+   * @param buffers the buffers to reference.
+   * @param owner closed once the transport no longer references {@code buffers}, which may happen
+   *     on a transport thread.
+   */
+  WritableBuffer wrap(List<ByteBuffer> buffers, Closeable owner);
+}
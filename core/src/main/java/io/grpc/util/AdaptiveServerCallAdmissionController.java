@@ -0,0 +1,400 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Supplier;
+import com.google.common.base.Ticker;
+import io.grpc.ExperimentalApi;
+import io.grpc.InternalStatus;
+import io.grpc.Metadata;
+import io.grpc.ServerCallAdmissionController;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import io.grpc.StatusException;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ServerCallAdmissionController} that sheds load once the server falls behind, rejecting
+ * new calls with {@code UNAVAILABLE} before they are queued on the executor. Clients with a retry
+ * policy are told through the {@code grpc-retry-pushback-ms} trailer how long to wait before
+ * trying again, ideally on another server.
+ *
+ * <p>Three signals are considered:
+ * <ul>
+ *   <li>The executor queue delay, i.e. the time from when a call is received until the server
+ *       starts processing it, as a moving average. It is never less than the time the oldest
+ *       queued call has been waiting, so a stalled executor is noticed even though no calls
+ *       start. Once it exceeds the target delay, calls are rejected with a probability that grows
+ *       with the excess, so that the delay is kept close to the target.</li>
+ *   <li>Optionally, the CPU utilization from a supplier, e.g. the value that the server also
+ *       reports to its clients through ORCA. Above the threshold, calls are rejected with a
+ *       probability that grows linearly until the utilization reaches 1.</li>
+ *   <li>Optionally, the number of in-flight calls of each method. A call is rejected if its method
+ *       already has the maximum number of calls in flight, so that one expensive method cannot
+ *       take up the whole server.</li>
+ * </ul>
+ *
+ * <p>A fraction of the calls is always accepted in spite of the first two signals, so the server
+ * keeps measuring its queue delay and notices when the overload is over.
+ *
+ * <p>The signals are measured by the tracer returned from {@link #getStreamTracerFactory}, which
+ * must be added to the server along with the controller:
+ *
+ * <pre>
+ *   AdaptiveServerCallAdmissionController controller =
+ *       AdaptiveServerCallAdmissionController.newBuilder().build();
+ *   Server server = ServerBuilder.forPort(port)
+ *       .admissionController(controller)
+ *       .addStreamTracerFactory(controller.getStreamTracerFactory())
+ *       ...
+ *       .build();
+ * </pre>
+ */
+@ThreadSafe
+@ExperimentalApi("Server call admission control; tracking issue to be filed")
+public final class AdaptiveServerCallAdmissionController implements ServerCallAdmissionController {
+  @VisibleForTesting
+  static final Metadata.Key<String> RETRY_PUSHBACK_MS_KEY =
+      Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+  private final long targetQueueDelayNanos;
+  private final long decayNanos;
+  @Nullable
+  private final Supplier<Double> cpuUtilization;
+  private final double cpuUtilizationThreshold;
+  private final int maxInFlightCallsPerMethod;
+  private final double maxRejectProbability;
+  private final String pushbackMillis;
+  private final Ticker ticker;
+  private final Random random;
+  private final AtomicReference<Estimate> queueDelay;
+  private final AtomicLong nextTracerId = new AtomicLong();
+  // Calls whose tracer has been created but which have not started or closed yet, oldest first.
+  private final ConcurrentSkipListSet<LoadTracer> queuedCalls =
+      new ConcurrentSkipListSet<>(new Comparator<LoadTracer>() {
+        @Override
+        public int compare(LoadTracer a, LoadTracer b) {
+          int result = Long.compare(a.receivedNanos, b.receivedNanos);
+          return result != 0 ? result : Long.compare(a.id, b.id);
+        }
+      });
+  private final ConcurrentMap<String, AtomicInteger> inFlightCalls = new ConcurrentHashMap<>();
+  private final ServerStreamTracer.Factory tracerFactory = new LoadTracerFactory();
+
+  private AdaptiveServerCallAdmissionController(Builder builder) {
+    this.targetQueueDelayNanos = builder.targetQueueDelayNanos;
+    this.decayNanos = builder.decayNanos;
+    this.cpuUtilization = builder.cpuUtilization;
+    this.cpuUtilizationThreshold = builder.cpuUtilizationThreshold;
+    this.maxInFlightCallsPerMethod = builder.maxInFlightCallsPerMethod;
+    this.maxRejectProbability = builder.maxRejectProbability;
+    this.pushbackMillis = String.valueOf(TimeUnit.NANOSECONDS.toMillis(builder.pushbackNanos));
+    this.ticker = builder.ticker;
+    this.random = builder.random;
+    this.queueDelay = new AtomicReference<>(new Estimate(0, ticker.read()));
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the tracer factory that measures the queue delay and in-flight calls. It must be added
+   * to the server with {@link io.grpc.ServerBuilder#addStreamTracerFactory}, otherwise only the
+   * CPU utilization is considered.
+   */
+  public ServerStreamTracer.Factory getStreamTracerFactory() {
+    return tracerFactory;
+  }
+
+  @Override
+  @Nullable
+  public StatusException checkAdmission(String fullMethodName, Metadata headers) {
+    if (maxInFlightCallsPerMethod != Integer.MAX_VALUE) {
+      AtomicInteger inFlight = inFlightCalls.get(fullMethodName);
+      // The tracer of this call was created before it is checked, so it is already counted.
+      if (inFlight != null && inFlight.get() > maxInFlightCallsPerMethod) {
+        return reject("too many in-flight calls to " + fullMethodName);
+      }
+    }
+    double rejectProbability = getRejectProbability();
+    if (rejectProbability > 0 && random.nextDouble() < rejectProbability) {
+      return reject("server is overloaded");
+    }
+    return null;
+  }
+
+  @VisibleForTesting
+  double getRejectProbability() {
+    double probability = 0;
+    double delay = getQueueDelayNanos();
+    if (delay > targetQueueDelayNanos) {
+      probability = (delay - targetQueueDelayNanos) / Math.max(targetQueueDelayNanos, 1);
+    }
+    if (cpuUtilization != null) {
+      Double utilization = cpuUtilization.get();
+      if (utilization != null && utilization > cpuUtilizationThreshold) {
+        probability = Math.max(probability,
+            (utilization - cpuUtilizationThreshold) / (1 - cpuUtilizationThreshold));
+      }
+    }
+    return Math.min(probability, maxRejectProbability);
+  }
+
+  /**
+   * Returns the moving average of the queue delay. It decays while no calls are started, so a
+   * server that is not receiving calls is not considered overloaded, but it is never less than the
+   * time the oldest queued call has been waiting.
+   */
+  @VisibleForTesting
+  double getQueueDelayNanos() {
+    Estimate current = queueDelay.get();
+    long now = ticker.read();
+    double delay = current.delayNanos * decayWeight(current, now);
+    // Unlike first(), the iterator doesn't throw if the last call is removed concurrently.
+    Iterator<LoadTracer> oldest = queuedCalls.iterator();
+    if (oldest.hasNext()) {
+      delay = Math.max(delay, now - oldest.next().receivedNanos);
+    }
+    return delay;
+  }
+
+  @VisibleForTesting
+  int getInFlightCalls(String fullMethodName) {
+    AtomicInteger inFlight = inFlightCalls.get(fullMethodName);
+    return inFlight == null ? 0 : inFlight.get();
+  }
+
+  private StatusException reject(String description) {
+    Metadata trailers = new Metadata();
+    trailers.put(RETRY_PUSHBACK_MS_KEY, pushbackMillis);
+    return InternalStatus.asException(
+        Status.UNAVAILABLE.withDescription(description), trailers, /*fillInStackTrace=*/ false);
+  }
+
+  private void recordQueueDelay(long delayNanos) {
+    while (true) {
+      Estimate old = queueDelay.get();
+      long now = ticker.read();
+      double weight = decayWeight(old, now);
+      Estimate estimate = new Estimate(old.delayNanos * weight + delayNanos * (1 - weight), now);
+      if (queueDelay.compareAndSet(old, estimate)) {
+        return;
+      }
+    }
+  }
+
+  private double decayWeight(Estimate estimate, long nowNanos) {
+    long elapsed = Math.max(nowNanos - estimate.stampNanos, 0);
+    return Math.exp(-(double) elapsed / decayNanos);
+  }
+
+  private AtomicInteger getOrCreateInFlightCalls(String fullMethodName) {
+    AtomicInteger inFlight = inFlightCalls.get(fullMethodName);
+    if (inFlight == null) {
+      AtomicInteger newInFlight = new AtomicInteger();
+      inFlight = inFlightCalls.putIfAbsent(fullMethodName, newInFlight);
+      if (inFlight == null) {
+        inFlight = newInFlight;
+      }
+    }
+    return inFlight;
+  }
+
+  private static final class Estimate {
+    final double delayNanos;
+    final long stampNanos;
+
+    Estimate(double delayNanos, long stampNanos) {
+      this.delayNanos = delayNanos;
+      this.stampNanos = stampNanos;
+    }
+  }
+
+  private final class LoadTracerFactory extends ServerStreamTracer.Factory {
+    @Override
+    public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+      AtomicInteger inFlight = null;
+      if (maxInFlightCallsPerMethod != Integer.MAX_VALUE) {
+        // The method is not known to exist yet, so only methods that have been started before
+        // are counted here.
+        inFlight = inFlightCalls.get(fullMethodName);
+        if (inFlight != null) {
+          inFlight.incrementAndGet();
+        }
+      }
+      LoadTracer tracer = new LoadTracer(inFlight, ticker.read(), nextTracerId.getAndIncrement());
+      queuedCalls.add(tracer);
+      return tracer;
+    }
+  }
+
+  private final class LoadTracer extends ServerStreamTracer {
+    final long receivedNanos;
+    final long id;
+    @GuardedBy("this")
+    @Nullable
+    private AtomicInteger inFlight;
+    @GuardedBy("this")
+    private boolean closed;
+
+    LoadTracer(@Nullable AtomicInteger inFlight, long receivedNanos, long id) {
+      this.inFlight = inFlight;
+      this.receivedNanos = receivedNanos;
+      this.id = id;
+    }
+
+    @Override
+    public void serverCallStarted(ServerCallInfo<?, ?> callInfo) {
+      queuedCalls.remove(this);
+      recordQueueDelay(ticker.read() - receivedNanos);
+      if (maxInFlightCallsPerMethod == Integer.MAX_VALUE) {
+        return;
+      }
+      synchronized (this) {
+        // The stream may have been cancelled while the call was queued.
+        if (inFlight == null && !closed) {
+          inFlight = getOrCreateInFlightCalls(callInfo.getMethodDescriptor().getFullMethodName());
+          inFlight.incrementAndGet();
+        }
+      }
+    }
+
+    @Override
+    public synchronized void streamClosed(Status status) {
+      queuedCalls.remove(this);
+      closed = true;
+      if (inFlight != null) {
+        inFlight.decrementAndGet();
+      }
+    }
+  }
+
+  /**
+   * Builder for {@link AdaptiveServerCallAdmissionController}.
+   */
+  public static final class Builder {
+    private long targetQueueDelayNanos = TimeUnit.MILLISECONDS.toNanos(20);
+    private long decayNanos = TimeUnit.SECONDS.toNanos(1);
+    @Nullable
+    private Supplier<Double> cpuUtilization;
+    private double cpuUtilizationThreshold;
+    private int maxInFlightCallsPerMethod = Integer.MAX_VALUE;
+    private double maxRejectProbability = 0.95;
+    private long pushbackNanos = TimeUnit.SECONDS.toNanos(1);
+    private Ticker ticker = Ticker.systemTicker();
+    private Random random = new Random();
+
+    private Builder() {}
+
+    /**
+     * Sets the queue delay above which calls start to be rejected. Defaults to 20 milliseconds.
+     */
+    public Builder setTargetQueueDelay(long delay, TimeUnit unit) {
+      checkArgument(delay >= 0, "delay must be non-negative");
+      this.targetQueueDelayNanos = unit.toNanos(delay);
+      return this;
+    }
+
+    /**
+     * Sets how quickly the moving average of the queue delay forgets old calls: a call that started
+     * this long ago still has about a third of the weight of the latest one. Defaults to 1 second.
+     */
+    public Builder setDecayTime(long decayTime, TimeUnit unit) {
+      checkArgument(decayTime > 0, "decayTime must be positive");
+      this.decayNanos = unit.toNanos(decayTime);
+      return this;
+    }
+
+    /**
+     * Rejects calls once the CPU utilization returned by {@code cpuUtilization}, between 0 and 1,
+     * exceeds {@code threshold}. The supplier is called for every new call on the transport
+     * thread, so it should be cheap, e.g. by using {@link
+     * com.google.common.base.Suppliers#memoizeWithExpiration}. It may return null if the
+     * utilization is not known. Disabled by default.
+     */
+    public Builder setCpuUtilization(Supplier<Double> cpuUtilization, double threshold) {
+      checkArgument(threshold >= 0 && threshold < 1, "threshold must be in [0, 1)");
+      this.cpuUtilization = checkNotNull(cpuUtilization, "cpuUtilization");
+      this.cpuUtilizationThreshold = threshold;
+      return this;
+    }
+
+    /**
+     * Sets the number of calls that each method may have in flight, including calls that are
+     * still queued. Unlimited by default.
+     */
+    public Builder setMaxInFlightCallsPerMethod(int maxInFlightCalls) {
+      checkArgument(maxInFlightCalls > 0, "maxInFlightCalls must be positive");
+      this.maxInFlightCallsPerMethod = maxInFlightCalls;
+      return this;
+    }
+
+    /**
+     * Sets the highest probability with which a call is rejected because of the queue delay or CPU
+     * utilization. It should be less than 1 so that the queue delay continues to be measured.
+     * Defaults to 0.95.
+     */
+    public Builder setMaxRejectProbability(double probability) {
+      checkArgument(probability > 0 && probability <= 1, "probability must be in (0, 1]");
+      this.maxRejectProbability = probability;
+      return this;
+    }
+
+    /**
+     * Sets how long clients should wait before retrying a rejected call, which is sent in the
+     * {@code grpc-retry-pushback-ms} trailer. Defaults to 1 second.
+     */
+    public Builder setRetryPushback(long pushback, TimeUnit unit) {
+      checkArgument(pushback >= 0, "pushback must be non-negative");
+      this.pushbackNanos = unit.toNanos(pushback);
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setTicker(Ticker ticker) {
+      this.ticker = checkNotNull(ticker, "ticker");
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setRandom(Random random) {
+      this.random = checkNotNull(random, "random");
+      return this;
+    }
+
+    public AdaptiveServerCallAdmissionController build() {
+      return new AdaptiveServerCallAdmissionController(this);
+    }
+  }
+}
@@ -0,0 +1,332 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import io.grpc.ExperimentalApi;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import io.grpc.ServerStreamTracer;
+import io.grpc.Status;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ServerCallExecutorSupplier} that picks an executor per method based on how long calls
+ * to that method have taken so far. Methods whose calls reliably complete quickly run on a "fast"
+ * executor, and all other methods run on a "slow" executor, so expensive methods cannot delay the
+ * cheap ones. By default each is a work-stealing {@link ForkJoinPool} owned by the supplier. Fast
+ * methods may instead run directly on the transport thread with {@link Builder#setFastExecutor},
+ * which avoids a thread hop but lets a single blocking call stall every connection on that
+ * thread.
+ *
+ * <p>Call latency is measured by the tracer returned from {@link #getStreamTracerFactory}, which
+ * must be added to the server along with the supplier:
+ *
+ * <pre>
+ *   AdaptiveServerCallExecutorSupplier supplier =
+ *       AdaptiveServerCallExecutorSupplier.newBuilder().build();
+ *   Server server = ServerBuilder.forPort(port)
+ *       .callExecutor(supplier)
+ *       .addStreamTracerFactory(supplier.getStreamTracerFactory())
+ *       ...
+ *       .build();
+ * </pre>
+ *
+ * <p>Latency is measured from when the request has been received until the call is closed, so the
+ * time the client takes to upload the request is not counted. Only unary and server streaming
+ * methods are measured; client and bidi streaming methods are always considered slow. A method is
+ * only classified as fast after enough calls have been observed, and is reclassified as slow as
+ * soon as its average latency exceeds the threshold. At most 1000 methods are tracked, so that a
+ * fallback registry accepting arbitrary method names can't grow the statistics without bound;
+ * further methods are considered slow.
+ */
+@ThreadSafe
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/8274")
+public final class AdaptiveServerCallExecutorSupplier implements ServerCallExecutorSupplier {
+  @VisibleForTesting
+  static final int MAX_TRACKED_METHODS = 1000;
+
+  private final Executor fastExecutor;
+  private final Executor slowExecutor;
+  @Nullable
+  private final ExecutorService ownedFastExecutor;
+  @Nullable
+  private final ExecutorService ownedSlowExecutor;
+  private final long fastThresholdNanos;
+  private final int minSamples;
+  private final Ticker ticker;
+  private final ConcurrentMap<String, MethodStats> methodStats = new ConcurrentHashMap<>();
+  private final ServerStreamTracer.Factory tracerFactory = new LatencyTracerFactory();
+
+  private AdaptiveServerCallExecutorSupplier(Builder builder) {
+    if (builder.fastExecutor != null) {
+      this.fastExecutor = builder.fastExecutor;
+      this.ownedFastExecutor = null;
+    } else {
+      this.ownedFastExecutor = newForkJoinPool("grpc-adaptive-fast-", builder.parallelism);
+      this.fastExecutor = ownedFastExecutor;
+    }
+    if (builder.slowExecutor != null) {
+      this.slowExecutor = builder.slowExecutor;
+      this.ownedSlowExecutor = null;
+    } else {
+      this.ownedSlowExecutor = newForkJoinPool("grpc-adaptive-", builder.parallelism);
+      this.slowExecutor = ownedSlowExecutor;
+    }
+    this.fastThresholdNanos = builder.fastThresholdNanos;
+    this.minSamples = builder.minSamples;
+    this.ticker = builder.ticker;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  /**
+   * Returns the tracer factory that records the latency of each call. It must be added to the
+   * server with {@link io.grpc.ServerBuilder#addStreamTracerFactory}, otherwise all methods are
+   * considered slow.
+   */
+  public ServerStreamTracer.Factory getStreamTracerFactory() {
+    return tracerFactory;
+  }
+
+  @Override
+  public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+    MethodStats stats = methodStats.get(call.getMethodDescriptor().getFullMethodName());
+    if (stats != null && stats.isFast()) {
+      return fastExecutor;
+    }
+    return slowExecutor;
+  }
+
+  /**
+   * Shuts down the {@link ForkJoinPool}s created by this supplier, if any. Executors passed to the
+   * {@link Builder} are not shut down. Should be called after the server has terminated.
+   */
+  public void shutdown() {
+    if (ownedFastExecutor != null) {
+      ownedFastExecutor.shutdown();
+    }
+    if (ownedSlowExecutor != null) {
+      ownedSlowExecutor.shutdown();
+    }
+  }
+
+  @VisibleForTesting
+  boolean isFast(String fullMethodName) {
+    MethodStats stats = methodStats.get(fullMethodName);
+    return stats != null && stats.isFast();
+  }
+
+  private void recordLatency(String fullMethodName, long nanos) {
+    MethodStats stats = methodStats.get(fullMethodName);
+    if (stats == null) {
+      if (methodStats.size() >= MAX_TRACKED_METHODS) {
+        return;
+      }
+      MethodStats newStats = new MethodStats();
+      stats = methodStats.putIfAbsent(fullMethodName, newStats);
+      if (stats == null) {
+        stats = newStats;
+      }
+    }
+    stats.record(nanos);
+  }
+
+  private static ForkJoinPool newForkJoinPool(final String namePrefix, int parallelism) {
+    return new ForkJoinPool(
+        parallelism,
+        new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+          @Override
+          public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+            ForkJoinWorkerThread thread =
+                ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName(namePrefix + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+          }
+        },
+        null,
+        // Tasks are independent, so FIFO order avoids starving older calls.
+        true);
+  }
+
+  private final class MethodStats {
+    // Weight of the newest sample in the moving average.
+    private static final double ALPHA = 0.2;
+
+    @GuardedBy("this")
+    private double averageNanos;
+    @GuardedBy("this")
+    private int samples;
+    private volatile boolean fast;
+
+    synchronized void record(long nanos) {
+      if (samples == 0) {
+        averageNanos = nanos;
+      } else {
+        averageNanos += ALPHA * (nanos - averageNanos);
+      }
+      if (samples < minSamples) {
+        samples++;
+      }
+      // A single slow call is enough to leave the fast executor, since it may have blocked the
+      // transport thread.
+      fast = samples >= minSamples && averageNanos <= fastThresholdNanos
+          && nanos <= fastThresholdNanos * 4;
+    }
+
+    boolean isFast() {
+      return fast;
+    }
+  }
+
+  private final class LatencyTracerFactory extends ServerStreamTracer.Factory {
+    @Override
+    public ServerStreamTracer newServerStreamTracer(String fullMethodName, Metadata headers) {
+      return new LatencyTracer();
+    }
+  }
+
+  private final class LatencyTracer extends ServerStreamTracer {
+    // Only set for unary and server streaming methods found in the registry, so unknown method
+    // names sent by clients are never recorded.
+    @Nullable
+    private volatile String fullMethodName;
+    private volatile boolean requestReceived;
+    private volatile long startNanos;
+
+    @Override
+    public void serverCallStarted(ServerCallInfo<?, ?> callInfo) {
+      MethodDescriptor<?, ?> method = callInfo.getMethodDescriptor();
+      if (method.getType().clientSendsOneMessage()) {
+        fullMethodName = method.getFullMethodName();
+      }
+    }
+
+    @Override
+    public void inboundMessageRead(
+        int seqNo, long optionalWireSize, long optionalUncompressedSize) {
+      if (seqNo == 0) {
+        startNanos = ticker.read();
+        requestReceived = true;
+      }
+    }
+
+    @Override
+    public void streamClosed(Status status) {
+      String name = fullMethodName;
+      if (name != null && requestReceived) {
+        recordLatency(name, ticker.read() - startNanos);
+      }
+    }
+  }
+
+  /**
+   * Builder for {@link AdaptiveServerCallExecutorSupplier}.
+   */
+  public static final class Builder {
+    @Nullable
+    private Executor fastExecutor;
+    @Nullable
+    private Executor slowExecutor;
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+    private long fastThresholdNanos = TimeUnit.MICROSECONDS.toNanos(200);
+    private int minSamples = 100;
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Builder() {}
+
+    /**
+     * Sets the executor for methods classified as fast. Defaults to a {@link ForkJoinPool} owned
+     * by the supplier, separate from the one for slow methods.
+     *
+     * <p>Passing {@link com.google.common.util.concurrent.MoreExecutors#directExecutor} runs fast
+     * methods on the transport thread. Any call that blocks or runs long then delays every
+     * connection served by that thread, until the method is reclassified as slow.
+     */
+    public Builder setFastExecutor(Executor executor) {
+      this.fastExecutor = checkNotNull(executor, "executor");
+      return this;
+    }
+
+    /**
+     * Sets the executor for methods classified as slow, and for methods that have not been
+     * classified yet. Defaults to a {@link ForkJoinPool} owned by the supplier.
+     */
+    public Builder setSlowExecutor(Executor executor) {
+      this.slowExecutor = checkNotNull(executor, "executor");
+      return this;
+    }
+
+    /**
+     * Sets the parallelism of each default {@link ForkJoinPool}. Defaults to the number of
+     * available processors. Only applies to the executors not set on this builder.
+     */
+    public Builder setParallelism(int parallelism) {
+      checkArgument(parallelism > 0, "parallelism must be positive");
+      this.parallelism = parallelism;
+      return this;
+    }
+
+    /**
+     * Sets the average call latency at or below which a method is considered fast. Defaults to
+     * 200 microseconds.
+     */
+    public Builder setFastThreshold(long threshold, TimeUnit unit) {
+      checkArgument(threshold >= 0, "threshold must be non-negative");
+      this.fastThresholdNanos = unit.toNanos(threshold);
+      return this;
+    }
+
+    /**
+     * Sets the number of calls that must be observed before a method may be considered fast.
+     * Defaults to 100.
+     */
+    public Builder setMinSamples(int minSamples) {
+      checkArgument(minSamples > 0, "minSamples must be positive");
+      this.minSamples = minSamples;
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setTicker(Ticker ticker) {
+      this.ticker = checkNotNull(ticker, "ticker");
+      return this;
+    }
+
+    public AdaptiveServerCallExecutorSupplier build() {
+      return new AdaptiveServerCallExecutorSupplier(this);
+    }
+  }
+}
@@ -0,0 +1,688 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Ticker;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientInterceptor;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ClientStreamTracer.StreamInfo;
+import io.grpc.Context;
+import io.grpc.ExperimentalApi;
+import io.grpc.ForwardingClientCall;
+import io.grpc.ForwardingClientCallListener.SimpleForwardingClientCallListener;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.DelayedClientCall;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ClientInterceptor} that limits the number of concurrent calls, adapting the limit to
+ * the latency and failures observed by the calls. Calls over the limit fail fast with {@link
+ * Status.Code#RESOURCE_EXHAUSTED}, or wait in a bounded queue if one is configured, so that a
+ * degraded backend does not cause calls to pile up on the client until their deadlines expire.
+ *
+ * <pre>
+ *   Channel channel = ClientInterceptors.intercept(managedChannel,
+ *       ConcurrencyLimitingClientInterceptor.newBuilder()
+ *           .setAlgorithm(ConcurrencyLimitingClientInterceptor.Algorithm.GRADIENT)
+ *           .build());
+ * </pre>
+ *
+ * <p>The round-trip time of a unary call is measured by a {@link ClientStreamTracer} from the
+ * creation of its last stream until the stream is closed, so time spent waiting for a connection
+ * or in the queue does not count. Streaming calls hold a slot in the limit but are not measured,
+ * since how long they stay open is up to the application. Calls closed with {@code
+ * DEADLINE_EXCEEDED}, {@code UNAVAILABLE} or {@code RESOURCE_EXHAUSTED} are counted as drops.
+ * Cancelled calls are not sampled.
+ *
+ * <p>By default each method has its own limit. With {@link Builder#setPerMethod} set to {@code
+ * false} all the calls through the interceptor share one limit, which usually means one limit for
+ * the target of the channel.
+ */
+@ThreadSafe
+@ExperimentalApi("Client concurrency limiting; tracking issue to be filed")
+public final class ConcurrencyLimitingClientInterceptor implements ClientInterceptor {
+  /** The algorithm that adjusts the concurrency limit. */
+  public enum Algorithm {
+    /**
+     * Increases the limit by one per round trip while the limit is in use, and multiplies it by
+     * 0.9 on each drop. Only reacts to drops, so it suits backends that reject load promptly.
+     */
+    AIMD,
+    /**
+     * Estimates the number of calls queued at the backend from how far the round-trip time is
+     * above the lowest one seen, and keeps it between a few calls, like TCP Vegas.
+     */
+    VEGAS,
+    /**
+     * Shrinks the limit as the round-trip time rises above its long-term average, and grows it
+     * slowly while it does not, which reacts to latency before the backend starts failing.
+     */
+    GRADIENT,
+  }
+
+  private static final String SHARED_KEY = "";
+
+  private final Algorithm algorithm;
+  private final int initialLimit;
+  private final int minLimit;
+  private final int maxLimit;
+  private final boolean perMethod;
+  private final int maxQueueSize;
+  @Nullable
+  private final ScheduledExecutorService scheduler;
+  private final Ticker ticker;
+  private final ConcurrentMap<String, Limiter> limiters = new ConcurrentHashMap<>();
+
+  private ConcurrencyLimitingClientInterceptor(Builder builder) {
+    this.algorithm = builder.algorithm;
+    this.initialLimit = builder.initialLimit;
+    this.minLimit = builder.minLimit;
+    this.maxLimit = builder.maxLimit;
+    this.perMethod = builder.perMethod;
+    this.maxQueueSize = builder.maxQueueSize;
+    this.scheduler = builder.scheduler;
+    this.ticker = builder.ticker;
+  }
+
+  public static Builder newBuilder() {
+    return new Builder();
+  }
+
+  @Override
+  public <ReqT, RespT> ClientCall<ReqT, RespT> interceptCall(
+      MethodDescriptor<ReqT, RespT> method, CallOptions callOptions, Channel next) {
+    return new LimitedCall<>(getLimiter(method.getFullMethodName()), method, callOptions, next);
+  }
+
+  /** Returns the current limit for the method, or for all methods if the limit is shared. */
+  @VisibleForTesting
+  int getLimit(String fullMethodName) {
+    return getLimiter(fullMethodName).getLimit();
+  }
+
+  private Limiter getLimiter(String fullMethodName) {
+    String key = perMethod ? fullMethodName : SHARED_KEY;
+    Limiter limiter = limiters.get(key);
+    if (limiter == null) {
+      Limiter newLimiter = new Limiter();
+      limiter = limiters.putIfAbsent(key, newLimiter);
+      if (limiter == null) {
+        limiter = newLimiter;
+      }
+    }
+    return limiter;
+  }
+
+  private static boolean isDrop(Status status) {
+    switch (status.getCode()) {
+      case DEADLINE_EXCEEDED:
+      case UNAVAILABLE:
+      case RESOURCE_EXHAUSTED:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /** The limit and in-flight calls shared by the calls of one method, or of all methods. */
+  private final class Limiter {
+    @GuardedBy("this")
+    private final ArrayDeque<QueuedCall<?, ?>> queue = new ArrayDeque<>();
+    @GuardedBy("this")
+    private int inFlight;
+    @GuardedBy("this")
+    private final LimitState state = new LimitState(algorithm, initialLimit, minLimit, maxLimit);
+
+    synchronized int getLimit() {
+      return state.getLimit();
+    }
+
+    /** Returns a permit for a new call, or {@code null} if the limit has been reached. */
+    @Nullable
+    synchronized Permit tryAcquire() {
+      // Queued calls go first
+      if (!queue.isEmpty() || inFlight >= state.getLimit()) {
+        return null;
+      }
+      inFlight++;
+      return new Permit(this);
+    }
+
+    /**
+     * Admits the call if the limit allows it to start right away, otherwise adds it to the queue.
+     * Returns {@code false} if the queue is full.
+     */
+    boolean tryAcquireOrEnqueue(QueuedCall<?, ?> call) {
+      synchronized (this) {
+        if (queue.isEmpty() && inFlight < state.getLimit()) {
+          inFlight++;
+          call.permit = new Permit(this);
+        } else if (queue.size() < maxQueueSize) {
+          queue.add(call);
+          return true;
+        } else {
+          return false;
+        }
+      }
+      call.admit();
+      return true;
+    }
+
+    /**
+     * Removes a cancelled call from the queue. Returns the permit of the call if it had already
+     * been admitted.
+     */
+    @Nullable
+    synchronized Permit cancel(QueuedCall<?, ?> call) {
+      if (queue.remove(call)) {
+        return null;
+      }
+      return call.permit;
+    }
+
+    void release(long rttNanos, @Nullable Status status) {
+      List<QueuedCall<?, ?>> admitted = null;
+      synchronized (this) {
+        if (status != null) {
+          state.update(rttNanos, inFlight, isDrop(status));
+        }
+        inFlight--;
+        while (!queue.isEmpty() && inFlight < state.getLimit()) {
+          if (admitted == null) {
+            admitted = new ArrayList<>(1);
+          }
+          QueuedCall<?, ?> call = queue.poll();
+          call.permit = new Permit(this);
+          admitted.add(call);
+          inFlight++;
+        }
+      }
+      if (admitted != null) {
+        for (QueuedCall<?, ?> call : admitted) {
+          call.admit();
+        }
+      }
+    }
+  }
+
+  /**
+   * A slot in the limit held by a started call. Also measures the round-trip time of the streams
+   * of a unary call.
+   */
+  private final class Permit extends ClientStreamTracer.Factory {
+    private final Limiter limiter;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile long rttNanos = -1;
+
+    Permit(Limiter limiter) {
+      this.limiter = limiter;
+    }
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(StreamInfo info, Metadata headers) {
+      final long startNanos = ticker.read();
+      return new ClientStreamTracer() {
+        @Override
+        public void streamClosed(Status status) {
+          rttNanos = ticker.read() - startNanos;
+        }
+      };
+    }
+
+    /**
+     * Returns the slot to the limiter. The status of the call is used to adjust the limit, unless
+     * it is {@code null} because the call was cancelled.
+     */
+    void release(@Nullable Status status) {
+      if (!released.compareAndSet(false, true)) {
+        return;
+      }
+      long rtt = rttNanos;
+      if (status != null && rtt < 0 && !isDrop(status)) {
+        // The call was not measured or never got a stream, so there is no round trip to learn from
+        status = null;
+      }
+      limiter.release(rtt, status);
+    }
+  }
+
+  private static <ReqT, RespT> ClientCall<ReqT, RespT> newPermittedCall(
+      final Permit permit, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+      Channel next) {
+    // The round trip of a streaming call is as long as the application keeps it open, so only
+    // unary calls are measured. Other calls still hold a slot, and can still report a drop.
+    final ClientCall<ReqT, RespT> call = next.newCall(
+        method,
+        method.getType() == MethodDescriptor.MethodType.UNARY
+            ? callOptions.withStreamTracerFactory(permit) : callOptions);
+    return new ForwardingClientCall<ReqT, RespT>() {
+      @Override
+      protected ClientCall<ReqT, RespT> delegate() {
+        return call;
+      }
+
+      @Override
+      public void start(Listener<RespT> responseListener, Metadata headers) {
+        super.start(
+            new SimpleForwardingClientCallListener<RespT>(responseListener) {
+              @Override
+              public void onClose(Status status, Metadata trailers) {
+                permit.release(status.getCode() == Status.Code.CANCELLED ? null : status);
+                super.onClose(status, trailers);
+              }
+            },
+            headers);
+      }
+    };
+  }
+
+  /**
+   * A call that is admitted, queued or rejected when it is started. The limit is only taken once
+   * a call starts, so calls that are created but never started do not hold on to it.
+   */
+  private final class LimitedCall<ReqT, RespT> extends ForwardingClientCall<ReqT, RespT> {
+    private final Limiter limiter;
+    private final MethodDescriptor<ReqT, RespT> method;
+    private final CallOptions callOptions;
+    private final Channel next;
+    // cancel() may be called from any thread, concurrently with start()
+    private final Object lock = new Object();
+    // Only written under lock, but read without it once started
+    @Nullable
+    private volatile ClientCall<ReqT, RespT> delegate;
+    @GuardedBy("lock")
+    private boolean cancelled;
+
+    LimitedCall(
+        Limiter limiter, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+        Channel next) {
+      this.limiter = limiter;
+      this.method = method;
+      this.callOptions = callOptions;
+      this.next = next;
+    }
+
+    @Override
+    protected ClientCall<ReqT, RespT> delegate() {
+      checkState(delegate != null, "Not started");
+      return delegate;
+    }
+
+    @Override
+    public void start(Listener<RespT> responseListener, Metadata headers) {
+      ClientCall<ReqT, RespT> call;
+      synchronized (lock) {
+        checkState(delegate == null, "Already started");
+        call = cancelled
+            ? new FailingCall<ReqT, RespT>(
+                Status.CANCELLED.withDescription("Cancelled before start"), callOptions)
+            : newLimitedCall();
+        delegate = call;
+      }
+      call.start(responseListener, headers);
+    }
+
+    private ClientCall<ReqT, RespT> newLimitedCall() {
+      Permit permit = limiter.tryAcquire();
+      if (permit != null) {
+        return newPermittedCall(permit, method, callOptions, next);
+      }
+      if (maxQueueSize > 0) {
+        QueuedCall<ReqT, RespT> queuedCall = new QueuedCall<>(limiter, method, callOptions, next);
+        if (limiter.tryAcquireOrEnqueue(queuedCall)) {
+          return queuedCall;
+        }
+      }
+      return new FailingCall<>(
+          Status.RESOURCE_EXHAUSTED.withDescription(
+              "Concurrency limit of " + limiter.getLimit() + " reached for "
+                  + method.getFullMethodName()),
+          callOptions);
+    }
+
+    @Override
+    public void cancel(@Nullable String message, @Nullable Throwable cause) {
+      ClientCall<ReqT, RespT> call;
+      synchronized (lock) {
+        call = delegate;
+        if (call == null) {
+          cancelled = true;
+          return;
+        }
+      }
+      call.cancel(message, cause);
+    }
+
+    @Override
+    public boolean isReady() {
+      ClientCall<ReqT, RespT> call = delegate;
+      return call != null && call.isReady();
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      ClientCall<ReqT, RespT> call = delegate;
+      return call == null ? Attributes.EMPTY : call.getAttributes();
+    }
+  }
+
+  /** A call that waits in the queue of a limiter until a slot frees up. */
+  private final class QueuedCall<ReqT, RespT> extends DelayedClientCall<ReqT, RespT> {
+    private final Limiter limiter;
+    private final MethodDescriptor<ReqT, RespT> method;
+    private final CallOptions callOptions;
+    private final Channel next;
+    private final Context context = Context.current();
+    // Set by the limiter when the call is admitted
+    @GuardedBy("limiter")
+    @Nullable
+    Permit permit;
+
+    QueuedCall(
+        Limiter limiter, MethodDescriptor<ReqT, RespT> method, CallOptions callOptions,
+        Channel next) {
+      super(getExecutor(callOptions), scheduler, callOptions.getDeadline());
+      this.limiter = limiter;
+      this.method = method;
+      this.callOptions = callOptions;
+      this.next = next;
+    }
+
+    void admit() {
+      Permit permit;
+      synchronized (limiter) {
+        permit = checkNotNull(this.permit, "permit");
+      }
+      // The call is created in the context of the caller, so that it is cancelled along with it
+      Context previous = context.attach();
+      try {
+        setCall(newPermittedCall(permit, method, callOptions, next));
+      } finally {
+        context.detach(previous);
+      }
+    }
+
+    @Override
+    protected void callCancelled() {
+      // If the call was admitted, the cancellation may have stopped the permitted call from ever
+      // starting. Either way the call is done, so there is nothing to learn from it.
+      Permit admittedPermit = limiter.cancel(this);
+      if (admittedPermit != null) {
+        admittedPermit.release(null);
+      }
+    }
+  }
+
+  private static Executor getExecutor(CallOptions callOptions) {
+    Executor executor = callOptions.getExecutor();
+    return executor != null ? executor : MoreExecutors.directExecutor();
+  }
+
+  /** A call that fails when started. */
+  private static final class FailingCall<ReqT, RespT> extends ClientCall<ReqT, RespT> {
+    private final Status error;
+    private final Executor callExecutor;
+    private final Context context;
+
+    FailingCall(Status error, CallOptions callOptions) {
+      this.error = error;
+      this.callExecutor = getExecutor(callOptions);
+      this.context = Context.current();
+    }
+
+    @Override
+    public void start(final Listener<RespT> listener, Metadata headers) {
+      callExecutor.execute(
+          new Runnable() {
+            @Override
+            public void run() {
+              Context previous = context.attach();
+              try {
+                listener.onClose(error, new Metadata());
+              } finally {
+                context.detach(previous);
+              }
+            }
+          });
+    }
+
+    @Override
+    public void request(int numMessages) {}
+
+    @Override
+    public void cancel(@Nullable String message, @Nullable Throwable cause) {}
+
+    @Override
+    public void halfClose() {}
+
+    @Override
+    public void sendMessage(ReqT message) {}
+  }
+
+  /** The state of a concurrency limit, updated with each completed call. */
+  @VisibleForTesting
+  static final class LimitState {
+    private static final double AIMD_BACKOFF_RATIO = 0.9;
+    /** Calls that may sit in the backend's queue before the VEGAS limit stops growing. */
+    private static final double VEGAS_ALPHA = 3;
+    /** Calls that may sit in the backend's queue before the VEGAS limit shrinks. */
+    private static final double VEGAS_BETA = 6;
+    /** Samples after which the lowest round-trip time is measured again. */
+    private static final int VEGAS_PROBE_INTERVAL = 1000;
+    /** How much the short-term round-trip time may exceed the long-term one in GRADIENT. */
+    private static final double GRADIENT_TOLERANCE = 1.5;
+    /** Weight of each sample in the long-term round-trip time of GRADIENT. */
+    private static final double GRADIENT_LONG_ALPHA = 2.0 / 601;
+    private static final double GRADIENT_SMOOTHING = 0.2;
+
+    private final Algorithm algorithm;
+    private final int minLimit;
+    private final int maxLimit;
+    private double limit;
+    private long samples;
+    private double lowestRttNanos;
+    private double longRttNanos;
+
+    LimitState(Algorithm algorithm, int initialLimit, int minLimit, int maxLimit) {
+      this.algorithm = algorithm;
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      this.limit = initialLimit;
+    }
+
+    int getLimit() {
+      return (int) limit;
+    }
+
+    /**
+     * Adjusts the limit for a call that completed after {@code rttNanos}, while {@code inFlight}
+     * calls including itself were in flight.
+     */
+    void update(long rttNanos, int inFlight, boolean dropped) {
+      samples++;
+      // Growing a limit that is not in use would let it run away from what the backend can take
+      boolean appLimited = inFlight * 2 < limit;
+      double newLimit = limit;
+      switch (algorithm) {
+        case AIMD:
+          if (dropped) {
+            newLimit = limit * AIMD_BACKOFF_RATIO;
+          } else if (!appLimited) {
+            newLimit = limit + 1 / limit;
+          }
+          break;
+        case VEGAS:
+          newLimit = updateVegas(rttNanos, dropped, appLimited);
+          break;
+        case GRADIENT:
+          newLimit = updateGradient(rttNanos, dropped, appLimited);
+          break;
+        default:
+          throw new AssertionError(algorithm);
+      }
+      limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    private double updateVegas(long rttNanos, boolean dropped, boolean appLimited) {
+      double step = Math.max(1, Math.log10(limit));
+      if (dropped) {
+        return limit - step;
+      }
+      if (rttNanos <= 0) {
+        return limit;
+      }
+      if (lowestRttNanos == 0 || rttNanos < lowestRttNanos
+          || samples % VEGAS_PROBE_INTERVAL == 0) {
+        lowestRttNanos = rttNanos;
+      }
+      if (appLimited) {
+        return limit;
+      }
+      double queueSize = limit * (1 - lowestRttNanos / rttNanos);
+      if (queueSize < VEGAS_ALPHA * step) {
+        return limit + step;
+      } else if (queueSize > VEGAS_BETA * step) {
+        return limit - step;
+      }
+      return limit;
+    }
+
+    private double updateGradient(long rttNanos, boolean dropped, boolean appLimited) {
+      double gradient;
+      if (dropped) {
+        gradient = 0.5;
+      } else {
+        if (rttNanos <= 0) {
+          return limit;
+        }
+        if (longRttNanos == 0) {
+          longRttNanos = rttNanos;
+        } else {
+          longRttNanos += GRADIENT_LONG_ALPHA * (rttNanos - longRttNanos);
+        }
+        if (longRttNanos > 2 * rttNanos) {
+          // Latency has dropped well below the long-term average, so let the average catch up
+          // rather than hold the limit down while it slowly decays
+          longRttNanos *= 0.95;
+        }
+        if (appLimited) {
+          return limit;
+        }
+        gradient = Math.max(0.5, Math.min(1, GRADIENT_TOLERANCE * longRttNanos / rttNanos));
+      }
+      // The square root leaves room to grow, and to notice when latency starts rising
+      double newLimit = limit * gradient + Math.sqrt(limit);
+      return limit * (1 - GRADIENT_SMOOTHING) + newLimit * GRADIENT_SMOOTHING;
+    }
+  }
+
+  /**
+   * Builder for {@link ConcurrencyLimitingClientInterceptor}.
+   */
+  public static final class Builder {
+    private Algorithm algorithm = Algorithm.GRADIENT;
+    private int initialLimit = 20;
+    private int minLimit = 1;
+    private int maxLimit = 1000;
+    private boolean perMethod = true;
+    private int maxQueueSize;
+    @Nullable
+    private ScheduledExecutorService scheduler;
+    private Ticker ticker = Ticker.systemTicker();
+
+    private Builder() {}
+
+    /** Sets the algorithm that adjusts the limit. Defaults to {@link Algorithm#GRADIENT}. */
+    public Builder setAlgorithm(Algorithm algorithm) {
+      this.algorithm = checkNotNull(algorithm, "algorithm");
+      return this;
+    }
+
+    /** Sets the limit before any call has completed. Defaults to 20. */
+    public Builder setInitialLimit(int initialLimit) {
+      checkArgument(initialLimit > 0, "initialLimit must be positive");
+      this.initialLimit = initialLimit;
+      return this;
+    }
+
+    /** Sets the lowest and highest values of the limit. Defaults to 1 and 1000. */
+    public Builder setLimitRange(int minLimit, int maxLimit) {
+      checkArgument(minLimit > 0, "minLimit must be positive");
+      checkArgument(maxLimit >= minLimit, "maxLimit must not be less than minLimit");
+      this.minLimit = minLimit;
+      this.maxLimit = maxLimit;
+      return this;
+    }
+
+    /**
+     * Sets whether each method has its own limit, or all calls through the interceptor share
+     * one. Defaults to {@code true}.
+     */
+    public Builder setPerMethod(boolean perMethod) {
+      this.perMethod = perMethod;
+      return this;
+    }
+
+    /**
+     * Lets up to {@code maxQueueSize} calls over the limit wait for a slot instead of failing
+     * right away. Queued calls are started in order as other calls complete, and fail with {@code
+     * DEADLINE_EXCEEDED} if their deadline expires first; {@code scheduler} is used to time them
+     * out. Calls over the limit are not queued by default.
+     */
+    public Builder setMaxQueueSize(int maxQueueSize, ScheduledExecutorService scheduler) {
+      checkArgument(maxQueueSize >= 0, "maxQueueSize must not be negative");
+      this.maxQueueSize = maxQueueSize;
+      this.scheduler = checkNotNull(scheduler, "scheduler");
+      return this;
+    }
+
+    @VisibleForTesting
+    Builder setTicker(Ticker ticker) {
+      this.ticker = checkNotNull(ticker, "ticker");
+      return this;
+    }
+
+    public ConcurrencyLimitingClientInterceptor build() {
+      checkArgument(
+          initialLimit >= minLimit && initialLimit <= maxLimit,
+          "initialLimit must be between minLimit and maxLimit");
+      return new ConcurrencyLimitingClientInterceptor(this);
+    }
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ClientStreamTracer.StreamInfo;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link io.grpc.LoadBalancer} that sends each RPC to the least loaded of {@code choiceCount}
+ * randomly chosen READY subchannels, where load is the number of outstanding RPCs. With two
+ * choices this avoids overloaded backends nearly as well as comparing all of them, without the
+ * herding of always picking the global minimum.
+ */
+final class LeastRequestLoadBalancer extends RoundRobinLoadBalancer {
+  @VisibleForTesting
+  static final Attributes.Key<AtomicInteger> IN_FLIGHT = Attributes.Key.create("in-flight");
+
+  // Only set by tests. Otherwise pickers use ThreadLocalRandom, since a shared Random would be
+  // contended by every thread that starts RPCs.
+  @Nullable
+  private final Random random;
+  private int choiceCount = LeastRequestConfig.DEFAULT_CHOICE_COUNT;
+
+  LeastRequestLoadBalancer(Helper helper) {
+    super(helper);
+    this.random = null;
+  }
+
+  @VisibleForTesting
+  LeastRequestLoadBalancer(Helper helper, Random random) {
+    super(helper);
+    this.random = checkNotNull(random, "random");
+  }
+
+  @Override
+  public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+    Object config = resolvedAddresses.getLoadBalancingPolicyConfig();
+    if (config instanceof LeastRequestConfig) {
+      choiceCount = ((LeastRequestConfig) config).choiceCount;
+    }
+    super.handleResolvedAddresses(resolvedAddresses);
+  }
+
+  @Override
+  void addSubchannelAttributes(Attributes.Builder subchannelAttrs) {
+    subchannelAttrs.set(IN_FLIGHT, new AtomicInteger());
+  }
+
+  @Override
+  RoundRobinPicker createReadyPicker(List<Subchannel> activeList, int startIndex) {
+    return new LeastRequestPicker(activeList, choiceCount, random);
+  }
+
+  private static AtomicInteger getInFlight(Subchannel subchannel) {
+    return checkNotNull(subchannel.getAttributes().get(IN_FLIGHT), "IN_FLIGHT");
+  }
+
+  @VisibleForTesting
+  static final class LeastRequestPicker extends RoundRobinPicker {
+    private final List<Subchannel> list; // non-empty
+    private final int choiceCount;
+    @Nullable
+    private final Random random;
+
+    LeastRequestPicker(List<Subchannel> list, int choiceCount, @Nullable Random random) {
+      checkArgument(!list.isEmpty(), "empty list");
+      this.list = list;
+      this.choiceCount = choiceCount;
+      this.random = random;
+    }
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      Random random = this.random != null ? this.random : ThreadLocalRandom.current();
+      Subchannel picked = list.get(random.nextInt(list.size()));
+      int pickedInFlight = getInFlight(picked).get();
+      for (int i = 1; i < choiceCount; i++) {
+        Subchannel candidate = list.get(random.nextInt(list.size()));
+        int inFlight = getInFlight(candidate).get();
+        if (inFlight < pickedInFlight) {
+          picked = candidate;
+          pickedInFlight = inFlight;
+        }
+      }
+      return PickResult.withSubchannel(picked, new InFlightTracerFactory(getInFlight(picked)));
+    }
+
+    @VisibleForTesting
+    List<Subchannel> getList() {
+      return list;
+    }
+
+    @Override
+    boolean isEquivalentTo(RoundRobinPicker picker) {
+      if (!(picker instanceof LeastRequestPicker)) {
+        return false;
+      }
+      LeastRequestPicker other = (LeastRequestPicker) picker;
+      // the lists cannot contain duplicate subchannels
+      return other == this
+          || (choiceCount == other.choiceCount
+              && list.size() == other.list.size()
+              && new HashSet<>(list).containsAll(other.list));
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(LeastRequestPicker.class)
+          .add("list", list)
+          .add("choiceCount", choiceCount)
+          .toString();
+    }
+  }
+
+  /** Counts a stream as outstanding from its creation until it is closed. */
+  private static final class InFlightTracerFactory extends ClientStreamTracer.Factory {
+    private final AtomicInteger inFlight;
+
+    InFlightTracerFactory(AtomicInteger inFlight) {
+      this.inFlight = inFlight;
+    }
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(StreamInfo info, Metadata headers) {
+      inFlight.incrementAndGet();
+      return new ClientStreamTracer() {
+        @Override
+        public void streamClosed(Status status) {
+          inFlight.decrementAndGet();
+        }
+      };
+    }
+  }
+
+  static final class LeastRequestConfig {
+    static final int DEFAULT_CHOICE_COUNT = 2;
+    static final int MAX_CHOICE_COUNT = 10;
+
+    final int choiceCount;
+
+    LeastRequestConfig(int choiceCount) {
+      checkArgument(choiceCount >= 2, "choiceCount must be at least 2");
+      this.choiceCount = Math.min(choiceCount, MAX_CHOICE_COUNT);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof LeastRequestConfig && ((LeastRequestConfig) o).choiceCount == choiceCount;
+    }
+
+    @Override
+    public int hashCode() {
+      return choiceCount;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this).add("choiceCount", choiceCount).toString();
+    }
+  }
+}
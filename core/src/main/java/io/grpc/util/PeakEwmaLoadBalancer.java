@@ -0,0 +1,331 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Objects;
+import com.google.common.base.Ticker;
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ClientStreamTracer.StreamInfo;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link io.grpc.LoadBalancer} that sends each RPC to the cheaper of {@code choiceCount} randomly
+ * chosen READY subchannels, where the cost of a subchannel is its peak-sensitive moving average
+ * latency multiplied by its outstanding RPCs plus one.
+ *
+ * <p>The average jumps up to any latency above it and decays towards lower latencies over {@code
+ * decayTime}, so a backend that becomes slow is avoided right away, and recovers its share of the
+ * traffic gradually. An RPC that the backend could not be reached for, or that it refused, counts
+ * as slow, so that a backend that fails fast does not look cheap.
+ */
+final class PeakEwmaLoadBalancer extends RoundRobinLoadBalancer {
+  @VisibleForTesting
+  static final Attributes.Key<PeakEwma> PEAK_EWMA = Attributes.Key.create("peak-ewma");
+
+  // Only set by tests. Otherwise pickers use ThreadLocalRandom, since a shared Random would be
+  // contended by every thread that starts RPCs.
+  @Nullable
+  private final Random random;
+  private final Ticker ticker;
+  private PeakEwmaConfig config = PeakEwmaConfig.DEFAULT;
+
+  PeakEwmaLoadBalancer(Helper helper) {
+    super(helper);
+    this.random = null;
+    this.ticker = Ticker.systemTicker();
+  }
+
+  @VisibleForTesting
+  PeakEwmaLoadBalancer(Helper helper, Random random, Ticker ticker) {
+    super(helper);
+    this.random = checkNotNull(random, "random");
+    this.ticker = checkNotNull(ticker, "ticker");
+  }
+
+  @Override
+  public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+    Object config = resolvedAddresses.getLoadBalancingPolicyConfig();
+    if (config instanceof PeakEwmaConfig) {
+      this.config = (PeakEwmaConfig) config;
+    }
+    super.handleResolvedAddresses(resolvedAddresses);
+  }
+
+  @Override
+  void addSubchannelAttributes(Attributes.Builder subchannelAttrs) {
+    subchannelAttrs.set(PEAK_EWMA, new PeakEwma(ticker.read()));
+  }
+
+  @Override
+  RoundRobinPicker createReadyPicker(List<Subchannel> activeList, int startIndex) {
+    return new PeakEwmaPicker(activeList, config, random, ticker);
+  }
+
+  private static PeakEwma getPeakEwma(Subchannel subchannel) {
+    return checkNotNull(subchannel.getAttributes().get(PEAK_EWMA), "PEAK_EWMA");
+  }
+
+  /**
+   * The latency estimate and outstanding RPCs of a subchannel. The estimate is an immutable
+   * snapshot that is replaced with compare-and-set, so pickers never block.
+   */
+  @VisibleForTesting
+  static final class PeakEwma {
+    /**
+     * Cost of a subchannel with outstanding RPCs but no latency observed yet, so that new backends
+     * are probed with one RPC at a time until the first one completes.
+     */
+    private static final double PENALTY_NANOS = 1e15;
+    /** The least latency recorded for a failed RPC. */
+    @VisibleForTesting
+    static final long FAILURE_PENALTY_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    final AtomicInteger outstanding = new AtomicInteger();
+    private final AtomicReference<Estimate> estimate;
+
+    PeakEwma(long nowNanos) {
+      estimate = new AtomicReference<>(new Estimate(0, nowNanos));
+    }
+
+    void observe(long latencyNanos, long nowNanos, long decayNanos) {
+      while (true) {
+        Estimate old = estimate.get();
+        double cost;
+        if (latencyNanos > old.costNanos) {
+          cost = latencyNanos;
+        } else {
+          double weight = decayWeight(old, nowNanos, decayNanos);
+          cost = old.costNanos * weight + latencyNanos * (1 - weight);
+        }
+        if (estimate.compareAndSet(old, new Estimate(cost, nowNanos))) {
+          return;
+        }
+      }
+    }
+
+    /**
+     * Records a failed RPC as taking at least {@link #FAILURE_PENALTY_NANOS}, and at least twice
+     * the current estimate, so that repeated failures quickly make the subchannel expensive.
+     */
+    void observeFailure(long latencyNanos, long nowNanos, long decayNanos) {
+      Estimate current = estimate.get();
+      double penalty = Math.min(
+          2 * current.costNanos * decayWeight(current, nowNanos, decayNanos), PENALTY_NANOS);
+      observe((long) Math.max(Math.max(latencyNanos, FAILURE_PENALTY_NANOS), penalty),
+          nowNanos, decayNanos);
+    }
+
+    double cost(long nowNanos, long decayNanos) {
+      Estimate current = estimate.get();
+      int outstanding = this.outstanding.get();
+      if (current.costNanos == 0 && outstanding != 0) {
+        return PENALTY_NANOS + outstanding;
+      }
+      return current.costNanos * decayWeight(current, nowNanos, decayNanos) * (outstanding + 1);
+    }
+
+    private static double decayWeight(Estimate estimate, long nowNanos, long decayNanos) {
+      long elapsed = Math.max(nowNanos - estimate.stampNanos, 0);
+      return Math.exp(-(double) elapsed / decayNanos);
+    }
+
+    private static final class Estimate {
+      final double costNanos;
+      final long stampNanos;
+
+      Estimate(double costNanos, long stampNanos) {
+        this.costNanos = costNanos;
+        this.stampNanos = stampNanos;
+      }
+    }
+  }
+
+  @VisibleForTesting
+  static final class PeakEwmaPicker extends RoundRobinPicker {
+    private final List<Subchannel> list; // non-empty
+    private final PeakEwmaConfig config;
+    @Nullable
+    private final Random random;
+    private final Ticker ticker;
+
+    PeakEwmaPicker(
+        List<Subchannel> list, PeakEwmaConfig config, @Nullable Random random, Ticker ticker) {
+      checkArgument(!list.isEmpty(), "empty list");
+      this.list = list;
+      this.config = config;
+      this.random = random;
+      this.ticker = ticker;
+    }
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      Random random = this.random != null ? this.random : ThreadLocalRandom.current();
+      long now = ticker.read();
+      Subchannel pickedSubchannel = null;
+      PeakEwma picked = null;
+      double pickedCost = 0;
+      for (int i = 0; i < config.choiceCount; i++) {
+        Subchannel candidate = list.get(random.nextInt(list.size()));
+        PeakEwma stats = getPeakEwma(candidate);
+        double cost = stats.cost(now, config.decayNanos);
+        if (pickedSubchannel == null || cost < pickedCost) {
+          pickedSubchannel = candidate;
+          picked = stats;
+          pickedCost = cost;
+        }
+      }
+      return PickResult.withSubchannel(
+          pickedSubchannel, new PeakEwmaTracerFactory(picked, ticker, config.decayNanos));
+    }
+
+    @VisibleForTesting
+    List<Subchannel> getList() {
+      return list;
+    }
+
+    @Override
+    boolean isEquivalentTo(RoundRobinPicker picker) {
+      if (!(picker instanceof PeakEwmaPicker)) {
+        return false;
+      }
+      PeakEwmaPicker other = (PeakEwmaPicker) picker;
+      // the lists cannot contain duplicate subchannels
+      return other == this
+          || (config.equals(other.config)
+              && list.size() == other.list.size()
+              && new HashSet<>(list).containsAll(other.list));
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(PeakEwmaPicker.class)
+          .add("list", list)
+          .add("config", config)
+          .toString();
+    }
+  }
+
+  /**
+   * Counts a stream as outstanding from its creation until it is closed. The time until the
+   * server's response headers is recorded as its latency, since for a streaming call the time until
+   * it is closed is up to the application. A stream that fails without reaching the server, or is
+   * refused by it, is recorded as a failure. Other failures, such as cancellation, deadlines, and
+   * errors returned by the server's application, say nothing about the backend and are ignored.
+   */
+  private static final class PeakEwmaTracerFactory extends ClientStreamTracer.Factory {
+    private final PeakEwma peakEwma;
+    private final Ticker ticker;
+    private final long decayNanos;
+
+    PeakEwmaTracerFactory(PeakEwma peakEwma, Ticker ticker, long decayNanos) {
+      this.peakEwma = peakEwma;
+      this.ticker = ticker;
+      this.decayNanos = decayNanos;
+    }
+
+    @Override
+    public ClientStreamTracer newClientStreamTracer(StreamInfo info, Metadata headers) {
+      peakEwma.outstanding.incrementAndGet();
+      final long startNanos = ticker.read();
+      return new ClientStreamTracer() {
+        volatile boolean headersReceived;
+
+        @Override
+        public void inboundHeaders() {
+          headersReceived = true;
+          long now = ticker.read();
+          peakEwma.observe(now - startNanos, now, decayNanos);
+        }
+
+        @Override
+        public void streamClosed(Status status) {
+          long now = ticker.read();
+          peakEwma.outstanding.decrementAndGet();
+          if (headersReceived) {
+            return;
+          }
+          if (status.isOk()) {
+            // A trailers-only response
+            peakEwma.observe(now - startNanos, now, decayNanos);
+          } else if (isBackendFailure(status)) {
+            peakEwma.observeFailure(now - startNanos, now, decayNanos);
+          }
+        }
+      };
+    }
+
+    private static boolean isBackendFailure(Status status) {
+      return status.getCode() == Status.Code.UNAVAILABLE
+          || status.getCode() == Status.Code.RESOURCE_EXHAUSTED;
+    }
+  }
+
+  static final class PeakEwmaConfig {
+    static final int DEFAULT_CHOICE_COUNT = 2;
+    static final int MAX_CHOICE_COUNT = 10;
+    static final long DEFAULT_DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+    static final PeakEwmaConfig DEFAULT =
+        new PeakEwmaConfig(DEFAULT_CHOICE_COUNT, DEFAULT_DECAY_NANOS);
+
+    final int choiceCount;
+    final long decayNanos;
+
+    PeakEwmaConfig(int choiceCount, long decayNanos) {
+      checkArgument(choiceCount >= 2, "choiceCount must be at least 2");
+      checkArgument(decayNanos > 0, "decayTime must be positive");
+      this.choiceCount = Math.min(choiceCount, MAX_CHOICE_COUNT);
+      this.decayNanos = decayNanos;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof PeakEwmaConfig)) {
+        return false;
+      }
+      PeakEwmaConfig that = (PeakEwmaConfig) o;
+      return choiceCount == that.choiceCount && decayNanos == that.decayNanos;
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(choiceCount, decayNanos);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("choiceCount", choiceCount)
+          .add("decayNanos", decayNanos)
+          .toString();
+    }
+  }
+}
@@ -0,0 +1,338 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.ExperimentalApi;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallExecutorSupplier;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+/**
+ * A {@link ServerCallExecutorSupplier} that sorts calls into priority classes and shares an
+ * executor between the classes with weighted-fair queueing. When the executor is saturated, each
+ * class with queued work gets a share of it in proportion to its weight. Health checks, control
+ * plane and interactive calls can then be kept responsive while batch calls wait.
+ *
+ * <p>A call is assigned to the class of its method, or of its service, if one was configured.
+ * Otherwise, if a priority header was configured, to the class named by that header of the call,
+ * and finally to the default class.
+ *
+ * <p>At most {@code maxConcurrency} tasks run on the executor at a time; the rest are queued by
+ * this supplier, which is what lets it pick the next task. The server's own executor should be
+ * {@link com.google.common.util.concurrent.MoreExecutors#directExecutor}, so that the method
+ * lookup preceding {@link #getExecutor} does not wait in a first-in, first-out queue:
+ *
+ * <pre>
+ *   PriorityServerCallExecutorSupplier supplier =
+ *       PriorityServerCallExecutorSupplier.newBuilder(threadPool, threadCount)
+ *           .addPriorityClass("interactive", 10)
+ *           .addPriorityClass("batch", 1)
+ *           .setMethodPriorityClass("grpc.health.v1.Health/*", "interactive")
+ *           .setDefaultPriorityClass("batch")
+ *           .build();
+ *   Server server = ServerBuilder.forPort(port)
+ *       .directExecutor()
+ *       .callExecutor(supplier)
+ *       ...
+ *       .build();
+ * </pre>
+ */
+@ThreadSafe
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/8274")
+public final class PriorityServerCallExecutorSupplier implements ServerCallExecutorSupplier {
+  private static final Logger log =
+      Logger.getLogger(PriorityServerCallExecutorSupplier.class.getName());
+
+  /**
+   * A header clients may use to name the priority class of a call, if enabled with {@link
+   * Builder#setPriorityHeader}.
+   */
+  public static final Metadata.Key<String> PRIORITY_KEY =
+      Metadata.Key.of("grpc-priority", Metadata.ASCII_STRING_MARSHALLER);
+
+  private final Executor executor;
+  private final int maxConcurrency;
+  private final Map<String, PriorityClass> classes;
+  private final PriorityClass[] classArray;
+  private final Map<String, PriorityClass> methodClasses;
+  private final PriorityClass defaultClass;
+  @Nullable
+  private final Metadata.Key<String> priorityKey;
+  private final Runnable worker = new Worker();
+
+  private final Object lock = new Object();
+  @GuardedBy("lock")
+  private int running;
+  // The pass of the most recently started task. A class that becomes active starts from here, so
+  // it cannot claim the share it did not use while idle.
+  @GuardedBy("lock")
+  private double virtualTime;
+
+  private PriorityServerCallExecutorSupplier(Builder builder) {
+    this.executor = builder.executor;
+    this.maxConcurrency = builder.maxConcurrency;
+    Map<String, PriorityClass> classes = new LinkedHashMap<>();
+    for (Map.Entry<String, Integer> entry : builder.weights.entrySet()) {
+      classes.put(entry.getKey(), new PriorityClass(entry.getKey(), entry.getValue()));
+    }
+    this.classes = classes;
+    this.classArray = classes.values().toArray(new PriorityClass[0]);
+    Map<String, PriorityClass> methodClasses = new HashMap<>();
+    for (Map.Entry<String, String> entry : builder.methodClasses.entrySet()) {
+      methodClasses.put(entry.getKey(), getPriorityClass(entry.getValue()));
+    }
+    this.methodClasses = methodClasses;
+    this.defaultClass = builder.defaultClass != null
+        ? getPriorityClass(builder.defaultClass) : classArray[0];
+    this.priorityKey = builder.priorityKey;
+  }
+
+  /**
+   * Creates a builder for a supplier that runs calls on {@code executor}, with at most {@code
+   * maxConcurrency} tasks at a time. {@code maxConcurrency} should not exceed the number of threads
+   * of the executor, otherwise tasks are queued by the executor instead and lose their priority.
+   */
+  public static Builder newBuilder(Executor executor, int maxConcurrency) {
+    return new Builder(executor, maxConcurrency);
+  }
+
+  private PriorityClass getPriorityClass(String name) {
+    PriorityClass priorityClass = classes.get(name);
+    checkArgument(priorityClass != null, "Unknown priority class: %s", name);
+    return priorityClass;
+  }
+
+  @Override
+  public <ReqT, RespT> Executor getExecutor(ServerCall<ReqT, RespT> call, Metadata metadata) {
+    MethodDescriptor<ReqT, RespT> method = call.getMethodDescriptor();
+    PriorityClass priorityClass = methodClasses.get(method.getFullMethodName());
+    if (priorityClass == null && method.getServiceName() != null) {
+      priorityClass = methodClasses.get(method.getServiceName() + "/*");
+    }
+    if (priorityClass == null && priorityKey != null) {
+      String name = metadata.get(priorityKey);
+      if (name != null) {
+        priorityClass = classes.get(name);
+      }
+    }
+    return priorityClass != null ? priorityClass : defaultClass;
+  }
+
+  @VisibleForTesting
+  Executor getPriorityClassExecutor(String name) {
+    return getPriorityClass(name);
+  }
+
+  /**
+   * Returns the next task to run, or null if none is queued. The task is taken from the class with
+   * the smallest pass, whose pass then advances by the inverse of its weight.
+   */
+  @GuardedBy("lock")
+  @Nullable
+  private Runnable poll() {
+    PriorityClass next = null;
+    for (PriorityClass priorityClass : classArray) {
+      if (!priorityClass.queue.isEmpty() && (next == null || priorityClass.pass < next.pass)) {
+        next = priorityClass;
+      }
+    }
+    if (next == null) {
+      return null;
+    }
+    virtualTime = next.pass;
+    next.pass += next.stride;
+    return next.queue.poll();
+  }
+
+  private final class PriorityClass implements Executor {
+    final String name;
+    final double stride;
+    @GuardedBy("lock")
+    final ArrayDeque<Runnable> queue = new ArrayDeque<>();
+    @GuardedBy("lock")
+    double pass;
+
+    PriorityClass(String name, int weight) {
+      this.name = name;
+      this.stride = 1.0 / weight;
+    }
+
+    @Override
+    public void execute(Runnable task) {
+      checkNotNull(task, "task");
+      boolean startWorker;
+      synchronized (lock) {
+        if (queue.isEmpty()) {
+          pass = Math.max(pass, virtualTime);
+        }
+        queue.add(task);
+        startWorker = running < maxConcurrency;
+        if (startWorker) {
+          running++;
+        }
+      }
+      if (startWorker) {
+        try {
+          executor.execute(worker);
+        } catch (RuntimeException e) {
+          synchronized (lock) {
+            running--;
+            queue.removeLastOccurrence(task);
+          }
+          throw e;
+        }
+      }
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /** Runs queued tasks in priority order until none are left. */
+  private final class Worker implements Runnable {
+    @Override
+    public void run() {
+      boolean exited = false;
+      try {
+        while (true) {
+          Runnable task;
+          synchronized (lock) {
+            task = poll();
+            if (task == null) {
+              running--;
+              exited = true;
+              return;
+            }
+          }
+          try {
+            task.run();
+          } catch (RuntimeException e) {
+            log.log(Level.SEVERE, "Exception while executing runnable " + task, e);
+          }
+        }
+      } finally {
+        if (!exited) {
+          // An Error escaped a task. Hand the slot to a new worker so queued tasks still run.
+          resubmit();
+        }
+      }
+    }
+
+    private void resubmit() {
+      try {
+        executor.execute(this);
+      } catch (RuntimeException e) {
+        synchronized (lock) {
+          running--;
+        }
+        log.log(Level.SEVERE, "Failed to restart worker", e);
+      }
+    }
+  }
+
+  /**
+   * Builder for {@link PriorityServerCallExecutorSupplier}.
+   */
+  public static final class Builder {
+    private final Executor executor;
+    private final int maxConcurrency;
+    private final Map<String, Integer> weights = new LinkedHashMap<>();
+    private final Map<String, String> methodClasses = new HashMap<>();
+    @Nullable
+    private String defaultClass;
+    @Nullable
+    private Metadata.Key<String> priorityKey;
+
+    private Builder(Executor executor, int maxConcurrency) {
+      checkArgument(maxConcurrency > 0, "maxConcurrency must be positive");
+      this.executor = checkNotNull(executor, "executor");
+      this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Adds a priority class. When the executor is saturated, each class with queued calls gets a
+     * share of the executor proportional to its weight.
+     */
+    public Builder addPriorityClass(String name, int weight) {
+      checkNotNull(name, "name");
+      checkArgument(weight > 0, "weight must be positive");
+      checkArgument(!weights.containsKey(name), "Duplicate priority class: %s", name);
+      weights.put(name, weight);
+      return this;
+    }
+
+    /**
+     * Assigns the calls of a method to a priority class. {@code method} is either a full method
+     * name, e.g. {@code "helloworld.Greeter/SayHello"}, or a service name followed by {@code "/*"}
+     * for all methods of the service.
+     */
+    public Builder setMethodPriorityClass(String method, String priorityClass) {
+      methodClasses.put(checkNotNull(method, "method"),
+          checkNotNull(priorityClass, "priorityClass"));
+      return this;
+    }
+
+    /**
+     * Sets the class of calls that are not assigned to any other class. Defaults to the first class
+     * added.
+     */
+    public Builder setDefaultPriorityClass(String priorityClass) {
+      this.defaultClass = checkNotNull(priorityClass, "priorityClass");
+      return this;
+    }
+
+    /**
+     * Lets clients assign their calls to a class by sending its name in the given header, usually
+     * {@link #PRIORITY_KEY}. Calls of methods assigned to a class ignore the header. Clients can
+     * pick any class this way, so it should only be enabled for trusted clients. Disabled by
+     * default.
+     */
+    public Builder setPriorityHeader(Metadata.Key<String> key) {
+      this.priorityKey = checkNotNull(key, "key");
+      return this;
+    }
+
+    /**
+     * Builds the supplier.
+     *
+     * @throws IllegalStateException if no priority class was added
+     * @throws IllegalArgumentException if a method or the default is assigned to an unknown class
+     */
+    public PriorityServerCallExecutorSupplier build() {
+      checkState(!weights.isEmpty(), "No priority class was added");
+      return new PriorityServerCallExecutorSupplier(this);
+    }
+  }
+}
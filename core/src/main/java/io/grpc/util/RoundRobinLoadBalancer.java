@@ -49,8 +49,12 @@ import javax.annotation.Nonnull;
 /**
  * A {@link LoadBalancer} that provides round-robin load-balancing over the {@link
  * EquivalentAddressGroup}s from the {@link NameResolver}.
+ *
+ * <p>Subclasses may pick among the READY subchannels differently by overriding {@link
+ * #createReadyPicker}, and keep per-subchannel state in subchannel attributes added by {@link
+ * #addSubchannelAttributes}.
  */
-final class RoundRobinLoadBalancer extends LoadBalancer {
+class RoundRobinLoadBalancer extends LoadBalancer {
   @VisibleForTesting
   static final Attributes.Key<Ref<ConnectivityStateInfo>> STATE_INFO =
       Attributes.Key.create("state-info");
@@ -96,6 +100,7 @@ final class RoundRobinLoadBalancer extends LoadBalancer {
           // AtomicReference which will allow mutating state info for given channel.
           .set(STATE_INFO,
               new Ref<>(ConnectivityStateInfo.forNonError(IDLE)));
+      addSubchannelAttributes(subchannelAttrs);
 
       final Subchannel subchannel = checkNotNull(
           helper.createSubchannel(CreateSubchannelArgs.newBuilder()
@@ -201,10 +206,24 @@ final class RoundRobinLoadBalancer extends LoadBalancer {
       // initialize the Picker to a random start index to ensure that a high frequency of Picker
       // churn does not skew subchannel selection.
       int startIndex = random.nextInt(activeList.size());
-      updateBalancingState(READY, new ReadyPicker(activeList, startIndex));
+      updateBalancingState(READY, createReadyPicker(activeList, startIndex));
     }
   }
 
+  /**
+   * Adds attributes to a new subchannel. Attributes are immutable, but their values need not be,
+   * so this is where per-subchannel state that outlives pickers belongs.
+   */
+  void addSubchannelAttributes(Attributes.Builder subchannelAttrs) {}
+
+  /**
+   * Creates the picker for a non-empty list of READY subchannels. {@code startIndex} is a random
+   * index into the list.
+   */
+  RoundRobinPicker createReadyPicker(List<Subchannel> activeList, int startIndex) {
+    return new ReadyPicker(activeList, startIndex);
+  }
+
   private void updateBalancingState(ConnectivityState state, RoundRobinPicker picker) {
     if (state != currentState || !picker.isEquivalentTo(currentPicker)) {
       helper.updateBalancingState(state, picker);
@@ -265,8 +284,7 @@ final class RoundRobinLoadBalancer extends LoadBalancer {
     return aCopy;
   }
 
-  // Only subclasses are ReadyPicker or EmptyPicker
-  private abstract static class RoundRobinPicker extends SubchannelPicker {
+  abstract static class RoundRobinPicker extends SubchannelPicker {
     abstract boolean isEquivalentTo(RoundRobinPicker picker);
   }
 
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.NameResolver.ConfigOrError;
+import io.grpc.Status;
+import io.grpc.internal.JsonUtil;
+import io.grpc.util.PeakEwmaLoadBalancer.PeakEwmaConfig;
+import java.util.Map;
+
+/**
+ * Provider for the "peak_ewma" balancing policy.
+ */
+// Make it package-private so that it cannot be directly referenced by users.  Java service loader
+// requires the provider to be public, but we can hide it under a package-private class.
+final class SecretPeakEwmaLoadBalancerProvider {
+  private SecretPeakEwmaLoadBalancerProvider() {
+  }
+
+  public static final class Provider extends LoadBalancerProvider {
+
+    @Override
+    public boolean isAvailable() {
+      return true;
+    }
+
+    @Override
+    public int getPriority() {
+      return 5;
+    }
+
+    @Override
+    public String getPolicyName() {
+      return "peak_ewma";
+    }
+
+    @Override
+    public LoadBalancer newLoadBalancer(LoadBalancer.Helper helper) {
+      return new PeakEwmaLoadBalancer(helper);
+    }
+
+    @Override
+    public ConfigOrError parseLoadBalancingPolicyConfig(
+        Map<String, ?> rawLoadBalancingPolicyConfig) {
+      try {
+        Integer choiceCount = JsonUtil.getNumberAsInteger(
+            rawLoadBalancingPolicyConfig, "choiceCount");
+        if (choiceCount == null) {
+          choiceCount = PeakEwmaConfig.DEFAULT_CHOICE_COUNT;
+        }
+        Long decayNanos = JsonUtil.getStringAsDuration(rawLoadBalancingPolicyConfig, "decayTime");
+        if (decayNanos == null) {
+          decayNanos = PeakEwmaConfig.DEFAULT_DECAY_NANOS;
+        }
+        return ConfigOrError.fromConfig(new PeakEwmaConfig(choiceCount, decayNanos));
+      } catch (RuntimeException e) {
+        return ConfigOrError.fromError(
+            Status.UNAVAILABLE.withCause(e).withDescription(
+                "Failed parsing configuration for " + getPolicyName()));
+      }
+    }
+  }
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/**
+ * Tests for {@link ChunkedMpscQueue}.
+ */
+@RunWith(JUnit4.class)
+public class ChunkedMpscQueueTest {
+  private final ChunkedMpscQueue<Integer> queue = new ChunkedMpscQueue<>();
+
+  @Test
+  public void emptyQueue() {
+    assertTrue(queue.isEmpty());
+    assertNull(queue.poll());
+  }
+
+  @Test
+  public void fifoAcrossChunks() {
+    int count = 3 * ChunkedMpscQueue.CHUNK_SIZE + 1;
+    for (int i = 0; i < count; i++) {
+      queue.offer(i);
+    }
+    for (int i = 0; i < count; i++) {
+      assertFalse(queue.isEmpty());
+      assertEquals(Integer.valueOf(i), queue.poll());
+    }
+    assertTrue(queue.isEmpty());
+    assertNull(queue.poll());
+  }
+
+  @Test
+  public void interleavedOfferAndPoll() {
+    for (int i = 0; i < 2 * ChunkedMpscQueue.CHUNK_SIZE; i++) {
+      queue.offer(i);
+      assertEquals(Integer.valueOf(i), queue.poll());
+      assertTrue(queue.isEmpty());
+    }
+  }
+
+  @Test
+  public void remove() {
+    Integer removed = 1000;
+    queue.offer(1);
+    queue.offer(removed);
+    queue.offer(2);
+
+    assertTrue(queue.remove(removed));
+    assertFalse(queue.remove(removed));
+    assertEquals(Integer.valueOf(1), queue.poll());
+    assertEquals(Integer.valueOf(2), queue.poll());
+    assertNull(queue.poll());
+  }
+
+  @Test
+  public void removeOnlyElement() {
+    Integer removed = 1000;
+    queue.offer(removed);
+
+    assertTrue(queue.remove(removed));
+    assertNull(queue.poll());
+    assertTrue(queue.isEmpty());
+  }
+
+  @Test
+  public void concurrentProducers() throws Exception {
+    final int producers = 4;
+    final int perProducer = 10 * ChunkedMpscQueue.CHUNK_SIZE;
+    final CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+    for (int p = 0; p < producers; p++) {
+      final int base = p * perProducer;
+      Thread thread = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            start.await();
+          } catch (InterruptedException e) {
+            throw new AssertionError(e);
+          }
+          for (int i = 0; i < perProducer; i++) {
+            queue.offer(base + i);
+          }
+        }
+      });
+      thread.start();
+      threads.add(thread);
+    }
+    start.countDown();
+
+    int[] next = new int[producers];
+    int received = 0;
+    while (received < producers * perProducer) {
+      Integer value = queue.poll();
+      if (value == null) {
+        Thread.yield();
+        continue;
+      }
+      // Elements from each producer stay in order
+      int producer = value / perProducer;
+      assertEquals(next[producer]++, value % perProducer);
+      received++;
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue(queue.isEmpty());
+  }
+}
@@ -0,0 +1,245 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.Codec;
+import io.grpc.KnownLength;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.internal.MessageFramerTest.ByteWritableBuffer;
+import io.grpc.internal.MessageFramerTest.BytesWritableBufferAllocator;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+/** Unit tests for {@link CoalescingServerStream}. */
+@RunWith(JUnit4.class)
+public class CoalescingServerStreamTest {
+  private static final int MAX_BYTES = 100;
+  private static final long MAX_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final ServerStream delegate = mock(ServerStream.class);
+  private final CoalescingServerStream stream = new CoalescingServerStream(
+      delegate, MAX_BYTES, MAX_DELAY_NANOS, fakeClock.getScheduledExecutorService());
+
+  @Test
+  public void flushesOnceMaxBytesBuffered() {
+    for (int i = 0; i < 4; i++) {
+      stream.writeMessage(message(30));
+      stream.flush();
+    }
+
+    verify(delegate, times(4)).writeMessage(any(InputStream.class));
+    verify(delegate).flush();
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void flushesAfterMaxDelay() {
+    stream.writeMessage(message(10));
+    stream.flush();
+    stream.writeMessage(message(10));
+    stream.flush();
+    verify(delegate, never()).flush();
+    assertEquals(1, fakeClock.numPendingTasks());
+
+    fakeClock.forwardNanos(MAX_DELAY_NANOS);
+    verify(delegate).flush();
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void delayedFlushDoesNotWaitForWriter() throws Exception {
+    stream.writeMessage(message(10));
+    stream.flush();
+    final List<Boolean> timerBlocked = new ArrayList<>();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Exception {
+        // The delayed flush fires on another thread while this write holds the lock.
+        Thread timer = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            fakeClock.forwardNanos(MAX_DELAY_NANOS);
+          }
+        });
+        timer.start();
+        timer.join(TimeUnit.SECONDS.toMillis(5));
+        timerBlocked.add(timer.isAlive());
+        verify(delegate, never()).flush();
+        return null;
+      }
+    }).when(delegate).writeMessage(any(InputStream.class));
+
+    stream.writeMessage(message(10));
+
+    assertEquals(false, timerBlocked.get(0));
+    // The writer performed the flush that became due while it held the lock.
+    verify(delegate).flush();
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void unknownSizeFlushesImmediately() {
+    stream.writeMessage(new InputStream() {
+      @Override
+      public int read() {
+        return -1;
+      }
+    });
+    stream.flush();
+
+    verify(delegate).flush();
+  }
+
+  @Test
+  public void closeCancelsDelayedFlush() {
+    stream.writeMessage(message(10));
+    stream.flush();
+    Metadata trailers = new Metadata();
+    stream.close(Status.OK, trailers);
+
+    verify(delegate).close(Status.OK, trailers);
+    assertEquals(0, fakeClock.numPendingTasks());
+    fakeClock.forwardNanos(MAX_DELAY_NANOS);
+    verify(delegate, never()).flush();
+  }
+
+  @Test
+  public void cancelCancelsDelayedFlush() {
+    stream.writeMessage(message(10));
+    stream.flush();
+    stream.cancel(Status.CANCELLED);
+
+    verify(delegate).cancel(Status.CANCELLED);
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void coalescedMessagesWithFramer_compressedAndUnknownLength() throws Exception {
+    final ByteArrayOutputStream wire = new ByteArrayOutputStream();
+    final MessageFramer framer = new MessageFramer(
+        new MessageFramer.Sink() {
+          @Override
+          public void deliverFrame(
+              WritableBuffer frame, boolean endOfStream, boolean flush, int numMessages) {
+            if (frame != null) {
+              ByteWritableBuffer buffer = (ByteWritableBuffer) frame;
+              wire.write(buffer.data, 0, buffer.readableBytes());
+            }
+          }
+        },
+        new BytesWritableBufferAllocator(8, 1000),
+        StatsTraceContext.NOOP);
+    framer.setCompressor(new Codec.Gzip());
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        framer.writePayload((InputStream) invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(delegate).writeMessage(any(InputStream.class));
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) {
+        framer.flush();
+        return null;
+      }
+    }).when(delegate).flush();
+
+    byte[][] messages = {bytes(10, 1), bytes(20, 2), bytes(30, 3), bytes(40, 4)};
+    stream.writeMessage(new KnownLengthInputStream(messages[0]));
+    stream.flush();
+    stream.writeMessage(new KnownLengthInputStream(messages[1]));
+    stream.flush();
+    // Neither compressed message has been flushed yet.
+    verify(delegate, never()).flush();
+    stream.writeMessage(unknownLength(messages[2]));
+    stream.flush();
+    framer.setMessageCompression(false);
+    stream.writeMessage(unknownLength(messages[3]));
+    stream.flush();
+    framer.close();
+
+    List<byte[]> received = readMessages(wire.toByteArray());
+    assertEquals(messages.length, received.size());
+    for (int i = 0; i < messages.length; i++) {
+      assertArrayEquals(messages[i], received.get(i));
+    }
+  }
+
+  private static InputStream unknownLength(byte[] bytes) {
+    return new FilterInputStream(new ByteArrayInputStream(bytes)) {};
+  }
+
+  private static byte[] bytes(int size, int value) {
+    byte[] bytes = new byte[size];
+    for (int i = 0; i < size; i++) {
+      bytes[i] = (byte) value;
+    }
+    return bytes;
+  }
+
+  private static List<byte[]> readMessages(byte[] wire) throws IOException {
+    DataInputStream in = new DataInputStream(new ByteArrayInputStream(wire));
+    List<byte[]> messages = new ArrayList<>();
+    while (in.available() > 0) {
+      boolean compressed = in.readByte() == 1;
+      byte[] payload = new byte[in.readInt()];
+      in.readFully(payload);
+      if (compressed) {
+        payload = ByteStreams.toByteArray(
+            new Codec.Gzip().decompress(new ByteArrayInputStream(payload)));
+      }
+      messages.add(payload);
+    }
+    return messages;
+  }
+
+  private static InputStream message(int size) {
+    return new KnownLengthInputStream(new byte[size]);
+  }
+
+  private static final class KnownLengthInputStream extends ByteArrayInputStream
+      implements KnownLength {
+    KnownLengthInputStream(byte[] buf) {
+      super(buf);
+    }
+  }
+}
@@ -83,6 +83,7 @@ public class ConfigSelectingClientCallTest {
             ImmutableMap.<String, MethodInfo>of(),
             null,
             null,
+            null,
             null);
         return Result.newBuilder()
             .setConfig(config)
@@ -48,6 +48,8 @@ import io.grpc.Status;
 import io.grpc.StringMarshaller;
 import io.grpc.SynchronizationContext;
 import io.grpc.internal.ClientStreamListener.RpcProgress;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CyclicBarrier;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -642,6 +644,71 @@ public class DelayedClientTransportTest {
     verify(transportListener).transportInUse(true);
   }
 
+  @Test
+  public void reprocess_manyStreams_processedInCreationOrder() {
+    when(mockRealTransport.newStream(
+            any(MethodDescriptor.class), any(Metadata.class), any(CallOptions.class),
+            ArgumentMatchers.<ClientStreamTracer[]>any()))
+        .thenReturn(mockRealStream);
+    int streamCount = 2 * DelayedClientTransport.REPROCESS_BATCH_SIZE + 10;
+    for (int i = 0; i < streamCount; i++) {
+      delayedTransport.newStream(
+          method, headers, CallOptions.DEFAULT.withOption(SHARD_ID, i), tracers);
+    }
+    verify(transportListener).transportInUse(true);
+    assertEquals(streamCount, delayedTransport.getPendingStreamsCount());
+
+    final List<Integer> pickedShards = new ArrayList<>();
+    delayedTransport.reprocess(new SubchannelPicker() {
+      @Override public PickResult pickSubchannel(PickSubchannelArgs args) {
+        pickedShards.add(args.getCallOptions().getOption(SHARD_ID));
+        return PickResult.withSubchannel(mockSubchannel);
+      }
+    });
+
+    assertEquals(streamCount, pickedShards.size());
+    for (int i = 0; i < streamCount; i++) {
+      assertEquals(i, (int) pickedShards.get(i));
+    }
+    assertFalse(delayedTransport.hasPendingStreams());
+    verify(transportListener).transportInUse(false);
+    verify(mockRealTransport, times(streamCount)).newStream(
+        same(method), same(headers), any(CallOptions.class),
+        ArgumentMatchers.<ClientStreamTracer[]>any());
+  }
+
+  @Test
+  public void reprocess_streamCancelledDuringReprocess() {
+    when(mockRealTransport.newStream(
+            any(MethodDescriptor.class), any(Metadata.class), any(CallOptions.class),
+            ArgumentMatchers.<ClientStreamTracer[]>any()))
+        .thenReturn(mockRealStream);
+    final List<ClientStream> streams = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      ClientStream stream = delayedTransport.newStream(
+          method, headers, CallOptions.DEFAULT.withOption(SHARD_ID, i), tracers);
+      stream.start(mock(ClientStreamListener.class));
+      streams.add(stream);
+    }
+
+    delayedTransport.reprocess(new SubchannelPicker() {
+      @Override public PickResult pickSubchannel(PickSubchannelArgs args) {
+        if (args.getCallOptions().getOption(SHARD_ID) == 0) {
+          streams.get(2).cancel(Status.CANCELLED);
+        }
+        return PickResult.withSubchannel(mockSubchannel);
+      }
+    });
+
+    assertFalse(delayedTransport.hasPendingStreams());
+    verify(transportListener).transportInUse(true);
+    verify(transportListener).transportInUse(false);
+    verify(mockRealTransport, times(2)).newStream(
+        same(method), same(headers), any(CallOptions.class),
+        ArgumentMatchers.<ClientStreamTracer[]>any());
+    assertEquals(2, fakeExecutor.runDueTasks());
+  }
+
   @Test
   public void pendingStream_appendTimeoutInsight_waitForReady() {
     ClientStream stream = delayedTransport.newStream(
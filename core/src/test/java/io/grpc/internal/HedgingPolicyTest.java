@@ -71,14 +71,16 @@ public class HedgingPolicyTest {
           new HedgingPolicy(
               3,
               TimeUnit.MILLISECONDS.toNanos(2100),
-              ImmutableSet.of(Code.UNAVAILABLE, Code.RESOURCE_EXHAUSTED)));
+              ImmutableSet.of(Code.UNAVAILABLE, Code.RESOURCE_EXHAUSTED),
+              null));
 
       method = builder.setFullMethodName("SimpleService1/Foo1").build();
       assertThat(channelServiceConfig.getMethodConfig(method).hedgingPolicy).isEqualTo(
           new HedgingPolicy(
               4,
               TimeUnit.MILLISECONDS.toNanos(100),
-              ImmutableSet.of(Code.UNAVAILABLE)));
+              ImmutableSet.of(Code.UNAVAILABLE),
+              95D));
 
       method = builder.setFullMethodName("SimpleService2/not_exist").build();
       assertThat(channelServiceConfig.getMethodConfig(method).hedgingPolicy).isNull();
@@ -88,7 +90,8 @@ public class HedgingPolicyTest {
           new HedgingPolicy(
               4,
               TimeUnit.MILLISECONDS.toNanos(100),
-              ImmutableSet.of(Code.UNAVAILABLE)));
+              ImmutableSet.of(Code.UNAVAILABLE),
+              95D));
     } finally {
       if (reader != null) {
         reader.close();
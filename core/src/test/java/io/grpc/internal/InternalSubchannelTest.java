@@ -41,24 +41,31 @@ import static org.mockito.Mockito.when;
 
 import com.google.common.collect.Iterables;
 import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
 import io.grpc.ConnectivityStateInfo;
 import io.grpc.EquivalentAddressGroup;
 import io.grpc.InternalChannelz;
 import io.grpc.InternalLogId;
 import io.grpc.InternalWithLogId;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
 import io.grpc.Status;
 import io.grpc.SynchronizationContext;
 import io.grpc.internal.InternalSubchannel.CallTracingTransport;
 import io.grpc.internal.InternalSubchannel.Index;
 import io.grpc.internal.InternalSubchannel.TransportLogger;
 import io.grpc.internal.TestUtils.MockClientTransportInfo;
+import io.grpc.testing.TestMethodDescriptors;
 import java.net.SocketAddress;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Rule;
@@ -920,6 +927,259 @@ public class InternalSubchannelTest {
     verify(transportInfo.transport, never()).shutdownNow(any(Status.class));
   }
 
+  @Test
+  public void warmUp_connectsAndPings() throws Exception {
+    SocketAddress addr = mock(SocketAddress.class);
+    createInternalSubchannel(addr);
+
+    internalSubchannel.warmUp();
+    assertExactCallbackInvokes("onStateChange:CONNECTING");
+    MockClientTransportInfo transportInfo = transports.poll();
+    verify(transportInfo.transport, never())
+        .ping(any(ClientTransport.PingCallback.class), any(Executor.class));
+
+    transportInfo.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:READY");
+    verify(transportInfo.transport)
+        .ping(any(ClientTransport.PingCallback.class), any(Executor.class));
+
+    // Already connected
+    internalSubchannel.warmUp();
+    assertNoCallbackInvoke();
+    assertNull(transports.poll());
+  }
+
+  @Test
+  public void spareTransports_connectedWhenReady() throws Exception {
+    SocketAddress addr = mock(SocketAddress.class);
+    createInternalSubchannel(2, new EquivalentAddressGroup(addr));
+
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo active = transports.poll();
+    assertNull(transports.poll());
+    active.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+
+    verify(mockTransportFactory, times(3))
+        .newClientTransport(
+            eq(addr), eq(createClientTransportOptions()), isA(TransportLogger.class));
+    MockClientTransportInfo spare1 = transports.poll();
+    MockClientTransportInfo spare2 = transports.poll();
+    spare1.listener.transportReady();
+    verify(spare1.transport).ping(any(ClientTransport.PingCallback.class), any(Executor.class));
+    assertSame(active.transport,
+        ((CallTracingTransport) internalSubchannel.obtainActiveTransport()).delegate());
+
+    // A spare that fails to connect is not retried
+    spare2.listener.transportShutdown(Status.UNAVAILABLE);
+    assertNull(transports.poll());
+    assertNoCallbackInvoke();
+  }
+
+  @Test
+  public void spareTransports_replaceActiveTransport() throws Exception {
+    SocketAddress addr = mock(SocketAddress.class);
+    createInternalSubchannel(1, new EquivalentAddressGroup(addr));
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo active = transports.poll();
+    active.listener.transportReady();
+    MockClientTransportInfo spare = transports.poll();
+    spare.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+
+    active.listener.transportShutdown(Status.UNAVAILABLE);
+    // Stays READY on the spare, and starts a new spare.
+    assertNoCallbackInvoke();
+    assertEquals(READY, internalSubchannel.getState());
+    assertSame(spare.transport,
+        ((CallTracingTransport) internalSubchannel.obtainActiveTransport()).delegate());
+    MockClientTransportInfo newSpare = transports.poll();
+    assertNotNull(newSpare);
+
+    // Without a ready spare, the subchannel goes IDLE and closes the pending spare.
+    spare.listener.transportShutdown(Status.UNAVAILABLE);
+    assertExactCallbackInvokes("onStateChange:IDLE");
+    verify(newSpare.transport).shutdown(any(Status.class));
+  }
+
+  @Test
+  public void spareTransports_shutdownWithSubchannel() throws Exception {
+    SocketAddress addr = mock(SocketAddress.class);
+    createInternalSubchannel(1, new EquivalentAddressGroup(addr));
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo active = transports.poll();
+    active.listener.transportReady();
+    MockClientTransportInfo spare = transports.poll();
+    spare.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+
+    internalSubchannel.shutdown(SHUTDOWN_REASON);
+    verify(active.transport).shutdown(same(SHUTDOWN_REASON));
+    verify(spare.transport).shutdown(same(SHUTDOWN_REASON));
+    assertExactCallbackInvokes("onStateChange:SHUTDOWN");
+    active.listener.transportShutdown(SHUTDOWN_REASON);
+    spare.listener.transportShutdown(SHUTDOWN_REASON);
+    active.listener.transportTerminated();
+    assertNoCallbackInvoke();
+    spare.listener.transportTerminated();
+    assertExactCallbackInvokes("onTerminated");
+  }
+
+  @Test
+  public void connectionPool_keepsMinimumConnections() throws Exception {
+    SocketAddress addr = mock(SocketAddress.class);
+    createInternalSubchannel(
+        0, new PooledClientTransport.Config(2, 3, 10), new EquivalentAddressGroup(addr));
+
+    assertNull(internalSubchannel.obtainActiveTransport());
+    MockClientTransportInfo active = transports.poll();
+    assertNull(transports.poll());
+    active.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+
+    MockClientTransportInfo pooled = transports.poll();
+    assertNotNull(pooled);
+    assertNull(transports.poll());
+    PooledClientTransport pool = (PooledClientTransport) internalSubchannel.obtainActiveTransport();
+    assertEquals(1, pool.size());
+    pooled.listener.transportReady();
+    assertEquals(2, pool.size());
+    assertNoCallbackInvoke();
+  }
+
+  @Test
+  public void connectionPool_growsWhenSaturated() throws Exception {
+    SocketAddress addr = mock(SocketAddress.class);
+    createInternalSubchannel(
+        0, new PooledClientTransport.Config(1, 2, 1), new EquivalentAddressGroup(addr));
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo active = transports.poll();
+    active.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+    assertNull(transports.poll());
+    ClientTransport pool = internalSubchannel.obtainActiveTransport();
+
+    startStream(pool);
+    assertNull(transports.poll());
+    // The only transport is saturated, so another one is opened, but only one at a time
+    startStream(pool);
+    startStream(pool);
+    verify(active.transport, times(3)).newStream(
+        any(MethodDescriptor.class), any(Metadata.class), any(CallOptions.class),
+        any(ClientStreamTracer[].class));
+    MockClientTransportInfo pooled = transports.poll();
+    assertNotNull(pooled);
+    assertNull(transports.poll());
+
+    pooled.listener.transportReady();
+    startStream(pool);
+    verify(pooled.transport).newStream(
+        any(MethodDescriptor.class), any(Metadata.class), any(CallOptions.class),
+        any(ClientStreamTracer[].class));
+
+    // Already at the maximum
+    startStream(pool);
+    startStream(pool);
+    assertNull(transports.poll());
+
+    // Cancels the idle check of the pool
+    internalSubchannel.shutdown(SHUTDOWN_REASON);
+    assertExactCallbackInvokes("onStateChange:SHUTDOWN");
+  }
+
+  @Test
+  public void connectionPool_shrinksWhenIdle() throws Exception {
+    SocketAddress addr = mock(SocketAddress.class);
+    createInternalSubchannel(
+        0, new PooledClientTransport.Config(1, 2, 1), new EquivalentAddressGroup(addr));
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo active = transports.poll();
+    active.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+    PooledClientTransport pool = (PooledClientTransport) internalSubchannel.obtainActiveTransport();
+    startStream(pool);
+    startStream(pool);
+    MockClientTransportInfo pooled = transports.poll();
+    pooled.listener.transportReady();
+    assertEquals(2, pool.size());
+    ClientStream stream = pool.newStream(
+        TestMethodDescriptors.voidMethod(), new Metadata(), CallOptions.DEFAULT,
+        new ClientStreamTracer[] {new ClientStreamTracer() {}});
+
+    // Kept while it has a stream
+    fakeClock.forwardNanos(InternalSubchannel.POOL_IDLE_CHECK_NANOS);
+    fakeClock.forwardNanos(InternalSubchannel.POOL_IDLE_CHECK_NANOS);
+    verify(pooled.transport, never()).shutdown(any(Status.class));
+
+    stream.cancel(Status.CANCELLED);
+    fakeClock.forwardNanos(InternalSubchannel.POOL_IDLE_CHECK_NANOS);
+    verify(pooled.transport).shutdown(any(Status.class));
+    verify(active.transport, never()).shutdown(any(Status.class));
+    assertEquals(1, pool.size());
+    assertEquals(READY, internalSubchannel.getState());
+    // Back at the minimum, so no more checks
+    assertEquals(0, fakeClock.numPendingTasks());
+
+    pooled.listener.transportShutdown(Status.UNAVAILABLE);
+    pooled.listener.transportTerminated();
+    assertEquals(READY, internalSubchannel.getState());
+    assertNull(transports.poll());
+    assertNoCallbackInvoke();
+  }
+
+  @Test
+  public void connectionPool_replacesActiveTransport() throws Exception {
+    SocketAddress addr = mock(SocketAddress.class);
+    createInternalSubchannel(
+        0, new PooledClientTransport.Config(2, 2, 10), new EquivalentAddressGroup(addr));
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo active = transports.poll();
+    active.listener.transportReady();
+    MockClientTransportInfo pooled = transports.poll();
+    pooled.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+    PooledClientTransport pool = (PooledClientTransport) internalSubchannel.obtainActiveTransport();
+
+    active.listener.transportShutdown(Status.UNAVAILABLE);
+    // Stays READY on the pooled transport, and reconnects to keep the minimum
+    assertNoCallbackInvoke();
+    assertEquals(READY, internalSubchannel.getState());
+    assertEquals(1, pool.size());
+    MockClientTransportInfo newPooled = transports.poll();
+    assertNotNull(newPooled);
+
+    // Without another ready transport, the subchannel goes IDLE and closes the pending one
+    pooled.listener.transportShutdown(Status.UNAVAILABLE);
+    assertExactCallbackInvokes("onStateChange:IDLE");
+    verify(newPooled.transport).shutdown(any(Status.class));
+    assertEquals(0, pool.size());
+    assertNull(internalSubchannel.getTransport());
+  }
+
+  @Test
+  public void connectionPool_shutdownWithSubchannel() throws Exception {
+    SocketAddress addr = mock(SocketAddress.class);
+    createInternalSubchannel(
+        0, new PooledClientTransport.Config(2, 2, 10), new EquivalentAddressGroup(addr));
+    internalSubchannel.obtainActiveTransport();
+    MockClientTransportInfo active = transports.poll();
+    active.listener.transportReady();
+    MockClientTransportInfo pooled = transports.poll();
+    pooled.listener.transportReady();
+    assertExactCallbackInvokes("onStateChange:CONNECTING", "onStateChange:READY");
+
+    internalSubchannel.shutdown(SHUTDOWN_REASON);
+    verify(active.transport).shutdown(same(SHUTDOWN_REASON));
+    verify(pooled.transport).shutdown(same(SHUTDOWN_REASON));
+    assertExactCallbackInvokes("onStateChange:SHUTDOWN");
+    active.listener.transportShutdown(SHUTDOWN_REASON);
+    pooled.listener.transportShutdown(SHUTDOWN_REASON);
+    active.listener.transportTerminated();
+    assertNoCallbackInvoke();
+    pooled.listener.transportTerminated();
+    assertExactCallbackInvokes("onTerminated");
+  }
+
   @Test
   public void shutdownBeforeTransportCreated() throws Exception {
     SocketAddress addr = mock(SocketAddress.class);
@@ -1350,6 +1610,16 @@ public class InternalSubchannelTest {
   }
 
   private void createInternalSubchannel(EquivalentAddressGroup ... addrs) {
+    createInternalSubchannel(0, addrs);
+  }
+
+  private void createInternalSubchannel(int spareTransportCount, EquivalentAddressGroup ... addrs) {
+    createInternalSubchannel(spareTransportCount, null, addrs);
+  }
+
+  private void createInternalSubchannel(
+      int spareTransportCount, @Nullable PooledClientTransport.Config poolConfig,
+      EquivalentAddressGroup ... addrs) {
     List<EquivalentAddressGroup> addressGroups = Arrays.asList(addrs);
     InternalLogId logId = InternalLogId.allocate("Subchannel", /*details=*/ AUTHORITY);
     ChannelTracer subchannelTracer = new ChannelTracer(logId, 10,
@@ -1360,7 +1630,16 @@ public class InternalSubchannelTest {
         channelz, CallTracer.getDefaultFactory().create(),
         subchannelTracer,
         logId,
-        new ChannelLoggerImpl(subchannelTracer, fakeClock.getTimeProvider()));
+        new ChannelLoggerImpl(subchannelTracer, fakeClock.getTimeProvider()),
+        spareTransportCount,
+        poolConfig);
+  }
+
+  private static void startStream(ClientTransport transport) {
+    transport.newStream(
+        TestMethodDescriptors.voidMethod(), new Metadata(), CallOptions.DEFAULT,
+        new ClientStreamTracer[] {new ClientStreamTracer() {}})
+        .start(new NoopClientStreamListener());
   }
 
   private void assertNoCallbackInvoke() {
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link LatencyHistogram}. */
+@RunWith(JUnit4.class)
+public class LatencyHistogramTest {
+  private static final ClientStreamTracer.StreamInfo STREAM_INFO =
+      ClientStreamTracer.StreamInfo.newBuilder().setCallOptions(CallOptions.DEFAULT).build();
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final LatencyHistogram histogram = new LatencyHistogram(fakeClock.getTicker());
+
+  @Test
+  public void bucketBoundaries() {
+    for (long value = 0; value < 100_000; value++) {
+      int index = LatencyHistogram.bucketIndex(value);
+      assertThat(LatencyHistogram.bucketUpperBound(index)).isAtLeast(value);
+      if (index > 0) {
+        assertThat(LatencyHistogram.bucketUpperBound(index - 1)).isLessThan(value);
+      }
+    }
+    int last = LatencyHistogram.bucketIndex(Long.MAX_VALUE);
+    assertEquals(Long.MAX_VALUE, LatencyHistogram.bucketUpperBound(last));
+    assertEquals(0, LatencyHistogram.bucketIndex(-1));
+  }
+
+  @Test
+  public void tooFewSamples() {
+    for (int i = 0; i < LatencyHistogram.MIN_SAMPLES - 1; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    assertEquals(-1, histogram.getValueAtPercentile(50));
+
+    histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+    assertThat(histogram.getValueAtPercentile(50)).isAtLeast(TimeUnit.MILLISECONDS.toNanos(10));
+  }
+
+  @Test
+  public void percentiles() {
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(i));
+    }
+    assertWithinBucketPrecision(histogram.getValueAtPercentile(50), 500);
+    assertWithinBucketPrecision(histogram.getValueAtPercentile(95), 950);
+    assertWithinBucketPrecision(histogram.getValueAtPercentile(99.9), 999);
+  }
+
+  @Test
+  public void decay_followsRecentLatency() {
+    for (int i = 0; i < LatencyHistogram.DECAY_INTERVAL; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    assertWithinBucketPrecision(histogram.getValueAtPercentile(50), 10);
+
+    for (int i = 0; i < 4 * LatencyHistogram.DECAY_INTERVAL; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+    assertWithinBucketPrecision(histogram.getValueAtPercentile(50), 100);
+  }
+
+  @Test
+  public void tracerRecordsSuccessfulCalls() {
+    for (int i = 0; i < LatencyHistogram.MIN_SAMPLES; i++) {
+      ClientStreamTracer.Factory factory = histogram.newCallTracerFactory();
+      ClientStreamTracer ok = factory.newClientStreamTracer(STREAM_INFO, new Metadata());
+      ClientStreamTracer cancelled = factory.newClientStreamTracer(STREAM_INFO, new Metadata());
+      fakeClock.forwardTime(20, TimeUnit.MILLISECONDS);
+      ok.streamClosed(Status.OK);
+      fakeClock.forwardTime(1, TimeUnit.SECONDS);
+      cancelled.streamClosed(Status.CANCELLED);
+    }
+    assertWithinBucketPrecision(histogram.getValueAtPercentile(99), 20);
+  }
+
+  @Test
+  public void hedgedAttemptMeasuredFromCallStart() {
+    ClientStreamTracer.Factory factory = histogram.newCallTracerFactory();
+    ClientStreamTracer first = factory.newClientStreamTracer(STREAM_INFO, new Metadata());
+    fakeClock.forwardTime(50, TimeUnit.MILLISECONDS);
+    ClientStreamTracer hedge = factory.newClientStreamTracer(STREAM_INFO, new Metadata());
+    fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+    hedge.streamClosed(Status.OK);
+    first.streamClosed(Status.OK);
+    for (int i = 1; i < LatencyHistogram.MIN_SAMPLES; i++) {
+      histogram.record(TimeUnit.MILLISECONDS.toNanos(60));
+    }
+
+    assertWithinBucketPrecision(histogram.getValueAtPercentile(1), 60);
+  }
+
+  @Test
+  public void hedgingDelayDoesNotDrift() {
+    // The first attempt takes 100ms, while a hedge takes 10ms. If winning hedges were measured
+    // from their own start, the delay would fall to 10ms, hedging every call.
+    long firstAttemptNanos = TimeUnit.MILLISECONDS.toNanos(100);
+    long hedgeNanos = TimeUnit.MILLISECONDS.toNanos(10);
+    long delayNanos = TimeUnit.MILLISECONDS.toNanos(50);
+    for (int i = 0; i < 10 * LatencyHistogram.DECAY_INTERVAL; i++) {
+      ClientStreamTracer.Factory factory = histogram.newCallTracerFactory();
+      ClientStreamTracer first = factory.newClientStreamTracer(STREAM_INFO, new Metadata());
+      if (delayNanos + hedgeNanos < firstAttemptNanos) {
+        fakeClock.forwardNanos(delayNanos);
+        ClientStreamTracer hedge = factory.newClientStreamTracer(STREAM_INFO, new Metadata());
+        fakeClock.forwardNanos(hedgeNanos);
+        hedge.streamClosed(Status.OK);
+        first.streamClosed(Status.CANCELLED);
+      } else {
+        fakeClock.forwardNanos(firstAttemptNanos);
+        first.streamClosed(Status.OK);
+      }
+      long observedNanos = histogram.getValueAtPercentile(95);
+      if (observedNanos >= 0) {
+        delayNanos = observedNanos;
+      }
+    }
+
+    assertThat(delayNanos).isAtLeast(TimeUnit.MILLISECONDS.toNanos(50));
+  }
+
+  private static void assertWithinBucketPrecision(long actualNanos, long expectedMillis) {
+    long expectedNanos = TimeUnit.MILLISECONDS.toNanos(expectedMillis);
+    assertThat(actualNanos).isAtLeast(expectedNanos);
+    assertThat(actualNanos).isAtMost(expectedNanos + expectedNanos / 8);
+  }
+}
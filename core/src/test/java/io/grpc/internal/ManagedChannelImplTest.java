@@ -1732,6 +1732,61 @@ public class ManagedChannelImplTest {
     assertTrue(channel.isTerminated());
   }
 
+  @Test
+  public void warmUp_connectsSubchannels() throws Exception {
+    createChannel();
+    createSubchannelSafely(helper, addressGroup, Attributes.EMPTY, subchannelStateListener);
+    createSubchannelSafely(helper, addressGroup, Attributes.EMPTY, subchannelStateListener);
+
+    ListenableFuture<Void> warmedUp = channel.warmUp(50);
+    // The load balancer did not request the connections.
+    assertThat(transports).hasSize(2);
+    MockClientTransportInfo ti1 = transports.poll();
+    MockClientTransportInfo ti2 = transports.poll();
+    assertFalse(warmedUp.isDone());
+
+    ti1.listener.transportReady();
+    verify(ti1.transport).ping(any(ClientTransport.PingCallback.class), any(Executor.class));
+    assertTrue(warmedUp.isDone());
+    warmedUp.get();
+
+    // Subchannels created after warm-up are left to the load balancer.
+    createSubchannelSafely(helper, addressGroup, Attributes.EMPTY, subchannelStateListener);
+    assertThat(transports).isEmpty();
+    ti2.listener.transportReady();
+  }
+
+  @Test
+  public void warmUp_withoutSubchannels_connectsNewSubchannelsUntilDone() throws Exception {
+    createChannel();
+    ListenableFuture<Void> warmedUp = channel.warmUp(100);
+    assertThat(transports).isEmpty();
+
+    createSubchannelSafely(helper, addressGroup, Attributes.EMPTY, subchannelStateListener);
+    assertThat(transports).hasSize(1);
+    transports.poll().listener.transportReady();
+    assertTrue(warmedUp.isDone());
+
+    createSubchannelSafely(helper, addressGroup, Attributes.EMPTY, subchannelStateListener);
+    assertThat(transports).isEmpty();
+  }
+
+  @Test
+  public void warmUp_failsOnShutdown() throws Exception {
+    createChannel();
+    createSubchannelSafely(helper, addressGroup, Attributes.EMPTY, subchannelStateListener);
+    ListenableFuture<Void> warmedUp = channel.warmUp(100);
+    assertFalse(warmedUp.isDone());
+
+    channel.shutdown();
+    try {
+      warmedUp.get();
+      fail();
+    } catch (ExecutionException e) {
+      assertThat(Status.fromThrowable(e.getCause()).getCode()).isEqualTo(Code.UNAVAILABLE);
+    }
+  }
+
   @Test
   public void subchannelsNoConnectionShutdown() {
     createChannel();
@@ -294,6 +294,32 @@ public class ManagedChannelServiceConfigTest {
         .isNotNull();
   }
 
+  @Test
+  public void hedgingDelayPercentile_requiresRetryThrottlingOrBudget() {
+    Map<String, ?> hedgingPolicy = ImmutableMap.of(
+        "maxAttempts", 3.0D,
+        "hedgingDelay", "1s",
+        "hedgingDelayPercentile", 95.0D);
+    Map<String, ?> methodConfig = ImmutableMap.of(
+        "name", ImmutableList.of(ImmutableMap.of()), "hedgingPolicy", hedgingPolicy);
+    Map<String, ?> rawServiceConfig =
+        ImmutableMap.of("methodConfig", ImmutableList.of(methodConfig));
+    try {
+      ManagedChannelServiceConfig.fromServiceConfig(rawServiceConfig, true, 5, 5, null);
+      fail("The expected IllegalArgumentException is not thrown");
+    } catch (IllegalArgumentException e) {
+      assertThat(e).hasMessageThat().contains(
+          "hedgingDelayPercentile requires retryThrottling or retryBudget");
+    }
+
+    Map<String, ?> throttledServiceConfig = ImmutableMap.of(
+        "methodConfig", ImmutableList.of(methodConfig),
+        "retryThrottling", ImmutableMap.of("maxTokens", 10.0D, "tokenRatio", 0.1D));
+    assertThat(
+        ManagedChannelServiceConfig.fromServiceConfig(throttledServiceConfig, true, 5, 5, null))
+        .isNotNull();
+  }
+
   private static MethodDescriptor<?, ?> methodForName(String service, String method) {
     return MethodDescriptor.<Void, Void>newBuilder()
         .setFullMethodName(service + "/" + method)
@@ -18,6 +18,7 @@ package io.grpc.internal;
 
 import static com.google.common.truth.Truth.assertThat;
 import static io.grpc.internal.GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
@@ -34,7 +35,9 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import com.google.common.base.Charsets;
 import com.google.common.io.ByteStreams;
 import com.google.common.primitives.Bytes;
+import com.google.common.primitives.Ints;
 import io.grpc.Codec;
+import io.grpc.DecompressorRegistry;
 import io.grpc.InternalChannelz.TransportStats;
 import io.grpc.StatusRuntimeException;
 import io.grpc.StreamTracer;
@@ -49,6 +52,7 @@ import java.io.OutputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.Random;
 import java.util.concurrent.TimeUnit;
 import java.util.zip.GZIPOutputStream;
 import org.junit.Before;
@@ -310,6 +314,29 @@ public class MessageDeframerTest {
       verifyNoMoreInteractions(listener);
     }
 
+    @Test
+    public void largeCompressedMessageIsDecompressedOnExecutor() throws Exception {
+      FakeClock decompressionExecutor = new FakeClock();
+      DecompressorRegistry registry = OffloadedDecompressor.offload(
+          DecompressorRegistry.getDefaultInstance(),
+          decompressionExecutor.getScheduledExecutorService());
+      deframer = new MessageDeframer(listener, registry.lookupDecompressor("gzip"),
+              DEFAULT_MAX_MESSAGE_SIZE, statsTraceCtx, transportTracer);
+      deframer.request(1);
+
+      byte[] message = new byte[OffloadedDecompressor.MIN_COMPRESSED_SIZE + 1000];
+      new Random(1).nextBytes(message);
+      byte[] payload = compress(message);
+      assertTrue(payload.length >= OffloadedDecompressor.MIN_COMPRESSED_SIZE);
+      byte[] header = Bytes.concat(new byte[] {1}, Ints.toByteArray(payload.length));
+      deframer.deframe(buffer(Bytes.concat(header, payload)));
+      verify(listener).messagesAvailable(producer.capture());
+      InputStream stream = producer.getValue().next();
+
+      assertEquals(1, decompressionExecutor.runDueTasks());
+      assertArrayEquals(message, ByteStreams.toByteArray(stream));
+    }
+
     @Test
     public void deliverIsReentrantSafe() {
       doAnswer(
@@ -31,9 +31,12 @@ import io.grpc.StreamTracer;
 import io.grpc.internal.testing.TestStreamTracer.TestBaseStreamTracer;
 import java.io.BufferedInputStream;
 import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.util.Arrays;
+import java.util.List;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -352,6 +355,68 @@ public class MessageFramerTest {
     checkStats(0, 0);
   }
 
+  @Test
+  public void largeByteBufferPayloadIsWrapped() throws Exception {
+    WrappingBytesWritableBufferAllocator wrappingAllocator =
+        new WrappingBytesWritableBufferAllocator(1000, 1000);
+    framer = new MessageFramer(sink, wrappingAllocator, statsTraceCtx);
+    byte[] payload = new byte[MessageFramer.MIN_WRAPPED_MESSAGE_SIZE];
+    Arrays.fill(payload, (byte) 7);
+    InputStream message =
+        ReadableBuffers.openStream(ReadableBuffers.wrap(ByteBuffer.wrap(payload)), true);
+    framer.writePayload(message);
+    // The framer took ownership of the content, so closing the original doesn't release it.
+    assertEquals(0, message.available());
+    message.close();
+    framer.flush();
+
+    byte[] frame = new byte[5 + payload.length];
+    frame[3] = 0x20;
+    System.arraycopy(payload, 0, frame, 5, payload.length);
+    verify(sink).deliverFrame(toWriteBuffer(frame), false, true, 1);
+    verifyNoMoreInteractions(sink);
+    assertEquals(1, wrappingAllocator.wrapCount);
+    checkStats(payload.length, payload.length);
+  }
+
+  @Test
+  public void wrappedPayloadAfterBufferedMessage() throws Exception {
+    WrappingBytesWritableBufferAllocator wrappingAllocator =
+        new WrappingBytesWritableBufferAllocator(1000, 1000);
+    framer = new MessageFramer(sink, wrappingAllocator, statsTraceCtx);
+    writeKnownLength(framer, new byte[] {3});
+    byte[] payload = new byte[MessageFramer.MIN_WRAPPED_MESSAGE_SIZE];
+    Arrays.fill(payload, (byte) 7);
+    framer.writePayload(
+        ReadableBuffers.openStream(ReadableBuffers.wrap(ByteBuffer.wrap(payload)), true));
+    framer.flush();
+
+    verify(sink).deliverFrame(
+        toWriteBufferWithMinSize(new byte[] {0, 0, 0, 0, 1, 3}, 1000), false, false, 1);
+    byte[] frame = new byte[5 + payload.length];
+    frame[3] = 0x20;
+    System.arraycopy(payload, 0, frame, 5, payload.length);
+    verify(sink).deliverFrame(toWriteBuffer(frame), false, true, 1);
+    verifyNoMoreInteractions(sink);
+    // The header is part of the wrapped buffer rather than a buffer of its own.
+    assertEquals(1, wrappingAllocator.allocCount);
+  }
+
+  @Test
+  public void smallByteBufferPayloadIsCopied() {
+    WrappingBytesWritableBufferAllocator wrappingAllocator =
+        new WrappingBytesWritableBufferAllocator(1000, 1000);
+    framer = new MessageFramer(sink, wrappingAllocator, statsTraceCtx);
+    ReadableBuffer payload = ReadableBuffers.wrap(ByteBuffer.wrap(new byte[] {3, 14}));
+    framer.writePayload(ReadableBuffers.openStream(payload, true));
+    framer.flush();
+
+    verify(sink).deliverFrame(toWriteBuffer(new byte[] {0, 0, 0, 0, 2, 3, 14}), false, true, 1);
+    verifyNoMoreInteractions(sink);
+    assertEquals(0, wrappingAllocator.wrapCount);
+    checkStats(2, 2);
+  }
+
   private static WritableBuffer toWriteBuffer(byte[] data) {
     return toWriteBufferWithMinSize(data, 0);
   }
@@ -466,4 +531,29 @@ public class MessageFramerTest {
       return new ByteWritableBuffer(Math.min(maxSize, Math.max(capacityHint, minSize)));
     }
   }
+
+  static class WrappingBytesWritableBufferAllocator extends BytesWritableBufferAllocator
+      implements WrappingWritableBufferAllocator {
+    public int wrapCount = 0;
+
+    WrappingBytesWritableBufferAllocator(int minSize, int maxSize) {
+      super(minSize, maxSize);
+    }
+
+    @Override
+    public WritableBuffer wrap(List<ByteBuffer> buffers, Closeable owner) {
+      wrapCount++;
+      int size = 0;
+      for (ByteBuffer buffer : buffers) {
+        size += buffer.remaining();
+      }
+      ByteWritableBuffer wrapped = new ByteWritableBuffer(size);
+      for (ByteBuffer buffer : buffers) {
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+        wrapped.write(bytes, 0, bytes.length);
+      }
+      return wrapped;
+    }
+  }
 }
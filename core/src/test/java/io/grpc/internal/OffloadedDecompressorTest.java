@@ -0,0 +1,158 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import com.google.common.io.ByteStreams;
+import io.grpc.Codec;
+import io.grpc.Decompressor;
+import io.grpc.DecompressorRegistry;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Random;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link OffloadedDecompressor}. */
+@RunWith(JUnit4.class)
+public class OffloadedDecompressorTest {
+  private final FakeClock executor = new FakeClock();
+  private final byte[] data = newData(1000000);
+
+  @Test
+  public void decompressesOnExecutor() throws Exception {
+    TrackingInputStream source = new TrackingInputStream(data);
+    InputStream stream =
+        OffloadedDecompressor.start(source, executor.getScheduledExecutorService());
+    assertNotNull(stream);
+    assertEquals(0, source.reads);
+
+    assertEquals(1, executor.runDueTasks());
+    assertTrue(source.closed);
+    assertEquals(data.length, stream.available());
+    assertArrayEquals(data, ByteStreams.toByteArray(stream));
+  }
+
+  @Test
+  public void closeBeforeWorkerRuns_closesSource() throws Exception {
+    TrackingInputStream source = new TrackingInputStream(data);
+    InputStream stream =
+        OffloadedDecompressor.start(source, executor.getScheduledExecutorService());
+
+    stream.close();
+    assertTrue(source.closed);
+    assertEquals(1, executor.runDueTasks());
+    assertEquals(0, source.reads);
+    assertReadFails(stream);
+  }
+
+  @Test
+  public void closeWhileWorkerRuns_stopsWorker() throws Exception {
+    final InputStream[] stream = new InputStream[1];
+    TrackingInputStream source = new TrackingInputStream(data) {
+      @Override
+      public int read(byte[] b, int off, int len) {
+        if (reads == 1) {
+          // The reader gives up on the message while it is being decompressed.
+          try {
+            stream[0].close();
+          } catch (IOException e) {
+            throw new AssertionError(e);
+          }
+        }
+        return super.read(b, off, len);
+      }
+    };
+    stream[0] = OffloadedDecompressor.start(source, executor.getScheduledExecutorService());
+
+    assertEquals(1, executor.runDueTasks());
+    assertEquals(2, source.reads);
+    assertTrue(source.closed);
+    assertEquals(0, stream[0].available());
+    assertReadFails(stream[0]);
+  }
+
+  @Test
+  public void offload_nullExecutor_keepsRegistry() {
+    DecompressorRegistry registry = DecompressorRegistry.getDefaultInstance();
+    assertSame(registry, OffloadedDecompressor.offload(registry, null));
+    assertNull(OffloadedDecompressor.executorFor(registry.lookupDecompressor("gzip")));
+  }
+
+  @Test
+  public void offload_wrapsCompressingDecompressors() {
+    Executor offloadExecutor = executor.getScheduledExecutorService();
+    DecompressorRegistry registry = OffloadedDecompressor.offload(
+        DecompressorRegistry.getDefaultInstance(), offloadExecutor);
+
+    assertEquals(
+        DecompressorRegistry.getDefaultInstance().getKnownMessageEncodings(),
+        registry.getKnownMessageEncodings());
+    assertEquals(
+        DecompressorRegistry.getDefaultInstance().getAdvertisedMessageEncodings(),
+        registry.getAdvertisedMessageEncodings());
+    Decompressor gzip = registry.lookupDecompressor("gzip");
+    assertEquals("gzip", gzip.getMessageEncoding());
+    assertSame(offloadExecutor, OffloadedDecompressor.executorFor(gzip));
+    assertSame(Codec.Identity.NONE, registry.lookupDecompressor("identity"));
+  }
+
+  private static void assertReadFails(InputStream stream) {
+    try {
+      stream.read();
+      fail("Expected exception");
+    } catch (IOException expected) {
+      // expected
+    }
+  }
+
+  private static byte[] newData(int size) {
+    byte[] bytes = new byte[size];
+    new Random(1).nextBytes(bytes);
+    return bytes;
+  }
+
+  private static class TrackingInputStream extends ByteArrayInputStream {
+    int reads;
+    boolean closed;
+
+    TrackingInputStream(byte[] bytes) {
+      super(bytes);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      reads++;
+      return super.read(b, off, len);
+    }
+
+    @Override
+    public void close() {
+      closed = true;
+    }
+  }
+}
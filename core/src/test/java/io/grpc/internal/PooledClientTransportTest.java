@@ -0,0 +1,265 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.internal;
+
+import static com.google.common.truth.Truth.assertThat;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalLogId;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.ClientStreamListener.RpcProgress;
+import io.grpc.testing.TestMethodDescriptors;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PooledClientTransport}. */
+@RunWith(JUnit4.class)
+public class PooledClientTransportTest {
+  private static final MethodDescriptor<Void, Void> METHOD = TestMethodDescriptors.voidMethod();
+  private static final ClientStreamTracer[] TRACERS = new ClientStreamTracer[] {
+      new ClientStreamTracer() {}
+  };
+
+  private final AtomicInteger transportRequests = new AtomicInteger();
+  private final PooledClientTransport pool = new PooledClientTransport(
+      InternalLogId.allocate("test", null),
+      new PooledClientTransport.Config(1, 3, 2),
+      new Runnable() {
+        @Override
+        public void run() {
+          transportRequests.incrementAndGet();
+        }
+      });
+
+  @Test
+  public void newStream_placedOnLeastLoadedTransport() {
+    FakeTransport transport1 = new FakeTransport();
+    FakeTransport transport2 = new FakeTransport();
+    pool.add(transport1);
+    pool.add(transport2);
+
+    RecordingListener stream1 = startStream();
+    RecordingListener stream2 = startStream();
+    RecordingListener stream3 = startStream();
+
+    assertThat(transport1.streams).hasSize(2);
+    assertThat(transport2.streams).hasSize(1);
+    assertThat(pool.getActiveStreams(transport1)).isEqualTo(2);
+    assertThat(pool.getActiveStreams(transport2)).isEqualTo(1);
+
+    transport1.streams.get(0).close();
+    assertThat(stream1.closed).isTrue();
+    assertThat(stream2.closed).isFalse();
+    assertThat(stream3.closed).isFalse();
+    assertThat(pool.getActiveStreams(transport1)).isEqualTo(1);
+
+    startStream();
+    assertThat(transport1.streams).hasSize(3);
+    assertThat(transport2.streams).hasSize(1);
+  }
+
+  @Test
+  public void newStream_requestsTransportOnceWhenSaturated() {
+    FakeTransport transport1 = new FakeTransport();
+    pool.add(transport1);
+
+    startStream();
+    startStream();
+    assertThat(transportRequests.get()).isEqualTo(0);
+
+    // Saturated streams are still placed on the least loaded transport
+    startStream();
+    startStream();
+    assertThat(transport1.streams).hasSize(4);
+    assertThat(transportRequests.get()).isEqualTo(1);
+
+    pool.transportRequestDone();
+    startStream();
+    assertThat(transportRequests.get()).isEqualTo(2);
+  }
+
+  @Test
+  public void newStream_doesNotRequestTransportBeyondMax() {
+    pool.add(new FakeTransport());
+    pool.add(new FakeTransport());
+    pool.add(new FakeTransport());
+
+    for (int i = 0; i < 10; i++) {
+      startStream();
+    }
+    assertThat(transportRequests.get()).isEqualTo(0);
+  }
+
+  @Test
+  public void removedTransportGetsNoNewStreams() {
+    FakeTransport transport1 = new FakeTransport();
+    FakeTransport transport2 = new FakeTransport();
+    pool.add(transport1);
+    pool.add(transport2);
+
+    assertThat(pool.remove(transport1)).isTrue();
+    assertThat(pool.remove(transport1)).isFalse();
+    assertThat(pool.size()).isEqualTo(1);
+    startStream();
+    startStream();
+    assertThat(transport1.streams).isEmpty();
+    assertThat(transport2.streams).hasSize(2);
+  }
+
+  @Test
+  public void emptyPool_refusesStream() {
+    FakeTransport transport = new FakeTransport();
+    pool.add(transport);
+    pool.clear();
+
+    RecordingListener listener = startStream();
+    assertThat(listener.closed).isTrue();
+    assertThat(listener.status.getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+    assertThat(listener.rpcProgress).isEqualTo(RpcProgress.REFUSED);
+    assertThat(transport.streams).isEmpty();
+  }
+
+  @Test
+  public void newStream_countedBeforeStarted() {
+    FakeTransport transport1 = new FakeTransport();
+    FakeTransport transport2 = new FakeTransport();
+    pool.add(transport1);
+    pool.add(transport2);
+
+    ClientStream stream1 = newStream();
+    newStream();
+
+    assertThat(transport1.streams).hasSize(1);
+    assertThat(transport2.streams).hasSize(1);
+    assertThat(pool.getActiveStreams(transport1)).isEqualTo(1);
+
+    // A stream cancelled before it is started is never closed, so it is released right away.
+    stream1.cancel(Status.CANCELLED);
+    assertThat(pool.getActiveStreams(transport1)).isEqualTo(0);
+  }
+
+  @Test
+  public void cancelAfterStart_releasedOnceClosed() {
+    FakeTransport transport = new FakeTransport();
+    pool.add(transport);
+
+    ClientStream stream = newStream();
+    stream.start(new RecordingListener());
+    stream.cancel(Status.CANCELLED);
+    assertThat(pool.getActiveStreams(transport)).isEqualTo(1);
+    transport.streams.get(0).close();
+    assertThat(pool.getActiveStreams(transport)).isEqualTo(0);
+  }
+
+  @Test
+  public void removeIdle() {
+    FakeTransport transport1 = new FakeTransport();
+    FakeTransport transport2 = new FakeTransport();
+    FakeTransport transport3 = new FakeTransport();
+    pool.add(transport1);
+    pool.add(transport2);
+    pool.add(transport3);
+    // New transports are not idle yet
+    assertThat(pool.removeIdle(3, null)).isEmpty();
+
+    startStream();
+    assertThat(transport1.streams).hasSize(1);
+    assertThat(pool.removeIdle(3, transport2)).containsExactly(transport3);
+    assertThat(pool.size()).isEqualTo(2);
+
+    transport1.streams.get(0).close();
+    assertThat(pool.removeIdle(1, null)).containsExactly(transport1);
+    assertThat(pool.size()).isEqualTo(1);
+    startStream();
+    assertThat(transport2.streams).hasSize(1);
+  }
+
+  private ClientStream newStream() {
+    return pool.newStream(METHOD, new Metadata(), CallOptions.DEFAULT, TRACERS);
+  }
+
+  private RecordingListener startStream() {
+    RecordingListener listener = new RecordingListener();
+    newStream().start(listener);
+    return listener;
+  }
+
+  private static final class RecordingListener extends NoopClientStreamListener {
+    boolean closed;
+    Status status;
+    RpcProgress rpcProgress;
+
+    @Override
+    public void closed(Status status, RpcProgress rpcProgress, Metadata trailers) {
+      this.closed = true;
+      this.status = status;
+      this.rpcProgress = rpcProgress;
+    }
+  }
+
+  private static final class FakeStream extends NoopClientStream {
+    ClientStreamListener listener;
+
+    @Override
+    public void start(ClientStreamListener listener) {
+      this.listener = listener;
+    }
+
+    void close() {
+      listener.closed(Status.OK, RpcProgress.PROCESSED, new Metadata());
+    }
+  }
+
+  private static final class FakeTransport implements ClientTransport {
+    final List<FakeStream> streams = new ArrayList<>();
+    final InternalLogId logId = InternalLogId.allocate("fake", null);
+
+    @Override
+    public ClientStream newStream(
+        MethodDescriptor<?, ?> method, Metadata headers, CallOptions callOptions,
+        ClientStreamTracer[] tracers) {
+      FakeStream stream = new FakeStream();
+      streams.add(stream);
+      return stream;
+    }
+
+    @Override
+    public void ping(PingCallback callback, Executor executor) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public ListenableFuture<SocketStats> getStats() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public InternalLogId getLogId() {
+      return logId;
+    }
+  }
+}
@@ -21,6 +21,7 @@ import static io.grpc.internal.ClientStreamListener.RpcProgress.DROPPED;
 import static io.grpc.internal.ClientStreamListener.RpcProgress.PROCESSED;
 import static io.grpc.internal.ClientStreamListener.RpcProgress.REFUSED;
 import static io.grpc.internal.RetriableStream.GRPC_PREVIOUS_RPC_ATTEMPTS;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotSame;
@@ -42,11 +43,14 @@ import static org.mockito.Mockito.verifyNoMoreInteractions;
 import static org.mockito.Mockito.when;
 
 import com.google.common.collect.ImmutableSet;
+import com.google.common.io.ByteStreams;
 import com.google.common.util.concurrent.MoreExecutors;
 import io.grpc.ClientStreamTracer;
 import io.grpc.Codec;
 import io.grpc.Compressor;
 import io.grpc.DecompressorRegistry;
+import io.grpc.Drainable;
+import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.MethodDescriptor.MethodType;
@@ -55,6 +59,7 @@ import io.grpc.Status.Code;
 import io.grpc.StringMarshaller;
 import io.grpc.internal.ClientStreamListener.RpcProgress;
 import io.grpc.internal.RetriableStream.ChannelBufferMeter;
+import io.grpc.internal.RetriableStream.RetryBudget;
 import io.grpc.internal.RetriableStream.Throttle;
 import io.grpc.internal.StreamListener.MessageProducer;
 import java.io.InputStream;
@@ -64,6 +69,7 @@ import java.util.Random;
 import java.util.concurrent.Executor;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 import javax.annotation.Nullable;
 import org.junit.After;
@@ -126,7 +132,8 @@ public class RetriableStreamTest {
       new HedgingPolicy(
           MAX_ATTEMPTS,
           TimeUnit.SECONDS.toNanos(HEDGING_DELAY_IN_SECONDS),
-          ImmutableSet.of(NON_FATAL_STATUS_CODE_1, NON_FATAL_STATUS_CODE_2));
+          ImmutableSet.of(NON_FATAL_STATUS_CODE_1, NON_FATAL_STATUS_CODE_2),
+          null);
 
   private final RetriableStreamRecorder retriableStreamRecorder =
       mock(RetriableStreamRecorder.class);
@@ -149,12 +156,27 @@ public class RetriableStreamTest {
         @Nullable RetryPolicy retryPolicy,
         @Nullable HedgingPolicy hedgingPolicy,
         @Nullable Throttle throttle) {
+      this(
+          method, headers, channelBufferUsed, perRpcBufferLimit, channelBufferLimit, false,
+          callExecutor, scheduledExecutorService, retryPolicy, hedgingPolicy, throttle, null);
+    }
+
+    RecordedRetriableStream(MethodDescriptor<String, ?> method, Metadata headers,
+        ChannelBufferMeter channelBufferUsed, long perRpcBufferLimit, long channelBufferLimit,
+        boolean bufferSerializedMessages,
+        Executor callExecutor,
+        ScheduledExecutorService scheduledExecutorService,
+        @Nullable RetryPolicy retryPolicy,
+        @Nullable HedgingPolicy hedgingPolicy,
+        @Nullable Throttle throttle,
+        @Nullable RetryBudget retryBudget) {
       super(
-          method, headers, channelBufferUsed, perRpcBufferLimit, channelBufferLimit, callExecutor,
-          scheduledExecutorService,
+          method, headers, channelBufferUsed, perRpcBufferLimit, channelBufferLimit,
+          bufferSerializedMessages, callExecutor, scheduledExecutorService,
           retryPolicy,
           hedgingPolicy,
-          throttle);
+          throttle,
+          retryBudget);
     }
 
     @Override
@@ -200,6 +222,20 @@ public class RetriableStreamTest {
         null, HEDGING_POLICY, throttle);
   }
 
+  private RetriableStream<String> newBudgetedRetriableStream(RetryBudget retryBudget) {
+    return new RecordedRetriableStream(
+        method, new Metadata(), channelBufferUsed, PER_RPC_BUFFER_LIMIT, CHANNEL_BUFFER_LIMIT,
+        false, MoreExecutors.directExecutor(), fakeClock.getScheduledExecutorService(),
+        RETRY_POLICY, null, null, retryBudget);
+  }
+
+  private RetriableStream<String> newBudgetedHedgingStream(RetryBudget retryBudget) {
+    return new RecordedRetriableStream(
+        method, new Metadata(), channelBufferUsed, PER_RPC_BUFFER_LIMIT, CHANNEL_BUFFER_LIMIT,
+        false, MoreExecutors.directExecutor(), fakeClock.getScheduledExecutorService(),
+        null, HEDGING_POLICY, null, retryBudget);
+  }
+
   @After
   public void tearDown() {
     assertEquals(0, fakeClock.numPendingTasks());
@@ -1758,6 +1794,50 @@ public class RetriableStreamTest {
     verify(retriableStreamRecorder).postCommit();
   }
 
+  @Test
+  public void bufferSerializedMessages_attemptsShareSerializedBytes() throws Exception {
+    final AtomicInteger serializations = new AtomicInteger();
+    MethodDescriptor<String, String> countingMethod = method.toBuilder()
+        .setRequestMarshaller(new StringMarshaller() {
+          @Override
+          public InputStream stream(String value) {
+            serializations.incrementAndGet();
+            return super.stream(value);
+          }
+        })
+        .build();
+    RetriableStream<String> retriableStream = new RecordedRetriableStream(
+        countingMethod, new Metadata(), channelBufferUsed, PER_RPC_BUFFER_LIMIT,
+        CHANNEL_BUFFER_LIMIT, true, MoreExecutors.directExecutor(),
+        fakeClock.getScheduledExecutorService(), RETRY_POLICY, null, null);
+    ClientStream mockStream1 = mock(ClientStream.class);
+    ClientStream mockStream2 = mock(ClientStream.class);
+    doReturn(mockStream1).when(retriableStreamRecorder).newSubstream(0);
+    retriableStream.start(masterListener);
+    retriableStream.sendMessage("msg1");
+
+    ArgumentCaptor<ClientStreamListener> sublistenerCaptor1 =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream1).start(sublistenerCaptor1.capture());
+    ArgumentCaptor<InputStream> messageCaptor = ArgumentCaptor.forClass(InputStream.class);
+    verify(mockStream1).writeMessage(messageCaptor.capture());
+    assertEquals("msg1", new String(ByteStreams.toByteArray(messageCaptor.getValue()), UTF_8));
+
+    // retry
+    doReturn(mockStream2).when(retriableStreamRecorder).newSubstream(1);
+    sublistenerCaptor1.getValue().closed(
+        Status.fromCode(RETRIABLE_STATUS_CODE_1), PROCESSED, new Metadata());
+    fakeClock.forwardTime((long) (INITIAL_BACKOFF_IN_SECONDS * FAKE_RANDOM), TimeUnit.SECONDS);
+
+    verify(mockStream2).writeMessage(messageCaptor.capture());
+    InputStream replayed = messageCaptor.getValue();
+    assertThat(replayed).isInstanceOf(KnownLength.class);
+    assertThat(replayed).isInstanceOf(Drainable.class);
+    assertEquals(4, replayed.available());
+    assertEquals("msg1", new String(ByteStreams.toByteArray(replayed), UTF_8));
+    assertEquals(1, serializations.get());
+  }
+
   @Test
   public void noRetry_transparentRetry_earlyCommit() {
     ClientStream mockStream1 = mock(ClientStream.class);
@@ -2587,6 +2667,149 @@ public class RetriableStreamTest {
     assertEquals(0, fakeClock.numPendingTasks());
   }
 
+  @Test
+  public void retryBudget() {
+    RetryBudget retryBudget = new RetryBudget(2f, 50f);
+    assertTrue(retryBudget.hasToken());
+    assertTrue(retryBudget.tryAcquire()); // token = 1
+    assertTrue(retryBudget.tryAcquire()); // token = 0
+    assertFalse(retryBudget.hasToken());
+    assertFalse(retryBudget.tryAcquire()); // token = 0
+
+    retryBudget.onSuccess(); // token = 0.5
+    assertFalse(retryBudget.tryAcquire());
+    retryBudget.onSuccess(); // token = 1
+    assertTrue(retryBudget.tryAcquire()); // token = 0
+
+    for (int i = 0; i < 10; i++) {
+      retryBudget.onSuccess();
+    }
+    assertTrue(retryBudget.tryAcquire()); // token = 1
+    assertTrue(retryBudget.tryAcquire()); // token = 0
+    assertFalse(retryBudget.tryAcquire());
+  }
+
+  @Test
+  public void retryBudgetExhausted_noRetry() {
+    RetryBudget retryBudget = new RetryBudget(1f, 10f);
+    RetriableStream<String> retriableStream = newBudgetedRetriableStream(retryBudget);
+
+    ClientStream mockStream = mock(ClientStream.class);
+    doReturn(mockStream).when(retriableStreamRecorder).newSubstream(anyInt());
+    retriableStream.start(masterListener);
+    ArgumentCaptor<ClientStreamListener> sublistenerCaptor =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream).start(sublistenerCaptor.capture());
+
+    // mimic some other call in the channel spending the budget
+    assertTrue(retryBudget.tryAcquire());
+
+    sublistenerCaptor.getValue().closed(
+        Status.fromCode(RETRIABLE_STATUS_CODE_1), PROCESSED, new Metadata());
+    verify(retriableStreamRecorder, never()).newSubstream(1);
+    verify(retriableStreamRecorder).postCommit();
+    assertEquals(0, fakeClock.numPendingTasks());
+  }
+
+  @Test
+  public void retryBudget_spentByRetry() {
+    RetryBudget retryBudget = new RetryBudget(1f, 10f);
+    RetriableStream<String> retriableStream = newBudgetedRetriableStream(retryBudget);
+
+    ClientStream mockStream1 = mock(ClientStream.class);
+    ClientStream mockStream2 = mock(ClientStream.class);
+    doReturn(mockStream1).when(retriableStreamRecorder).newSubstream(0);
+    doReturn(mockStream2).when(retriableStreamRecorder).newSubstream(1);
+    retriableStream.start(masterListener);
+    ArgumentCaptor<ClientStreamListener> sublistenerCaptor1 =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream1).start(sublistenerCaptor1.capture());
+
+    sublistenerCaptor1.getValue().closed(
+        Status.fromCode(RETRIABLE_STATUS_CODE_1), PROCESSED, new Metadata());
+    assertFalse(retryBudget.hasToken());
+    fakeClock.forwardTime(
+        (long) (INITIAL_BACKOFF_IN_SECONDS * FAKE_RANDOM), TimeUnit.SECONDS);
+    ArgumentCaptor<ClientStreamListener> sublistenerCaptor2 =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream2).start(sublistenerCaptor2.capture());
+
+    sublistenerCaptor2.getValue().closed(
+        Status.fromCode(RETRIABLE_STATUS_CODE_1), PROCESSED, new Metadata());
+    verify(retriableStreamRecorder, never()).newSubstream(2);
+    verify(retriableStreamRecorder).postCommit();
+  }
+
+  @Test
+  public void hedging_retryBudgetExhaustedByHedges() {
+    RetryBudget retryBudget = new RetryBudget(1f, 10f);
+    RetriableStream<String> hedgingStream = newBudgetedHedgingStream(retryBudget);
+
+    ClientStream mockStream1 = mock(ClientStream.class);
+    ClientStream mockStream2 = mock(ClientStream.class);
+    ClientStream mockStream3 = mock(ClientStream.class);
+    when(retriableStreamRecorder.newSubstream(anyInt()))
+        .thenReturn(mockStream1, mockStream2, mockStream3);
+
+    hedgingStream.start(masterListener);
+    verify(mockStream1).start(any(ClientStreamListener.class));
+
+    fakeClock.forwardTime(HEDGING_DELAY_IN_SECONDS, TimeUnit.SECONDS);
+    verify(mockStream2).start(any(ClientStreamListener.class));
+    assertFalse(retryBudget.hasToken());
+    assertEquals(0, fakeClock.numPendingTasks());
+    verifyNoInteractions(mockStream3);
+  }
+
+  @Test
+  public void hedging_retryBudgetSpentByOtherCall() {
+    RetryBudget retryBudget = new RetryBudget(1f, 10f);
+    RetriableStream<String> hedgingStream = newBudgetedHedgingStream(retryBudget);
+
+    ClientStream mockStream1 = mock(ClientStream.class);
+    ClientStream mockStream2 = mock(ClientStream.class);
+    when(retriableStreamRecorder.newSubstream(anyInt())).thenReturn(mockStream1, mockStream2);
+
+    hedgingStream.start(masterListener);
+    ArgumentCaptor<ClientStreamListener> sublistenerCaptor1 =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream1).start(sublistenerCaptor1.capture());
+    assertEquals(1, fakeClock.numPendingTasks());
+
+    // mimic some other call in the channel spending the budget before the hedge is sent
+    assertTrue(retryBudget.tryAcquire());
+
+    fakeClock.forwardTime(HEDGING_DELAY_IN_SECONDS, TimeUnit.SECONDS);
+    verifyNoInteractions(mockStream2);
+    assertEquals(0, fakeClock.numPendingTasks());
+
+    Status status = Status.fromCode(NON_FATAL_STATUS_CODE_1);
+    Metadata metadata = new Metadata();
+    sublistenerCaptor1.getValue().closed(status, PROCESSED, metadata);
+    verify(retriableStreamRecorder).postCommit();
+    verify(masterListener).closed(status, PROCESSED, metadata);
+  }
+
+  @Test
+  public void hedging_successRefillsRetryBudget() {
+    RetryBudget retryBudget = new RetryBudget(1f, 100f);
+    RetriableStream<String> hedgingStream = newBudgetedHedgingStream(retryBudget);
+
+    ClientStream mockStream1 = mock(ClientStream.class);
+    ClientStream mockStream2 = mock(ClientStream.class);
+    when(retriableStreamRecorder.newSubstream(anyInt())).thenReturn(mockStream1, mockStream2);
+
+    hedgingStream.start(masterListener);
+    fakeClock.forwardTime(HEDGING_DELAY_IN_SECONDS, TimeUnit.SECONDS);
+    ArgumentCaptor<ClientStreamListener> sublistenerCaptor2 =
+        ArgumentCaptor.forClass(ClientStreamListener.class);
+    verify(mockStream2).start(sublistenerCaptor2.capture());
+    assertFalse(retryBudget.hasToken());
+
+    sublistenerCaptor2.getValue().headersRead(new Metadata());
+    assertTrue(retryBudget.hasToken());
+  }
+
   /**
    * Used to stub a retriable stream as well as to record methods of the retriable stream being
    * called.
@@ -19,15 +19,18 @@ package io.grpc.internal;
 import static com.google.common.truth.Truth.assertThat;
 import static java.lang.Double.parseDouble;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.ImmutableSet;
 import io.grpc.MethodDescriptor;
 import io.grpc.Status.Code;
+import io.grpc.internal.RetriableStream.RetryBudget;
 import io.grpc.internal.RetriableStream.Throttle;
 import io.grpc.testing.TestMethodDescriptors;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
 import org.junit.Test;
@@ -169,4 +172,51 @@ public class RetryPolicyTest {
       }
     }
   }
+
+  @Test
+  public void getRetryBudget() throws Exception {
+    BufferedReader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(RetryPolicyTest.class.getResourceAsStream(
+          "/io/grpc/internal/test_retry_service_config.json"), "UTF-8"));
+      StringBuilder sb = new StringBuilder();
+      String line;
+      while ((line = reader.readLine()) != null) {
+        sb.append(line).append('\n');
+      }
+      Object serviceConfigObj = JsonParser.parse(sb.toString());
+      assertTrue(serviceConfigObj instanceof Map);
+
+      @SuppressWarnings("unchecked")
+      Map<String, ?> serviceConfig = (Map<String, ?>) serviceConfigObj;
+      RetryBudget retryBudget = ServiceConfigUtil.getRetryBudgetPolicy(serviceConfig);
+
+      assertEquals(new RetryBudget(5f, 20f), retryBudget);
+    } finally {
+      if (reader != null) {
+        reader.close();
+      }
+    }
+  }
+
+  @Test
+  public void getRetryBudget_maxTokensCapped() {
+    Map<String, Object> budget = new HashMap<>();
+    budget.put("budgetPercent", 10D);
+    budget.put("maxTokens", 1e7);
+    Map<String, Object> serviceConfig = new HashMap<>();
+    serviceConfig.put("retryBudget", budget);
+
+    RetryBudget retryBudget = ServiceConfigUtil.getRetryBudgetPolicy(serviceConfig);
+
+    assertEquals(new RetryBudget(1000f, 10f), retryBudget);
+    for (int i = 0; i < 1000; i++) {
+      assertTrue(retryBudget.tryAcquire());
+    }
+    assertFalse(retryBudget.tryAcquire());
+    for (int i = 0; i < 10; i++) {
+      retryBudget.onSuccess();
+    }
+    assertTrue(retryBudget.tryAcquire());
+  }
 }
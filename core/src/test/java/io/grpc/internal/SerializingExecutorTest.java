@@ -183,6 +183,22 @@ public class SerializingExecutorTest {
     assertEquals(Arrays.asList(2, 3), runs);
   }
 
+  @Test
+  public void yieldsAfterMaxBatchSize() {
+    for (int i = 0; i < SerializingExecutor.MAX_BATCH_SIZE + 2; i++) {
+      executor.execute(new AddToRuns(i));
+    }
+    singleExecutor.drain();
+    assertEquals(SerializingExecutor.MAX_BATCH_SIZE, runs.size());
+
+    // Rescheduled itself to run the rest
+    singleExecutor.drain();
+    assertEquals(SerializingExecutor.MAX_BATCH_SIZE + 2, runs.size());
+    for (int i = 0; i < runs.size(); i++) {
+      assertEquals(i, (int) runs.get(i));
+    }
+  }
+
   @Test
   public void direct() {
     executor = new SerializingExecutor(MoreExecutors.directExecutor());
@@ -194,6 +210,31 @@ public class SerializingExecutorTest {
     assertEquals(Arrays.asList(1, 2, 3), runs);
   }
 
+  @Test
+  public void direct_doesNotYieldAfterMaxBatchSize() {
+    executor = new SerializingExecutor(MoreExecutors.directExecutor());
+    final int tasks = SerializingExecutor.MAX_BATCH_SIZE * 10;
+    final int[] maxDepth = new int[1];
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < tasks; i++) {
+          executor.execute(new Runnable() {
+            @Override
+            public void run() {
+              maxDepth[0] = Math.max(maxDepth[0], Thread.currentThread().getStackTrace().length);
+              runs.add(runs.size());
+            }
+          });
+        }
+      }
+    });
+    assertEquals(tasks, runs.size());
+    // Yielding to the direct executor would have nested a run() per batch.
+    int depth = Thread.currentThread().getStackTrace().length;
+    assertThat(maxDepth[0] - depth).isLessThan(10);
+  }
+
   @Test
   public void testDirectReentrant() {
     executor = new SerializingExecutor(MoreExecutors.directExecutor());
@@ -18,11 +18,17 @@ package io.grpc.internal;
 
 import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
 
 import io.grpc.Metadata;
 import io.grpc.ServerStreamTracer;
 import io.grpc.internal.ServerImplBuilder.ClientTransportServersBuilder;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -101,4 +107,36 @@ public class ServerImplBuilderTest {
     List<? extends ServerStreamTracer.Factory> factories = builder.getTracerFactories();
     assertThat(factories).containsExactly(DUMMY_USER_TRACER);
   }
+
+  @Test
+  public void virtualThreadExecutor() throws Exception {
+    if (!GrpcUtil.isVirtualThreadSupported()) {
+      try {
+        builder.virtualThreadExecutor();
+        fail("Should have thrown");
+      } catch (UnsupportedOperationException expected) {
+        // expected
+      }
+      return;
+    }
+
+    assertSame(builder, builder.virtualThreadExecutor());
+    Executor executor = builder.executorPool.getObject();
+    try {
+      final AtomicReference<Thread> thread = new AtomicReference<>();
+      final CountDownLatch latch = new CountDownLatch(1);
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          thread.set(Thread.currentThread());
+          latch.countDown();
+        }
+      });
+      assertThat(latch.await(5, TimeUnit.SECONDS)).isTrue();
+      assertThat(thread.get().getName()).startsWith("grpc-virtual-executor-");
+      assertThat(Thread.class.getMethod("isVirtual").invoke(thread.get())).isEqualTo(true);
+    } finally {
+      builder.executorPool.returnObject(executor);
+    }
+  }
 }
@@ -20,6 +20,7 @@ import static com.google.common.truth.Truth.assertThat;
 import static io.grpc.InternalChannelz.id;
 import static io.grpc.internal.GrpcUtil.MESSAGE_ENCODING_KEY;
 import static io.grpc.internal.GrpcUtil.TIMEOUT_KEY;
+import static java.nio.charset.StandardCharsets.UTF_8;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
@@ -61,10 +62,12 @@ import io.grpc.InternalChannelz.SocketStats;
 import io.grpc.InternalInstrumented;
 import io.grpc.InternalLogId;
 import io.grpc.InternalServerInterceptors;
+import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
 import io.grpc.ServerCall;
 import io.grpc.ServerCall.Listener;
+import io.grpc.ServerCallAdmissionController;
 import io.grpc.ServerCallExecutorSupplier;
 import io.grpc.ServerCallHandler;
 import io.grpc.ServerInterceptor;
@@ -75,6 +78,7 @@ import io.grpc.ServerTransportFilter;
 import io.grpc.ServiceDescriptor;
 import io.grpc.Status;
 import io.grpc.Status.Code;
+import io.grpc.StatusException;
 import io.grpc.StringMarshaller;
 import io.grpc.internal.ServerImpl.JumpToApplicationThreadServerStreamListener;
 import io.grpc.internal.ServerImplBuilder.ClientTransportServersBuilder;
@@ -607,6 +611,51 @@ public class ServerImplTest {
     verifyNoMoreInteractions(stream);
   }
 
+  @Test
+  public void admissionControllerRejectsCall() throws Exception {
+    final Metadata.Key<String> pushbackKey =
+        Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+    builder.admissionController(new ServerCallAdmissionController() {
+      @Override
+      public StatusException checkAdmission(String fullMethodName, Metadata headers) {
+        Metadata trailers = new Metadata();
+        trailers.put(pushbackKey, "100");
+        return Status.UNAVAILABLE.withDescription("overloaded").asException(trailers);
+      }
+    });
+    createAndStartServer();
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    transportListener.transportReady(Attributes.EMPTY);
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(streamTracerFactories, "Waiter/serve", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+
+    transportListener.streamCreated(stream, "Waiter/serve", requestHeaders);
+
+    verify(stream).setListener(isA(ServerStreamListener.class));
+    verify(stream).streamId();
+    verify(stream).close(statusCaptor.capture(), metadataCaptor.capture());
+    assertEquals(Status.Code.UNAVAILABLE, statusCaptor.getValue().getCode());
+    assertEquals("overloaded", statusCaptor.getValue().getDescription());
+    assertEquals("100", metadataCaptor.getValue().get(pushbackKey));
+    verifyNoMoreInteractions(stream);
+    // Nothing was queued on the executor.
+    assertEquals(0, executor.numPendingTasks());
+  }
+
+  @Test
+  public void admissionControllerAcceptsCall() throws Exception {
+    builder.admissionController(new ServerCallAdmissionController() {
+      @Override
+      public StatusException checkAdmission(String fullMethodName, Metadata headers) {
+        return null;
+      }
+    });
+    basicExchangeSuccessful();
+  }
+
   @Test
   public void basicExchangeSuccessful() throws Exception {
     createAndStartServer();
@@ -717,6 +766,76 @@ public class ServerImplTest {
     verify(streamTracerFactory).newServerStreamTracer(eq("Waiter/serve"), same(requestHeaders));
   }
 
+  @Test
+  public void coalesceMessages_flushesAfterMaxDelay() throws Exception {
+    final class KnownLengthStream extends ByteArrayInputStream implements KnownLength {
+      KnownLengthStream(byte[] buf) {
+        super(buf);
+      }
+    }
+
+    MethodDescriptor<String, String> method = METHOD.toBuilder(
+        STRING_MARSHALLER,
+        new MethodDescriptor.Marshaller<String>() {
+          @Override
+          public InputStream stream(String value) {
+            return new KnownLengthStream(value.getBytes(UTF_8));
+          }
+
+          @Override
+          public String parse(InputStream stream) {
+            return STRING_MARSHALLER.parse(stream);
+          }
+        })
+        .setType(MethodDescriptor.MethodType.SERVER_STREAMING)
+        .build();
+    final AtomicReference<ServerCall<String, String>> callReference = new AtomicReference<>();
+    mutableFallbackRegistry.addService(ServerServiceDefinition.builder(
+        new ServiceDescriptor("Waiter", method))
+        .addMethod(
+            method,
+            new ServerCallHandler<String, String>() {
+              @Override
+              public ServerCall.Listener<String> startCall(
+                  ServerCall<String, String> call,
+                  Metadata headers) {
+                callReference.set(call);
+                return new ServerCall.Listener<String>() {};
+              }
+            }).build());
+    builder.coalesceMessages(1024, 10, TimeUnit.MILLISECONDS);
+    createAndStartServer();
+    ServerTransportListener transportListener
+        = transportServer.registerNewServerTransport(new SimpleServerTransport());
+    transportListener.transportReady(Attributes.EMPTY);
+
+    Metadata requestHeaders = new Metadata();
+    StatsTraceContext statsTraceCtx =
+        StatsTraceContext.newServerContext(streamTracerFactories, "Waiter/serve", requestHeaders);
+    when(stream.statsTraceContext()).thenReturn(statsTraceCtx);
+    transportListener.streamCreated(stream, "Waiter/serve", requestHeaders);
+    verify(stream).setListener(streamListenerCaptor.capture());
+    ServerStreamListener streamListener = streamListenerCaptor.getValue();
+    assertEquals(1, executor.runDueTasks());
+    ServerCall<String, String> call = callReference.get();
+    assertNotNull(call);
+
+    call.sendHeaders(new Metadata());
+    call.sendMessage("first");
+    call.sendMessage("second");
+    verify(stream, times(2)).writeMessage(any(InputStream.class));
+    verify(stream, never()).flush();
+
+    timer.forwardTime(9, TimeUnit.MILLISECONDS);
+    verify(stream, never()).flush();
+    timer.forwardTime(1, TimeUnit.MILLISECONDS);
+    verify(stream).flush();
+
+    call.close(Status.OK, new Metadata());
+    streamListener.closed(Status.OK);
+    assertEquals(1, executor.runDueTasks());
+  }
+
   @Test
   public void transportFilters() throws Exception {
     final SocketAddress remoteAddr = mock(SocketAddress.class);
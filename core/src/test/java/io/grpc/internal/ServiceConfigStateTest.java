@@ -44,6 +44,7 @@ public class ServiceConfigStateTest {
       Collections.<String, MethodInfo>emptyMap(),
       null,
       null,
+      null,
       null);
   private final ManagedChannelServiceConfig serviceConfig2 = new ManagedChannelServiceConfig(
       null,
@@ -51,6 +52,7 @@ public class ServiceConfigStateTest {
       Collections.<String, MethodInfo>emptyMap(),
       null,
       null,
+      null,
       null);
   private final ConfigOrError config1 = ConfigOrError.fromConfig(serviceConfig1);
   private final ConfigOrError config2 = ConfigOrError.fromConfig(serviceConfig2);
@@ -435,6 +437,7 @@ public class ServiceConfigStateTest {
         Collections.<String, MethodInfo>emptyMap(),
         null,
         null,
+        null,
         null);
     ConfigOrError config3 = ConfigOrError.fromConfig(serviceConfig3);
 
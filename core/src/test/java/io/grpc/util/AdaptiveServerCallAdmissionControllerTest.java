@@ -0,0 +1,258 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import com.google.common.base.Supplier;
+import io.grpc.Attributes;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerStreamTracer;
+import io.grpc.ServerStreamTracer.ServerCallInfo;
+import io.grpc.Status;
+import io.grpc.StatusException;
+import io.grpc.internal.FakeClock;
+import io.grpc.testing.TestMethodDescriptors;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link AdaptiveServerCallAdmissionController}. */
+@RunWith(JUnit4.class)
+public class AdaptiveServerCallAdmissionControllerTest {
+  private static final double DELTA = 1e-6;
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+  private final FakeRandom random = new FakeRandom();
+  private final AdaptiveServerCallAdmissionController.Builder builder =
+      AdaptiveServerCallAdmissionController.newBuilder()
+          .setTargetQueueDelay(10, TimeUnit.MILLISECONDS)
+          .setDecayTime(1, TimeUnit.SECONDS)
+          .setRetryPushback(500, TimeUnit.MILLISECONDS)
+          .setTicker(fakeClock.getTicker())
+          .setRandom(random);
+
+  @Test
+  public void acceptsCallsWhenIdle() {
+    AdaptiveServerCallAdmissionController controller = builder.build();
+    random.value = 0;
+
+    assertNull(controller.checkAdmission(method.getFullMethodName(), new Metadata()));
+    assertEquals(0, controller.getRejectProbability(), DELTA);
+  }
+
+  @Test
+  public void shortQueueDelay_accepted() {
+    AdaptiveServerCallAdmissionController controller = builder.build();
+    for (int i = 0; i < 100; i++) {
+      startCall(controller, 5, TimeUnit.MILLISECONDS);
+    }
+
+    assertThat(controller.getQueueDelayNanos()).isGreaterThan(0D);
+    assertEquals(0, controller.getRejectProbability(), DELTA);
+  }
+
+  @Test
+  public void longQueueDelay_rejectedWithPushback() {
+    AdaptiveServerCallAdmissionController controller = builder.build();
+    for (int i = 0; i < 1000; i++) {
+      startCall(controller, 15, TimeUnit.MILLISECONDS);
+    }
+
+    // The average has converged to 15ms, which is half the target over the target.
+    assertEquals(0.5, controller.getRejectProbability(), 0.01);
+    random.value = 0.6;
+    assertNull(controller.checkAdmission(method.getFullMethodName(), new Metadata()));
+    random.value = 0.4;
+    StatusException rejection =
+        controller.checkAdmission(method.getFullMethodName(), new Metadata());
+    assertNotNull(rejection);
+    assertEquals(Status.Code.UNAVAILABLE, rejection.getStatus().getCode());
+    assertEquals("500",
+        rejection.getTrailers().get(AdaptiveServerCallAdmissionController.RETRY_PUSHBACK_MS_KEY));
+  }
+
+  @Test
+  public void rejectProbabilityIsCapped() {
+    AdaptiveServerCallAdmissionController controller =
+        builder.setMaxRejectProbability(0.9).build();
+    for (int i = 0; i < 1000; i++) {
+      startCall(controller, 1, TimeUnit.SECONDS);
+    }
+
+    assertEquals(0.9, controller.getRejectProbability(), DELTA);
+    random.value = 0.95;
+    assertNull(controller.checkAdmission(method.getFullMethodName(), new Metadata()));
+  }
+
+  @Test
+  public void queueDelayDecaysWithoutCalls() {
+    AdaptiveServerCallAdmissionController controller = builder.build();
+    for (int i = 0; i < 1000; i++) {
+      startCall(controller, 1, TimeUnit.SECONDS);
+    }
+    assertThat(controller.getRejectProbability()).isGreaterThan(0D);
+
+    fakeClock.forwardTime(10, TimeUnit.SECONDS);
+    assertEquals(0, controller.getRejectProbability(), DELTA);
+  }
+
+  @Test
+  public void stalledExecutor_queueDelayDoesNotDecay() {
+    AdaptiveServerCallAdmissionController controller = builder.build();
+    for (int i = 0; i < 1000; i++) {
+      startCall(controller, 1, TimeUnit.MILLISECONDS);
+    }
+    assertEquals(0, controller.getRejectProbability(), DELTA);
+
+    // The executor stops running calls, so none of these start.
+    ServerStreamTracer oldest = newTracer(controller);
+    fakeClock.forwardTime(1, TimeUnit.SECONDS);
+    ServerStreamTracer newest = newTracer(controller);
+    fakeClock.forwardTime(10, TimeUnit.SECONDS);
+
+    assertEquals(TimeUnit.SECONDS.toNanos(11), controller.getQueueDelayNanos(), DELTA);
+    assertEquals(0.95, controller.getRejectProbability(), DELTA);
+
+    oldest.streamClosed(Status.CANCELLED);
+    assertEquals(TimeUnit.SECONDS.toNanos(10), controller.getQueueDelayNanos(), DELTA);
+    newest.serverCallStarted(new FakeServerCallInfo());
+    // Only the moving average is left, which now includes the delay of the started call.
+    assertThat(controller.getQueueDelayNanos()).isLessThan((double) TimeUnit.SECONDS.toNanos(10));
+    assertThat(controller.getRejectProbability()).isGreaterThan(0D);
+  }
+
+  @Test
+  public void highCpuUtilization_rejected() {
+    final double[] utilization = {0.5};
+    AdaptiveServerCallAdmissionController controller = builder
+        .setCpuUtilization(new Supplier<Double>() {
+          @Override
+          public Double get() {
+            return utilization[0];
+          }
+        }, 0.8)
+        .build();
+    assertEquals(0, controller.getRejectProbability(), DELTA);
+
+    utilization[0] = 0.9;
+    assertEquals(0.5, controller.getRejectProbability(), DELTA);
+    random.value = 0.4;
+    assertNotNull(controller.checkAdmission(method.getFullMethodName(), new Metadata()));
+  }
+
+  @Test
+  public void unknownCpuUtilization_accepted() {
+    AdaptiveServerCallAdmissionController controller = builder
+        .setCpuUtilization(new Supplier<Double>() {
+          @Override
+          public Double get() {
+            return null;
+          }
+        }, 0.8)
+        .build();
+
+    assertEquals(0, controller.getRejectProbability(), DELTA);
+  }
+
+  @Test
+  public void maxInFlightCallsPerMethod() {
+    AdaptiveServerCallAdmissionController controller =
+        builder.setMaxInFlightCallsPerMethod(2).build();
+    random.value = 0;
+    ServerStreamTracer first = startCall(controller, 0, TimeUnit.MILLISECONDS);
+    ServerStreamTracer second = startCall(controller, 0, TimeUnit.MILLISECONDS);
+    assertEquals(2, controller.getInFlightCalls(method.getFullMethodName()));
+
+    // The tracer of a new call is created before the call is checked.
+    ServerStreamTracer third = newTracer(controller);
+    StatusException rejection =
+        controller.checkAdmission(method.getFullMethodName(), new Metadata());
+    assertNotNull(rejection);
+    assertEquals(Status.Code.UNAVAILABLE, rejection.getStatus().getCode());
+    third.streamClosed(rejection.getStatus());
+    assertEquals(2, controller.getInFlightCalls(method.getFullMethodName()));
+
+    first.streamClosed(Status.OK);
+    newTracer(controller);
+    assertNull(controller.checkAdmission(method.getFullMethodName(), new Metadata()));
+    // Other methods are not limited.
+    assertNull(controller.checkAdmission("other/method", new Metadata()));
+    second.streamClosed(Status.OK);
+  }
+
+  @Test
+  public void streamClosedBeforeCallStarted_notCounted() {
+    AdaptiveServerCallAdmissionController controller =
+        builder.setMaxInFlightCallsPerMethod(2).build();
+    startCall(controller, 0, TimeUnit.MILLISECONDS).streamClosed(Status.OK);
+    assertEquals(0, controller.getInFlightCalls(method.getFullMethodName()));
+
+    ServerStreamTracer tracer = newTracer(controller);
+    assertEquals(1, controller.getInFlightCalls(method.getFullMethodName()));
+    tracer.streamClosed(Status.CANCELLED);
+    tracer.serverCallStarted(new FakeServerCallInfo());
+
+    assertEquals(0, controller.getInFlightCalls(method.getFullMethodName()));
+  }
+
+  private ServerStreamTracer newTracer(AdaptiveServerCallAdmissionController controller) {
+    return controller.getStreamTracerFactory()
+        .newServerStreamTracer(method.getFullMethodName(), new Metadata());
+  }
+
+  private ServerStreamTracer startCall(
+      AdaptiveServerCallAdmissionController controller, long queueDelay, TimeUnit unit) {
+    ServerStreamTracer tracer = newTracer(controller);
+    fakeClock.forwardTime(queueDelay, unit);
+    tracer.serverCallStarted(new FakeServerCallInfo());
+    return tracer;
+  }
+
+  private final class FakeServerCallInfo extends ServerCallInfo<Void, Void> {
+    @Override
+    public MethodDescriptor<Void, Void> getMethodDescriptor() {
+      return method;
+    }
+
+    @Override
+    public Attributes getAttributes() {
+      return Attributes.EMPTY;
+    }
+
+    @Override
+    public String getAuthority() {
+      return null;
+    }
+  }
+
+  private static final class FakeRandom extends Random {
+    double value;
+
+    @Override
+    public double nextDouble() {
+      return value;
+    }
+  }
+}
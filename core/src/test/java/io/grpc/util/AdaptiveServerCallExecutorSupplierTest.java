@@ -0,0 +1,238 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.Attributes;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerStreamTracer;
+import io.grpc.ServerStreamTracer.ServerCallInfo;
+import io.grpc.Status;
+import io.grpc.internal.FakeClock;
+import io.grpc.internal.NoopServerCall;
+import io.grpc.testing.TestMethodDescriptors;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link AdaptiveServerCallExecutorSupplier}. */
+@RunWith(JUnit4.class)
+public class AdaptiveServerCallExecutorSupplierTest {
+  private static final int MIN_SAMPLES = 5;
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+  private final FakeClock fastExecutor = new FakeClock();
+  private final FakeClock slowExecutor = new FakeClock();
+  private final NoopServerCall<Void, Void> call = new NoopServerCall<Void, Void>() {
+    @Override
+    public MethodDescriptor<Void, Void> getMethodDescriptor() {
+      return method;
+    }
+  };
+  private AdaptiveServerCallExecutorSupplier supplier;
+
+  @Before
+  public void setUp() {
+    supplier = AdaptiveServerCallExecutorSupplier.newBuilder()
+        .setFastExecutor(fastExecutor.getScheduledExecutorService())
+        .setSlowExecutor(slowExecutor.getScheduledExecutorService())
+        .setFastThreshold(1, TimeUnit.MILLISECONDS)
+        .setMinSamples(MIN_SAMPLES)
+        .setTicker(fakeClock.getTicker())
+        .build();
+  }
+
+  @After
+  public void tearDown() {
+    supplier.shutdown();
+  }
+
+  @Test
+  public void unknownMethodIsSlow() {
+    assertSame(slowExecutor.getScheduledExecutorService(),
+        supplier.getExecutor(call, new Metadata()));
+  }
+
+  @Test
+  public void fastAfterMinSamples() {
+    for (int i = 0; i < MIN_SAMPLES - 1; i++) {
+      runCall(100, TimeUnit.MICROSECONDS);
+    }
+    assertFalse(supplier.isFast(method.getFullMethodName()));
+
+    runCall(100, TimeUnit.MICROSECONDS);
+    assertTrue(supplier.isFast(method.getFullMethodName()));
+    assertSame(fastExecutor.getScheduledExecutorService(),
+        supplier.getExecutor(call, new Metadata()));
+  }
+
+  @Test
+  public void slowMethodStaysSlow() {
+    for (int i = 0; i < MIN_SAMPLES * 2; i++) {
+      runCall(10, TimeUnit.MILLISECONDS);
+    }
+    assertFalse(supplier.isFast(method.getFullMethodName()));
+    assertSame(slowExecutor.getScheduledExecutorService(),
+        supplier.getExecutor(call, new Metadata()));
+  }
+
+  @Test
+  public void singleVerySlowCallReclassifiesAsSlow() {
+    for (int i = 0; i < MIN_SAMPLES; i++) {
+      runCall(100, TimeUnit.MICROSECONDS);
+    }
+    assertTrue(supplier.isFast(method.getFullMethodName()));
+
+    runCall(100, TimeUnit.MILLISECONDS);
+    assertFalse(supplier.isFast(method.getFullMethodName()));
+  }
+
+  @Test
+  public void unstartedCallIsNotRecorded() {
+    for (int i = 0; i < MIN_SAMPLES; i++) {
+      ServerStreamTracer tracer = supplier.getStreamTracerFactory()
+          .newServerStreamTracer(method.getFullMethodName(), new Metadata());
+      tracer.streamClosed(Status.UNIMPLEMENTED);
+    }
+    assertFalse(supplier.isFast(method.getFullMethodName()));
+  }
+
+  @Test
+  public void uploadTimeNotCounted() {
+    for (int i = 0; i < MIN_SAMPLES; i++) {
+      ServerStreamTracer tracer = startCall(method);
+      // The client takes a while to send the request.
+      fakeClock.forwardTime(10, TimeUnit.MILLISECONDS);
+      tracer.inboundMessageRead(0, -1, -1);
+      fakeClock.forwardTime(100, TimeUnit.MICROSECONDS);
+      tracer.streamClosed(Status.OK);
+    }
+    assertTrue(supplier.isFast(method.getFullMethodName()));
+  }
+
+  @Test
+  public void clientStreamingMethodIsSlow() {
+    MethodDescriptor<Void, Void> streaming =
+        method.toBuilder().setType(MethodDescriptor.MethodType.CLIENT_STREAMING).build();
+    for (int i = 0; i < MIN_SAMPLES; i++) {
+      runCall(streaming, 100, TimeUnit.MICROSECONDS);
+    }
+    assertFalse(supplier.isFast(streaming.getFullMethodName()));
+  }
+
+  @Test
+  public void trackedMethodsBounded() {
+    for (int i = 0; i < AdaptiveServerCallExecutorSupplier.MAX_TRACKED_METHODS; i++) {
+      runCall(method.toBuilder().setFullMethodName("service/method" + i).build(),
+          100, TimeUnit.MICROSECONDS);
+    }
+    MethodDescriptor<Void, Void> extra =
+        method.toBuilder().setFullMethodName("service/extra").build();
+    for (int i = 0; i < MIN_SAMPLES; i++) {
+      runCall(extra, 100, TimeUnit.MICROSECONDS);
+    }
+    assertFalse(supplier.isFast(extra.getFullMethodName()));
+  }
+
+  @Test
+  public void defaultFastExecutorIsNotDirect() throws Exception {
+    AdaptiveServerCallExecutorSupplier defaultSupplier =
+        AdaptiveServerCallExecutorSupplier.newBuilder()
+            .setParallelism(1)
+            .setMinSamples(1)
+            .setTicker(fakeClock.getTicker())
+            .build();
+    supplier = defaultSupplier;
+    runCall(0, TimeUnit.MICROSECONDS);
+    assertTrue(defaultSupplier.isFast(method.getFullMethodName()));
+    Executor executor = defaultSupplier.getExecutor(call, new Metadata());
+    final CountDownLatch latch = new CountDownLatch(1);
+    final Thread testThread = Thread.currentThread();
+    final boolean[] ranInline = new boolean[1];
+    executor.execute(new Runnable() {
+      @Override
+      public void run() {
+        ranInline[0] = Thread.currentThread() == testThread;
+        latch.countDown();
+      }
+    });
+    assertTrue(latch.await(5, TimeUnit.SECONDS));
+    assertFalse(ranInline[0]);
+  }
+
+  @Test
+  public void defaultSlowExecutorRunsTasks() throws Exception {
+    AdaptiveServerCallExecutorSupplier defaultSupplier =
+        AdaptiveServerCallExecutorSupplier.newBuilder().setParallelism(2).build();
+    try {
+      Executor executor = defaultSupplier.getExecutor(call, new Metadata());
+      final CountDownLatch latch = new CountDownLatch(1);
+      executor.execute(new Runnable() {
+        @Override
+        public void run() {
+          latch.countDown();
+        }
+      });
+      assertTrue(latch.await(5, TimeUnit.SECONDS));
+    } finally {
+      defaultSupplier.shutdown();
+    }
+  }
+
+  private void runCall(long duration, TimeUnit unit) {
+    runCall(method, duration, unit);
+  }
+
+  private void runCall(MethodDescriptor<Void, Void> method, long duration, TimeUnit unit) {
+    ServerStreamTracer tracer = startCall(method);
+    tracer.inboundMessageRead(0, -1, -1);
+    fakeClock.forwardTime(duration, unit);
+    tracer.streamClosed(Status.OK);
+  }
+
+  private ServerStreamTracer startCall(final MethodDescriptor<Void, Void> method) {
+    ServerStreamTracer tracer = supplier.getStreamTracerFactory()
+        .newServerStreamTracer(method.getFullMethodName(), new Metadata());
+    tracer.serverCallStarted(new ServerCallInfo<Void, Void>() {
+      @Override
+      public MethodDescriptor<Void, Void> getMethodDescriptor() {
+        return method;
+      }
+
+      @Override
+      public Attributes getAttributes() {
+        return Attributes.EMPTY;
+      }
+
+      @Override
+      public String getAuthority() {
+        return null;
+      }
+    });
+    return tracer;
+  }
+}
@@ -0,0 +1,382 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ClientCall;
+import io.grpc.ClientStreamTracer;
+import io.grpc.Deadline;
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.internal.FakeClock;
+import io.grpc.testing.TestMethodDescriptors;
+import io.grpc.util.ConcurrencyLimitingClientInterceptor.Algorithm;
+import io.grpc.util.ConcurrencyLimitingClientInterceptor.LimitState;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import javax.annotation.Nullable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link ConcurrencyLimitingClientInterceptor}. */
+@RunWith(JUnit4.class)
+public class ConcurrencyLimitingClientInterceptorTest {
+  private static final long RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+  private final MethodDescriptor<Void, Void> otherMethod =
+      method.toBuilder().setFullMethodName("service/other").build();
+  private final FakeChannel channel = new FakeChannel();
+
+  @Test
+  public void overLimit_failsFast() {
+    ConcurrencyLimitingClientInterceptor interceptor = newBuilder().build();
+    RecordingListener listener1 = startCall(interceptor, method, CallOptions.DEFAULT);
+    RecordingListener listener2 = startCall(interceptor, method, CallOptions.DEFAULT);
+    RecordingListener listener3 = startCall(interceptor, method, CallOptions.DEFAULT);
+
+    assertEquals(2, channel.calls.size());
+    assertNull(listener1.status);
+    assertNull(listener2.status);
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, listener3.status.getCode());
+
+    channel.calls.get(0).complete(Status.OK);
+    assertEquals(Status.OK, listener1.status);
+    RecordingListener listener4 = startCall(interceptor, method, CallOptions.DEFAULT);
+    assertEquals(3, channel.calls.size());
+    assertNull(listener4.status);
+  }
+
+  @Test
+  public void perMethodLimits() {
+    ConcurrencyLimitingClientInterceptor interceptor = newBuilder().build();
+    startCall(interceptor, method, CallOptions.DEFAULT);
+    startCall(interceptor, method, CallOptions.DEFAULT);
+
+    RecordingListener listener = startCall(interceptor, otherMethod, CallOptions.DEFAULT);
+    assertNull(listener.status);
+    assertEquals(3, channel.calls.size());
+  }
+
+  @Test
+  public void sharedLimit() {
+    ConcurrencyLimitingClientInterceptor interceptor = newBuilder().setPerMethod(false).build();
+    startCall(interceptor, method, CallOptions.DEFAULT);
+    startCall(interceptor, method, CallOptions.DEFAULT);
+
+    RecordingListener listener = startCall(interceptor, otherMethod, CallOptions.DEFAULT);
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, listener.status.getCode());
+    assertEquals(2, channel.calls.size());
+  }
+
+  @Test
+  public void queuedCall_startsWhenSlotFrees() {
+    ConcurrencyLimitingClientInterceptor interceptor = newBuilder()
+        .setMaxQueueSize(1, fakeClock.getScheduledExecutorService())
+        .build();
+    startCall(interceptor, method, CallOptions.DEFAULT);
+    startCall(interceptor, method, CallOptions.DEFAULT);
+    RecordingListener queued = startCall(interceptor, method, CallOptions.DEFAULT);
+    RecordingListener rejected = startCall(interceptor, method, CallOptions.DEFAULT);
+
+    assertEquals(2, channel.calls.size());
+    assertNull(queued.status);
+    assertEquals(Status.Code.RESOURCE_EXHAUSTED, rejected.status.getCode());
+
+    channel.calls.get(1).complete(Status.OK);
+    assertEquals(3, channel.calls.size());
+    assertTrue(channel.calls.get(2).started);
+
+    channel.calls.get(2).complete(Status.OK);
+    assertEquals(Status.OK, queued.status);
+  }
+
+  @Test
+  public void queuedCall_cancelled() {
+    ConcurrencyLimitingClientInterceptor interceptor = newBuilder()
+        .setMaxQueueSize(1, fakeClock.getScheduledExecutorService())
+        .build();
+    startCall(interceptor, method, CallOptions.DEFAULT);
+    startCall(interceptor, method, CallOptions.DEFAULT);
+    RecordingListener queued = new RecordingListener();
+    ClientCall<Void, Void> queuedCall =
+        interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+    queuedCall.start(queued, new Metadata());
+
+    queuedCall.cancel("give up", null);
+    assertEquals(Status.Code.CANCELLED, queued.status.getCode());
+
+    // The queue is empty again
+    channel.calls.get(0).complete(Status.OK);
+    assertEquals(2, channel.calls.size());
+    RecordingListener listener = startCall(interceptor, method, CallOptions.DEFAULT);
+    assertNull(listener.status);
+    assertEquals(3, channel.calls.size());
+  }
+
+  @Test
+  public void queuedCall_deadlineExceeded() {
+    ConcurrencyLimitingClientInterceptor interceptor = newBuilder()
+        .setMaxQueueSize(1, fakeClock.getScheduledExecutorService())
+        .build();
+    startCall(interceptor, method, CallOptions.DEFAULT);
+    startCall(interceptor, method, CallOptions.DEFAULT);
+    RecordingListener queued = startCall(
+        interceptor, method,
+        CallOptions.DEFAULT.withDeadline(
+            Deadline.after(1, TimeUnit.SECONDS, fakeClock.getDeadlineTicker())));
+
+    fakeClock.forwardTime(1, TimeUnit.SECONDS);
+    assertEquals(Status.Code.DEADLINE_EXCEEDED, queued.status.getCode());
+
+    channel.calls.get(0).complete(Status.OK);
+    assertEquals(2, channel.calls.size());
+  }
+
+  @Test
+  public void cancelledCall_releasesWithoutSample() {
+    ConcurrencyLimitingClientInterceptor interceptor =
+        newBuilder().setAlgorithm(Algorithm.AIMD).build();
+    startCall(interceptor, method, CallOptions.DEFAULT);
+    startCall(interceptor, method, CallOptions.DEFAULT);
+
+    channel.calls.get(0).complete(Status.CANCELLED);
+    assertEquals(2, interceptor.getLimit(method.getFullMethodName()));
+    RecordingListener listener = startCall(interceptor, method, CallOptions.DEFAULT);
+    assertNull(listener.status);
+  }
+
+  @Test
+  public void drops_shrinkLimit() {
+    ConcurrencyLimitingClientInterceptor interceptor = newBuilder()
+        .setAlgorithm(Algorithm.AIMD)
+        .setInitialLimit(10)
+        .build();
+    for (int i = 0; i < 10; i++) {
+      startCall(interceptor, method, CallOptions.DEFAULT);
+    }
+    channel.calls.get(0).complete(Status.UNAVAILABLE);
+    assertEquals(9, interceptor.getLimit(method.getFullMethodName()));
+    channel.calls.get(1).complete(Status.DEADLINE_EXCEEDED);
+    assertEquals(8, interceptor.getLimit(method.getFullMethodName()));
+  }
+
+  @Test
+  public void streamingCall_holdsSlotWithoutSample() {
+    MethodDescriptor<Void, Void> streamingMethod =
+        method.toBuilder().setType(MethodDescriptor.MethodType.SERVER_STREAMING).build();
+    ConcurrencyLimitingClientInterceptor interceptor =
+        newBuilder().setAlgorithm(Algorithm.VEGAS).build();
+    startCall(interceptor, streamingMethod, CallOptions.DEFAULT);
+    startCall(interceptor, streamingMethod, CallOptions.DEFAULT);
+    assertEquals(
+        Status.Code.RESOURCE_EXHAUSTED,
+        startCall(interceptor, streamingMethod, CallOptions.DEFAULT).status.getCode());
+    assertThat(channel.calls.get(0).tracers).isEmpty();
+
+    channel.calls.get(0).complete(Status.OK);
+    assertEquals(2, interceptor.getLimit(streamingMethod.getFullMethodName()));
+    assertNull(startCall(interceptor, streamingMethod, CallOptions.DEFAULT).status);
+  }
+
+  @Test
+  public void streamingCall_dropShrinksLimit() {
+    MethodDescriptor<Void, Void> streamingMethod =
+        method.toBuilder().setType(MethodDescriptor.MethodType.BIDI_STREAMING).build();
+    ConcurrencyLimitingClientInterceptor interceptor = newBuilder()
+        .setAlgorithm(Algorithm.AIMD)
+        .setInitialLimit(10)
+        .build();
+    startCall(interceptor, streamingMethod, CallOptions.DEFAULT);
+
+    channel.calls.get(0).complete(Status.UNAVAILABLE);
+    assertEquals(9, interceptor.getLimit(streamingMethod.getFullMethodName()));
+  }
+
+  @Test
+  public void cancelledBeforeStart() {
+    ConcurrencyLimitingClientInterceptor interceptor = newBuilder().build();
+    ClientCall<Void, Void> call = interceptor.interceptCall(method, CallOptions.DEFAULT, channel);
+    call.cancel("cancelled", null);
+    RecordingListener listener = new RecordingListener();
+    call.start(listener, new Metadata());
+
+    assertEquals(Status.Code.CANCELLED, listener.status.getCode());
+    assertThat(channel.calls).isEmpty();
+  }
+
+  @Test
+  public void aimd() {
+    LimitState state = new LimitState(Algorithm.AIMD, 10, 1, 100);
+    // Not using the limit, so it does not grow
+    state.update(RTT_NANOS, 4, false);
+    assertEquals(10, state.getLimit());
+    // One more per round trip, which is about one per limit's worth of calls
+    for (int i = 0; i < 11; i++) {
+      state.update(RTT_NANOS, 10, false);
+    }
+    assertEquals(11, state.getLimit());
+
+    state.update(RTT_NANOS, 10, true);
+    assertEquals(9, state.getLimit());
+    for (int i = 0; i < 100; i++) {
+      state.update(RTT_NANOS, 10, true);
+    }
+    assertEquals(1, state.getLimit());
+  }
+
+  @Test
+  public void vegas() {
+    LimitState state = new LimitState(Algorithm.VEGAS, 10, 1, 100);
+    state.update(RTT_NANOS, 10, false);
+    assertEquals(11, state.getLimit());
+    state.update(RTT_NANOS, 11, false);
+    assertEquals(12, state.getLimit());
+
+    // Four times the lowest round-trip time means three quarters of the calls are queued
+    int limit = state.getLimit();
+    state.update(4 * RTT_NANOS, limit, false);
+    assertThat(state.getLimit()).isLessThan(limit);
+
+    limit = state.getLimit();
+    state.update(RTT_NANOS, limit, true);
+    assertThat(state.getLimit()).isLessThan(limit);
+  }
+
+  @Test
+  public void gradient() {
+    LimitState state = new LimitState(Algorithm.GRADIENT, 20, 1, 100);
+    for (int i = 0; i < 20; i++) {
+      state.update(RTT_NANOS, state.getLimit(), false);
+    }
+    int grownLimit = state.getLimit();
+    assertThat(grownLimit).isGreaterThan(20);
+
+    // Latency well above the long-term average
+    for (int i = 0; i < 20; i++) {
+      state.update(4 * RTT_NANOS, state.getLimit(), false);
+    }
+    assertThat(state.getLimit()).isLessThan(grownLimit / 2);
+  }
+
+  @Test
+  public void gradient_appLimited() {
+    LimitState state = new LimitState(Algorithm.GRADIENT, 20, 1, 100);
+    for (int i = 0; i < 20; i++) {
+      state.update(RTT_NANOS, 5, false);
+    }
+    assertEquals(20, state.getLimit());
+  }
+
+  private ConcurrencyLimitingClientInterceptor.Builder newBuilder() {
+    return ConcurrencyLimitingClientInterceptor.newBuilder()
+        .setInitialLimit(2)
+        .setLimitRange(1, 10)
+        .setTicker(fakeClock.getTicker());
+  }
+
+  private RecordingListener startCall(
+      ConcurrencyLimitingClientInterceptor interceptor, MethodDescriptor<Void, Void> method,
+      CallOptions callOptions) {
+    RecordingListener listener = new RecordingListener();
+    interceptor.interceptCall(method, callOptions, channel).start(listener, new Metadata());
+    return listener;
+  }
+
+  private static final class RecordingListener extends ClientCall.Listener<Void> {
+    @Nullable
+    Status status;
+
+    @Override
+    public void onClose(Status status, Metadata trailers) {
+      this.status = status;
+    }
+  }
+
+  private final class FakeChannel extends Channel {
+    final List<FakeCall> calls = new ArrayList<>();
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+        MethodDescriptor<ReqT, RespT> method, CallOptions callOptions) {
+      FakeCall call = new FakeCall(callOptions);
+      calls.add(call);
+      return (ClientCall<ReqT, RespT>) call;
+    }
+
+    @Override
+    public String authority() {
+      return "fake-authority";
+    }
+  }
+
+  /** A call that runs one stream for {@link #RTT_NANOS}. */
+  private final class FakeCall extends ClientCall<Void, Void> {
+    final CallOptions callOptions;
+    Listener<Void> listener;
+    boolean started;
+    final List<ClientStreamTracer> tracers = new ArrayList<>();
+
+    FakeCall(CallOptions callOptions) {
+      this.callOptions = callOptions;
+    }
+
+    @Override
+    public void start(Listener<Void> listener, Metadata headers) {
+      this.listener = listener;
+      started = true;
+      ClientStreamTracer.StreamInfo info =
+          ClientStreamTracer.StreamInfo.newBuilder().setCallOptions(callOptions).build();
+      for (ClientStreamTracer.Factory factory : callOptions.getStreamTracerFactories()) {
+        tracers.add(factory.newClientStreamTracer(info, headers));
+      }
+    }
+
+    void complete(Status status) {
+      fakeClock.forwardNanos(RTT_NANOS);
+      for (ClientStreamTracer tracer : tracers) {
+        tracer.streamClosed(status);
+      }
+      listener.onClose(status, new Metadata());
+    }
+
+    @Override
+    public void request(int numMessages) {}
+
+    @Override
+    public void cancel(@Nullable String message, @Nullable Throwable cause) {
+      complete(Status.CANCELLED.withDescription(message));
+    }
+
+    @Override
+    public void halfClose() {}
+
+    @Override
+    public void sendMessage(Void message) {}
+  }
+}
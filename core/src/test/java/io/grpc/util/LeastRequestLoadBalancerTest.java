@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.grpc.util.LeastRequestLoadBalancer.IN_FLIGHT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.Metadata;
+import io.grpc.NameResolver.ConfigOrError;
+import io.grpc.Status;
+import io.grpc.util.LeastRequestLoadBalancer.LeastRequestConfig;
+import io.grpc.util.LeastRequestLoadBalancer.LeastRequestPicker;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link LeastRequestLoadBalancer}. */
+@RunWith(JUnit4.class)
+public class LeastRequestLoadBalancerTest {
+  private final ScriptedRandom random = new ScriptedRandom();
+  private final PickSubchannelArgs args = mock(PickSubchannelArgs.class);
+  private final Subchannel subchannel0 = newSubchannel();
+  private final Subchannel subchannel1 = newSubchannel();
+  private final Subchannel subchannel2 = newSubchannel();
+  private final List<Subchannel> subchannels = Arrays.asList(subchannel0, subchannel1, subchannel2);
+
+  @Test
+  public void picksLeastLoadedOfChoices() {
+    LeastRequestPicker picker = new LeastRequestPicker(subchannels, 2, random);
+    inFlight(subchannel0).set(5);
+    inFlight(subchannel2).set(1);
+
+    random.add(0, 2);
+    assertSame(subchannel2, picker.pickSubchannel(args).getSubchannel());
+    random.add(2, 1);
+    assertSame(subchannel1, picker.pickSubchannel(args).getSubchannel());
+  }
+
+  @Test
+  public void tieKeepsFirstChoice() {
+    LeastRequestPicker picker = new LeastRequestPicker(subchannels, 2, random);
+
+    random.add(1, 0);
+    assertSame(subchannel1, picker.pickSubchannel(args).getSubchannel());
+  }
+
+  @Test
+  public void tracerCountsInFlightStreams() {
+    LeastRequestPicker picker = new LeastRequestPicker(subchannels, 2, random);
+    random.add(0, 0);
+    PickResult result = picker.pickSubchannel(args);
+    assertEquals(0, inFlight(subchannel0).get());
+
+    ClientStreamTracer tracer = newTracer(result);
+    assertEquals(1, inFlight(subchannel0).get());
+    ClientStreamTracer tracer2 = newTracer(result);
+    assertEquals(2, inFlight(subchannel0).get());
+
+    tracer.streamClosed(Status.OK);
+    tracer2.streamClosed(Status.CANCELLED);
+    assertEquals(0, inFlight(subchannel0).get());
+  }
+
+  @Test
+  public void pickerEquivalence() {
+    LeastRequestPicker picker = new LeastRequestPicker(subchannels, 2, random);
+
+    assertTrue(picker.isEquivalentTo(new LeastRequestPicker(
+        Arrays.asList(subchannel2, subchannel1, subchannel0), 2, random)));
+    assertFalse(picker.isEquivalentTo(new LeastRequestPicker(subchannels, 3, random)));
+    assertFalse(picker.isEquivalentTo(
+        new LeastRequestPicker(Collections.singletonList(subchannel0), 2, random)));
+  }
+
+  @Test
+  public void providerRegistered() {
+    LoadBalancerProvider provider =
+        LoadBalancerRegistry.getDefaultRegistry().getProvider("least_request");
+    assertThat(provider).isInstanceOf(SecretLeastRequestLoadBalancerProvider.Provider.class);
+  }
+
+  @Test
+  public void parseConfig() {
+    LoadBalancerProvider provider = new SecretLeastRequestLoadBalancerProvider.Provider();
+
+    assertEquals(new LeastRequestConfig(2),
+        provider.parseLoadBalancingPolicyConfig(Collections.<String, Object>emptyMap())
+            .getConfig());
+    assertEquals(new LeastRequestConfig(3),
+        provider.parseLoadBalancingPolicyConfig(Collections.singletonMap("choiceCount", 3.0))
+            .getConfig());
+    assertEquals(new LeastRequestConfig(LeastRequestConfig.MAX_CHOICE_COUNT),
+        provider.parseLoadBalancingPolicyConfig(Collections.singletonMap("choiceCount", 100.0))
+            .getConfig());
+    ConfigOrError invalid =
+        provider.parseLoadBalancingPolicyConfig(Collections.singletonMap("choiceCount", 1.0));
+    assertThat(invalid.getError()).isNotNull();
+  }
+
+  private static ClientStreamTracer newTracer(PickResult result) {
+    return result.getStreamTracerFactory().newClientStreamTracer(
+        ClientStreamTracer.StreamInfo.newBuilder().setCallOptions(CallOptions.DEFAULT).build(),
+        new Metadata());
+  }
+
+  private static Subchannel newSubchannel() {
+    Subchannel subchannel = mock(Subchannel.class);
+    when(subchannel.getAttributes())
+        .thenReturn(Attributes.newBuilder().set(IN_FLIGHT, new AtomicInteger()).build());
+    return subchannel;
+  }
+
+  private static AtomicInteger inFlight(Subchannel subchannel) {
+    return subchannel.getAttributes().get(IN_FLIGHT);
+  }
+
+  /** Returns the queued values from {@link #nextInt(int)}. */
+  @SuppressWarnings("serial")
+  static final class ScriptedRandom extends Random {
+    private final Queue<Integer> values = new ArrayDeque<>();
+
+    void add(Integer... values) {
+      this.values.addAll(Arrays.asList(values));
+    }
+
+    @Override
+    public int nextInt(int bound) {
+      return values.remove();
+    }
+  }
+}
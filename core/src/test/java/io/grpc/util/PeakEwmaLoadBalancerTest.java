@@ -0,0 +1,246 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.grpc.util.PeakEwmaLoadBalancer.PEAK_EWMA;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ClientStreamTracer;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.LoadBalancerRegistry;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.internal.FakeClock;
+import io.grpc.util.LeastRequestLoadBalancerTest.ScriptedRandom;
+import io.grpc.util.PeakEwmaLoadBalancer.PeakEwma;
+import io.grpc.util.PeakEwmaLoadBalancer.PeakEwmaConfig;
+import io.grpc.util.PeakEwmaLoadBalancer.PeakEwmaPicker;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PeakEwmaLoadBalancer}. */
+@RunWith(JUnit4.class)
+public class PeakEwmaLoadBalancerTest {
+  private static final long DECAY_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+  private final FakeClock fakeClock = new FakeClock();
+  private final ScriptedRandom random = new ScriptedRandom();
+  private final PickSubchannelArgs args = mock(PickSubchannelArgs.class);
+  private final Subchannel subchannel0 = newSubchannel();
+  private final Subchannel subchannel1 = newSubchannel();
+  private final List<Subchannel> subchannels = Arrays.asList(subchannel0, subchannel1);
+  private final PeakEwmaPicker picker = new PeakEwmaPicker(
+      subchannels, new PeakEwmaConfig(2, DECAY_NANOS), random, fakeClock.getTicker());
+
+  @Test
+  public void avoidsSlowSubchannel() {
+    completeRpc(subchannel0, TimeUnit.MILLISECONDS.toNanos(100));
+    completeRpc(subchannel1, TimeUnit.MILLISECONDS.toNanos(10));
+
+    random.add(0, 1);
+    assertSame(subchannel1, picker.pickSubchannel(args).getSubchannel());
+    random.add(1, 0);
+    assertSame(subchannel1, picker.pickSubchannel(args).getSubchannel());
+  }
+
+  @Test
+  public void outstandingRpcsIncreaseCost() {
+    completeRpc(subchannel0, TimeUnit.MILLISECONDS.toNanos(10));
+    completeRpc(subchannel1, TimeUnit.MILLISECONDS.toNanos(30));
+    random.add(0, 0);
+    PickResult result = picker.pickSubchannel(args);
+    for (int i = 0; i < 3; i++) {
+      newTracer(result);
+    }
+
+    // 10ms * 4 > 30ms * 1
+    random.add(0, 1);
+    assertSame(subchannel1, picker.pickSubchannel(args).getSubchannel());
+  }
+
+  @Test
+  public void unmeasuredSubchannelProbedOneRpcAtATime() {
+    completeRpc(subchannel1, TimeUnit.SECONDS.toNanos(1));
+    random.add(0, 1);
+    PickResult result = picker.pickSubchannel(args);
+    assertSame(subchannel0, result.getSubchannel());
+
+    newTracer(result);
+    random.add(0, 1);
+    assertSame(subchannel1, picker.pickSubchannel(args).getSubchannel());
+  }
+
+  @Test
+  public void peakJumpsUpAndDecaysDown() {
+    PeakEwma peakEwma = peakEwma(subchannel0);
+    peakEwma.observe(100, fakeClock.getTicker().read(), DECAY_NANOS);
+    assertEquals(100, peakEwma.cost(fakeClock.getTicker().read(), DECAY_NANOS), 0.001);
+
+    peakEwma.observe(1000, fakeClock.getTicker().read(), DECAY_NANOS);
+    assertEquals(1000, peakEwma.cost(fakeClock.getTicker().read(), DECAY_NANOS), 0.001);
+
+    fakeClock.forwardNanos(DECAY_NANOS);
+    peakEwma.observe(100, fakeClock.getTicker().read(), DECAY_NANOS);
+    double weight = Math.exp(-1);
+    assertEquals(1000 * weight + 100 * (1 - weight),
+        peakEwma.cost(fakeClock.getTicker().read(), DECAY_NANOS), 0.001);
+  }
+
+  @Test
+  public void tracerRecordsLatency() {
+    random.add(0, 0);
+    ClientStreamTracer tracer = newTracer(picker.pickSubchannel(args));
+    assertEquals(1, peakEwma(subchannel0).outstanding.get());
+
+    fakeClock.forwardNanos(500);
+    tracer.inboundHeaders();
+    // How long the stream then stays open is up to the application.
+    fakeClock.forwardNanos(100000);
+    tracer.streamClosed(Status.OK);
+
+    assertEquals(0, peakEwma(subchannel0).outstanding.get());
+    assertEquals(500, peakEwma(subchannel0).cost(fakeClock.getTicker().read(), DECAY_NANOS),
+        0.001);
+  }
+
+  @Test
+  public void tracerRecordsTrailersOnlyLatency() {
+    random.add(0, 0);
+    ClientStreamTracer tracer = newTracer(picker.pickSubchannel(args));
+
+    fakeClock.forwardNanos(500);
+    tracer.streamClosed(Status.OK);
+
+    assertEquals(500, peakEwma(subchannel0).cost(fakeClock.getTicker().read(), DECAY_NANOS),
+        0.001);
+  }
+
+  @Test
+  public void nonBackendFailuresIgnored() {
+    Status[] statuses = {
+        Status.CANCELLED, Status.DEADLINE_EXCEEDED, Status.INTERNAL, Status.PERMISSION_DENIED};
+    for (Status status : statuses) {
+      random.add(0, 0);
+      ClientStreamTracer tracer = newTracer(picker.pickSubchannel(args));
+      fakeClock.forwardNanos(100);
+      tracer.streamClosed(status);
+    }
+
+    assertEquals(0, peakEwma(subchannel0).outstanding.get());
+    assertEquals(0, peakEwma(subchannel0).cost(fakeClock.getTicker().read(), DECAY_NANOS),
+        0.001);
+  }
+
+  @Test
+  public void failureAfterResponseHeadersNotPenalized() {
+    random.add(0, 0);
+    ClientStreamTracer tracer = newTracer(picker.pickSubchannel(args));
+
+    fakeClock.forwardNanos(500);
+    tracer.inboundHeaders();
+    tracer.streamClosed(Status.RESOURCE_EXHAUSTED);
+
+    assertEquals(500, peakEwma(subchannel0).cost(fakeClock.getTicker().read(), DECAY_NANOS),
+        0.001);
+  }
+
+  @Test
+  public void failedRpcRecordedAsSlow() {
+    completeRpc(subchannel1, TimeUnit.MILLISECONDS.toNanos(10));
+    random.add(0, 0);
+    ClientStreamTracer tracer = newTracer(picker.pickSubchannel(args));
+
+    fakeClock.forwardNanos(100);
+    tracer.streamClosed(Status.UNAVAILABLE);
+
+    long now = fakeClock.getTicker().read();
+    assertEquals(PeakEwma.FAILURE_PENALTY_NANOS, peakEwma(subchannel0).cost(now, DECAY_NANOS),
+        0.001);
+    random.add(0, 1);
+    assertSame(subchannel1, picker.pickSubchannel(args).getSubchannel());
+  }
+
+  @Test
+  public void repeatedFailuresEscalate() {
+    PeakEwma peakEwma = peakEwma(subchannel0);
+    long now = fakeClock.getTicker().read();
+    peakEwma.observeFailure(100, now, DECAY_NANOS);
+    peakEwma.observeFailure(100, now, DECAY_NANOS);
+    peakEwma.observeFailure(100, now, DECAY_NANOS);
+
+    assertEquals(4 * PeakEwma.FAILURE_PENALTY_NANOS, peakEwma.cost(now, DECAY_NANOS), 0.001);
+  }
+
+  @Test
+  public void providerRegistered() {
+    LoadBalancerProvider provider =
+        LoadBalancerRegistry.getDefaultRegistry().getProvider("peak_ewma");
+    assertThat(provider).isInstanceOf(SecretPeakEwmaLoadBalancerProvider.Provider.class);
+  }
+
+  @Test
+  public void parseConfig() {
+    LoadBalancerProvider provider = new SecretPeakEwmaLoadBalancerProvider.Provider();
+
+    assertEquals(PeakEwmaConfig.DEFAULT,
+        provider.parseLoadBalancingPolicyConfig(Collections.<String, Object>emptyMap())
+            .getConfig());
+    assertEquals(new PeakEwmaConfig(2, TimeUnit.SECONDS.toNanos(5)),
+        provider.parseLoadBalancingPolicyConfig(Collections.singletonMap("decayTime", "5s"))
+            .getConfig());
+    assertThat(provider.parseLoadBalancingPolicyConfig(
+        Collections.singletonMap("decayTime", "0s")).getError()).isNotNull();
+  }
+
+  private void completeRpc(Subchannel subchannel, long latencyNanos) {
+    PeakEwma peakEwma = peakEwma(subchannel);
+    long now = fakeClock.getTicker().read();
+    peakEwma.observe(latencyNanos, now, DECAY_NANOS);
+  }
+
+  private static ClientStreamTracer newTracer(PickResult result) {
+    return result.getStreamTracerFactory().newClientStreamTracer(
+        ClientStreamTracer.StreamInfo.newBuilder().setCallOptions(CallOptions.DEFAULT).build(),
+        new Metadata());
+  }
+
+  private Subchannel newSubchannel() {
+    Subchannel subchannel = mock(Subchannel.class);
+    when(subchannel.getAttributes()).thenReturn(Attributes.newBuilder()
+        .set(PEAK_EWMA, new PeakEwma(fakeClock.getTicker().read()))
+        .build());
+    return subchannel;
+  }
+
+  private static PeakEwma peakEwma(Subchannel subchannel) {
+    return subchannel.getAttributes().get(PEAK_EWMA);
+  }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.util;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import io.grpc.Metadata;
+import io.grpc.MethodDescriptor;
+import io.grpc.internal.FakeClock;
+import io.grpc.internal.NoopServerCall;
+import io.grpc.testing.TestMethodDescriptors;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link PriorityServerCallExecutorSupplier}. */
+@RunWith(JUnit4.class)
+public class PriorityServerCallExecutorSupplierTest {
+  private final FakeClock executor = new FakeClock();
+  private final List<String> ran = new ArrayList<>();
+  private final PriorityServerCallExecutorSupplier.Builder builder =
+      PriorityServerCallExecutorSupplier.newBuilder(executor.getScheduledExecutorService(), 1)
+          .addPriorityClass("batch", 1)
+          .addPriorityClass("interactive", 3);
+
+  @Test
+  public void classOfCall() {
+    PriorityServerCallExecutorSupplier supplier = builder
+        .addPriorityClass("health", 10)
+        .setMethodPriorityClass("service/method", "interactive")
+        .setMethodPriorityClass("grpc.health.v1.Health/*", "health")
+        .setPriorityHeader(PriorityServerCallExecutorSupplier.PRIORITY_KEY)
+        .build();
+    Metadata interactiveHeaders = new Metadata();
+    interactiveHeaders.put(PriorityServerCallExecutorSupplier.PRIORITY_KEY, "interactive");
+    Metadata unknownHeaders = new Metadata();
+    unknownHeaders.put(PriorityServerCallExecutorSupplier.PRIORITY_KEY, "unknown");
+    Metadata healthHeaders = new Metadata();
+    healthHeaders.put(PriorityServerCallExecutorSupplier.PRIORITY_KEY, "health");
+
+    assertSame(supplier.getPriorityClassExecutor("interactive"),
+        supplier.getExecutor(newCall("service/method"), new Metadata()));
+    assertSame(supplier.getPriorityClassExecutor("health"),
+        supplier.getExecutor(newCall("grpc.health.v1.Health/Check"), new Metadata()));
+    // Methods assigned to a class ignore the header.
+    assertSame(supplier.getPriorityClassExecutor("interactive"),
+        supplier.getExecutor(newCall("service/method"), healthHeaders));
+    assertSame(supplier.getPriorityClassExecutor("interactive"),
+        supplier.getExecutor(newCall("service/other"), interactiveHeaders));
+    assertSame(supplier.getPriorityClassExecutor("batch"),
+        supplier.getExecutor(newCall("service/other"), unknownHeaders));
+    assertSame(supplier.getPriorityClassExecutor("batch"),
+        supplier.getExecutor(newCall("service/other"), new Metadata()));
+  }
+
+  @Test
+  public void headerIgnoredByDefault() {
+    PriorityServerCallExecutorSupplier supplier =
+        builder.setDefaultPriorityClass("interactive").build();
+    Metadata headers = new Metadata();
+    headers.put(PriorityServerCallExecutorSupplier.PRIORITY_KEY, "batch");
+
+    assertSame(supplier.getPriorityClassExecutor("interactive"),
+        supplier.getExecutor(newCall("service/method"), headers));
+  }
+
+  @Test
+  public void unknownClass_fails() {
+    builder.setMethodPriorityClass("service/method", "unknown");
+    try {
+      builder.build();
+      fail();
+    } catch (IllegalArgumentException expected) {
+      assertThat(expected).hasMessageThat().contains("unknown");
+    }
+  }
+
+  @Test
+  public void noClass_fails() {
+    try {
+      PriorityServerCallExecutorSupplier.newBuilder(executor.getScheduledExecutorService(), 1)
+          .build();
+      fail();
+    } catch (IllegalStateException expected) {
+      // expected
+    }
+  }
+
+  @Test
+  public void higherPriorityTasksOvertakeQueuedTasks() {
+    PriorityServerCallExecutorSupplier supplier = builder.build();
+    Executor batch = supplier.getPriorityClassExecutor("batch");
+    Executor interactive = supplier.getPriorityClassExecutor("interactive");
+    for (int i = 0; i < 5; i++) {
+      batch.execute(new RecordingTask("b" + i));
+    }
+    interactive.execute(new RecordingTask("i0"));
+    // Only a single worker was started, which runs the tasks in priority order.
+    assertEquals(1, executor.numPendingTasks());
+
+    executor.runDueTasks();
+
+    assertThat(ran).containsExactly("b0", "i0", "b1", "b2", "b3", "b4").inOrder();
+  }
+
+  @Test
+  public void classesShareInProportionToWeight() {
+    PriorityServerCallExecutorSupplier supplier = builder.build();
+    Executor batch = supplier.getPriorityClassExecutor("batch");
+    Executor interactive = supplier.getPriorityClassExecutor("interactive");
+    for (int i = 0; i < 4; i++) {
+      batch.execute(new RecordingTask("b"));
+    }
+    for (int i = 0; i < 12; i++) {
+      interactive.execute(new RecordingTask("i"));
+    }
+
+    executor.runDueTasks();
+
+    // Each window of 8 tasks has 6 interactive ones, give or take rounding at the boundaries.
+    for (int start = 0; start + 8 <= ran.size(); start += 4) {
+      assertThat(Collections.frequency(ran.subList(start, start + 8), "i")).isAtLeast(5);
+      assertThat(Collections.frequency(ran.subList(start, start + 8), "b")).isAtLeast(1);
+    }
+    assertThat(ran).hasSize(16);
+  }
+
+  @Test
+  public void idleClassDoesNotAccumulateShare() {
+    PriorityServerCallExecutorSupplier supplier = builder.build();
+    Executor batch = supplier.getPriorityClassExecutor("batch");
+    Executor interactive = supplier.getPriorityClassExecutor("interactive");
+    for (int i = 0; i < 9; i++) {
+      interactive.execute(new RecordingTask("i"));
+    }
+    executor.runDueTasks();
+    ran.clear();
+
+    for (int i = 0; i < 3; i++) {
+      batch.execute(new RecordingTask("b"));
+      interactive.execute(new RecordingTask("i"));
+      interactive.execute(new RecordingTask("i"));
+      interactive.execute(new RecordingTask("i"));
+    }
+    executor.runDueTasks();
+
+    // The interactive class is not held back for the tasks it ran while batch was idle.
+    assertThat(ran.subList(0, 4)).containsExactly("b", "i", "i", "i");
+  }
+
+  @Test
+  public void limitsConcurrency() {
+    PriorityServerCallExecutorSupplier supplier = PriorityServerCallExecutorSupplier
+        .newBuilder(executor.getScheduledExecutorService(), 2)
+        .addPriorityClass("batch", 1)
+        .build();
+    Executor batch = supplier.getPriorityClassExecutor("batch");
+    for (int i = 0; i < 5; i++) {
+      batch.execute(new RecordingTask("b" + i));
+    }
+    assertEquals(2, executor.numPendingTasks());
+
+    executor.runDueTasks();
+    assertThat(ran).hasSize(5);
+
+    // The workers exit once the queues are empty, and are started again for new tasks.
+    batch.execute(new RecordingTask("b5"));
+    assertEquals(1, executor.numPendingTasks());
+    executor.runDueTasks();
+    assertThat(ran).contains("b5");
+  }
+
+  @Test
+  public void taskExceptionDoesNotStopWorker() {
+    PriorityServerCallExecutorSupplier supplier = builder.build();
+    Executor batch = supplier.getPriorityClassExecutor("batch");
+    batch.execute(new Runnable() {
+      @Override
+      public void run() {
+        throw new RuntimeException("expected");
+      }
+    });
+    batch.execute(new RecordingTask("b"));
+
+    executor.runDueTasks();
+
+    assertThat(ran).containsExactly("b");
+  }
+
+  @Test
+  public void taskErrorReleasesWorker() {
+    PriorityServerCallExecutorSupplier supplier = builder.build();
+    Executor batch = supplier.getPriorityClassExecutor("batch");
+    final Error error = new AssertionError("expected");
+    batch.execute(new Runnable() {
+      @Override
+      public void run() {
+        throw error;
+      }
+    });
+    batch.execute(new RecordingTask("b0"));
+
+    try {
+      executor.runDueTasks();
+      fail("Expected error");
+    } catch (Error e) {
+      assertSame(error, e);
+    }
+    executor.runDueTasks();
+    assertThat(ran).containsExactly("b0");
+
+    // The only slot is free again.
+    batch.execute(new RecordingTask("b1"));
+    assertEquals(1, executor.numPendingTasks());
+    executor.runDueTasks();
+    assertThat(ran).containsExactly("b0", "b1");
+  }
+
+  private static NoopServerCall<Void, Void> newCall(String fullMethodName) {
+    final MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod().toBuilder()
+        .setFullMethodName(fullMethodName)
+        .build();
+    return new NoopServerCall<Void, Void>() {
+      @Override
+      public MethodDescriptor<Void, Void> getMethodDescriptor() {
+        return method;
+      }
+    };
+  }
+
+  private final class RecordingTask implements Runnable {
+    private final String name;
+
+    RecordingTask(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public void run() {
+      ran.add(name);
+    }
+  }
+}
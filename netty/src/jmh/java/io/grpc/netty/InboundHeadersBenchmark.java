@@ -19,6 +19,8 @@ package io.grpc.netty;
 import static io.grpc.netty.Utils.CONTENT_TYPE_HEADER;
 import static io.grpc.netty.Utils.TE_TRAILERS;
 
+import io.grpc.Metadata;
+import io.grpc.internal.GrpcUtil;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2RequestHeaders;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2ResponseHeaders;
 import io.netty.handler.codec.http2.DefaultHttp2Headers;
@@ -101,6 +103,26 @@ public class InboundHeadersBenchmark {
     serverHandler(bh, new DefaultHttp2Headers(true, 9));
   }
 
+  /**
+   * Converts the request headers and reads the well-known keys, as the server does when starting
+   * a call.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public void grpcHeaders_serverMetadataLookup(Blackhole bh) {
+    Http2Headers headers = new GrpcHttp2RequestHeaders(4);
+    for (int i = 0; i < requestHeaders.length; i += 2) {
+      headers.add(requestHeaders[i], requestHeaders[i + 1]);
+    }
+    Metadata metadata = Utils.convertHeaders(headers);
+    bh.consume(metadata.get(GrpcUtil.MESSAGE_ENCODING_KEY));
+    bh.consume(metadata.get(GrpcUtil.MESSAGE_ACCEPT_ENCODING_KEY));
+    bh.consume(metadata.get(GrpcUtil.TIMEOUT_KEY));
+    bh.consume(metadata.get(GrpcUtil.CONTENT_TYPE_KEY));
+    bh.consume(metadata.get(GrpcUtil.USER_AGENT_KEY));
+  }
+
   /**
    *  Checkstyle.
    */
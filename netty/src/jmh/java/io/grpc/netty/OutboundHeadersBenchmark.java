@@ -16,8 +16,11 @@
 
 package io.grpc.netty;
 
+import io.grpc.InternalStatus;
 import io.grpc.Metadata;
 import io.grpc.Metadata.AsciiMarshaller;
+import io.grpc.Status;
+import io.grpc.internal.GrpcUtil;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.UnpooledByteBufAllocator;
 import io.netty.handler.codec.http2.DefaultHttp2HeadersEncoder;
@@ -56,11 +59,18 @@ public class OutboundHeadersBenchmark {
   };
 
   private final Metadata metadata = new Metadata();
+  private final Metadata trailers = new Metadata();
   private final AsciiString scheme = new AsciiString("https");
   private final AsciiString defaultPath = new AsciiString("/Service.MethodMethodMethod");
   private final AsciiString authority = new AsciiString("authority.googleapis.bogus");
   private final AsciiString userAgent = new AsciiString("grpc-java-netty");
   private final Http2HeadersEncoder headersEncoder = new DefaultHttp2HeadersEncoder();
+  private final Http2HeadersEncoder grpcHeadersEncoder = new GrpcHttp2HeadersEncoder();
+  private final GrpcHttp2OutboundHeaders.RequestPreHeaders preHeaders =
+      new GrpcHttp2OutboundHeaders.RequestPreHeaders(
+          authority, Utils.HTTP_METHOD, scheme, userAgent);
+  private final Metadata timeoutMetadata = new Metadata();
+  private long timeoutNanos = TimeUnit.SECONDS.toNanos(1);
   private final ByteBuf scratchBuffer = UnpooledByteBufAllocator.DEFAULT.buffer(4096);
 
   @Setup
@@ -68,6 +78,10 @@ public class OutboundHeadersBenchmark {
     for (int i = 0; i < headerCount; i++) {
       metadata.put(Metadata.Key.of("key-" + i, keyMarshaller), UUID.randomUUID().toString());
     }
+    trailers.put(GrpcUtil.MESSAGE_ENCODING_KEY, "gzip");
+    trailers.put(InternalStatus.CODE_KEY, Status.OK);
+    trailers.put(InternalStatus.MESSAGE_KEY, "done");
+    timeoutMetadata.merge(metadata);
   }
 
   @Benchmark
@@ -78,6 +92,16 @@ public class OutboundHeadersBenchmark {
         userAgent);
   }
 
+  /**
+   * Converts only the metadata, reusing the other request headers like calls on the same transport.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Http2Headers convertClientHeadersCachedPreHeaders() {
+    return Utils.convertClientHeaders(metadata, defaultPath, preHeaders);
+  }
+
   @Benchmark
   @BenchmarkMode(Mode.SampleTime)
   @OutputTimeUnit(TimeUnit.NANOSECONDS)
@@ -85,6 +109,16 @@ public class OutboundHeadersBenchmark {
     return Utils.convertServerHeaders(metadata);
   }
 
+  /**
+   * Converts trailers made of well-known keys, whose names are shared rather than wrapped per call.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public Http2Headers convertServerTrailers() {
+    return Utils.convertTrailers(trailers, true);
+  }
+
   /**
    * This will encode the random metadata fields, and repeatedly lookup the default other headers.
    */
@@ -99,4 +133,35 @@ public class OutboundHeadersBenchmark {
     headersEncoder.encodeHeaders(1, headers, scratchBuffer);
     return scratchBuffer;
   }
+
+  /**
+   * Encodes requests whose timeout differs per call, which adds an entry to the dynamic table of
+   * the default encoder for every call.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public ByteBuf encodeClientHeadersWithTimeout() throws Exception {
+    return encodeWithTimeout(headersEncoder);
+  }
+
+  /**
+   * Encodes requests whose timeout differs per call, with the timeout not indexed so the other
+   * headers stay in the dynamic table.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SampleTime)
+  @OutputTimeUnit(TimeUnit.NANOSECONDS)
+  public ByteBuf encodeClientHeadersWithTimeoutNotIndexed() throws Exception {
+    return encodeWithTimeout(grpcHeadersEncoder);
+  }
+
+  private ByteBuf encodeWithTimeout(Http2HeadersEncoder encoder) throws Exception {
+    scratchBuffer.clear();
+    timeoutMetadata.discardAll(GrpcUtil.TIMEOUT_KEY);
+    timeoutMetadata.put(GrpcUtil.TIMEOUT_KEY, timeoutNanos++);
+    Http2Headers headers = Utils.convertClientHeaders(timeoutMetadata, defaultPath, preHeaders);
+    encoder.encodeHeaders(1, headers, scratchBuffer);
+    return scratchBuffer;
+  }
 }
@@ -23,12 +23,15 @@ import com.google.common.base.Preconditions;
 import io.grpc.ChannelLogger;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelPromise;
+import io.netty.handler.codec.http2.Http2CodecUtil;
+import io.netty.handler.codec.http2.Http2Connection;
 import io.netty.handler.codec.http2.Http2ConnectionDecoder;
 import io.netty.handler.codec.http2.Http2ConnectionEncoder;
 import io.netty.handler.codec.http2.Http2Exception;
 import io.netty.handler.codec.http2.Http2LocalFlowController;
 import io.netty.handler.codec.http2.Http2Settings;
 import io.netty.handler.codec.http2.Http2Stream;
+import io.netty.handler.codec.http2.Http2StreamVisitor;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -127,22 +130,38 @@ abstract class AbstractNettyHandler extends GrpcHttp2ConnectionHandler {
 
   /**
    * Class for handling flow control pinging and flow control window updates as necessary.
+   *
+   * <p>Each BDP ping measures the round trip time and the bytes received meanwhile. The connection
+   * window grows to twice the observed BDP, and shrinks once the smoothed BDP estimate has stayed
+   * well below the window for {@link #SHRINK_AFTER_PINGS} pings. Each stream's window is then sized
+   * to twice what the stream received during the last ping, so idle streams fall back to the
+   * configured window while busy streams may use up to the connection window.
+   *
+   * <p>Windows are only ever shrunk by lowering the size they are replenished to, since HTTP/2 does
+   * not allow taking back window that has already been granted to the peer.
    */
   final class FlowControlPinger {
 
     private static final int MAX_WINDOW_SIZE = 8 * 1024 * 1024;
+    @VisibleForTesting
+    static final int SHRINK_AFTER_PINGS = 3;
 
     private final PingLimiter pingLimiter;
+    private final Http2Connection.PropertyKey streamDataKey;
     private int pingCount;
     private int pingReturn;
     private boolean pinging;
     private int dataSizeSincePing;
     private float lastBandwidth; // bytes per second
     private long lastPingTime;
+    private int estimatedBdp = -1;
+    private long estimatedRttNanos = -1;
+    private int pingsBelowWindow;
 
     public FlowControlPinger(PingLimiter pingLimiter) {
       Preconditions.checkNotNull(pingLimiter, "pingLimiter");
       this.pingLimiter = pingLimiter;
+      this.streamDataKey = connection().newKey();
     }
 
     public long payload() {
@@ -153,7 +172,7 @@ abstract class AbstractNettyHandler extends GrpcHttp2ConnectionHandler {
       return MAX_WINDOW_SIZE;
     }
 
-    public void onDataRead(int dataLength, int paddingLength) {
+    public void onDataRead(int streamId, int dataLength, int paddingLength) {
       if (!autoTuneFlowControlOn) {
         return;
       }
@@ -162,6 +181,15 @@ abstract class AbstractNettyHandler extends GrpcHttp2ConnectionHandler {
         sendPing(ctx());
       }
       incrementDataSincePing(dataLength + paddingLength);
+      Http2Stream stream = connection().stream(streamId);
+      if (stream != null) {
+        StreamData streamData = stream.getProperty(streamDataKey);
+        if (streamData == null) {
+          streamData = new StreamData();
+          stream.setProperty(streamDataKey, streamData);
+        }
+        streamData.bytesSincePing += dataLength + paddingLength;
+      }
     }
 
     public void updateWindow() throws Http2Exception {
@@ -174,22 +202,110 @@ abstract class AbstractNettyHandler extends GrpcHttp2ConnectionHandler {
         elapsedTime = 1;
       }
       long bandwidth = (getDataSincePing() * TimeUnit.SECONDS.toNanos(1)) / elapsedTime;
+      updateEstimates(getDataSincePing(), elapsedTime);
       Http2LocalFlowController fc = decoder().flowController();
       // Calculate new window size by doubling the observed BDP, but cap at max window
       int targetWindow = Math.min(getDataSincePing() * 2, MAX_WINDOW_SIZE);
       setPinging(false);
-      int currentWindow = fc.initialWindowSize(connection().connectionStream());
+      Http2Stream connectionStream = connection().connectionStream();
+      int currentWindow = fc.initialWindowSize(connectionStream);
       if (targetWindow > currentWindow && bandwidth > lastBandwidth) {
         lastBandwidth = bandwidth;
+        pingsBelowWindow = 0;
         int increase = targetWindow - currentWindow;
-        fc.incrementWindowSize(connection().connectionStream(), increase);
+        fc.incrementWindowSize(connectionStream, increase);
         fc.initialWindowSize(targetWindow);
         Http2Settings settings = new Http2Settings();
         settings.initialWindowSize(targetWindow);
         frameWriter().writeSettings(ctx(), settings, ctx().newPromise());
+      } else {
+        maybeShrinkConnectionWindow(fc, currentWindow, bandwidth);
+      }
+      updateStreamWindows(fc);
+    }
+
+    private void updateEstimates(int bdpSample, long rttSample) {
+      if (estimatedRttNanos < 0) {
+        estimatedRttNanos = rttSample;
+      } else {
+        // Smoothed the same way as TCP's SRTT
+        estimatedRttNanos += (rttSample - estimatedRttNanos) / 8;
+      }
+      if (bdpSample >= estimatedBdp) {
+        estimatedBdp = bdpSample;
+      } else {
+        // Follow increases right away, but decreases slowly since a single sample may just be a
+        // pause in the traffic.
+        estimatedBdp -= (estimatedBdp - bdpSample) / 4;
+      }
+    }
+
+    private void maybeShrinkConnectionWindow(
+        Http2LocalFlowController fc, int currentWindow, long bandwidth) throws Http2Exception {
+      int targetWindow = Math.max(Math.min(estimatedBdp * 2, MAX_WINDOW_SIZE), minWindow());
+      if (targetWindow > currentWindow / 2) {
+        pingsBelowWindow = 0;
+        return;
+      }
+      if (++pingsBelowWindow < SHRINK_AFTER_PINGS) {
+        return;
+      }
+      pingsBelowWindow = 0;
+      // Allow growing again once the bandwidth picks up
+      lastBandwidth = bandwidth;
+      fc.incrementWindowSize(connection().connectionStream(), targetWindow - currentWindow);
+    }
+
+    private void updateStreamWindows(final Http2LocalFlowController fc) throws Http2Exception {
+      final int maxStreamWindow = fc.initialWindowSize(connection().connectionStream());
+      final int minStreamWindow = Math.min(minWindow(), maxStreamWindow);
+      final Http2Exception[] error = new Http2Exception[1];
+      connection().forEachActiveStream(new Http2StreamVisitor() {
+        @Override
+        public boolean visit(Http2Stream stream) {
+          if (!stream.state().remoteSideOpen()) {
+            return true;
+          }
+          StreamData streamData = stream.getProperty(streamDataKey);
+          int bytesSincePing = 0;
+          if (streamData != null) {
+            bytesSincePing = streamData.bytesSincePing;
+            streamData.bytesSincePing = 0;
+          }
+          int targetWindow = (int) Math.max(
+              Math.min(2L * bytesSincePing, maxStreamWindow), minStreamWindow);
+          int delta = targetWindow - fc.initialWindowSize(stream);
+          if (delta != 0) {
+            try {
+              fc.incrementWindowSize(stream, delta);
+            } catch (Http2Exception e) {
+              error[0] = e;
+              return false;
+            }
+          }
+          return true;
+        }
+      });
+      if (error[0] != null) {
+        throw error[0];
       }
     }
 
+    private int minWindow() {
+      return initialConnectionWindow > 0
+          ? initialConnectionWindow : Http2CodecUtil.DEFAULT_WINDOW_SIZE;
+    }
+
+    /** Returns the estimated bandwidth-delay product in bytes, or -1 if not yet measured. */
+    int getEstimatedBdp() {
+      return estimatedBdp;
+    }
+
+    /** Returns the smoothed round trip time in nanoseconds, or -1 if not yet measured. */
+    long getEstimatedRttNanos() {
+      return estimatedRttNanos;
+    }
+
     private boolean isPinging() {
       return pinging;
     }
@@ -236,6 +352,11 @@ abstract class AbstractNettyHandler extends GrpcHttp2ConnectionHandler {
     }
   }
 
+  /** Per-stream state of the {@link FlowControlPinger}. */
+  private static final class StreamData {
+    int bytesSincePing;
+  }
+
   /** Controls whether PINGs like those for BDP are permitted to be sent at the current time. */
   public interface PingLimiter {
     public boolean isPingAllowed();
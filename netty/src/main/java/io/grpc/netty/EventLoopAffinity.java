@@ -0,0 +1,318 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.base.Functions;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityState;
+import io.grpc.ExperimentalApi;
+import io.grpc.Grpc;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.netty.channel.EventLoop;
+import io.netty.channel.EventLoopGroup;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps a proxied RPC on one event loop, from the server call that receives it to the client call
+ * that forwards it upstream.
+ *
+ * <p>The transport attributes of each server call contain the event loop of its connection, under
+ * {@link #SERVER_EVENT_LOOP}. A channel created by {@link #newChannel} has one upstream channel per
+ * event loop of a group, each of which only uses that event loop. Each call goes to the channel of
+ * the event loop in {@link #PREFERRED_EVENT_LOOP}, or else of the current thread if it is one of
+ * the event loops. When the server shares the group with the channel, and both the server and the
+ * upstream channels use a direct executor, a proxied message never changes threads.
+ */
+@ExperimentalApi("https://github.com/grpc/grpc-java/issues/1784")
+public final class EventLoopAffinity {
+  /**
+   * The event loop of the connection a server call was received on.
+   */
+  @Grpc.TransportAttr
+  public static final Attributes.Key<EventLoop> SERVER_EVENT_LOOP =
+      Attributes.Key.create("io.grpc.netty.EventLoopAffinity.serverEventLoop");
+
+  /**
+   * The event loop whose upstream channel should carry a call made on a channel created by {@link
+   * #newChannel}.
+   */
+  public static final CallOptions.Key<EventLoop> PREFERRED_EVENT_LOOP =
+      CallOptions.Key.create("io.grpc.netty.EventLoopAffinity.preferredEventLoop");
+
+  private EventLoopAffinity() {}
+
+  /**
+   * Returns {@code callOptions} preferring the event loop {@code serverCall} was received on. The
+   * options are returned unchanged if the event loop is not known, for example because the server
+   * does not use the Netty transport.
+   */
+  public static CallOptions preferEventLoopOf(
+      CallOptions callOptions, ServerCall<?, ?> serverCall) {
+    EventLoop eventLoop = serverCall.getAttributes().get(SERVER_EVENT_LOOP);
+    if (eventLoop == null) {
+      return callOptions;
+    }
+    return callOptions.withOption(PREFERRED_EVENT_LOOP, eventLoop);
+  }
+
+  /**
+   * Creates a channel with one upstream channel per event loop of {@code group}. The factory is
+   * called once for each event loop, and must create a channel that only uses that event loop, for
+   * example with {@link NettyChannelBuilder#eventLoopGroup}.
+   */
+  public static ManagedChannel newChannel(EventLoopGroup group, ChannelFactory factory) {
+    checkNotNull(group, "group");
+    checkNotNull(factory, "factory");
+    List<EventLoop> eventLoops = new ArrayList<>();
+    List<ManagedChannel> channels = new ArrayList<>();
+    for (EventExecutor executor : group) {
+      checkArgument(executor instanceof EventLoop, "Not an event loop: %s", executor);
+      EventLoop eventLoop = (EventLoop) executor;
+      eventLoops.add(eventLoop);
+      channels.add(checkNotNull(factory.create(eventLoop), "channel"));
+    }
+    checkArgument(!channels.isEmpty(), "group has no event loops");
+    return new AffinityChannel(
+        eventLoops.toArray(new EventLoop[0]), channels.toArray(new ManagedChannel[0]));
+  }
+
+  /** Creates the upstream channel of an event loop. */
+  public interface ChannelFactory {
+    ManagedChannel create(EventLoop eventLoop);
+  }
+
+  private static final class AffinityChannel extends ManagedChannel {
+    private final EventLoop[] eventLoops;
+    private final ManagedChannel[] channels;
+    private final AtomicInteger next = new AtomicInteger();
+
+    AffinityChannel(EventLoop[] eventLoops, ManagedChannel[] channels) {
+      this.eventLoops = eventLoops;
+      this.channels = channels;
+    }
+
+    @Override
+    public <ReqT, RespT> ClientCall<ReqT, RespT> newCall(
+        MethodDescriptor<ReqT, RespT> methodDescriptor, CallOptions callOptions) {
+      return select(callOptions).newCall(methodDescriptor, callOptions);
+    }
+
+    private ManagedChannel select(CallOptions callOptions) {
+      EventLoop preferred = callOptions.getOption(PREFERRED_EVENT_LOOP);
+      if (preferred != null) {
+        for (int i = 0; i < eventLoops.length; i++) {
+          if (eventLoops[i] == preferred) {
+            return channels[i];
+          }
+        }
+      }
+      for (int i = 0; i < eventLoops.length; i++) {
+        if (eventLoops[i].inEventLoop()) {
+          return channels[i];
+        }
+      }
+      return channels[(next.getAndIncrement() & Integer.MAX_VALUE) % channels.length];
+    }
+
+    @Override
+    public String authority() {
+      return channels[0].authority();
+    }
+
+    @Override
+    public ManagedChannel shutdown() {
+      for (ManagedChannel channel : channels) {
+        channel.shutdown();
+      }
+      return this;
+    }
+
+    @Override
+    public ManagedChannel shutdownNow() {
+      for (ManagedChannel channel : channels) {
+        channel.shutdownNow();
+      }
+      return this;
+    }
+
+    @Override
+    public boolean isShutdown() {
+      for (ManagedChannel channel : channels) {
+        if (!channel.isShutdown()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean isTerminated() {
+      for (ManagedChannel channel : channels) {
+        if (!channel.isTerminated()) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+      long deadlineNanos = System.nanoTime() + unit.toNanos(timeout);
+      for (ManagedChannel channel : channels) {
+        if (!channel.awaitTermination(deadlineNanos - System.nanoTime(), TimeUnit.NANOSECONDS)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    /**
+     * Returns the best state of the upstream channels, so the channel is READY while any event
+     * loop can carry calls.
+     */
+    @Override
+    public ConnectivityState getState(boolean requestConnection) {
+      ConnectivityState best = null;
+      for (ManagedChannel channel : channels) {
+        ConnectivityState state = channel.getState(requestConnection);
+        if (best == null || rank(state) < rank(best)) {
+          best = state;
+        }
+      }
+      return best;
+    }
+
+    @Override
+    public void notifyWhenStateChanged(ConnectivityState source, Runnable callback) {
+      new StateWatcher(source, callback).start();
+    }
+
+    @Override
+    public void resetConnectBackoff() {
+      for (ManagedChannel channel : channels) {
+        channel.resetConnectBackoff();
+      }
+    }
+
+    @Override
+    public void enterIdle() {
+      for (ManagedChannel channel : channels) {
+        channel.enterIdle();
+      }
+    }
+
+    /**
+     * Warms up every upstream channel. Each one reaches {@code readyPercent} on its own, so the
+     * channel as a whole does too.
+     */
+    @Override
+    public ListenableFuture<Void> warmUp(double readyPercent) {
+      List<ListenableFuture<Void>> futures = new ArrayList<>(channels.length);
+      for (ManagedChannel channel : channels) {
+        futures.add(channel.warmUp(readyPercent));
+      }
+      return Futures.transform(
+          Futures.allAsList(futures), Functions.<Void>constant(null),
+          MoreExecutors.directExecutor());
+    }
+
+    @Override
+    public String toString() {
+      return getClass().getSimpleName() + "[channels=" + channels.length + "]";
+    }
+
+    private static int rank(ConnectivityState state) {
+      switch (state) {
+        case READY:
+          return 0;
+        case CONNECTING:
+          return 1;
+        case IDLE:
+          return 2;
+        case TRANSIENT_FAILURE:
+          return 3;
+        default:
+          return 4;
+      }
+    }
+
+    /**
+     * Watches every upstream channel, and runs the callback once the aggregate state differs from
+     * {@code source}.
+     */
+    private final class StateWatcher {
+      private final ConnectivityState source;
+      private final Runnable callback;
+      private final AtomicBoolean notified = new AtomicBoolean();
+
+      StateWatcher(ConnectivityState source, Runnable callback) {
+        this.source = checkNotNull(source, "source");
+        this.callback = checkNotNull(callback, "callback");
+      }
+
+      void start() {
+        // Registering with the states read here means a change made after the aggregate is
+        // checked below still wakes up a watch.
+        for (ManagedChannel channel : channels) {
+          watch(channel, channel.getState(false));
+        }
+        maybeNotify();
+      }
+
+      private void watch(final ManagedChannel channel, ConnectivityState state) {
+        channel.notifyWhenStateChanged(state, new Runnable() {
+          @Override
+          public void run() {
+            ConnectivityState newState = channel.getState(false);
+            if (!maybeNotify()) {
+              watch(channel, newState);
+            }
+          }
+        });
+      }
+
+      /** Returns {@code true} once the callback has been run. */
+      private boolean maybeNotify() {
+        if (notified.get()) {
+          return true;
+        }
+        if (getState(false) == source) {
+          return false;
+        }
+        if (notified.compareAndSet(false, true)) {
+          callback.run();
+        }
+        return true;
+      }
+    }
+  }
+}
@@ -0,0 +1,170 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.handler.codec.http2.DefaultHttp2HeadersEncoder;
+import io.netty.handler.codec.http2.Http2Exception;
+import io.netty.handler.codec.http2.Http2Headers;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An HPACK encoder that sends the headers whose values differ from call to call as literals
+ * without indexing (RFC 7541, section 6.2.2), so they never enter the dynamic table and the
+ * headers that repeat stay indexed.
+ *
+ * <p>Netty's encoder can only leave a header out of the dynamic table by marking it as never
+ * indexed, which also asks intermediaries not to index it. Instead, the other headers are encoded
+ * by Netty and the per-call headers are appended to the block. Those do not change the dynamic
+ * table, so the encoder state stays in sync with the peer. They are not counted against the
+ * maximum header list size.
+ */
+final class GrpcHttp2HeadersEncoder extends DefaultHttp2HeadersEncoder {
+  /** The first octet of a literal without indexing whose name is a literal too. */
+  private static final int LITERAL_WITHOUT_INDEXING_NEW_NAME = 0x00;
+
+  @Override
+  public void encodeHeaders(int streamId, Http2Headers headers, ByteBuf buffer)
+      throws Http2Exception {
+    if (!hasPerCallHeader(headers)) {
+      super.encodeHeaders(streamId, headers, buffer);
+      return;
+    }
+    super.encodeHeaders(streamId, new WithoutPerCallHeaders(headers), buffer);
+    for (Map.Entry<CharSequence, CharSequence> header : headers) {
+      if (WellKnownHeaders.isPerCall(header.getKey())) {
+        buffer.writeByte(LITERAL_WITHOUT_INDEXING_NEW_NAME);
+        encodeString(buffer, header.getKey());
+        encodeString(buffer, header.getValue());
+      }
+    }
+  }
+
+  private static boolean hasPerCallHeader(Http2Headers headers) {
+    for (Map.Entry<CharSequence, CharSequence> header : headers) {
+      if (WellKnownHeaders.isPerCall(header.getKey())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Encodes a string literal without Huffman coding (RFC 7541, section 5.2). */
+  private static void encodeString(ByteBuf buffer, CharSequence string) {
+    encodeLength(buffer, string.length());
+    ByteBufUtil.writeAscii(buffer, string);
+  }
+
+  /** Encodes a length as an integer with a 7-bit prefix (RFC 7541, section 5.1). */
+  private static void encodeLength(ByteBuf buffer, int length) {
+    if (length < 0x7F) {
+      buffer.writeByte(length);
+      return;
+    }
+    buffer.writeByte(0x7F);
+    length -= 0x7F;
+    while ((length & ~0x7F) != 0) {
+      buffer.writeByte((length & 0x7F) | 0x80);
+      length >>>= 7;
+    }
+    buffer.writeByte(length);
+  }
+
+  /** A view of headers without the per-call headers, that only supports iteration. */
+  private static final class WithoutPerCallHeaders extends AbstractHttp2Headers {
+    private final Http2Headers headers;
+
+    WithoutPerCallHeaders(Http2Headers headers) {
+      this.headers = headers;
+    }
+
+    @Override
+    public Iterator<Map.Entry<CharSequence, CharSequence>> iterator() {
+      return new Itr(headers.iterator());
+    }
+  }
+
+  /**
+   * Skips the per-call headers. The entries are copied, since the delegate may reuse its entry
+   * between calls to {@code next()}.
+   */
+  private static final class Itr implements Map.Entry<CharSequence, CharSequence>,
+      Iterator<Map.Entry<CharSequence, CharSequence>> {
+    private final Iterator<Map.Entry<CharSequence, CharSequence>> delegate;
+    private CharSequence nextKey;
+    private CharSequence nextValue;
+    private CharSequence key;
+    private CharSequence value;
+
+    Itr(Iterator<Map.Entry<CharSequence, CharSequence>> delegate) {
+      this.delegate = delegate;
+      advance();
+    }
+
+    private void advance() {
+      while (delegate.hasNext()) {
+        Map.Entry<CharSequence, CharSequence> header = delegate.next();
+        if (!WellKnownHeaders.isPerCall(header.getKey())) {
+          nextKey = header.getKey();
+          nextValue = header.getValue();
+          return;
+        }
+      }
+      nextKey = null;
+      nextValue = null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return nextKey != null;
+    }
+
+    @Override
+    public Map.Entry<CharSequence, CharSequence> next() {
+      if (nextKey == null) {
+        throw new NoSuchElementException();
+      }
+      key = nextKey;
+      value = nextValue;
+      advance();
+      return this;
+    }
+
+    @Override
+    public CharSequence getKey() {
+      return key;
+    }
+
+    @Override
+    public CharSequence getValue() {
+      return value;
+    }
+
+    @Override
+    public CharSequence setValue(CharSequence value) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
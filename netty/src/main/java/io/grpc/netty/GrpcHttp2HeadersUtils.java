@@ -105,7 +105,7 @@ class GrpcHttp2HeadersUtils {
     }
 
     protected Http2Headers add(AsciiString name, AsciiString value) {
-      byte[] nameBytes = bytes(name);
+      byte[] nameBytes = WellKnownHeaders.internName(name);
       byte[] valueBytes;
       if (!name.endsWith(binaryHeaderSuffix)) {
         valueBytes = bytes(value);
@@ -227,6 +227,10 @@ class GrpcHttp2HeadersUtils {
     }
 
     protected static boolean equals(AsciiString str0, byte[] str1) {
+      if (str0.array() == str1 && str0.arrayOffset() == 0) {
+        // Interned names share the array.
+        return str0.length() == str1.length;
+      }
       return equals(str0.array(), str0.arrayOffset(), str0.length(), str1, 0, str1.length);
     }
 
@@ -29,41 +29,44 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
 
   private final AsciiString[] normalHeaders;
   private final AsciiString[] preHeaders;
+  // Only set on requests. The pre-headers are shared by the calls of all methods, the path is not.
+  private final AsciiString path;
   private static final AsciiString[] EMPTY = new AsciiString[]{};
+  // Never modified, so shared by all responses.
+  private static final AsciiString[] RESPONSE_PRE_HEADERS = new AsciiString[] {
+      Http2Headers.PseudoHeaderName.STATUS.value(), Utils.STATUS_OK,
+      Utils.CONTENT_TYPE_HEADER, Utils.CONTENT_TYPE_GRPC,
+  };
 
   static GrpcHttp2OutboundHeaders clientRequestHeaders(byte[][] serializedMetadata,
       AsciiString authority, AsciiString path, AsciiString method, AsciiString scheme,
       AsciiString userAgent) {
-    AsciiString[] preHeaders = new AsciiString[] {
-        Http2Headers.PseudoHeaderName.AUTHORITY.value(), authority,
-        Http2Headers.PseudoHeaderName.PATH.value(), path,
-        Http2Headers.PseudoHeaderName.METHOD.value(), method,
-        Http2Headers.PseudoHeaderName.SCHEME.value(), scheme,
-        Utils.CONTENT_TYPE_HEADER, Utils.CONTENT_TYPE_GRPC,
-        Utils.TE_HEADER, Utils.TE_TRAILERS,
-        Utils.USER_AGENT, userAgent,
-    };
-    return new GrpcHttp2OutboundHeaders(preHeaders, serializedMetadata);
+    return clientRequestHeaders(
+        serializedMetadata, path, new RequestPreHeaders(authority, method, scheme, userAgent));
+  }
+
+  static GrpcHttp2OutboundHeaders clientRequestHeaders(byte[][] serializedMetadata,
+      AsciiString path, RequestPreHeaders preHeaders) {
+    return new GrpcHttp2OutboundHeaders(path, preHeaders.namesAndValues, serializedMetadata);
   }
 
   static GrpcHttp2OutboundHeaders serverResponseHeaders(byte[][] serializedMetadata) {
-    AsciiString[] preHeaders = new AsciiString[] {
-        Http2Headers.PseudoHeaderName.STATUS.value(), Utils.STATUS_OK,
-        Utils.CONTENT_TYPE_HEADER, Utils.CONTENT_TYPE_GRPC,
-    };
-    return new GrpcHttp2OutboundHeaders(preHeaders, serializedMetadata);
+    return new GrpcHttp2OutboundHeaders(null, RESPONSE_PRE_HEADERS, serializedMetadata);
   }
 
   static GrpcHttp2OutboundHeaders serverResponseTrailers(byte[][] serializedMetadata) {
-    return new GrpcHttp2OutboundHeaders(EMPTY, serializedMetadata);
+    return new GrpcHttp2OutboundHeaders(null, EMPTY, serializedMetadata);
   }
 
-  private GrpcHttp2OutboundHeaders(AsciiString[] preHeaders, byte[][] serializedMetadata) {
+  private GrpcHttp2OutboundHeaders(
+      AsciiString path, AsciiString[] preHeaders, byte[][] serializedMetadata) {
     normalHeaders = new AsciiString[serializedMetadata.length];
-    for (int i = 0; i < normalHeaders.length; i++) {
-      normalHeaders[i] = new AsciiString(serializedMetadata[i], false);
+    for (int i = 0; i < normalHeaders.length; i += 2) {
+      normalHeaders[i] = WellKnownHeaders.forName(serializedMetadata[i]);
+      normalHeaders[i + 1] = new AsciiString(serializedMetadata[i + 1], false);
     }
     this.preHeaders = preHeaders;
+    this.path = path;
   }
 
   @Override
@@ -83,11 +86,12 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
 
   @Override
   public int size() {
-    return (normalHeaders.length + preHeaders.length) / 2;
+    return (normalHeaders.length + preHeaders.length) / 2 + (path != null ? 1 : 0);
   }
 
   private class Itr implements Map.Entry<CharSequence, CharSequence>,
       Iterator<Map.Entry<CharSequence, CharSequence>> {
+    private boolean pathPending = path != null;
     private int idx;
     private AsciiString[] current = preHeaders.length != 0 ? preHeaders : normalHeaders;
     private AsciiString key;
@@ -95,7 +99,7 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
 
     @Override
     public boolean hasNext() {
-      return idx < current.length;
+      return pathPending || idx < current.length;
     }
 
     /**
@@ -105,7 +109,12 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
      */
     @Override
     public Map.Entry<CharSequence, CharSequence> next() {
-      if (hasNext()) {
+      if (pathPending) {
+        pathPending = false;
+        key = Http2Headers.PseudoHeaderName.PATH.value();
+        value = path;
+        return this;
+      } else if (hasNext()) {
         key = current[idx];
         value = current[idx + 1];
         idx += 2;
@@ -140,6 +149,45 @@ final class GrpcHttp2OutboundHeaders extends AbstractHttp2Headers {
     }
   }
 
+  /**
+   * The headers of a request that depend neither on its method nor on its metadata. They are the
+   * same for every call on a transport, so the transport builds them once and its streams share
+   * them.
+   */
+  static final class RequestPreHeaders {
+    // Never modified, so shared by all requests using this instance.
+    private final AsciiString[] namesAndValues;
+
+    RequestPreHeaders(AsciiString authority, AsciiString method, AsciiString scheme,
+        AsciiString userAgent) {
+      namesAndValues = new AsciiString[] {
+          Http2Headers.PseudoHeaderName.AUTHORITY.value(), authority,
+          Http2Headers.PseudoHeaderName.METHOD.value(), method,
+          Http2Headers.PseudoHeaderName.SCHEME.value(), scheme,
+          Utils.CONTENT_TYPE_HEADER, Utils.CONTENT_TYPE_GRPC,
+          Utils.TE_HEADER, Utils.TE_TRAILERS,
+          Utils.USER_AGENT, userAgent,
+      };
+    }
+
+    AsciiString authority() {
+      return namesAndValues[1];
+    }
+
+    AsciiString scheme() {
+      return namesAndValues[5];
+    }
+
+    AsciiString userAgent() {
+      return namesAndValues[11];
+    }
+
+    /** Returns headers equal to these except for the authority. */
+    RequestPreHeaders withAuthority(AsciiString authority) {
+      return new RequestPreHeaders(authority, namesAndValues[3], scheme(), userAgent());
+    }
+  }
+
   @Override
   public String toString() {
     StringBuilder builder = new StringBuilder(getClass().getSimpleName()).append('[');
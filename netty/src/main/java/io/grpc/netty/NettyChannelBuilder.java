@@ -253,7 +253,9 @@ public final class NettyChannelBuilder extends
 
   /**
    * Specifies the channel type to use, by default we use {@code EpollSocketChannel} if available,
-   * otherwise using {@link NioSocketChannel}.
+   * otherwise using {@link NioSocketChannel}. If the {@code io.grpc.netty.useIoUring} system
+   * property is {@code true} and io_uring is available, the default is {@code
+   * IOUringSocketChannel} instead.
    *
    * <p>You either use this or {@link #channelFactory(io.netty.channel.ChannelFactory)} if your
    * {@link Channel} implementation has no no-args constructor.
@@ -147,7 +147,7 @@ class NettyClientHandler extends AbstractNettyHandler {
     Preconditions.checkArgument(maxHeaderListSize > 0, "maxHeaderListSize must be positive");
     Http2HeadersDecoder headersDecoder = new GrpcHttp2ClientHeadersDecoder(maxHeaderListSize);
     Http2FrameReader frameReader = new DefaultHttp2FrameReader(headersDecoder);
-    Http2FrameWriter frameWriter = new DefaultHttp2FrameWriter();
+    Http2FrameWriter frameWriter = new DefaultHttp2FrameWriter(new GrpcHttp2HeadersEncoder());
     Http2Connection connection = new DefaultHttp2Connection(false);
     WeightedFairQueueByteDistributor dist = new WeightedFairQueueByteDistributor(connection);
     dist.allocationQuantum(16 * 1024); // Make benchmarks fast again.
@@ -216,8 +216,6 @@ class NettyClientHandler extends AbstractNettyHandler {
     Http2ConnectionDecoder decoder = new DefaultHttp2ConnectionDecoder(connection, encoder,
         frameReader);
 
-    transportTracer.setFlowControlWindowReader(new Utils.FlowControlReader(connection));
-
     Http2Settings settings = new Http2Settings();
     settings.pushEnabled(false);
     settings.initialWindowSize(flowControlWindow);
@@ -270,6 +268,8 @@ class NettyClientHandler extends AbstractNettyHandler {
 
     Http2Connection connection = encoder.connection();
     streamKey = connection.newKey();
+    transportTracer.setFlowControlWindowReader(
+        new Utils.FlowControlReader(connection, flowControlPing()));
 
     connection.addListener(new Http2ConnectionAdapter() {
       @Override
@@ -381,7 +381,7 @@ class NettyClientHandler extends AbstractNettyHandler {
    * Handler for an inbound HTTP/2 DATA frame.
    */
   private void onDataRead(int streamId, ByteBuf data, int padding, boolean endOfStream) {
-    flowControlPing().onDataRead(data.readableBytes(), padding);
+    flowControlPing().onDataRead(streamId, data.readableBytes(), padding);
     NettyClientStream.TransportState stream = clientStream(requireHttp2Stream(streamId));
     PerfMark.event("NettyClientHandler.onDataRead", stream.tag());
     stream.transportDataReceived(data, endOfStream);
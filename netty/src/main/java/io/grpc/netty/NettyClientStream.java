@@ -35,6 +35,7 @@ import io.grpc.internal.Http2ClientStreamTransportState;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.TransportTracer;
 import io.grpc.internal.WritableBuffer;
+import io.grpc.netty.GrpcHttp2OutboundHeaders.RequestPreHeaders;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
@@ -61,24 +62,20 @@ class NettyClientStream extends AbstractClientStream {
   private final TransportState state;
   private final WriteQueue writeQueue;
   private final MethodDescriptor<?, ?> method;
-  private AsciiString authority;
-  private final AsciiString scheme;
-  private final AsciiString userAgent;
+  private RequestPreHeaders preHeaders;
 
   NettyClientStream(
       TransportState state,
       MethodDescriptor<?, ?> method,
       Metadata headers,
       Channel channel,
-      AsciiString authority,
-      AsciiString scheme,
-      AsciiString userAgent,
+      RequestPreHeaders preHeaders,
       StatsTraceContext statsTraceCtx,
       TransportTracer transportTracer,
       CallOptions callOptions,
       boolean useGetForSafeMethods) {
     super(
-        new NettyWritableBufferAllocator(channel.alloc()),
+        new NettyWritableBufferAllocator(channel.alloc(), transportTracer),
         statsTraceCtx,
         transportTracer,
         headers,
@@ -87,9 +84,7 @@ class NettyClientStream extends AbstractClientStream {
     this.state = checkNotNull(state, "transportState");
     this.writeQueue = state.handler.getWriteQueue();
     this.method = checkNotNull(method, "method");
-    this.authority = checkNotNull(authority, "authority");
-    this.scheme = checkNotNull(scheme, "scheme");
-    this.userAgent = userAgent;
+    this.preHeaders = checkNotNull(preHeaders, "preHeaders");
   }
 
   @Override
@@ -104,7 +99,8 @@ class NettyClientStream extends AbstractClientStream {
 
   @Override
   public void setAuthority(String authority) {
-    this.authority = AsciiString.of(checkNotNull(authority, "authority"));
+    checkNotNull(authority, "authority");
+    this.preHeaders = preHeaders.withAuthority(AsciiString.of(authority));
   }
 
   @Override
@@ -132,18 +128,17 @@ class NettyClientStream extends AbstractClientStream {
         methodDescriptorAccessor.setRawMethodName(method, defaultPath);
       }
       boolean get = (requestPayload != null);
-      AsciiString httpMethod;
+      Http2Headers http2Headers;
       if (get) {
         // Forge the query string
         // TODO(ericgribkoff) Add the key back to the query string
         defaultPath =
             new AsciiString(defaultPath + "?" + BaseEncoding.base64().encode(requestPayload));
-        httpMethod = Utils.HTTP_GET_METHOD;
+        http2Headers = Utils.convertClientHeaders(headers, preHeaders.scheme(), defaultPath,
+            preHeaders.authority(), Utils.HTTP_GET_METHOD, preHeaders.userAgent());
       } else {
-        httpMethod = Utils.HTTP_METHOD;
+        http2Headers = Utils.convertClientHeaders(headers, defaultPath, preHeaders);
       }
-      Http2Headers http2Headers = Utils.convertClientHeaders(headers, scheme, defaultPath,
-          authority, httpMethod, userAgent);
 
       ChannelFutureListener failureListener = new ChannelFutureListener() {
         @Override
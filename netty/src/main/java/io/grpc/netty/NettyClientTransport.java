@@ -43,6 +43,7 @@ import io.grpc.internal.KeepAliveManager;
 import io.grpc.internal.KeepAliveManager.ClientKeepAlivePinger;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.TransportTracer;
+import io.grpc.netty.GrpcHttp2OutboundHeaders.RequestPreHeaders;
 import io.grpc.netty.NettyChannelBuilder.LocalSocketPicker;
 import io.netty.bootstrap.Bootstrap;
 import io.netty.channel.Channel;
@@ -76,8 +77,6 @@ class NettyClientTransport implements ConnectionClientTransport {
   private final EventLoopGroup group;
   private final ProtocolNegotiator negotiator;
   private final String authorityString;
-  private final AsciiString authority;
-  private final AsciiString userAgent;
   private final boolean autoFlowControl;
   private final int flowControlWindow;
   private final int maxMessageSize;
@@ -86,7 +85,8 @@ class NettyClientTransport implements ConnectionClientTransport {
   private final long keepAliveTimeNanos;
   private final long keepAliveTimeoutNanos;
   private final boolean keepAliveWithoutCalls;
-  private final AsciiString negotiationScheme;
+  /** The request headers shared by all streams, unless a stream overrides the authority. */
+  private final RequestPreHeaders requestPreHeaders;
   private final Runnable tooManyPingsRunnable;
   private NettyClientHandler handler;
   // We should not send on the channel until negotiation completes. This is a hard requirement
@@ -114,7 +114,6 @@ class NettyClientTransport implements ConnectionClientTransport {
       LocalSocketPicker localSocketPicker, ChannelLogger channelLogger,
       boolean useGetForSafeMethods) {
     this.negotiator = Preconditions.checkNotNull(negotiator, "negotiator");
-    this.negotiationScheme = this.negotiator.scheme();
     this.remoteAddress = Preconditions.checkNotNull(address, "address");
     this.group = Preconditions.checkNotNull(group, "group");
     this.channelFactory = channelFactory;
@@ -127,8 +126,11 @@ class NettyClientTransport implements ConnectionClientTransport {
     this.keepAliveTimeoutNanos = keepAliveTimeoutNanos;
     this.keepAliveWithoutCalls = keepAliveWithoutCalls;
     this.authorityString = authority;
-    this.authority = new AsciiString(authority);
-    this.userAgent = new AsciiString(GrpcUtil.getGrpcUserAgent("netty", userAgent));
+    this.requestPreHeaders = new RequestPreHeaders(
+        new AsciiString(authority),
+        Utils.HTTP_METHOD,
+        this.negotiator.scheme(),
+        new AsciiString(GrpcUtil.getGrpcUserAgent("netty", userAgent)));
     this.tooManyPingsRunnable =
         Preconditions.checkNotNull(tooManyPingsRunnable, "tooManyPingsRunnable");
     this.transportTracer = Preconditions.checkNotNull(transportTracer, "transportTracer");
@@ -193,9 +195,7 @@ class NettyClientTransport implements ConnectionClientTransport {
         method,
         headers,
         channel,
-        authority,
-        negotiationScheme,
-        userAgent,
+        requestPreHeaders,
         statsTraceCtx,
         transportTracer,
         callOptions,
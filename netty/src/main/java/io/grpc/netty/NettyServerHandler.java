@@ -164,7 +164,8 @@ class NettyServerHandler extends AbstractNettyHandler {
     Http2FrameReader frameReader = new Http2InboundFrameLogger(
         new DefaultHttp2FrameReader(headersDecoder), frameLogger);
     Http2FrameWriter frameWriter =
-        new Http2OutboundFrameLogger(new DefaultHttp2FrameWriter(), frameLogger);
+        new Http2OutboundFrameLogger(
+            new DefaultHttp2FrameWriter(new GrpcHttp2HeadersEncoder()), frameLogger);
     return newHandler(
         channelUnused,
         frameReader,
@@ -370,7 +371,8 @@ class NettyServerHandler extends AbstractNettyHandler {
     }
 
     assert encoder().connection().equals(decoder().connection());
-    transportTracer.setFlowControlWindowReader(new Utils.FlowControlReader(encoder().connection()));
+    transportTracer.setFlowControlWindowReader(
+        new Utils.FlowControlReader(encoder().connection(), flowControlPing()));
 
     super.handlerAdded(ctx);
   }
@@ -497,7 +499,7 @@ class NettyServerHandler extends AbstractNettyHandler {
 
   private void onDataRead(int streamId, ByteBuf data, int padding, boolean endOfStream)
       throws Http2Exception {
-    flowControlPing().onDataRead(data.readableBytes(), padding);
+    flowControlPing().onDataRead(streamId, data.readableBytes(), padding);
     try {
       NettyServerStream.TransportState stream = serverStream(requireHttp2Stream(streamId));
       PerfMark.startTask("NettyServerHandler.onDataRead", stream.tag());
@@ -567,7 +569,9 @@ class NettyServerHandler extends AbstractNettyHandler {
   @Override
   public void handleProtocolNegotiationCompleted(
       Attributes attrs, InternalChannelz.Security securityInfo) {
-    negotiationAttributes = attrs;
+    negotiationAttributes = attrs.toBuilder()
+        .set(EventLoopAffinity.SERVER_EVENT_LOOP, ctx().channel().eventLoop())
+        .build();
     this.securityInfo = securityInfo;
     super.handleProtocolNegotiationCompleted(attrs, securityInfo);
     NettyClientHandler.writeBufferingAndRemove(ctx().channel());
@@ -671,14 +675,21 @@ class NettyServerHandler extends AbstractNettyHandler {
     }
   }
 
-  private void closeStreamWhenDone(ChannelPromise promise, int streamId) throws Http2Exception {
+  /**
+   * Completes the stream once its last frame has been written. Returns the promise to write the
+   * frame with, which replaces a void promise since a void promise cannot be listened to.
+   */
+  private ChannelPromise closeStreamWhenDone(ChannelPromise promise, int streamId)
+      throws Http2Exception {
     final NettyServerStream.TransportState stream = serverStream(requireHttp2Stream(streamId));
+    promise = promise.unvoid();
     promise.addListener(new ChannelFutureListener() {
       @Override
       public void operationComplete(ChannelFuture future) {
         stream.complete();
       }
     });
+    return promise;
   }
 
   /**
@@ -690,7 +701,7 @@ class NettyServerHandler extends AbstractNettyHandler {
     PerfMark.linkIn(cmd.getLink());
     try {
       if (cmd.endStream()) {
-        closeStreamWhenDone(promise, cmd.stream().id());
+        promise = closeStreamWhenDone(promise, cmd.stream().id());
       }
       // Call the base class to write the HTTP/2 DATA frame.
       encoder().writeData(ctx, cmd.stream().id(), cmd.content(), 0, cmd.endStream(), promise);
@@ -716,7 +727,7 @@ class NettyServerHandler extends AbstractNettyHandler {
         return;
       }
       if (cmd.endOfStream()) {
-        closeStreamWhenDone(promise, streamId);
+        promise = closeStreamWhenDone(promise, streamId);
       }
       encoder().writeHeaders(ctx, streamId, cmd.headers(), 0, cmd.endOfStream(), promise);
     } finally {
@@ -61,7 +61,7 @@ class NettyServerStream extends AbstractServerStream {
       String authority,
       StatsTraceContext statsTraceCtx,
       TransportTracer transportTracer) {
-    super(new NettyWritableBufferAllocator(channel.alloc()), statsTraceCtx);
+    super(new NettyWritableBufferAllocator(channel.alloc(), transportTracer), statsTraceCtx);
     this.state = checkNotNull(state, "transportState");
     this.writeQueue = state.handler.getWriteQueue();
     this.attributes = checkNotNull(transportAttrs);
@@ -96,7 +96,7 @@ class NettyServerStream extends AbstractServerStream {
     public void writeHeaders(Metadata headers) {
       PerfMark.startTask("NettyServerStream$Sink.writeHeaders");
       try {
-        writeQueue.enqueue(
+        writeQueue.enqueueVoid(
             SendResponseHeadersCommand.createHeaders(
                 transportState(),
                 Utils.convertServerHeaders(headers)),
@@ -145,7 +145,7 @@ class NettyServerStream extends AbstractServerStream {
       PerfMark.startTask("NettyServerStream$Sink.writeTrailers");
       try {
         Http2Headers http2Trailers = Utils.convertTrailers(trailers, headersSent);
-        writeQueue.enqueue(
+        writeQueue.enqueueVoid(
             SendResponseHeadersCommand.createTrailers(transportState(), http2Trailers, status),
             true);
       } finally {
@@ -157,7 +157,7 @@ class NettyServerStream extends AbstractServerStream {
     public void cancel(Status status) {
       PerfMark.startTask("NettyServerStream$Sink.cancel");
       try {
-        writeQueue.enqueue(new CancelServerStreamCommand(transportState(), status), true);
+        writeQueue.enqueueVoid(new CancelServerStreamCommand(transportState(), status), true);
       } finally {
         PerfMark.startTask("NettyServerStream$Sink.cancel");
       }
@@ -219,7 +219,7 @@ class NettyServerStream extends AbstractServerStream {
       log.log(Level.WARNING, "Exception processing message", cause);
       Status status = Status.fromThrowable(cause);
       transportReportStatus(status);
-      handler.getWriteQueue().enqueue(new CancelServerStreamCommand(this, status), true);
+      handler.getWriteQueue().enqueueVoid(new CancelServerStreamCommand(this, status), true);
     }
 
     void inboundDataReceived(ByteBuf frame, boolean endOfStream) {
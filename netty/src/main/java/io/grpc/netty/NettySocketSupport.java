@@ -20,13 +20,17 @@ import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableMap;
 import io.grpc.InternalChannelz.TcpInfo;
 import io.netty.channel.Channel;
+import java.lang.reflect.Method;
 import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import javax.annotation.Nullable;
 
 /**
  * An class for getting low level socket info.
  */
 final class NettySocketSupport {
+  private static final Logger logger = Logger.getLogger(NettySocketSupport.class.getName());
   private static volatile Helper instance = new NettySocketHelperImpl();
 
   interface Helper {
@@ -66,9 +70,67 @@ final class NettySocketSupport {
   private static final class NettySocketHelperImpl implements Helper {
     @Override
     public NativeSocketOptions getNativeSocketOptions(Channel ch) {
-      // TODO(zpencer): if netty-epoll, use reflection to call EpollSocketChannel.tcpInfo()
-      // And/or if some other low level socket support library is available, call it now.
-      return null;
+      // TODO(zpencer): if some other low level socket support library is available, call it now.
+      TcpInfo tcpInfo = getTcpInfo(ch);
+      if (tcpInfo == null) {
+        return null;
+      }
+      return new NativeSocketOptions(tcpInfo, ImmutableMap.<String, String>of());
+    }
+
+    /**
+     * Reads TCP_INFO from native channels that have a {@code tcpInfo()} method, like {@code
+     * EpollSocketChannel}. Reflection is used as the native transports are optional dependencies.
+     */
+    @Nullable
+    private static TcpInfo getTcpInfo(Channel ch) {
+      Method tcpInfoMethod;
+      try {
+        tcpInfoMethod = ch.getClass().getMethod("tcpInfo");
+      } catch (NoSuchMethodException e) {
+        return null;
+      }
+      try {
+        Object info = tcpInfoMethod.invoke(ch);
+        return new TcpInfo.Builder()
+            .setState(getInt(info, "state"))
+            .setCaState(getInt(info, "caState"))
+            .setRetransmits(getInt(info, "retransmits"))
+            .setProbes(getInt(info, "probes"))
+            .setBackoff(getInt(info, "backoff"))
+            .setOptions(getInt(info, "options"))
+            .setSndWscale(getInt(info, "sndWscale"))
+            .setRcvWscale(getInt(info, "rcvWscale"))
+            .setRto(getInt(info, "rto"))
+            .setAto(getInt(info, "ato"))
+            .setSndMss(getInt(info, "sndMss"))
+            .setRcvMss(getInt(info, "rcvMss"))
+            .setUnacked(getInt(info, "unacked"))
+            .setSacked(getInt(info, "sacked"))
+            .setLost(getInt(info, "lost"))
+            .setRetrans(getInt(info, "retrans"))
+            .setFackets(getInt(info, "fackets"))
+            .setLastDataSent(getInt(info, "lastDataSent"))
+            .setLastAckSent(getInt(info, "lastAckSent"))
+            .setLastDataRecv(getInt(info, "lastDataRecv"))
+            .setLastAckRecv(getInt(info, "lastAckRecv"))
+            .setPmtu(getInt(info, "pmtu"))
+            .setRcvSsthresh(getInt(info, "rcvSsthresh"))
+            .setRtt(getInt(info, "rtt"))
+            .setRttvar(getInt(info, "rttvar"))
+            .setSndSsthresh(getInt(info, "sndSsthresh"))
+            .setSndCwnd(getInt(info, "sndCwnd"))
+            .setAdvmss(getInt(info, "advmss"))
+            .setReordering(getInt(info, "reordering"))
+            .build();
+      } catch (Exception e) {
+        logger.log(Level.FINE, "Unable to read TCP_INFO of " + ch, e);
+        return null;
+      }
+    }
+
+    private static int getInt(Object info, String name) throws Exception {
+      return ((Number) info.getClass().getMethod(name).invoke(info)).intValue();
     }
   }
 }
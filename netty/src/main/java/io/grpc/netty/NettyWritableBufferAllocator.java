@@ -16,9 +16,19 @@
 
 package io.grpc.netty;
 
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import com.google.common.annotations.VisibleForTesting;
+import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.TransportTracer;
+import io.grpc.internal.WrappingWritableBufferAllocator;
 import io.grpc.internal.WritableBuffer;
-import io.grpc.internal.WritableBufferAllocator;
 import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * The default allocator for {@link NettyWritableBuffer}s used by the Netty transport. We set a
@@ -28,26 +38,100 @@ import io.netty.buffer.ByteBufAllocator;
  * buffers of arbitrary size and will chunk them based on flow-control so there is no transport
  * requirement for an upper bound.
  *
+ * <p>An allocator is used by a single stream. The minimum bound adapts to the sizes the stream
+ * has recently requested, in power-of-two size classes, so streams of small messages don't hold
+ * on to mostly empty 4k buffers.
+ *
  * <p>Note: It is assumed that most applications will be using Netty's direct buffer pools for
  * maximum performance.
+ *
+ * <p>Wrapped buffers are exposed as a {@link CompositeByteBuf} over the original buffers, so a
+ * message is written without copying its payload, together with its header, in a single gathering
+ * write.
  */
-class NettyWritableBufferAllocator implements WritableBufferAllocator {
+class NettyWritableBufferAllocator implements WrappingWritableBufferAllocator {
 
-  // Use 4k as our minimum buffer size.
+  // Use 4k as our initial minimum buffer size.
   private static final int MIN_BUFFER = 4 * 1024;
 
+  // The minimum buffer size never adapts below 256 bytes.
+  private static final int MIN_ADAPTED_BUFFER = 256;
+
   // Set the maximum buffer size to 1MB.
   private static final int MAX_BUFFER = 1024 * 1024;
 
+  // Number of consecutive allocations fitting in half the minimum before it is halved.
+  @VisibleForTesting
+  static final int ALLOCATIONS_BEFORE_SHRINK = 16;
+
   private final ByteBufAllocator allocator;
+  private final TransportTracer transportTracer;
+  private int minBuffer = MIN_BUFFER;
+  private int smallAllocations;
 
-  NettyWritableBufferAllocator(ByteBufAllocator allocator) {
+  NettyWritableBufferAllocator(ByteBufAllocator allocator, TransportTracer transportTracer) {
     this.allocator = allocator;
+    this.transportTracer = checkNotNull(transportTracer, "transportTracer");
   }
 
   @Override
   public WritableBuffer allocate(int capacityHint) {
-    capacityHint = Math.min(MAX_BUFFER, Math.max(MIN_BUFFER, capacityHint));
-    return new NettyWritableBuffer(allocator.buffer(capacityHint, capacityHint));
+    int capacity = Math.min(MAX_BUFFER, Math.max(minBuffer, capacityHint));
+    adaptMinBuffer(capacityHint);
+    transportTracer.reportBufferAllocated(capacity);
+    return new NettyWritableBuffer(allocator.buffer(capacity, capacity));
+  }
+
+  /**
+   * Grows the minimum to the size class of {@code capacityHint} right away, and shrinks it one
+   * size class at a time once enough consecutive hints would have fit in the smaller class.
+   */
+  private void adaptMinBuffer(int capacityHint) {
+    if (capacityHint > minBuffer / 2) {
+      smallAllocations = 0;
+      if (capacityHint > minBuffer && minBuffer < MIN_BUFFER) {
+        minBuffer = capacityHint >= MIN_BUFFER ? MIN_BUFFER : sizeClass(capacityHint);
+      }
+    } else if (minBuffer > MIN_ADAPTED_BUFFER && ++smallAllocations >= ALLOCATIONS_BEFORE_SHRINK) {
+      smallAllocations = 0;
+      minBuffer /= 2;
+    }
+  }
+
+  /** Returns the smallest power of two not less than {@code size}. */
+  private static int sizeClass(int size) {
+    int highestOneBit = Integer.highestOneBit(size);
+    return highestOneBit == size ? size : highestOneBit << 1;
+  }
+
+  @Override
+  public WritableBuffer wrap(List<ByteBuffer> buffers, Closeable owner) {
+    // The first buffer may be a small header; the last one is payload.
+    boolean direct = !buffers.isEmpty() && buffers.get(buffers.size() - 1).isDirect();
+    CompositeByteBuf composite =
+        new OwnedCompositeByteBuf(allocator, direct, Math.max(2, buffers.size()), owner);
+    for (ByteBuffer buffer : buffers) {
+      composite.addComponent(true, Unpooled.wrappedBuffer(buffer));
+    }
+    return new NettyWritableBuffer(composite);
+  }
+
+  /**
+   * A {@link CompositeByteBuf} that closes the owner of its components once it is released.
+   */
+  private static final class OwnedCompositeByteBuf extends CompositeByteBuf {
+    private final Closeable owner;
+
+    OwnedCompositeByteBuf(
+        ByteBufAllocator alloc, boolean direct, int maxNumComponents, Closeable owner) {
+      super(alloc, direct, maxNumComponents);
+      this.owner = owner;
+    }
+
+    @Override
+    protected void deallocate() {
+      super.deallocate();
+      GrpcUtil.closeQuietly(owner);
+    }
   }
 }
@@ -107,13 +107,37 @@ class Utils {
 
   @Nullable
   private static final Constructor<? extends EventLoopGroup> EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR;
+  @Nullable
+  private static final Constructor<? extends EventLoopGroup> IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR;
+
+  /**
+   * Whether the default transport is io_uring instead of Epoll, when it is available. io_uring is
+   * only used when enabled, as its Netty transport is still incubating.
+   */
+  private static final boolean USE_IO_URING =
+      Boolean.parseBoolean(System.getProperty("io.grpc.netty.useIoUring", "false"));
 
   static {
-    // Decide default channel types and EventLoopGroup based on Epoll availability
-    if (isEpollAvailable()) {
+    // Decide default channel types and EventLoopGroup based on io_uring and Epoll availability
+    boolean useIoUring = USE_IO_URING && isIoUringAvailable();
+    if (USE_IO_URING && !useIoUring) {
+      logger.log(
+          Level.FINE, "io_uring is not available, not using it.", getIoUringUnavailabilityCause());
+    }
+    if (useIoUring) {
+      DEFAULT_CLIENT_CHANNEL_TYPE = ioUringChannelType();
+      DEFAULT_SERVER_CHANNEL_FACTORY = new ReflectiveChannelFactory<>(ioUringServerChannelType());
+      IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR = ioUringEventLoopGroupConstructor();
+      EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR = null;
+      DEFAULT_BOSS_EVENT_LOOP_GROUP = new DefaultEventLoopGroupResource(
+          1, "grpc-default-boss-ELG", EventLoopGroupType.IO_URING);
+      DEFAULT_WORKER_EVENT_LOOP_GROUP = new DefaultEventLoopGroupResource(
+          0, "grpc-default-worker-ELG", EventLoopGroupType.IO_URING);
+    } else if (isEpollAvailable()) {
       DEFAULT_CLIENT_CHANNEL_TYPE = epollChannelType();
       DEFAULT_SERVER_CHANNEL_FACTORY = new ReflectiveChannelFactory<>(epollServerChannelType());
       EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR = epollEventLoopGroupConstructor();
+      IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR = null;
       DEFAULT_BOSS_EVENT_LOOP_GROUP
         = new DefaultEventLoopGroupResource(1, "grpc-default-boss-ELG", EventLoopGroupType.EPOLL);
       DEFAULT_WORKER_EVENT_LOOP_GROUP
@@ -125,6 +149,7 @@ class Utils {
       DEFAULT_BOSS_EVENT_LOOP_GROUP = NIO_BOSS_EVENT_LOOP_GROUP;
       DEFAULT_WORKER_EVENT_LOOP_GROUP = NIO_WORKER_EVENT_LOOP_GROUP;
       EPOLL_EVENT_LOOP_GROUP_CONSTRUCTOR = null;
+      IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR = null;
     }
   }
 
@@ -217,18 +242,26 @@ class Utils {
     Preconditions.checkNotNull(authority, "authority");
     Preconditions.checkNotNull(method, "method");
 
+    return convertClientHeaders(
+        headers,
+        defaultPath,
+        new GrpcHttp2OutboundHeaders.RequestPreHeaders(authority, method, scheme, userAgent));
+  }
+
+  /**
+   * Converts the metadata of a request whose other headers, except for the path, have already been
+   * built, so only the metadata needs to be converted per call.
+   */
+  public static Http2Headers convertClientHeaders(Metadata headers,
+      AsciiString path,
+      GrpcHttp2OutboundHeaders.RequestPreHeaders preHeaders) {
     // Discard any application supplied duplicates of the reserved headers
     headers.discardAll(CONTENT_TYPE_KEY);
     headers.discardAll(GrpcUtil.TE_HEADER);
     headers.discardAll(GrpcUtil.USER_AGENT_KEY);
 
     return GrpcHttp2OutboundHeaders.clientRequestHeaders(
-        toHttp2Headers(headers),
-        authority,
-        defaultPath,
-        method,
-        scheme,
-        userAgent);
+        toHttp2Headers(headers), path, preHeaders);
   }
 
   public static Http2Headers convertServerHeaders(Metadata headers) {
@@ -365,6 +398,84 @@ class Utils {
     }
   }
 
+  @VisibleForTesting
+  static boolean isIoUringAvailable() {
+    try {
+      return (boolean) (Boolean)
+          Class
+              .forName("io.netty.incubator.channel.uring.IOUring")
+              .getDeclaredMethod("isAvailable")
+              .invoke(null);
+    } catch (ClassNotFoundException e) {
+      // this is normal if netty-incubator-transport-native-io_uring runtime dependency doesn't
+      // exist.
+      return false;
+    } catch (Exception e) {
+      throw new RuntimeException("Exception while checking io_uring availability", e);
+    }
+  }
+
+  private static Throwable getIoUringUnavailabilityCause() {
+    try {
+      return (Throwable)
+          Class
+              .forName("io.netty.incubator.channel.uring.IOUring")
+              .getDeclaredMethod("unavailabilityCause")
+              .invoke(null);
+    } catch (Exception e) {
+      return e;
+    }
+  }
+
+  // Must call when io_uring is available
+  private static Class<? extends Channel> ioUringChannelType() {
+    try {
+      return Class
+          .forName("io.netty.incubator.channel.uring.IOUringSocketChannel")
+          .asSubclass(Channel.class);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException("Cannot load IOUringSocketChannel", e);
+    }
+  }
+
+  // Must call when io_uring is available
+  private static Constructor<? extends EventLoopGroup> ioUringEventLoopGroupConstructor() {
+    try {
+      return Class
+          .forName("io.netty.incubator.channel.uring.IOUringEventLoopGroup")
+          .asSubclass(EventLoopGroup.class)
+          .getConstructor(Integer.TYPE, ThreadFactory.class);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException("Cannot load IOUringEventLoopGroup", e);
+    } catch (NoSuchMethodException e) {
+      throw new RuntimeException("IOUringEventLoopGroup constructor not found", e);
+    }
+  }
+
+  // Must call when io_uring is available
+  private static Class<? extends ServerChannel> ioUringServerChannelType() {
+    try {
+      return Class
+          .forName("io.netty.incubator.channel.uring.IOUringServerSocketChannel")
+          .asSubclass(ServerChannel.class);
+    } catch (ClassNotFoundException e) {
+      throw new RuntimeException("Cannot load IOUringServerSocketChannel", e);
+    }
+  }
+
+  private static EventLoopGroup createIoUringEventLoopGroup(
+      int parallelism,
+      ThreadFactory threadFactory) {
+    checkState(IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR != null, "io_uring is not available");
+
+    try {
+      return IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR
+          .newInstance(parallelism, threadFactory);
+    } catch (Exception e) {
+      throw new RuntimeException("Cannot create io_uring EventLoopGroup", e);
+    }
+  }
+
   private static ChannelFactory<ServerChannel> nioServerChannelFactory() {
     return new ChannelFactory<ServerChannel>() {
       @Override
@@ -375,14 +486,29 @@ class Utils {
   }
 
   /**
-   * Returns TCP_USER_TIMEOUT channel option for Epoll channel if Epoll is available, otherwise
-   * null.
+   * Returns TCP_USER_TIMEOUT channel option for io_uring channel if io_uring is the default
+   * transport, or for Epoll channel if Epoll is available, otherwise null.
    */
   @Nullable
   static ChannelOption<Integer> maybeGetTcpUserTimeoutOption() {
+    if (IO_URING_EVENT_LOOP_GROUP_CONSTRUCTOR != null) {
+      return getIoUringChannelOption("TCP_USER_TIMEOUT");
+    }
     return getEpollChannelOption("TCP_USER_TIMEOUT");
   }
 
+  @SuppressWarnings("unchecked")
+  private static <T> ChannelOption<T> getIoUringChannelOption(String optionName) {
+    try {
+      return
+          (ChannelOption<T>) Class.forName("io.netty.incubator.channel.uring.IOUringChannelOption")
+              .getField(optionName)
+              .get(null);
+    } catch (Exception e) {
+      throw new RuntimeException("ChannelOption(" + optionName + ") is not available", e);
+    }
+  }
+
   @Nullable
   @SuppressWarnings("unchecked")
   private static <T> ChannelOption<T> getEpollChannelOption(String optionName) {
@@ -429,6 +555,8 @@ class Utils {
           return new NioEventLoopGroup(numEventLoops, threadFactory);
         case EPOLL:
           return createEpollEventLoopGroup(numEventLoops, threadFactory);
+        case IO_URING:
+          return createIoUringEventLoopGroup(numEventLoops, threadFactory);
         default:
           throw new AssertionError("Unknown/Unsupported EventLoopGroupType: " + eventLoopGroupType);
       }
@@ -449,18 +577,24 @@ class Utils {
     private final Http2Stream connectionStream;
     private final Http2FlowController local;
     private final Http2FlowController remote;
+    private final AbstractNettyHandler.FlowControlPinger flowControlPing;
 
-    FlowControlReader(Http2Connection connection) {
+    FlowControlReader(
+        Http2Connection connection, AbstractNettyHandler.FlowControlPinger flowControlPing) {
       local = connection.local().flowController();
       remote = connection.remote().flowController();
       connectionStream = connection.connectionStream();
+      this.flowControlPing = Preconditions.checkNotNull(flowControlPing, "flowControlPing");
     }
 
     @Override
     public TransportTracer.FlowControlWindows read() {
       return new TransportTracer.FlowControlWindows(
           local.windowSize(connectionStream),
-          remote.windowSize(connectionStream));
+          remote.windowSize(connectionStream),
+          local.initialWindowSize(),
+          flowControlPing.getEstimatedBdp(),
+          flowControlPing.getEstimatedRttNanos());
     }
   }
 
@@ -505,7 +639,8 @@ class Utils {
 
   private enum EventLoopGroupType {
     NIO,
-    EPOLL
+    EPOLL,
+    IO_URING
   }
 
   private Utils() {
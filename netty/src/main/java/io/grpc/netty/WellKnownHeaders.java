@@ -0,0 +1,122 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import io.grpc.InternalMetadata;
+import io.grpc.InternalStatus;
+import io.grpc.Metadata;
+import io.grpc.internal.GrpcUtil;
+import io.netty.util.AsciiString;
+import io.netty.util.internal.PlatformDependent;
+import java.util.Arrays;
+
+/**
+ * Interned names of the headers that gRPC itself reads and writes.
+ *
+ * <p>Inbound, names equal to a well-known name are replaced by the name array of the matching
+ * {@link Metadata.Key}, so the name is not copied and {@link Metadata} lookups with that key match
+ * by reference. Outbound, name arrays that came from a well-known key map to a shared {@link
+ * AsciiString} instead of a new one per header.
+ */
+final class WellKnownHeaders {
+  private static final Metadata.Key<?>[] KEYS = {
+      GrpcUtil.TIMEOUT_KEY,
+      GrpcUtil.MESSAGE_ENCODING_KEY,
+      GrpcUtil.MESSAGE_ACCEPT_ENCODING_KEY,
+      GrpcUtil.CONTENT_ENCODING_KEY,
+      GrpcUtil.CONTENT_ACCEPT_ENCODING_KEY,
+      GrpcUtil.CONTENT_TYPE_KEY,
+      GrpcUtil.TE_HEADER,
+      GrpcUtil.USER_AGENT_KEY,
+      InternalStatus.CODE_KEY,
+      InternalStatus.MESSAGE_KEY,
+  };
+
+  /**
+   * Names of headers whose values differ from call to call. Adding them to the HPACK dynamic table
+   * would evict the headers that repeat on every call, such as the path and user agent.
+   */
+  private static final AsciiString[] PER_CALL_NAMES = {
+      new AsciiString(InternalMetadata.asciiName(GrpcUtil.TIMEOUT_KEY), false),
+      AsciiString.of("grpc-trace-bin"),
+      AsciiString.of("grpc-status-details-bin"),
+  };
+
+  /** Interned names, indexed by name length. Each name wraps the array of its key. */
+  private static final AsciiString[][] NAMES_BY_LENGTH;
+
+  static {
+    int maxLength = 0;
+    for (Metadata.Key<?> key : KEYS) {
+      maxLength = Math.max(maxLength, InternalMetadata.asciiName(key).length);
+    }
+    AsciiString[][] namesByLength = new AsciiString[maxLength + 1][];
+    Arrays.fill(namesByLength, new AsciiString[0]);
+    for (Metadata.Key<?> key : KEYS) {
+      byte[] name = InternalMetadata.asciiName(key);
+      AsciiString[] bucket = namesByLength[name.length];
+      bucket = Arrays.copyOf(bucket, bucket.length + 1);
+      bucket[bucket.length - 1] = new AsciiString(name, false);
+      namesByLength[name.length] = bucket;
+    }
+    NAMES_BY_LENGTH = namesByLength;
+  }
+
+  private WellKnownHeaders() {}
+
+  /** Returns whether the name is one of {@link #PER_CALL_NAMES}. */
+  static boolean isPerCall(CharSequence name) {
+    for (AsciiString perCallName : PER_CALL_NAMES) {
+      if (perCallName.contentEquals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Returns the bytes of an inbound header name, using the interned array if the name is well
+   * known. The returned array must not be modified.
+   */
+  static byte[] internName(AsciiString name) {
+    int length = name.length();
+    if (length < NAMES_BY_LENGTH.length) {
+      for (AsciiString interned : NAMES_BY_LENGTH[length]) {
+        if (PlatformDependent.equals(
+            interned.array(), 0, name.array(), name.arrayOffset(), length)) {
+          return interned.array();
+        }
+      }
+    }
+    return name.isEntireArrayUsed() ? name.array() : name.toByteArray();
+  }
+
+  /**
+   * Returns an outbound header name for the serialized name, reusing the interned instance if the
+   * array is the name of a well-known key.
+   */
+  static AsciiString forName(byte[] name) {
+    if (name.length < NAMES_BY_LENGTH.length) {
+      for (AsciiString interned : NAMES_BY_LENGTH[name.length]) {
+        if (interned.array() == name) {
+          return interned;
+        }
+      }
+    }
+    return new AsciiString(name, false);
+  }
+}
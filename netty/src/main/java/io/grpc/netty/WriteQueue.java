@@ -19,17 +19,23 @@ package io.grpc.netty;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
 import com.google.errorprone.annotations.CanIgnoreReturnValue;
+import io.grpc.internal.ChunkedMpscQueue;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelPromise;
+import io.netty.channel.EventLoop;
+import io.netty.channel.VoidChannelPromise;
+import io.netty.util.concurrent.SingleThreadEventExecutor;
 import io.perfmark.Link;
 import io.perfmark.PerfMark;
-import java.util.Queue;
-import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * A queue of pending writes to a {@link Channel} that is flushed as a single unit.
+ *
+ * <p>When the event loop has other tasks waiting, the flush at the end of a drain is postponed
+ * until after those tasks, so that their writes share the flush, up to {@link
+ * #MAX_POSTPONED_FLUSHES} times in a row. An idle event loop flushes right away.
  */
 class WriteQueue {
 
@@ -37,23 +43,39 @@ class WriteQueue {
   @VisibleForTesting
   static final int DEQUE_CHUNK_SIZE = 128;
 
+  /**
+   * The number of times in a row the flush may be postponed because the event loop is busy.
+   */
+  @VisibleForTesting
+  static final int MAX_POSTPONED_FLUSHES = 4;
+
   /**
    * {@link Runnable} used to schedule work onto the tail of the event loop.
    */
   private final Runnable later = new Runnable() {
     @Override
     public void run() {
-      flush();
+      flush(true);
     }
   };
 
   private final Channel channel;
-  private final Queue<QueuedCommand> queue;
+  private final ChunkedMpscQueue<QueuedCommand> queue;
   private final AtomicBoolean scheduled = new AtomicBoolean();
+  /**
+   * Promise for writes whose completion is not observed. Failures are not fired down the pipeline,
+   * the same as when nobody listens to a real promise.
+   */
+  private final ChannelPromise voidPromise;
+
+  // Only accessed by the thread draining the queue
+  private int writesSinceFlush;
+  private int postponedFlushes;
 
   public WriteQueue(Channel channel) {
     this.channel = Preconditions.checkNotNull(channel, "channel");
-    queue = new ConcurrentLinkedQueue<>();
+    queue = new ChunkedMpscQueue<>();
+    voidPromise = new VoidChannelPromise(channel, /* fireException= */ false);
   }
 
   /**
@@ -82,20 +104,40 @@ class WriteQueue {
 
     ChannelPromise promise = channel.newPromise();
     command.promise(promise);
-    queue.add(command);
+    queue.offer(command);
     if (flush) {
       scheduleFlush();
     }
     return promise;
   }
 
+  /**
+   * Enqueue a write command on the channel, without allocating a promise for it. Use this when the
+   * completion of the write does not need to be observed. Handlers that need to listen to the
+   * write must call {@link ChannelPromise#unvoid} on the promise they are given.
+   *
+   * @param command a write to be executed on the channel.
+   * @param flush true if a flush of the write should be schedule, false if a later call to
+   *              enqueue will schedule the flush.
+   */
+  void enqueueVoid(QueuedCommand command, boolean flush) {
+    // Detect erroneous code that tries to reuse command objects.
+    Preconditions.checkArgument(command.promise() == null, "promise must not be set on command");
+
+    command.promise(voidPromise);
+    queue.offer(command);
+    if (flush) {
+      scheduleFlush();
+    }
+  }
+
   /**
    * Enqueue the runnable. It is not safe for another thread to queue an Runnable directly to the
    * event loop, because it will be out-of-order with writes. This method allows the Runnable to be
    * processed in-order with writes.
    */
   void enqueue(Runnable runnable, boolean flush) {
-    queue.add(new RunnableCommand(runnable));
+    queue.offer(new RunnableCommand(runnable));
     if (flush) {
       scheduleFlush();
     }
@@ -108,57 +150,80 @@ class WriteQueue {
    */
   void drainNow() {
     Preconditions.checkState(channel.eventLoop().inEventLoop(), "must be on the event loop");
-    if (queue.peek() == null) {
+    if (queue.isEmpty()) {
       return;
     }
-    flush();
+    flush(false);
   }
 
   /**
    * Process the queue of commands and dispatch them to the stream. This method is only
    * called in the event loop
+   *
+   * @param mayPostpone whether the final flush may be postponed if the event loop is busy
    */
-  private void flush() {
+  private void flush(boolean mayPostpone) {
     PerfMark.startTask("WriteQueue.periodicFlush");
+    boolean postponed = false;
     try {
       QueuedCommand cmd;
-      int i = 0;
       boolean flushedOnce = false;
       while ((cmd = queue.poll()) != null) {
         cmd.run(channel);
-        if (++i == DEQUE_CHUNK_SIZE) {
-          i = 0;
+        if (++writesSinceFlush == DEQUE_CHUNK_SIZE) {
           // Flush each chunk so we are releasing buffers periodically. In theory this loop
           // might never end as new events are continuously added to the queue, if we never
           // flushed in that case we would be guaranteed to OOM.
           PerfMark.startTask("WriteQueue.flush0");
           try {
-            channel.flush();
+            flushChannel();
           } finally {
             PerfMark.stopTask("WriteQueue.flush0");
           }
           flushedOnce = true;
         }
       }
-      // Must flush at least once, even if there were no writes.
-      if (i != 0 || !flushedOnce) {
+      if (mayPostpone && writesSinceFlush != 0 && postponedFlushes < MAX_POSTPONED_FLUSHES
+          && isEventLoopBusy()) {
+        // The tasks waiting on the event loop may write as well. Flush once after them.
+        postponedFlushes++;
+        postponed = true;
+      } else if (writesSinceFlush != 0 || !flushedOnce) {
+        // Must flush at least once, even if there were no writes.
         PerfMark.startTask("WriteQueue.flush1");
         try {
-          channel.flush();
+          flushChannel();
         } finally {
           PerfMark.stopTask("WriteQueue.flush1");
         }
       }
     } finally {
       PerfMark.stopTask("WriteQueue.periodicFlush");
-      // Mark the write as done, if the queue is non-empty after marking trigger a new write.
-      scheduled.set(false);
-      if (!queue.isEmpty()) {
-        scheduleFlush();
+      if (postponed) {
+        // Stay scheduled, so that writes enqueued meanwhile are left for the postponed flush.
+        channel.eventLoop().execute(later);
+      } else {
+        // Mark the write as done, if the queue is non-empty after marking trigger a new write.
+        scheduled.set(false);
+        if (!queue.isEmpty()) {
+          scheduleFlush();
+        }
       }
     }
   }
 
+  private void flushChannel() {
+    writesSinceFlush = 0;
+    postponedFlushes = 0;
+    channel.flush();
+  }
+
+  private boolean isEventLoopBusy() {
+    EventLoop eventLoop = channel.eventLoop();
+    return eventLoop instanceof SingleThreadEventExecutor
+        && ((SingleThreadEventExecutor) eventLoop).pendingTasks() > 0;
+  }
+
   private static class RunnableCommand implements QueuedCommand {
     private final Runnable runnable;
     private final Link link;
@@ -0,0 +1,232 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.netty;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import io.grpc.Attributes;
+import io.grpc.CallOptions;
+import io.grpc.ConnectivityState;
+import io.grpc.ManagedChannel;
+import io.grpc.MethodDescriptor;
+import io.grpc.ServerCall;
+import io.grpc.testing.TestMethodDescriptors;
+import io.netty.channel.DefaultEventLoopGroup;
+import io.netty.channel.EventLoop;
+import io.netty.util.concurrent.EventExecutor;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+
+/** Unit tests for {@link EventLoopAffinity}. */
+@RunWith(JUnit4.class)
+public class EventLoopAffinityTest {
+  private final MethodDescriptor<Void, Void> method = TestMethodDescriptors.voidMethod();
+  private final DefaultEventLoopGroup group = new DefaultEventLoopGroup(2);
+  private final Map<EventLoop, ManagedChannel> channels = new IdentityHashMap<>();
+  private final List<EventLoop> eventLoops = new ArrayList<>();
+  private final ManagedChannel channel = EventLoopAffinity.newChannel(group,
+      new EventLoopAffinity.ChannelFactory() {
+        @Override
+        public ManagedChannel create(EventLoop eventLoop) {
+          ManagedChannel channel = mock(ManagedChannel.class);
+          channels.put(eventLoop, channel);
+          eventLoops.add(eventLoop);
+          return channel;
+        }
+      });
+
+  @After
+  public void tearDown() {
+    group.shutdownGracefully(0, 0, TimeUnit.SECONDS);
+  }
+
+  @Test
+  public void createsChannelPerEventLoop() {
+    int count = 0;
+    for (EventExecutor executor : group) {
+      assertTrue(channels.containsKey(executor));
+      count++;
+    }
+    assertThat(channels).hasSize(count);
+  }
+
+  @Test
+  public void newCall_usesPreferredEventLoop() {
+    EventLoop preferred = eventLoops.get(1);
+    CallOptions callOptions =
+        CallOptions.DEFAULT.withOption(EventLoopAffinity.PREFERRED_EVENT_LOOP, preferred);
+
+    channel.newCall(method, callOptions);
+
+    verify(channels.get(preferred)).newCall(method, callOptions);
+    verify(channels.get(eventLoops.get(0)), never())
+        .newCall(eq(method), any(CallOptions.class));
+  }
+
+  @Test
+  public void newCall_usesCurrentEventLoop() throws Exception {
+    final EventLoop current = eventLoops.get(1);
+
+    current.submit(new Runnable() {
+      @Override
+      public void run() {
+        channel.newCall(method, CallOptions.DEFAULT);
+      }
+    }).get(5, TimeUnit.SECONDS);
+
+    verify(channels.get(current)).newCall(method, CallOptions.DEFAULT);
+    verify(channels.get(eventLoops.get(0)), never())
+        .newCall(eq(method), any(CallOptions.class));
+  }
+
+  @Test
+  public void preferEventLoopOf_serverCall() {
+    EventLoop eventLoop = eventLoops.get(0);
+    ServerCall<?, ?> serverCall = mock(ServerCall.class);
+    when(serverCall.getAttributes()).thenReturn(
+        Attributes.newBuilder().set(EventLoopAffinity.SERVER_EVENT_LOOP, eventLoop).build());
+
+    CallOptions callOptions = EventLoopAffinity.preferEventLoopOf(CallOptions.DEFAULT, serverCall);
+
+    assertSame(eventLoop, callOptions.getOption(EventLoopAffinity.PREFERRED_EVENT_LOOP));
+  }
+
+  @Test
+  public void preferEventLoopOf_unknownEventLoop() {
+    ServerCall<?, ?> serverCall = mock(ServerCall.class);
+    when(serverCall.getAttributes()).thenReturn(Attributes.EMPTY);
+
+    assertSame(CallOptions.DEFAULT,
+        EventLoopAffinity.preferEventLoopOf(CallOptions.DEFAULT, serverCall));
+  }
+
+  @Test
+  public void shutdown_shutsDownAllChannels() {
+    channel.shutdown();
+
+    for (ManagedChannel upstream : channels.values()) {
+      verify(upstream).shutdown();
+    }
+  }
+
+  @Test
+  public void getState_reportsBestState() {
+    ManagedChannel first = channels.get(eventLoops.get(0));
+    ManagedChannel second = channels.get(eventLoops.get(1));
+    when(first.getState(true)).thenReturn(ConnectivityState.TRANSIENT_FAILURE);
+    when(second.getState(true)).thenReturn(ConnectivityState.CONNECTING);
+    assertEquals(ConnectivityState.CONNECTING, channel.getState(true));
+
+    when(second.getState(true)).thenReturn(ConnectivityState.READY);
+    assertEquals(ConnectivityState.READY, channel.getState(true));
+
+    when(first.getState(false)).thenReturn(ConnectivityState.SHUTDOWN);
+    when(second.getState(false)).thenReturn(ConnectivityState.IDLE);
+    assertEquals(ConnectivityState.IDLE, channel.getState(false));
+  }
+
+  @Test
+  public void notifyWhenStateChanged_firesOnAggregateChange() {
+    ManagedChannel first = channels.get(eventLoops.get(0));
+    ManagedChannel second = channels.get(eventLoops.get(1));
+    when(first.getState(false)).thenReturn(ConnectivityState.CONNECTING);
+    when(second.getState(false)).thenReturn(ConnectivityState.IDLE);
+    Runnable callback = mock(Runnable.class);
+
+    channel.notifyWhenStateChanged(ConnectivityState.CONNECTING, callback);
+    ArgumentCaptor<Runnable> secondWatch = ArgumentCaptor.forClass(Runnable.class);
+    verify(second).notifyWhenStateChanged(eq(ConnectivityState.IDLE), secondWatch.capture());
+    verify(callback, never()).run();
+
+    // The best state is still CONNECTING, so the channel watches again.
+    when(second.getState(false)).thenReturn(ConnectivityState.CONNECTING);
+    secondWatch.getValue().run();
+    verify(second).notifyWhenStateChanged(
+        eq(ConnectivityState.CONNECTING), any(Runnable.class));
+    verify(callback, never()).run();
+
+    ArgumentCaptor<Runnable> firstWatch = ArgumentCaptor.forClass(Runnable.class);
+    verify(first).notifyWhenStateChanged(eq(ConnectivityState.CONNECTING), firstWatch.capture());
+    when(first.getState(false)).thenReturn(ConnectivityState.READY);
+    firstWatch.getValue().run();
+    verify(callback).run();
+  }
+
+  @Test
+  public void notifyWhenStateChanged_alreadyChanged() {
+    for (ManagedChannel upstream : channels.values()) {
+      when(upstream.getState(false)).thenReturn(ConnectivityState.READY);
+    }
+    Runnable callback = mock(Runnable.class);
+
+    channel.notifyWhenStateChanged(ConnectivityState.IDLE, callback);
+
+    verify(callback).run();
+  }
+
+  @Test
+  public void resetConnectBackoffAndEnterIdle_delegateToAllChannels() {
+    channel.resetConnectBackoff();
+    channel.enterIdle();
+
+    for (ManagedChannel upstream : channels.values()) {
+      verify(upstream).resetConnectBackoff();
+      verify(upstream).enterIdle();
+    }
+  }
+
+  @Test
+  public void warmUp_completesWhenAllChannelsWarm() {
+    List<SettableFuture<Void>> futures = new ArrayList<>();
+    for (ManagedChannel upstream : channels.values()) {
+      SettableFuture<Void> future = SettableFuture.create();
+      futures.add(future);
+      when(upstream.warmUp(anyDouble())).thenReturn(future);
+    }
+
+    ListenableFuture<Void> warmUp = channel.warmUp(50);
+
+    for (ManagedChannel upstream : channels.values()) {
+      verify(upstream).warmUp(50);
+    }
+    futures.get(0).set(null);
+    assertFalse(warmUp.isDone());
+    futures.get(1).set(null);
+    assertTrue(warmUp.isDone());
+  }
+}
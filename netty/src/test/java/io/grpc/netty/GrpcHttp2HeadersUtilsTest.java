@@ -16,15 +16,18 @@
 
 package io.grpc.netty;
 
+import static com.google.common.base.Charsets.UTF_8;
 import static com.google.common.truth.Truth.assertThat;
 import static io.grpc.Metadata.BINARY_BYTE_MARSHALLER;
 import static io.grpc.internal.GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE;
 import static io.netty.util.AsciiString.of;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import com.google.common.collect.Iterables;
 import com.google.common.io.BaseEncoding;
+import com.google.common.primitives.Bytes;
 import io.grpc.Metadata;
 import io.grpc.Metadata.Key;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2ClientHeadersDecoder;
@@ -119,6 +122,51 @@ public class GrpcHttp2HeadersUtilsTest {
     assertContainsKeyAndValue(toString, "custom", decodedHeaders.get(of("custom")));
   }
 
+  @Test
+  public void decode_perCallHeadersNotIndexed() throws Http2Exception {
+    Http2HeadersDecoder decoder = new GrpcHttp2ServerHeadersDecoder(DEFAULT_MAX_HEADER_LIST_SIZE);
+    Http2HeadersEncoder encoder = new GrpcHttp2HeadersEncoder();
+
+    Http2Headers headers = new DefaultHttp2Headers(false);
+    headers.add(of(":scheme"), of("https")).add(of(":method"), of("POST"))
+        .add(of(":path"), of("/Service/Method")).add(of(":authority"), of("foo.grpc.io"))
+        .add(of("grpc-timeout"), of("100m")).add(of("custom"), of("value"));
+    encodedHeaders = Unpooled.buffer();
+    encoder.encodeHeaders(1 /* randomly chosen */, headers, encodedHeaders);
+    int firstSize = encodedHeaders.readableBytes();
+
+    Http2Headers decodedHeaders = decoder.decodeHeaders(3 /* randomly chosen */, encodedHeaders);
+    assertEquals(headers.get(of(":path")), decodedHeaders.path());
+    assertEquals(headers.get(of("grpc-timeout")), decodedHeaders.get(of("grpc-timeout")));
+    assertEquals(headers.get(of("custom")), decodedHeaders.get(of("custom")));
+
+    // The path and authority are now indexed, but the timeout is sent as a literal again
+    encodedHeaders.clear();
+    encoder.encodeHeaders(5 /* randomly chosen */, headers, encodedHeaders);
+    assertThat(encodedHeaders.readableBytes()).isLessThan(firstSize);
+    byte[] block = new byte[encodedHeaders.readableBytes()];
+    encodedHeaders.getBytes(encodedHeaders.readerIndex(), block);
+    // Literal without indexing, rather than never indexed, with a new name
+    byte[] timeout = Bytes.concat(
+        new byte[] {0x00, 12}, "grpc-timeout".getBytes(UTF_8), new byte[] {4},
+        "100m".getBytes(UTF_8));
+    assertThat(Arrays.copyOfRange(block, block.length - timeout.length, block.length))
+        .isEqualTo(timeout);
+    decodedHeaders = decoder.decodeHeaders(7 /* randomly chosen */, encodedHeaders);
+    assertEquals(headers.get(of("grpc-timeout")), decodedHeaders.get(of("grpc-timeout")));
+    assertEquals(headers.get(of("custom")), decodedHeaders.get(of("custom")));
+  }
+
+  @Test
+  public void wellKnownHeaders_isPerCall() {
+    assertTrue(WellKnownHeaders.isPerCall(of("grpc-timeout")));
+    assertTrue(WellKnownHeaders.isPerCall(of("grpc-trace-bin")));
+    assertTrue(WellKnownHeaders.isPerCall("grpc-status-details-bin"));
+    assertFalse(WellKnownHeaders.isPerCall(of(":path")));
+    assertFalse(WellKnownHeaders.isPerCall(of("user-agent")));
+    assertFalse(WellKnownHeaders.isPerCall(of("grpc-timeouts")));
+  }
+
   @Test
   public void decode_emptyHeaders() throws Http2Exception {
     Http2HeadersDecoder decoder = new GrpcHttp2ClientHeadersDecoder(8192);
@@ -21,7 +21,11 @@ import static io.netty.util.AsciiString.of;
 import static junit.framework.TestCase.assertNotSame;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
 
+import io.grpc.InternalMetadata;
+import io.grpc.Metadata;
+import io.grpc.internal.GrpcUtil;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2InboundHeaders;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2RequestHeaders;
 import io.grpc.netty.GrpcHttp2HeadersUtils.GrpcHttp2ResponseHeaders;
@@ -80,4 +84,17 @@ public class GrpcHttp2InboundHeadersTest {
     assertArrayEquals(data, namesAndValues[1]);
   }
 
+  @Test
+  public void wellKnownNamesAreInterned() {
+    Http2Headers headers = new GrpcHttp2ResponseHeaders(1);
+    headers.add(of("grpc-encoding"), of("gzip"));
+    headers.add(of("x-grpc-encoding"), of("gzip"));
+
+    byte[][] namesAndValues = ((GrpcHttp2InboundHeaders) headers).namesAndValues();
+
+    assertSame(InternalMetadata.asciiName(GrpcUtil.MESSAGE_ENCODING_KEY), namesAndValues[0]);
+    assertEquals(of("x-grpc-encoding"), new AsciiString(namesAndValues[2]));
+    Metadata metadata = Utils.convertHeaders(headers);
+    assertEquals("gzip", metadata.get(GrpcUtil.MESSAGE_ENCODING_KEY));
+  }
 }
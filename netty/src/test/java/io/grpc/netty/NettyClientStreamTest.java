@@ -45,6 +45,8 @@ import static org.mockito.Mockito.when;
 import com.google.common.collect.ImmutableListMultimap;
 import com.google.common.io.BaseEncoding;
 import io.grpc.CallOptions;
+import io.grpc.InternalKnownTransport;
+import io.grpc.InternalMethodDescriptor;
 import io.grpc.InternalStatus;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor;
@@ -55,6 +57,7 @@ import io.grpc.internal.GrpcUtil;
 import io.grpc.internal.StatsTraceContext;
 import io.grpc.internal.StreamListener;
 import io.grpc.internal.TransportTracer;
+import io.grpc.netty.GrpcHttp2OutboundHeaders.RequestPreHeaders;
 import io.grpc.netty.WriteQueue.QueuedCommand;
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.Unpooled;
@@ -417,9 +420,8 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
         methodDescriptor,
         new Metadata(),
         channel,
-        AsciiString.of("localhost"),
-        AsciiString.of("http"),
-        AsciiString.of("agent"),
+        new RequestPreHeaders(AsciiString.of("localhost"), Utils.HTTP_METHOD,
+            AsciiString.of("http"), AsciiString.of("agent")),
         StatsTraceContext.NOOP,
         transportTracer,
         CallOptions.DEFAULT,
@@ -448,9 +450,8 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
         methodDescriptor,
         new Metadata(),
         channel,
-        AsciiString.of("localhost"),
-        AsciiString.of("http"),
-        AsciiString.of("good agent"),
+        new RequestPreHeaders(AsciiString.of("localhost"), Utils.HTTP_METHOD,
+            AsciiString.of("http"), AsciiString.of("good agent")),
         StatsTraceContext.NOOP,
         transportTracer,
         CallOptions.DEFAULT,
@@ -463,6 +464,59 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
         .containsEntry(Utils.USER_AGENT, AsciiString.of("good agent"));
   }
 
+  @Test
+  public void pathCachedOnMethod_authorityOverridden() {
+    listener = mock(ClientStreamListener.class);
+    Mockito.reset(writeQueue);
+    ChannelPromise completedPromise = new DefaultChannelPromise(channel)
+        .setSuccess();
+    when(writeQueue.enqueue(any(QueuedCommand.class), anyBoolean())).thenReturn(completedPromise);
+    InternalMethodDescriptor methodDescriptorAccessor =
+        new InternalMethodDescriptor(InternalKnownTransport.NETTY);
+    RequestPreHeaders preHeaders = new RequestPreHeaders(
+        AsciiString.of("localhost"), Utils.HTTP_METHOD, AsciiString.of("http"),
+        AsciiString.of("agent"));
+
+    Http2Headers headers = startStream(preHeaders, null);
+    Object cached = methodDescriptorAccessor.geRawMethodName(methodDescriptor);
+    assertThat(cached).isEqualTo(AsciiString.of("/testService/test"));
+    assertThat(ImmutableListMultimap.copyOf(headers))
+        .containsEntry(AsciiString.of(":authority"), AsciiString.of("localhost"));
+
+    headers = startStream(preHeaders, "otherhost");
+    assertThat(methodDescriptorAccessor.geRawMethodName(methodDescriptor)).isSameInstanceAs(cached);
+    assertThat(ImmutableListMultimap.copyOf(headers))
+        .containsEntry(AsciiString.of(":authority"), AsciiString.of("otherhost"));
+    assertThat(ImmutableListMultimap.copyOf(headers))
+        .containsEntry(AsciiString.of(":path"), AsciiString.of("/testService/test"));
+
+    // The override is not shared with the other streams of the transport
+    headers = startStream(preHeaders, null);
+    assertThat(ImmutableListMultimap.copyOf(headers))
+        .containsEntry(AsciiString.of(":authority"), AsciiString.of("localhost"));
+  }
+
+  private Http2Headers startStream(RequestPreHeaders preHeaders, String authorityOverride) {
+    NettyClientStream stream = new NettyClientStream(
+        new TransportStateImpl(handler, DEFAULT_MAX_MESSAGE_SIZE),
+        methodDescriptor,
+        new Metadata(),
+        channel,
+        preHeaders,
+        StatsTraceContext.NOOP,
+        transportTracer,
+        CallOptions.DEFAULT,
+        false);
+    if (authorityOverride != null) {
+      stream.setAuthority(authorityOverride);
+    }
+    stream.start(listener);
+    ArgumentCaptor<CreateStreamCommand> cmdCap = ArgumentCaptor.forClass(CreateStreamCommand.class);
+    verify(writeQueue).enqueue(cmdCap.capture(), eq(false));
+    Mockito.clearInvocations(writeQueue);
+    return cmdCap.getValue().headers();
+  }
+
   @Test
   public void getRequestSentThroughHeader() {
     // Creating a GET method
@@ -479,9 +533,8 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
         descriptor,
         new Metadata(),
         channel,
-        AsciiString.of("localhost"),
-        AsciiString.of("http"),
-        AsciiString.of("agent"),
+        new RequestPreHeaders(AsciiString.of("localhost"), Utils.HTTP_METHOD,
+            AsciiString.of("http"), AsciiString.of("agent")),
         StatsTraceContext.NOOP,
         transportTracer,
         CallOptions.DEFAULT,
@@ -513,9 +566,8 @@ public class NettyClientStreamTest extends NettyStreamTestBase<NettyClientStream
         methodDescriptor,
         new Metadata(),
         channel,
-        AsciiString.of("localhost"),
-        AsciiString.of("http"),
-        AsciiString.of("agent"),
+        new RequestPreHeaders(AsciiString.of("localhost"), Utils.HTTP_METHOD,
+            AsciiString.of("http"), AsciiString.of("agent")),
         StatsTraceContext.NOOP,
         transportTracer,
         CallOptions.DEFAULT,
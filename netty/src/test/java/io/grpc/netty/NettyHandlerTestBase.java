@@ -19,6 +19,7 @@ package io.grpc.netty;
 import static com.google.common.base.Charsets.UTF_8;
 import static io.netty.handler.codec.http2.Http2CodecUtil.DEFAULT_WINDOW_SIZE;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.AdditionalAnswers.delegatesTo;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyLong;
@@ -261,7 +262,7 @@ public abstract class NettyHandlerTestBase<T extends Http2ConnectionHandler> {
             }
           }
         },
-        new NettyWritableBufferAllocator(ByteBufAllocator.DEFAULT),
+        new NettyWritableBufferAllocator(ByteBufAllocator.DEFAULT, new TransportTracer()),
         StatsTraceContext.NOOP);
     framer.writePayload(new ByteArrayInputStream(content));
     framer.flush();
@@ -452,6 +453,73 @@ public abstract class NettyHandlerTestBase<T extends Http2ConnectionHandler> {
     assertEquals(maxWindow, localFlowController.initialWindowSize(connectionStream));
   }
 
+  @Test
+  public void windowShrinksWhenBdpDrops() throws Exception {
+    manualSetUp();
+    makeStream();
+    AbstractNettyHandler handler = (AbstractNettyHandler) handler();
+    handler.setAutoTuneFlowControl(true);
+    Http2Stream connectionStream = connection().connectionStream();
+    Http2LocalFlowController localFlowController = connection().local().flowController();
+    int maxWindow = handler.flowControlPing().maxWindow();
+    long payload = handler.flowControlPing().payload();
+
+    handler.flowControlPing().setDataSizeAndSincePing(maxWindow);
+    channelRead(pingFrame(true, payload));
+    assertEquals(maxWindow, localFlowController.initialWindowSize(connectionStream));
+
+    for (int i = 0; i < AbstractNettyHandler.FlowControlPinger.SHRINK_AFTER_PINGS; i++) {
+      handler.flowControlPing().setDataSizeAndSincePing(0);
+      channelRead(pingFrame(true, payload));
+    }
+    // The estimate decays slowly, so a few idle pings are not enough
+    assertEquals(maxWindow, localFlowController.initialWindowSize(connectionStream));
+
+    // 20 is arbitrary, any number large enough for the estimate to decay would work
+    for (int i = 0; i < 20; i++) {
+      handler.flowControlPing().setDataSizeAndSincePing(0);
+      channelRead(pingFrame(true, payload));
+    }
+    int window = localFlowController.initialWindowSize(connectionStream);
+    assertTrue(window < maxWindow / 2);
+    assertTrue(window >= flowControlWindow);
+  }
+
+  @Test
+  public void streamWindowFollowsStreamData() throws Exception {
+    manualSetUp();
+    makeStream();
+    AbstractNettyHandler handler = (AbstractNettyHandler) handler();
+    handler.setAutoTuneFlowControl(true);
+    Http2LocalFlowController localFlowController = connection().local().flowController();
+    Http2Stream stream = connection().stream(3);
+
+    ByteBuf data = ctx().alloc().buffer(1024);
+    while (data.isWritable()) {
+      data.writeLong(1111);
+    }
+    int length = data.readableBytes();
+    int accumulator = 0;
+    for (int i = 0; i < 40; i++) {
+      channelRead(dataFrame(3, false, data.copy()));
+      accumulator += length;
+    }
+    long payload = handler.flowControlPing().payload();
+    channelRead(pingFrame(true, payload));
+
+    assertEquals(2 * accumulator, localFlowController.initialWindowSize(stream));
+    TransportStats stats = transportTracer.getStats();
+    assertEquals(accumulator, stats.estimatedBdpBytes);
+    assertTrue(stats.estimatedRttNanos >= 0);
+    assertEquals(2 * accumulator, stats.localStreamFlowControlWindow);
+
+    // Nothing was received on the stream, so it falls back to the configured window
+    handler.flowControlPing().setDataSizeAndSincePing(0);
+    channelRead(pingFrame(true, payload));
+
+    assertEquals(flowControlWindow, localFlowController.initialWindowSize(stream));
+  }
+
   @Test
   public void transportTracer_windowSizeDefault() throws Exception {
     manualSetUp();
@@ -214,6 +214,20 @@ public class NettyServerHandlerTest extends NettyHandlerTestBase<NettyServerHand
     verify(transportListener).transportReady(any(Attributes.class));
   }
 
+  @Test
+  public void transportReadyIncludesServerEventLoop() throws Exception {
+    initChannel(new GrpcHttp2ServerHeadersDecoder(GrpcUtil.DEFAULT_MAX_HEADER_LIST_SIZE));
+
+    handler().handleProtocolNegotiationCompleted(Attributes.EMPTY, /*securityInfo=*/ null);
+    channelRead(Http2CodecUtil.connectionPrefaceBuf());
+    channelRead(serializeSettings(new Http2Settings()));
+
+    ArgumentCaptor<Attributes> attrsCaptor = ArgumentCaptor.forClass(Attributes.class);
+    verify(transportListener).transportReady(attrsCaptor.capture());
+    assertSame(channel().eventLoop(),
+        attrsCaptor.getValue().get(EventLoopAffinity.SERVER_EVENT_LOOP));
+  }
+
   @Test
   public void sendFrameShouldSucceed() throws Exception {
     manualSetUp();
@@ -108,7 +108,7 @@ public class NettyServerStreamTest extends NettyStreamTestBase<NettyServerStream
 
     ArgumentCaptor<SendResponseHeadersCommand> sendHeadersCap =
         ArgumentCaptor.forClass(SendResponseHeadersCommand.class);
-    verify(writeQueue).enqueue(sendHeadersCap.capture(), eq(true));
+    verify(writeQueue).enqueueVoid(sendHeadersCap.capture(), eq(true));
     SendResponseHeadersCommand sendHeaders = sendHeadersCap.getValue();
     assertThat(sendHeaders.stream()).isSameInstanceAs(stream.transportState());
     assertThat(ImmutableListMultimap.copyOf(sendHeaders.headers()))
@@ -134,7 +134,7 @@ public class NettyServerStreamTest extends NettyStreamTestBase<NettyServerStream
 
     ArgumentCaptor<SendResponseHeadersCommand> sendHeadersCap =
         ArgumentCaptor.forClass(SendResponseHeadersCommand.class);
-    verify(writeQueue).enqueue(sendHeadersCap.capture(), eq(true));
+    verify(writeQueue).enqueueVoid(sendHeadersCap.capture(), eq(true));
     SendResponseHeadersCommand sendHeaders = sendHeadersCap.getValue();
     assertThat(sendHeaders.stream()).isSameInstanceAs(stream.transportState());
     assertThat(ImmutableListMultimap.copyOf(sendHeaders.headers()))
@@ -154,7 +154,7 @@ public class NettyServerStreamTest extends NettyStreamTestBase<NettyServerStream
 
     ArgumentCaptor<SendResponseHeadersCommand> sendHeadersCap =
         ArgumentCaptor.forClass(SendResponseHeadersCommand.class);
-    verify(writeQueue).enqueue(sendHeadersCap.capture(), eq(true));
+    verify(writeQueue).enqueueVoid(sendHeadersCap.capture(), eq(true));
     SendResponseHeadersCommand sendHeaders = sendHeadersCap.getValue();
     assertThat(sendHeaders.stream()).isSameInstanceAs(stream.transportState());
     assertThat(ImmutableListMultimap.copyOf(sendHeaders.headers()))
@@ -182,7 +182,7 @@ public class NettyServerStreamTest extends NettyStreamTestBase<NettyServerStream
 
     ArgumentCaptor<SendResponseHeadersCommand> sendHeadersCap =
         ArgumentCaptor.forClass(SendResponseHeadersCommand.class);
-    verify(writeQueue).enqueue(sendHeadersCap.capture(), eq(true));
+    verify(writeQueue).enqueueVoid(sendHeadersCap.capture(), eq(true));
     SendResponseHeadersCommand sendHeaders = sendHeadersCap.getValue();
     assertThat(sendHeaders.stream()).isSameInstanceAs(stream.transportState());
     assertThat(ImmutableListMultimap.copyOf(sendHeaders.headers()))
@@ -216,7 +216,7 @@ public class NettyServerStreamTest extends NettyStreamTestBase<NettyServerStream
 
     ArgumentCaptor<SendResponseHeadersCommand> cmdCap =
         ArgumentCaptor.forClass(SendResponseHeadersCommand.class);
-    verify(writeQueue).enqueue(cmdCap.capture(), eq(true));
+    verify(writeQueue).enqueueVoid(cmdCap.capture(), eq(true));
     SendResponseHeadersCommand cmd = cmdCap.getValue();
     assertThat(cmd.stream()).isSameInstanceAs(stream.transportState());
     assertThat(ImmutableListMultimap.copyOf(cmd.headers()))
@@ -264,7 +264,7 @@ public class NettyServerStreamTest extends NettyStreamTestBase<NettyServerStream
 
     stream().close(Status.OK, new Metadata());
 
-    verify(writeQueue).enqueue(cmdCap.capture(), eq(true));
+    verify(writeQueue).enqueueVoid(cmdCap.capture(), eq(true));
     SendResponseHeadersCommand cmd = cmdCap.getValue();
     assertThat(cmd.stream()).isSameInstanceAs(stream.transportState());
     assertThat(ImmutableListMultimap.copyOf(cmd.headers()))
@@ -275,7 +275,7 @@ public class NettyServerStreamTest extends NettyStreamTestBase<NettyServerStream
   @Test
   public void cancelStreamShouldSucceed() {
     stream().cancel(Status.DEADLINE_EXCEEDED);
-    verify(writeQueue).enqueue(
+    verify(writeQueue).enqueueVoid(
         new CancelServerStreamCommand(stream().transportState(), Status.DEADLINE_EXCEEDED),
         true);
   }
@@ -16,12 +16,22 @@
 
 package io.grpc.netty;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
+import io.grpc.internal.TransportTracer;
 import io.grpc.internal.WritableBuffer;
 import io.grpc.internal.WritableBufferAllocator;
 import io.grpc.internal.WritableBufferAllocatorTestBase;
+import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
+import java.io.Closeable;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.junit.runners.JUnit4;
@@ -32,8 +42,9 @@ import org.junit.runners.JUnit4;
 @RunWith(JUnit4.class)
 public class NettyWritableBufferAllocatorTest extends WritableBufferAllocatorTestBase {
 
+  private final TransportTracer transportTracer = new TransportTracer();
   private final NettyWritableBufferAllocator allocator =
-          new NettyWritableBufferAllocator(ByteBufAllocator.DEFAULT);
+          new NettyWritableBufferAllocator(ByteBufAllocator.DEFAULT, transportTracer);
 
   @Override
   protected WritableBufferAllocator allocator() {
@@ -61,4 +72,71 @@ public class NettyWritableBufferAllocatorTest extends WritableBufferAllocatorTes
     assertEquals(0, buffer.readableBytes());
     assertEquals(1024 * 1024, buffer.writableBytes());
   }
+
+  @Test
+  public void testMinimumShrinksForSmallMessages() {
+    for (int i = 0; i < NettyWritableBufferAllocator.ALLOCATIONS_BEFORE_SHRINK; i++) {
+      allocator().allocate(100).release();
+    }
+    WritableBuffer buffer = allocator().allocate(100);
+    assertEquals(2048, buffer.writableBytes());
+    buffer.release();
+
+    // Keeps shrinking down to the smallest size class
+    for (int i = 0; i < 8 * NettyWritableBufferAllocator.ALLOCATIONS_BEFORE_SHRINK; i++) {
+      allocator().allocate(100).release();
+    }
+    buffer = allocator().allocate(100);
+    assertEquals(256, buffer.writableBytes());
+    buffer.release();
+  }
+
+  @Test
+  public void testMinimumGrowsToSizeClassOfLargerMessage() {
+    for (int i = 0; i < 8 * NettyWritableBufferAllocator.ALLOCATIONS_BEFORE_SHRINK; i++) {
+      allocator().allocate(100).release();
+    }
+    WritableBuffer buffer = allocator().allocate(1000);
+    assertEquals(1000, buffer.writableBytes());
+    buffer.release();
+
+    buffer = allocator().allocate(100);
+    assertEquals(1024, buffer.writableBytes());
+    buffer.release();
+  }
+
+  @Test
+  public void testAllocationsAreReportedToTransportTracer() {
+    allocator().allocate(100).release();
+    allocator().allocate(9000).release();
+    assertEquals(2, transportTracer.getBuffersAllocated());
+    assertEquals(4096 + 9000, transportTracer.getBytesAllocated());
+  }
+
+  @Test
+  public void testWrapReferencesBuffersAndClosesOwnerOnRelease() {
+    ByteBuffer first = ByteBuffer.allocateDirect(3);
+    first.put(new byte[] {1, 2, 3});
+    ((Buffer) first).flip();
+    ByteBuffer second = ByteBuffer.wrap(new byte[] {4, 5});
+    final AtomicBoolean closed = new AtomicBoolean();
+    Closeable owner = new Closeable() {
+      @Override
+      public void close() {
+        closed.set(true);
+      }
+    };
+
+    WritableBuffer buffer = allocator.wrap(Arrays.asList(first, second), owner);
+    assertEquals(5, buffer.readableBytes());
+    assertEquals(0, buffer.writableBytes());
+    ByteBuf bytebuf = ((NettyWritableBuffer) buffer).bytebuf();
+    byte[] bytes = new byte[5];
+    bytebuf.getBytes(bytebuf.readerIndex(), bytes);
+    assertArrayEquals(new byte[] {1, 2, 3, 4, 5}, bytes);
+
+    assertFalse(closed.get());
+    buffer.release();
+    assertTrue(closed.get());
+  }
 }
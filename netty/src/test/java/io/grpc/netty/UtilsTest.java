@@ -19,6 +19,7 @@ package io.grpc.netty;
 import static com.google.common.truth.Truth.assertThat;
 import static com.google.common.truth.TruthJUnit.assume;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
 
@@ -134,6 +135,31 @@ public class UtilsTest {
     assertEquals(Utils.CONTENT_TYPE_GRPC, headers.get(GrpcUtil.CONTENT_TYPE_KEY.name()));
   }
 
+  @Test
+  @SuppressWarnings("UndefinedEquals") // AsciiString.equals
+  public void convertTrailers_sharesWellKnownNames() {
+    Metadata trailers = new Metadata();
+    trailers.put(GrpcUtil.MESSAGE_ENCODING_KEY, "gzip");
+    trailers.put(userKey, userValue);
+
+    CharSequence first = null;
+    CharSequence value = null;
+    for (int i = 0; i < 2; i++) {
+      Http2Headers output = Utils.convertTrailers(trailers, true);
+      for (Map.Entry<CharSequence, CharSequence> entry : output) {
+        if (GrpcUtil.MESSAGE_ENCODING_KEY.name().contentEquals(entry.getKey())) {
+          if (first == null) {
+            first = entry.getKey();
+          } else {
+            assertSame(first, entry.getKey());
+          }
+          value = entry.getValue();
+        }
+      }
+    }
+    assertEquals(AsciiString.of("gzip"), value);
+  }
+
   @Test
   public void channelOptionsTest_noLinger() {
     Channel channel = new EmbeddedChannel();
@@ -155,6 +181,21 @@ public class UtilsTest {
     Channel channel = new NioSocketChannel();
     SocketOptions socketOptions = setAndValidateGeneric(channel);
     assertNull(socketOptions.soTimeoutMillis);
+    assertNull(socketOptions.tcpInfo);
+  }
+
+  @Test
+  public void channelOptionsTest_epollTcpInfo() throws Exception {
+    assume().that(Utils.isEpollAvailable()).isTrue();
+
+    Channel channel = Class.forName("io.netty.channel.epoll.EpollSocketChannel")
+        .asSubclass(Channel.class).getConstructor().newInstance();
+    try {
+      SocketOptions socketOptions = Utils.getSocketOptions(channel);
+      assertNotNull(socketOptions.tcpInfo);
+    } finally {
+      channel.close();
+    }
   }
 
   private static InternalChannelz.SocketOptions setAndValidateGeneric(Channel channel) {
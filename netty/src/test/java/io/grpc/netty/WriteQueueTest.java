@@ -16,11 +16,13 @@
 
 package io.grpc.netty;
 
+import static com.google.common.truth.Truth.assertThat;
 import static org.junit.Assert.fail;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.ArgumentMatchers.isA;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -30,6 +32,10 @@ import io.netty.channel.Channel;
 import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelPromise;
 import io.netty.channel.EventLoop;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.channel.VoidChannelPromise;
+import java.util.ArrayDeque;
+import java.util.Queue;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.atomic.AtomicBoolean;
 import org.junit.Before;
@@ -143,6 +149,85 @@ public class WriteQueueTest {
     verify(channel, times(2)).flush();
   }
 
+  @Test
+  public void enqueueVoidShouldNotAllocatePromise() {
+    WriteQueue queue = new WriteQueue(channel);
+    queue.enqueueVoid(new CuteCommand(), true);
+
+    verify(channel, never()).newPromise();
+    verify(channel).write(isA(QueuedCommand.class), isA(VoidChannelPromise.class));
+    verify(channel).flush();
+  }
+
+  @Test
+  public void flushPostponedWhileEventLoopBusy() {
+    final Queue<Runnable> tasks = new ArrayDeque<>();
+    useEventLoopWithTasks(tasks);
+    final WriteQueue queue = new WriteQueue(channel);
+    queue.enqueue(new CuteCommand(), true);
+    tasks.add(new Runnable() {
+      @Override
+      public void run() {
+        queue.enqueue(new CuteCommand(), true);
+      }
+    });
+
+    // The write happens right away, but the flush waits for the other task
+    tasks.poll().run();
+    verify(channel).write(isA(QueuedCommand.class), eq(promise));
+    verify(channel, never()).flush();
+
+    tasks.poll().run();
+    tasks.poll().run();
+    verify(channel, times(2)).write(isA(QueuedCommand.class), eq(promise));
+    verify(channel).flush();
+    assertThat(tasks).isEmpty();
+  }
+
+  @Test
+  public void postponedFlushesShouldBeBounded() {
+    final Queue<Runnable> tasks = new ArrayDeque<>();
+    useEventLoopWithTasks(tasks);
+    WriteQueue queue = new WriteQueue(channel);
+    queue.enqueue(new CuteCommand(), true);
+    // Another task is always waiting
+    tasks.add(new Runnable() {
+      @Override
+      public void run() {
+        tasks.add(this);
+      }
+    });
+
+    int runs = 0;
+    while (!tasks.isEmpty() && runs < 100) {
+      tasks.poll().run();
+      runs++;
+      if (runs <= 2 * WriteQueue.MAX_POSTPONED_FLUSHES) {
+        verify(channel, never()).flush();
+      }
+    }
+    verify(channel).flush();
+  }
+
+  private void useEventLoopWithTasks(final Queue<Runnable> tasks) {
+    SingleThreadEventLoop eventLoop = Mockito.mock(SingleThreadEventLoop.class);
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        tasks.add((Runnable) invocation.getArguments()[0]);
+        return null;
+      }
+    }).when(eventLoop).execute(any(Runnable.class));
+    when(eventLoop.pendingTasks()).thenAnswer(new Answer<Integer>() {
+      @Override
+      public Integer answer(InvocationOnMock invocation) {
+        return tasks.size();
+      }
+    });
+    when(eventLoop.inEventLoop()).thenReturn(true);
+    when(channel.eventLoop()).thenReturn(eventLoop);
+  }
+
   @Test
   public void concurrentWriteAndFlush() throws Throwable {
     final WriteQueue queue = new WriteQueue(channel);
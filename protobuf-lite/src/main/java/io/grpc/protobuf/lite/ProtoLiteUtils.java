@@ -25,6 +25,7 @@ import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.MessageLite;
 import com.google.protobuf.Parser;
 import io.grpc.ExperimentalApi;
+import io.grpc.HasByteBuffer;
 import io.grpc.KnownLength;
 import io.grpc.Metadata;
 import io.grpc.MethodDescriptor.Marshaller;
@@ -35,6 +36,11 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.ref.Reference;
 import java.lang.ref.WeakReference;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import javax.annotation.Nullable;
 
 /**
  * Utility methods for using protobuf with grpc.
@@ -54,6 +60,14 @@ public final class ProtoLiteUtils {
   @VisibleForTesting
   static final int DEFAULT_MAX_MESSAGE_SIZE = 4 * 1024 * 1024;
 
+  /**
+   * Messages at least this large are parsed directly from the {@link ByteBuffer}s of a {@link
+   * HasByteBuffer} stream, when possible. Smaller messages are cheaper to copy into the cached
+   * array.
+   */
+  @VisibleForTesting
+  static final int MIN_BYTE_BUFFER_PARSE_SIZE = 64 * 1024;
+
   /**
    * Sets the global registry for proto marshalling shared across all servers and clients.
    *
@@ -173,7 +187,13 @@ public final class ProtoLiteUtils {
       try {
         if (stream instanceof KnownLength) {
           int size = stream.available();
-          if (size > 0 && size <= DEFAULT_MAX_MESSAGE_SIZE) {
+          if (size >= MIN_BYTE_BUFFER_PARSE_SIZE) {
+            List<ByteBuffer> buffers = readByteBuffers(stream, size);
+            if (buffers != null) {
+              cis = CodedInputStream.newInstance(buffers);
+            }
+          }
+          if (cis == null && size > 0 && size <= DEFAULT_MAX_MESSAGE_SIZE) {
             Reference<byte[]> ref;
             // buf should not be used after this method has returned.
             byte[] buf;
@@ -219,6 +239,45 @@ public final class ProtoLiteUtils {
       }
     }
 
+    /**
+     * Returns the {@link ByteBuffer}s holding the next {@code size} bytes of {@code stream}, or
+     * {@code null} if the stream does not expose them. The stream is marked first so that the
+     * underlying buffers are retained until the stream is closed, rather than being released as
+     * they are skipped over.
+     */
+    @Nullable
+    private static List<ByteBuffer> readByteBuffers(InputStream stream, int size)
+        throws IOException {
+      if (!(stream instanceof HasByteBuffer)
+          || !((HasByteBuffer) stream).byteBufferSupported()
+          || !stream.markSupported()) {
+        return null;
+      }
+      HasByteBuffer hasByteBuffer = (HasByteBuffer) stream;
+      stream.mark(size);
+      List<ByteBuffer> buffers = new ArrayList<>();
+      int remaining = size;
+      while (remaining > 0) {
+        ByteBuffer buffer = hasByteBuffer.getByteBuffer();
+        if (buffer == null || !buffer.hasRemaining()) {
+          // Unexpected, but recoverable by falling back to reading the stream.
+          stream.reset();
+          return null;
+        }
+        if (buffer.remaining() > remaining) {
+          ((Buffer) buffer).limit(buffer.position() + remaining);
+        }
+        int length = buffer.remaining();
+        buffers.add(buffer);
+        long skipped = stream.skip(length);
+        if (skipped != length) {
+          throw new RuntimeException("size inaccurate: " + size + " != " + (size - remaining));
+        }
+        remaining -= length;
+      }
+      return buffers;
+    }
+
     private T parseFrom(CodedInputStream stream) throws InvalidProtocolBufferException {
       T message = parser.parseFrom(stream, globalRegistry);
       try {
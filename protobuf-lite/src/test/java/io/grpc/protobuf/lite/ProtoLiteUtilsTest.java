@@ -35,11 +35,15 @@ import io.grpc.MethodDescriptor.Marshaller;
 import io.grpc.MethodDescriptor.PrototypeMarshaller;
 import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.internal.CompositeReadableBuffer;
 import io.grpc.internal.GrpcUtil;
+import io.grpc.internal.ReadableBuffers;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.util.Arrays;
 import org.junit.Rule;
 import org.junit.Test;
@@ -227,6 +231,30 @@ public class ProtoLiteUtilsTest {
     assertEquals(expect, result);
   }
 
+  @Test
+  public void parseFromByteBuffers() throws Exception {
+    byte[] bigName = new byte[2 * ProtoLiteUtils.MIN_BYTE_BUFFER_PARSE_SIZE];
+    Arrays.fill(bigName, (byte) 32);
+    Type expect = Type.newBuilder().setNameBytes(ByteString.copyFrom(bigName)).build();
+    byte[] serialized = expect.toByteArray();
+
+    // Split the message across several direct buffers, as a transport would deliver it.
+    CompositeReadableBuffer composite = new CompositeReadableBuffer();
+    int chunkSize = serialized.length / 3 + 1;
+    for (int offset = 0; offset < serialized.length; offset += chunkSize) {
+      int length = Math.min(chunkSize, serialized.length - offset);
+      ByteBuffer chunk = ByteBuffer.allocateDirect(length);
+      chunk.put(serialized, offset, length);
+      ((Buffer) chunk).flip();
+      composite.addBuffer(ReadableBuffers.wrap(chunk));
+    }
+    InputStream is = ReadableBuffers.openStream(composite, true);
+
+    assertEquals(expect, marshaller.parse(is));
+    assertEquals(0, is.available());
+    is.close();
+  }
+
   @Test
   public void defaultMaxMessageSize() {
     assertEquals(GrpcUtil.DEFAULT_MAX_MESSAGE_SIZE, ProtoLiteUtils.DEFAULT_MAX_MESSAGE_SIZE);
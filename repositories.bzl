@@ -10,6 +10,7 @@ load("@bazel_tools//tools/build_defs/repo:http.bzl", "http_archive")
 #     ] + IO_GRPC_GRPC_JAVA_ARTIFACTS,
 # )
 IO_GRPC_GRPC_JAVA_ARTIFACTS = [
+    "com.github.luben:zstd-jni:1.5.0-4",
     "com.google.android:annotations:4.1.1.4",
     "com.google.api.grpc:proto-google-common-protos:2.0.1",
     "com.google.auth:google-auth-library-credentials:0.22.0",
@@ -43,6 +44,8 @@ IO_GRPC_GRPC_JAVA_ARTIFACTS = [
     "junit:junit:4.12",
     "org.apache.tomcat:annotations-api:6.0.53",
     "org.codehaus.mojo:animal-sniffer-annotations:1.19",
+    "org.lz4:lz4-java:1.8.0",
+    "org.xerial.snappy:snappy-java:1.1.8.4",
 ]
 
 # For use with maven_install's override_targets.
@@ -71,6 +74,7 @@ IO_GRPC_GRPC_JAVA_OVERRIDE_TARGETS = {
     "io.grpc:grpc-api": "@io_grpc_grpc_java//api",
     "io.grpc:grpc-auth": "@io_grpc_grpc_java//auth",
     "io.grpc:grpc-census": "@io_grpc_grpc_java//census",
+    "io.grpc:grpc-compression": "@io_grpc_grpc_java//compression",
     "io.grpc:grpc-context": "@io_grpc_grpc_java//context",
     "io.grpc:grpc-core": "@io_grpc_grpc_java//core:core_maven",
     "io.grpc:grpc-grpclb": "@io_grpc_grpc_java//grpclb",
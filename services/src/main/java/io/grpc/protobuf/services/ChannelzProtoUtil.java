@@ -234,14 +234,27 @@ final class ChannelzProtoUtil {
               Int64Value.of(s.localFlowControlWindow))
           .setRemoteFlowControlWindow(
               Int64Value.of(s.remoteFlowControlWindow));
+      // SocketData has no fields for these, so they are reported like additional socket options
+      addFlowControlOption(builder, STREAM_FLOW_CONTROL_WINDOW, s.localStreamFlowControlWindow);
+      addFlowControlOption(builder, ESTIMATED_BDP_BYTES, s.estimatedBdpBytes);
+      addFlowControlOption(builder, ESTIMATED_RTT_NANOS, s.estimatedRttNanos);
     }
     builder.addAllOption(toSocketOptionsList(socketStats.socketOptions));
     return builder.build();
   }
 
+  private static void addFlowControlOption(SocketData.Builder builder, String name, long value) {
+    if (value >= 0) {
+      builder.addOption(toSocketOptionAdditional(name, String.valueOf(value)));
+    }
+  }
+
   public static final String SO_LINGER = "SO_LINGER";
   public static final String SO_TIMEOUT = "SO_TIMEOUT";
   public static final String TCP_INFO = "TCP_INFO";
+  public static final String STREAM_FLOW_CONTROL_WINDOW = "grpc.stream_flow_control_window";
+  public static final String ESTIMATED_BDP_BYTES = "grpc.estimated_bdp_bytes";
+  public static final String ESTIMATED_RTT_NANOS = "grpc.estimated_rtt_nanos";
 
   static SocketOption toSocketOptionLinger(int lingerSeconds) {
     final SocketOptionLinger lingerOpt;
@@ -42,6 +42,7 @@ import io.grpc.InternalChannelz.ServerSocketsList;
 import io.grpc.InternalChannelz.ServerStats;
 import io.grpc.InternalChannelz.SocketOptions;
 import io.grpc.InternalChannelz.SocketStats;
+import io.grpc.InternalChannelz.TransportStats;
 import io.grpc.InternalInstrumented;
 import io.grpc.InternalWithLogId;
 import io.grpc.channelz.v1.Address;
@@ -424,6 +425,36 @@ public final class ChannelzProtoUtilTest {
         ChannelzProtoUtil.extractSocketData(socket.getStats().get()));
   }
 
+  @Test
+  public void extractSocketData_flowControlEstimates() throws Exception {
+    TransportStats s = socket.transportStats;
+    socket.transportStats = new TransportStats(
+        s.streamsStarted,
+        s.lastLocalStreamCreatedTimeNanos,
+        s.lastRemoteStreamCreatedTimeNanos,
+        s.streamsSucceeded,
+        s.streamsFailed,
+        s.messagesSent,
+        s.messagesReceived,
+        s.keepAlivesSent,
+        s.lastMessageSentTimeNanos,
+        s.lastMessageReceivedTimeNanos,
+        s.localFlowControlWindow,
+        s.remoteFlowControlWindow,
+        /*localStreamFlowControlWindow=*/ 13,
+        /*estimatedBdpBytes=*/ 14,
+        /*estimatedRttNanos=*/ -1);
+    assertEquals(
+        socketDataWithDataNoSockOpts
+            .toBuilder()
+            .addOption(ChannelzProtoUtil.toSocketOptionAdditional(
+                ChannelzProtoUtil.STREAM_FLOW_CONTROL_WINDOW, "13"))
+            .addOption(ChannelzProtoUtil.toSocketOptionAdditional(
+                ChannelzProtoUtil.ESTIMATED_BDP_BYTES, "14"))
+            .build(),
+        ChannelzProtoUtil.extractSocketData(socket.getStats().get()));
+  }
+
   @Test
   public void toSocketData() throws Exception {
     assertEquals(
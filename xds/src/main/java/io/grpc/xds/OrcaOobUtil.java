@@ -166,7 +166,7 @@ abstract class OrcaOobUtil {
 
     return new OrcaReportingHelperWrapper() {
       @Override
-      public void setReportingConfig(OrcaReportingConfig config) {
+      public void setReportingConfig(@Nullable OrcaReportingConfig config) {
         orcaHelper.setReportingConfig(config);
       }
 
@@ -215,9 +215,12 @@ abstract class OrcaOobUtil {
      * <p>If multiple load balancing policies configure reporting with different intervals, reports
      * come with the minimum of those intervals.
      *
-     * @param config the configuration to be set.
+     * <p>Setting {@code null} withdraws the configuration previously set through this wrapper.
+     * Reporting RPCs stop once no load balancing policy has reporting configured.
+     *
+     * @param config the configuration to be set, or {@code null} to stop receiving reports.
      */
-    public abstract void setReportingConfig(OrcaReportingConfig config);
+    public abstract void setReportingConfig(@Nullable OrcaReportingConfig config);
 
     /**
      * Returns a wrapped {@link LoadBalancer.Helper}. Subchannels created through it will retrieve
@@ -286,7 +289,7 @@ abstract class OrcaOobUtil {
       return subchannel;
     }
 
-    void setReportingConfig(final OrcaReportingConfig config) {
+    void setReportingConfig(@Nullable final OrcaReportingConfig config) {
       syncContext.throwIfNotInThisSynchronizationContext();
       orcaConfig = config;
       for (OrcaReportingState state : orcaStates) {
@@ -349,12 +352,21 @@ abstract class OrcaOobUtil {
         this.stateListener = checkNotNull(stateListener, "stateListener");
       }
 
-      void setReportingConfig(OrcaReportingHelper helper, OrcaReportingConfig config) {
+      void setReportingConfig(OrcaReportingHelper helper, @Nullable OrcaReportingConfig config) {
         boolean reconfigured = false;
-        configs.put(helper, config);
+        if (config == null) {
+          configs.remove(helper);
+        } else {
+          configs.put(helper, config);
+        }
         // Real reporting interval is the minimum of intervals requested by all participating
         // helpers.
-        if (overallConfig == null) {
+        if (configs.isEmpty()) {
+          if (overallConfig != null) {
+            overallConfig = null;
+            reconfigured = true;
+          }
+        } else if (overallConfig == null) {
           overallConfig = config.toBuilder().build();
           reconfigured = true;
         } else {
@@ -0,0 +1,569 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.IDLE;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.SHUTDOWN;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+
+import com.github.udpa.udpa.data.orca.v1.OrcaLoadReport;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.MoreObjects;
+import com.google.common.base.Ticker;
+import com.google.common.collect.Sets;
+import io.grpc.Attributes;
+import io.grpc.ClientStreamTracer;
+import io.grpc.ConnectivityState;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.InternalLogId;
+import io.grpc.LoadBalancer;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.SynchronizationContext.ScheduledHandle;
+import io.grpc.xds.OrcaOobUtil.OrcaOobReportListener;
+import io.grpc.xds.OrcaOobUtil.OrcaReportingConfig;
+import io.grpc.xds.OrcaOobUtil.OrcaReportingHelperWrapper;
+import io.grpc.xds.OrcaPerRequestUtil.OrcaPerRequestReportListener;
+import io.grpc.xds.XdsLogger.XdsLogLevel;
+import io.grpc.xds.XdsSubchannelPickers.ErrorPicker;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.annotation.Nullable;
+
+/**
+ * A {@link LoadBalancer} that provides weighted round-robin load balancing over the READY
+ * subchannels, with each backend weighted by the {@code rps / cpu_utilization} it reports through
+ * ORCA, either per request or out-of-band. Backends that run hot receive proportionally fewer
+ * RPCs. Backends that have not reported yet, or whose weight is in its blackout period or has
+ * expired, are weighted with the mean of the known weights.
+ *
+ * <p>Picks use a {@link StaticStrideScheduler}, which takes amortized constant time and never
+ * blocks, and weights are recomputed every {@code weightUpdatePeriod} rather than on every report.
+ */
+final class WeightedRoundRobinLoadBalancer extends LoadBalancer {
+  private static final Attributes.Key<Ref<ConnectivityStateInfo>> STATE_INFO =
+      Attributes.Key.create("state-info");
+  @VisibleForTesting
+  static final Attributes.Key<SubchannelWeight> WEIGHT = Attributes.Key.create("weight");
+  private static final Status EMPTY_OK = Status.OK.withDescription("no subchannels ready");
+
+  private final XdsLogger logger;
+  private final Helper helper;
+  private final SynchronizationContext syncContext;
+  private final ScheduledExecutorService timeService;
+  private final Ticker ticker;
+  private final Random random;
+  private final Map<EquivalentAddressGroup, Subchannel> subchannels = new HashMap<>();
+  private final Map<Subchannel, OrcaReportingHelperWrapper> orcaWrappers = new HashMap<>();
+  private final Runnable updateWeightsTask = new Runnable() {
+    @Override
+    public void run() {
+      if (currentPicker instanceof WeightedRoundRobinPicker) {
+        ((WeightedRoundRobinPicker) currentPicker).updateWeights();
+      }
+      weightUpdateTimer = syncContext.schedule(
+          this, config.weightUpdatePeriodNanos, TimeUnit.NANOSECONDS, timeService);
+    }
+  };
+
+  private WeightedRoundRobinConfig config;
+  @Nullable
+  private ScheduledHandle weightUpdateTimer;
+  @Nullable
+  private ConnectivityState currentState;
+  @Nullable
+  private SubchannelPicker currentPicker;
+
+  WeightedRoundRobinLoadBalancer(Helper helper) {
+    this(helper, Ticker.systemTicker(), new Random());
+  }
+
+  @VisibleForTesting
+  WeightedRoundRobinLoadBalancer(Helper helper, Ticker ticker, Random random) {
+    this.helper = checkNotNull(helper, "helper");
+    this.ticker = checkNotNull(ticker, "ticker");
+    this.random = checkNotNull(random, "random");
+    syncContext = checkNotNull(helper.getSynchronizationContext(), "syncContext");
+    timeService = checkNotNull(helper.getScheduledExecutorService(), "timeService");
+    logger = XdsLogger.withLogId(InternalLogId.allocate("wrr_lb", helper.getAuthority()));
+    logger.log(XdsLogLevel.INFO, "Created");
+  }
+
+  @Override
+  public void handleResolvedAddresses(ResolvedAddresses resolvedAddresses) {
+    logger.log(XdsLogLevel.DEBUG, "Received resolution result: {0}", resolvedAddresses);
+    List<EquivalentAddressGroup> addrList = resolvedAddresses.getAddresses();
+    if (addrList.isEmpty()) {
+      handleNameResolutionError(Status.UNAVAILABLE.withDescription(
+          "Weighted round robin lb error: resolution returned no addresses"));
+      return;
+    }
+    config = (WeightedRoundRobinConfig) resolvedAddresses.getLoadBalancingPolicyConfig();
+    if (config == null) {
+      config = WeightedRoundRobinConfig.DEFAULT;
+    }
+    Map<EquivalentAddressGroup, EquivalentAddressGroup> latestAddrs =
+        stripAttrs(addrList);
+    Set<EquivalentAddressGroup> removedAddrs =
+        Sets.newHashSet(Sets.difference(subchannels.keySet(), latestAddrs.keySet()));
+
+    for (Map.Entry<EquivalentAddressGroup, EquivalentAddressGroup> entry :
+        latestAddrs.entrySet()) {
+      Subchannel existingSubchannel = subchannels.get(entry.getKey());
+      if (existingSubchannel != null) {
+        existingSubchannel.updateAddresses(Collections.singletonList(entry.getValue()));
+        continue;
+      }
+      SubchannelWeight weight = new SubchannelWeight(ticker);
+      // Out-of-band reports are delivered per helper, so each subchannel gets its own.
+      OrcaReportingHelperWrapper orcaWrapper =
+          OrcaOobUtil.getInstance().newOrcaReportingHelperWrapper(helper, weight);
+      Attributes attrs = Attributes.newBuilder()
+          .set(STATE_INFO, new Ref<>(ConnectivityStateInfo.forNonError(IDLE)))
+          .set(WEIGHT, weight)
+          .build();
+      final Subchannel subchannel = orcaWrapper.asHelper().createSubchannel(
+          CreateSubchannelArgs.newBuilder()
+              .setAddresses(entry.getValue())
+              .setAttributes(attrs)
+              .build());
+      subchannel.start(new SubchannelStateListener() {
+        @Override
+        public void onSubchannelState(ConnectivityStateInfo newState) {
+          processSubchannelState(subchannel, newState);
+        }
+      });
+      subchannels.put(entry.getKey(), subchannel);
+      orcaWrappers.put(subchannel, orcaWrapper);
+      subchannel.requestConnection();
+    }
+    if (config.enableOobLoadReport) {
+      OrcaReportingConfig orcaConfig = OrcaReportingConfig.newBuilder()
+          .setReportInterval(config.oobReportingPeriodNanos, TimeUnit.NANOSECONDS)
+          .build();
+      for (OrcaReportingHelperWrapper orcaWrapper : orcaWrappers.values()) {
+        orcaWrapper.setReportingConfig(orcaConfig);
+      }
+    } else {
+      // Stops any out-of-band streams started under a previous config.
+      for (OrcaReportingHelperWrapper orcaWrapper : orcaWrappers.values()) {
+        orcaWrapper.setReportingConfig(null);
+      }
+    }
+
+    List<Subchannel> removedSubchannels = new ArrayList<>();
+    for (EquivalentAddressGroup addr : removedAddrs) {
+      removedSubchannels.add(subchannels.remove(addr));
+    }
+
+    // Update the picker before shutting down the subchannels, to reduce the chance of the race
+    // between picking a subchannel and shutting it down.
+    updateBalancingState();
+    for (Subchannel subchannel : removedSubchannels) {
+      shutdownSubchannel(subchannel);
+    }
+
+    if (weightUpdateTimer != null) {
+      weightUpdateTimer.cancel();
+    }
+    weightUpdateTimer = syncContext.schedule(
+        updateWeightsTask, config.weightUpdatePeriodNanos, TimeUnit.NANOSECONDS, timeService);
+  }
+
+  @Override
+  public void handleNameResolutionError(Status error) {
+    if (currentState != READY) {
+      updateBalancingState(TRANSIENT_FAILURE, new ErrorPicker(error));
+    }
+  }
+
+  @Override
+  public void shutdown() {
+    logger.log(XdsLogLevel.INFO, "Shutdown");
+    if (weightUpdateTimer != null) {
+      weightUpdateTimer.cancel();
+      weightUpdateTimer = null;
+    }
+    for (Subchannel subchannel : subchannels.values()) {
+      shutdownSubchannel(subchannel);
+    }
+    subchannels.clear();
+  }
+
+  private void processSubchannelState(Subchannel subchannel, ConnectivityStateInfo stateInfo) {
+    if (subchannels.get(stripAttrs(subchannel.getAddresses())) != subchannel) {
+      return;
+    }
+    if (stateInfo.getState() == TRANSIENT_FAILURE || stateInfo.getState() == IDLE) {
+      helper.refreshNameResolution();
+    }
+    if (stateInfo.getState() == IDLE) {
+      subchannel.requestConnection();
+    }
+    Ref<ConnectivityStateInfo> subchannelStateRef = getSubchannelStateInfoRef(subchannel);
+    if (subchannelStateRef.value.getState() == TRANSIENT_FAILURE) {
+      if (stateInfo.getState() == CONNECTING || stateInfo.getState() == IDLE) {
+        return;
+      }
+    }
+    subchannelStateRef.value = stateInfo;
+    updateBalancingState();
+  }
+
+  private void updateBalancingState() {
+    List<Subchannel> readySubchannels = new ArrayList<>(subchannels.size());
+    for (Subchannel subchannel : subchannels.values()) {
+      if (getSubchannelStateInfoRef(subchannel).value.getState() == READY) {
+        readySubchannels.add(subchannel);
+      }
+    }
+    if (!readySubchannels.isEmpty()) {
+      updateBalancingState(READY, new WeightedRoundRobinPicker(
+          readySubchannels, config, ticker, new AtomicInteger(random.nextInt())));
+      return;
+    }
+    boolean isConnecting = false;
+    Status aggStatus = EMPTY_OK;
+    for (Subchannel subchannel : subchannels.values()) {
+      ConnectivityStateInfo stateInfo = getSubchannelStateInfoRef(subchannel).value;
+      if (stateInfo.getState() == CONNECTING || stateInfo.getState() == IDLE) {
+        isConnecting = true;
+      }
+      if (aggStatus == EMPTY_OK || !aggStatus.isOk()) {
+        aggStatus = stateInfo.getStatus();
+      }
+    }
+    if (isConnecting || aggStatus.isOk()) {
+      updateBalancingState(CONNECTING, XdsSubchannelPickers.BUFFER_PICKER);
+    } else {
+      updateBalancingState(TRANSIENT_FAILURE, new ErrorPicker(aggStatus));
+    }
+  }
+
+  private void updateBalancingState(ConnectivityState state, SubchannelPicker picker) {
+    currentState = state;
+    currentPicker = picker;
+    helper.updateBalancingState(state, picker);
+  }
+
+  private void shutdownSubchannel(Subchannel subchannel) {
+    orcaWrappers.remove(subchannel);
+    subchannel.shutdown();
+    getSubchannelStateInfoRef(subchannel).value = ConnectivityStateInfo.forNonError(SHUTDOWN);
+  }
+
+  /**
+   * Converts list of {@link EquivalentAddressGroup} to {@link EquivalentAddressGroup} set and
+   * remove all attributes. The values are the original EAGs.
+   */
+  private static Map<EquivalentAddressGroup, EquivalentAddressGroup> stripAttrs(
+      List<EquivalentAddressGroup> groupList) {
+    Map<EquivalentAddressGroup, EquivalentAddressGroup> addrs =
+        new HashMap<>(groupList.size() * 2);
+    for (EquivalentAddressGroup group : groupList) {
+      addrs.put(stripAttrs(group), group);
+    }
+    return addrs;
+  }
+
+  private static EquivalentAddressGroup stripAttrs(EquivalentAddressGroup eag) {
+    return new EquivalentAddressGroup(eag.getAddresses());
+  }
+
+  private static Ref<ConnectivityStateInfo> getSubchannelStateInfoRef(Subchannel subchannel) {
+    return checkNotNull(subchannel.getAttributes().get(STATE_INFO), "STATE_INFO");
+  }
+
+  private static SubchannelWeight getSubchannelWeight(Subchannel subchannel) {
+    return checkNotNull(subchannel.getAttributes().get(WEIGHT), "WEIGHT");
+  }
+
+  /**
+   * The weight of a backend, from its latest ORCA report. Reports arrive on network threads for
+   * per-request reporting, so the fields are volatile; a report racing with another only loses
+   * one of the two samples.
+   */
+  @VisibleForTesting
+  static final class SubchannelWeight
+      implements OrcaPerRequestReportListener, OrcaOobReportListener {
+    private static final long NOT_SET = Long.MIN_VALUE;
+
+    private final Ticker ticker;
+    private volatile double weight;
+    private volatile long nonEmptySinceNanos = NOT_SET;
+    private volatile long lastUpdatedNanos = NOT_SET;
+
+    SubchannelWeight(Ticker ticker) {
+      this.ticker = ticker;
+    }
+
+    @Override
+    public void onLoadReport(OrcaLoadReport report) {
+      double utilization = report.getCpuUtilization();
+      long rps = report.getRps();
+      if (utilization <= 0 || rps <= 0) {
+        return;
+      }
+      long now = ticker.read();
+      if (nonEmptySinceNanos == NOT_SET) {
+        nonEmptySinceNanos = now;
+      }
+      weight = rps / utilization;
+      lastUpdatedNanos = now;
+    }
+
+    /**
+     * Returns the weight to use at {@code nowNanos}, or 0 if it is unknown, still in its blackout
+     * period or expired.
+     */
+    double getWeight(long nowNanos, long blackoutPeriodNanos, long weightExpirationPeriodNanos) {
+      long lastUpdated = lastUpdatedNanos;
+      long nonEmptySince = nonEmptySinceNanos;
+      if (lastUpdated == NOT_SET || nonEmptySince == NOT_SET) {
+        return 0;
+      }
+      if (nowNanos - lastUpdated >= weightExpirationPeriodNanos) {
+        // A backend that stops reporting goes through the blackout period again once it resumes.
+        nonEmptySinceNanos = NOT_SET;
+        return 0;
+      }
+      if (nowNanos - nonEmptySince < blackoutPeriodNanos) {
+        return 0;
+      }
+      return weight;
+    }
+  }
+
+  @VisibleForTesting
+  static final class WeightedRoundRobinPicker extends SubchannelPicker {
+    private final List<Subchannel> list; // non-empty
+    private final SubchannelWeight[] weights;
+    @Nullable
+    private final ClientStreamTracer.Factory[] reportingTracerFactories;
+    private final WeightedRoundRobinConfig config;
+    private final Ticker ticker;
+    private final AtomicInteger sequence;
+    private volatile StaticStrideScheduler scheduler;
+
+    WeightedRoundRobinPicker(
+        List<Subchannel> list, WeightedRoundRobinConfig config, Ticker ticker,
+        AtomicInteger sequence) {
+      checkArgument(!list.isEmpty(), "empty list");
+      this.list = list;
+      this.config = config;
+      this.ticker = ticker;
+      this.sequence = sequence;
+      weights = new SubchannelWeight[list.size()];
+      for (int i = 0; i < list.size(); i++) {
+        weights[i] = getSubchannelWeight(list.get(i));
+      }
+      if (config.enableOobLoadReport) {
+        reportingTracerFactories = null;
+      } else {
+        reportingTracerFactories = new ClientStreamTracer.Factory[list.size()];
+        for (int i = 0; i < list.size(); i++) {
+          reportingTracerFactories[i] =
+              OrcaPerRequestUtil.getInstance().newOrcaClientStreamTracerFactory(weights[i]);
+        }
+      }
+      updateWeights();
+    }
+
+    /** Recomputes the scheduler from the latest reports. */
+    void updateWeights() {
+      long now = ticker.read();
+      double[] newWeights = new double[weights.length];
+      for (int i = 0; i < weights.length; i++) {
+        newWeights[i] = weights[i].getWeight(
+            now, config.blackoutPeriodNanos, config.weightExpirationPeriodNanos);
+      }
+      scheduler = new StaticStrideScheduler(newWeights, sequence);
+    }
+
+    @Override
+    public PickResult pickSubchannel(PickSubchannelArgs args) {
+      int index = scheduler.pick();
+      return PickResult.withSubchannel(
+          list.get(index),
+          reportingTracerFactories == null ? null : reportingTracerFactories[index]);
+    }
+
+    @VisibleForTesting
+    List<Subchannel> getList() {
+      return list;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("list", list)
+          .add("scheduler", scheduler)
+          .toString();
+    }
+  }
+
+  /**
+   * Picks backends in proportion to their weights, spreading the picks of each backend evenly over
+   * time. Weights are scaled so that the largest is {@link #MAX_WEIGHT}; each pick takes the next
+   * sequence number, which selects a backend and a "generation", and the backend is skipped in the
+   * generations where its scaled weight does not cover the pick. Weights are capped at {@link
+   * #MAX_RATIO} times the mean, so a pick succeeds within {@code MAX_RATIO} attempts on average.
+   *
+   * <p>The scheduler is immutable apart from the shared sequence, so picks are lock-free.
+   */
+  @VisibleForTesting
+  static final class StaticStrideScheduler {
+    private static final int MAX_WEIGHT = 0xFFFF;
+    private static final double MAX_RATIO = 10;
+    private static final double MIN_RATIO = 0.1;
+
+    private final int[] scaledWeights;
+    private final AtomicInteger sequence;
+
+    /**
+     * Creates a scheduler for {@code weights}. Zero weights are unknown and treated as the mean of
+     * the others; if all are unknown, every backend is picked equally.
+     */
+    StaticStrideScheduler(double[] weights, AtomicInteger sequence) {
+      checkArgument(weights.length > 0, "no weights");
+      this.sequence = sequence;
+      int known = 0;
+      double sum = 0;
+      for (double weight : weights) {
+        if (weight > 0) {
+          known++;
+          sum += weight;
+        }
+      }
+      scaledWeights = new int[weights.length];
+      if (known == 0) {
+        for (int i = 0; i < weights.length; i++) {
+          scaledWeights[i] = MAX_WEIGHT;
+        }
+        return;
+      }
+      double mean = sum / known;
+      double max = 0;
+      double[] clamped = new double[weights.length];
+      for (int i = 0; i < weights.length; i++) {
+        double weight = weights[i] > 0 ? weights[i] : mean;
+        clamped[i] = Math.max(mean * MIN_RATIO, Math.min(weight, mean * MAX_RATIO));
+        max = Math.max(max, clamped[i]);
+      }
+      double scale = MAX_WEIGHT / max;
+      for (int i = 0; i < weights.length; i++) {
+        scaledWeights[i] = Math.max((int) Math.round(clamped[i] * scale), 1);
+      }
+    }
+
+    /** Returns the index of the next backend. */
+    int pick() {
+      int size = scaledWeights.length;
+      while (true) {
+        long seq = sequence.getAndIncrement() & 0xFFFFFFFFL;
+        int index = (int) (seq % size);
+        long generation = seq / size;
+        int weight = scaledWeights[index];
+        // Stagger backends, so that their skipped generations do not line up.
+        long offset = (long) MAX_WEIGHT / 2 * index;
+        if ((weight * generation + offset) % MAX_WEIGHT >= MAX_WEIGHT - weight) {
+          return index;
+        }
+      }
+    }
+
+    @VisibleForTesting
+    int[] getScaledWeights() {
+      return scaledWeights;
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("scaledWeights", Arrays.toString(scaledWeights))
+          .toString();
+    }
+  }
+
+  /**
+   * A lighter weight Reference than AtomicReference.
+   */
+  private static final class Ref<T> {
+    T value;
+
+    Ref(T value) {
+      this.value = value;
+    }
+  }
+
+  static final class WeightedRoundRobinConfig {
+    static final long DEFAULT_BLACKOUT_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(10);
+    static final long DEFAULT_WEIGHT_EXPIRATION_PERIOD_NANOS = TimeUnit.MINUTES.toNanos(3);
+    static final long DEFAULT_OOB_REPORTING_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(10);
+    static final long DEFAULT_WEIGHT_UPDATE_PERIOD_NANOS = TimeUnit.SECONDS.toNanos(1);
+    static final long MIN_WEIGHT_UPDATE_PERIOD_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    static final WeightedRoundRobinConfig DEFAULT = new WeightedRoundRobinConfig(
+        DEFAULT_BLACKOUT_PERIOD_NANOS, DEFAULT_WEIGHT_EXPIRATION_PERIOD_NANOS, false,
+        DEFAULT_OOB_REPORTING_PERIOD_NANOS, DEFAULT_WEIGHT_UPDATE_PERIOD_NANOS);
+
+    final long blackoutPeriodNanos;
+    final long weightExpirationPeriodNanos;
+    final boolean enableOobLoadReport;
+    final long oobReportingPeriodNanos;
+    final long weightUpdatePeriodNanos;
+
+    WeightedRoundRobinConfig(
+        long blackoutPeriodNanos, long weightExpirationPeriodNanos, boolean enableOobLoadReport,
+        long oobReportingPeriodNanos, long weightUpdatePeriodNanos) {
+      checkArgument(blackoutPeriodNanos >= 0, "blackoutPeriod < 0");
+      checkArgument(weightExpirationPeriodNanos > 0, "weightExpirationPeriod <= 0");
+      checkArgument(oobReportingPeriodNanos > 0, "oobReportingPeriod <= 0");
+      checkArgument(weightUpdatePeriodNanos > 0, "weightUpdatePeriod <= 0");
+      this.blackoutPeriodNanos = blackoutPeriodNanos;
+      this.weightExpirationPeriodNanos = weightExpirationPeriodNanos;
+      this.enableOobLoadReport = enableOobLoadReport;
+      this.oobReportingPeriodNanos = oobReportingPeriodNanos;
+      this.weightUpdatePeriodNanos =
+          Math.max(weightUpdatePeriodNanos, MIN_WEIGHT_UPDATE_PERIOD_NANOS);
+    }
+
+    @Override
+    public String toString() {
+      return MoreObjects.toStringHelper(this)
+          .add("blackoutPeriodNanos", blackoutPeriodNanos)
+          .add("weightExpirationPeriodNanos", weightExpirationPeriodNanos)
+          .add("enableOobLoadReport", enableOobLoadReport)
+          .add("oobReportingPeriodNanos", oobReportingPeriodNanos)
+          .add("weightUpdatePeriodNanos", weightUpdatePeriodNanos)
+          .toString();
+    }
+  }
+}
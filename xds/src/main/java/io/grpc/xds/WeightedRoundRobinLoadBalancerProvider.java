@@ -0,0 +1,84 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import io.grpc.Internal;
+import io.grpc.LoadBalancer;
+import io.grpc.LoadBalancer.Helper;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.NameResolver.ConfigOrError;
+import io.grpc.Status;
+import io.grpc.internal.JsonUtil;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.WeightedRoundRobinConfig;
+import java.util.Map;
+
+/**
+ * The provider for the "weighted_round_robin_experimental" balancing policy.
+ */
+@Internal
+public final class WeightedRoundRobinLoadBalancerProvider extends LoadBalancerProvider {
+
+  @Override
+  public LoadBalancer newLoadBalancer(Helper helper) {
+    return new WeightedRoundRobinLoadBalancer(helper);
+  }
+
+  @Override
+  public boolean isAvailable() {
+    return true;
+  }
+
+  @Override
+  public int getPriority() {
+    return 5;
+  }
+
+  @Override
+  public String getPolicyName() {
+    return XdsLbPolicies.WEIGHTED_ROUND_ROBIN_POLICY_NAME;
+  }
+
+  @Override
+  public ConfigOrError parseLoadBalancingPolicyConfig(Map<String, ?> rawLoadBalancingPolicyConfig) {
+    try {
+      Long blackoutPeriod =
+          JsonUtil.getStringAsDuration(rawLoadBalancingPolicyConfig, "blackoutPeriod");
+      Long weightExpirationPeriod =
+          JsonUtil.getStringAsDuration(rawLoadBalancingPolicyConfig, "weightExpirationPeriod");
+      Boolean enableOobLoadReport =
+          JsonUtil.getBoolean(rawLoadBalancingPolicyConfig, "enableOobLoadReport");
+      Long oobReportingPeriod =
+          JsonUtil.getStringAsDuration(rawLoadBalancingPolicyConfig, "oobReportingPeriod");
+      Long weightUpdatePeriod =
+          JsonUtil.getStringAsDuration(rawLoadBalancingPolicyConfig, "weightUpdatePeriod");
+      return ConfigOrError.fromConfig(new WeightedRoundRobinConfig(
+          blackoutPeriod != null
+              ? blackoutPeriod : WeightedRoundRobinConfig.DEFAULT_BLACKOUT_PERIOD_NANOS,
+          weightExpirationPeriod != null
+              ? weightExpirationPeriod
+              : WeightedRoundRobinConfig.DEFAULT_WEIGHT_EXPIRATION_PERIOD_NANOS,
+          enableOobLoadReport != null && enableOobLoadReport,
+          oobReportingPeriod != null
+              ? oobReportingPeriod : WeightedRoundRobinConfig.DEFAULT_OOB_REPORTING_PERIOD_NANOS,
+          weightUpdatePeriod != null
+              ? weightUpdatePeriod : WeightedRoundRobinConfig.DEFAULT_WEIGHT_UPDATE_PERIOD_NANOS));
+    } catch (RuntimeException e) {
+      return ConfigOrError.fromError(Status.INVALID_ARGUMENT.withCause(e).withDescription(
+          "Invalid weighted round robin config: " + e.getMessage()));
+    }
+  }
+}
@@ -509,6 +509,49 @@ public class OrcaOobUtilTest {
         .isEqualTo(buildOrcaRequestFromConfig(SHORT_INTERVAL_CONFIG));
   }
 
+  @Test
+  public void reportingStoppedWhenConfigCleared() {
+    setOrcaReportConfig(orcaHelperWrapper, SHORT_INTERVAL_CONFIG);
+    createSubchannel(orcaHelperWrapper.asHelper(), 0, Attributes.EMPTY);
+    deliverSubchannelState(0, ConnectivityStateInfo.forNonError(READY));
+    assertThat(orcaServiceImps[0].calls).hasSize(1);
+    assertLog(subchannels[0].logs,
+        "DEBUG: Starting ORCA reporting for " + subchannels[0].getAllAddresses());
+
+    setOrcaReportConfig(orcaHelperWrapper, null);
+    assertThat(orcaServiceImps[0].calls.poll().cancelled).isTrue();
+    assertThat(orcaServiceImps[0].calls).isEmpty();
+    assertThat(subchannels[0].logs).isEmpty();
+
+    // Configuring reporting again restarts the RPC.
+    setOrcaReportConfig(orcaHelperWrapper, SHORT_INTERVAL_CONFIG);
+    assertThat(orcaServiceImps[0].calls).hasSize(1);
+    assertLog(subchannels[0].logs,
+        "DEBUG: Starting ORCA reporting for " + subchannels[0].getAllAddresses());
+  }
+
+  @Test
+  public void reportingContinuesWhileAnotherPolicyConfigured() {
+    setOrcaReportConfig(parentHelperWrapper, SHORT_INTERVAL_CONFIG);
+    setOrcaReportConfig(childHelperWrapper, SHORT_INTERVAL_CONFIG);
+    createSubchannel(childHelperWrapper.asHelper(), 0, Attributes.EMPTY);
+    deliverSubchannelState(0, ConnectivityStateInfo.forNonError(READY));
+    assertThat(orcaServiceImps[0].calls).hasSize(1);
+    assertLog(subchannels[0].logs,
+        "DEBUG: Starting ORCA reporting for " + subchannels[0].getAllAddresses());
+
+    // Child helper no longer wants reports, but parent helper still does.
+    setOrcaReportConfig(childHelperWrapper, null);
+    assertThat(orcaServiceImps[0].calls.peek().cancelled).isFalse();
+    assertThat(subchannels[0].logs).isEmpty();
+
+    OrcaLoadReport report = OrcaLoadReport.getDefaultInstance();
+    orcaServiceImps[0].calls.peek().responseObserver.onNext(report);
+    assertLog(subchannels[0].logs, "DEBUG: Received an ORCA report: " + report);
+    verify(mockOrcaListener1).onLoadReport(report);
+    verifyNoMoreInteractions(mockOrcaListener2);
+  }
+
   @Test
   public void updateReportingIntervalBeforeCreatingSubchannel() {
     setOrcaReportConfig(orcaHelperWrapper, SHORT_INTERVAL_CONFIG);
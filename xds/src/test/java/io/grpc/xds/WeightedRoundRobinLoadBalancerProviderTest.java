@@ -0,0 +1,114 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.truth.Truth.assertThat;
+import static org.junit.Assert.fail;
+
+import io.grpc.InternalServiceProviders;
+import io.grpc.LoadBalancerProvider;
+import io.grpc.NameResolver.ConfigOrError;
+import io.grpc.Status.Code;
+import io.grpc.internal.JsonParser;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.WeightedRoundRobinConfig;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+/** Unit tests for {@link WeightedRoundRobinLoadBalancerProvider}. */
+@RunWith(JUnit4.class)
+public class WeightedRoundRobinLoadBalancerProviderTest {
+  private final WeightedRoundRobinLoadBalancerProvider provider =
+      new WeightedRoundRobinLoadBalancerProvider();
+
+  @Test
+  public void provided() {
+    for (LoadBalancerProvider current : InternalServiceProviders.getCandidatesViaServiceLoader(
+        LoadBalancerProvider.class, getClass().getClassLoader())) {
+      if (current instanceof WeightedRoundRobinLoadBalancerProvider) {
+        return;
+      }
+    }
+    fail("WeightedRoundRobinLoadBalancerProvider not registered");
+  }
+
+  @Test
+  public void parseLoadBalancingConfig_valid() throws IOException {
+    String lbConfig = "{\"blackoutPeriod\" : \"5s\", \"weightExpirationPeriod\" : \"60s\", "
+        + "\"enableOobLoadReport\" : true, \"oobReportingPeriod\" : \"2s\", "
+        + "\"weightUpdatePeriod\" : \"0.5s\"}";
+    ConfigOrError configOrError =
+        provider.parseLoadBalancingPolicyConfig(parseJsonObject(lbConfig));
+    assertThat(configOrError.getConfig()).isNotNull();
+    WeightedRoundRobinConfig config = (WeightedRoundRobinConfig) configOrError.getConfig();
+    assertThat(config.blackoutPeriodNanos).isEqualTo(TimeUnit.SECONDS.toNanos(5));
+    assertThat(config.weightExpirationPeriodNanos).isEqualTo(TimeUnit.SECONDS.toNanos(60));
+    assertThat(config.enableOobLoadReport).isTrue();
+    assertThat(config.oobReportingPeriodNanos).isEqualTo(TimeUnit.SECONDS.toNanos(2));
+    assertThat(config.weightUpdatePeriodNanos).isEqualTo(TimeUnit.MILLISECONDS.toNanos(500));
+  }
+
+  @Test
+  public void parseLoadBalancingConfig_missingFields_useDefaults() throws IOException {
+    ConfigOrError configOrError = provider.parseLoadBalancingPolicyConfig(parseJsonObject("{}"));
+    assertThat(configOrError.getConfig()).isNotNull();
+    WeightedRoundRobinConfig config = (WeightedRoundRobinConfig) configOrError.getConfig();
+    assertThat(config.blackoutPeriodNanos)
+        .isEqualTo(WeightedRoundRobinConfig.DEFAULT_BLACKOUT_PERIOD_NANOS);
+    assertThat(config.weightExpirationPeriodNanos)
+        .isEqualTo(WeightedRoundRobinConfig.DEFAULT_WEIGHT_EXPIRATION_PERIOD_NANOS);
+    assertThat(config.enableOobLoadReport).isFalse();
+    assertThat(config.oobReportingPeriodNanos)
+        .isEqualTo(WeightedRoundRobinConfig.DEFAULT_OOB_REPORTING_PERIOD_NANOS);
+    assertThat(config.weightUpdatePeriodNanos)
+        .isEqualTo(WeightedRoundRobinConfig.DEFAULT_WEIGHT_UPDATE_PERIOD_NANOS);
+  }
+
+  @Test
+  public void parseLoadBalancingConfig_shortWeightUpdatePeriod_raisedToMinimum()
+      throws IOException {
+    ConfigOrError configOrError = provider.parseLoadBalancingPolicyConfig(
+        parseJsonObject("{\"weightUpdatePeriod\" : \"0.001s\"}"));
+    WeightedRoundRobinConfig config = (WeightedRoundRobinConfig) configOrError.getConfig();
+    assertThat(config.weightUpdatePeriodNanos)
+        .isEqualTo(WeightedRoundRobinConfig.MIN_WEIGHT_UPDATE_PERIOD_NANOS);
+  }
+
+  @Test
+  public void parseLoadBalancingConfig_invalidDuration() throws IOException {
+    ConfigOrError configOrError = provider.parseLoadBalancingPolicyConfig(
+        parseJsonObject("{\"blackoutPeriod\" : \"ten seconds\"}"));
+    assertThat(configOrError.getError()).isNotNull();
+    assertThat(configOrError.getError().getCode()).isEqualTo(Code.INVALID_ARGUMENT);
+  }
+
+  @Test
+  public void parseLoadBalancingConfig_negativeDuration() throws IOException {
+    ConfigOrError configOrError = provider.parseLoadBalancingPolicyConfig(
+        parseJsonObject("{\"weightExpirationPeriod\" : \"-1s\"}"));
+    assertThat(configOrError.getError()).isNotNull();
+    assertThat(configOrError.getError().getCode()).isEqualTo(Code.INVALID_ARGUMENT);
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map<String, ?> parseJsonObject(String json) throws IOException {
+    return (Map<String, ?>) JsonParser.parse(json);
+  }
+}
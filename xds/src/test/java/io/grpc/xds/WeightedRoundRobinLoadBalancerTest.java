@@ -0,0 +1,413 @@
+/*
+ * Copyright 2021 The gRPC Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.grpc.xds;
+
+import static com.google.common.truth.Truth.assertThat;
+import static io.grpc.ConnectivityState.CONNECTING;
+import static io.grpc.ConnectivityState.READY;
+import static io.grpc.ConnectivityState.TRANSIENT_FAILURE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.github.udpa.udpa.data.orca.v1.OrcaLoadReport;
+import io.grpc.CallOptions;
+import io.grpc.Channel;
+import io.grpc.ChannelLogger;
+import io.grpc.ClientCall;
+import io.grpc.ConnectivityStateInfo;
+import io.grpc.EquivalentAddressGroup;
+import io.grpc.LoadBalancer.CreateSubchannelArgs;
+import io.grpc.LoadBalancer.Helper;
+import io.grpc.LoadBalancer.PickResult;
+import io.grpc.LoadBalancer.PickSubchannelArgs;
+import io.grpc.LoadBalancer.ResolvedAddresses;
+import io.grpc.LoadBalancer.Subchannel;
+import io.grpc.LoadBalancer.SubchannelPicker;
+import io.grpc.LoadBalancer.SubchannelStateListener;
+import io.grpc.MethodDescriptor;
+import io.grpc.Status;
+import io.grpc.SynchronizationContext;
+import io.grpc.internal.FakeClock;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.StaticStrideScheduler;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.SubchannelWeight;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.WeightedRoundRobinConfig;
+import io.grpc.xds.WeightedRoundRobinLoadBalancer.WeightedRoundRobinPicker;
+import java.lang.Thread.UncaughtExceptionHandler;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Captor;
+import org.mockito.Mock;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnit;
+import org.mockito.junit.MockitoRule;
+import org.mockito.stubbing.Answer;
+
+/** Unit tests for {@link WeightedRoundRobinLoadBalancer}. */
+@RunWith(JUnit4.class)
+public class WeightedRoundRobinLoadBalancerTest {
+  private static final String AUTHORITY = "foo.googleapis.com";
+
+  @Rule
+  public final MockitoRule mocks = MockitoJUnit.rule();
+  private final SynchronizationContext syncContext = new SynchronizationContext(
+      new UncaughtExceptionHandler() {
+        @Override
+        public void uncaughtException(Thread t, Throwable e) {
+          throw new AssertionError(e);
+        }
+      });
+  private final FakeClock fakeClock = new FakeClock();
+  private final Map<SocketAddress, Subchannel> subchannels = new HashMap<>();
+  private final Map<Subchannel, SubchannelStateListener> subchannelStateListeners =
+      new HashMap<>();
+  private final Map<Subchannel, ClientCall<?, ?>> oobCalls = new HashMap<>();
+  @Mock
+  private Helper helper;
+  @Captor
+  private ArgumentCaptor<SubchannelPicker> pickerCaptor;
+  private WeightedRoundRobinLoadBalancer loadBalancer;
+
+  @Before
+  public void setUp() {
+    when(helper.getAuthority()).thenReturn(AUTHORITY);
+    when(helper.getSynchronizationContext()).thenReturn(syncContext);
+    when(helper.getScheduledExecutorService()).thenReturn(fakeClock.getScheduledExecutorService());
+    when(helper.createSubchannel(any(CreateSubchannelArgs.class))).thenAnswer(
+        new Answer<Subchannel>() {
+          @Override
+          public Subchannel answer(InvocationOnMock invocation) throws Throwable {
+            CreateSubchannelArgs args = (CreateSubchannelArgs) invocation.getArguments()[0];
+            final Subchannel subchannel = mock(Subchannel.class);
+            when(subchannel.getAllAddresses()).thenReturn(args.getAddresses());
+            when(subchannel.getAddresses()).thenReturn(args.getAddresses().get(0));
+            when(subchannel.getAttributes()).thenReturn(args.getAttributes());
+            when(subchannel.getChannelLogger()).thenReturn(mock(ChannelLogger.class));
+            // For out-of-band reporting, which starts an RPC once the subchannel is READY.
+            Channel channel = mock(Channel.class);
+            ClientCall<?, ?> oobCall = mock(ClientCall.class);
+            oobCalls.put(subchannel, oobCall);
+            doReturn(oobCall)
+                .when(channel).newCall(any(MethodDescriptor.class), any(CallOptions.class));
+            when(subchannel.asChannel()).thenReturn(channel);
+            subchannels.put(args.getAddresses().get(0).getAddresses().get(0), subchannel);
+            doAnswer(new Answer<Void>() {
+              @Override
+              public Void answer(InvocationOnMock invocation) throws Throwable {
+                subchannelStateListeners.put(
+                    subchannel, (SubchannelStateListener) invocation.getArguments()[0]);
+                return null;
+              }
+            }).when(subchannel).start(any(SubchannelStateListener.class));
+            return subchannel;
+          }
+        });
+    loadBalancer =
+        new WeightedRoundRobinLoadBalancer(helper, fakeClock.getTicker(), new Random(1));
+  }
+
+  @After
+  public void tearDown() {
+    syncContext.execute(new Runnable() {
+      @Override
+      public void run() {
+        loadBalancer.shutdown();
+      }
+    });
+    for (Subchannel subchannel : subchannels.values()) {
+      verify(subchannel).shutdown();
+    }
+    assertThat(fakeClock.numPendingTasks()).isEqualTo(0);
+  }
+
+  @Test
+  public void scheduler_picksInProportionToWeights() {
+    StaticStrideScheduler scheduler =
+        new StaticStrideScheduler(new double[] {1, 2, 3}, new AtomicInteger());
+    int[] picks = new int[3];
+    for (int i = 0; i < 60000; i++) {
+      picks[scheduler.pick()]++;
+    }
+    assertThat((double) picks[0]).isWithin(600).of(10000);
+    assertThat((double) picks[1]).isWithin(600).of(20000);
+    assertThat((double) picks[2]).isWithin(600).of(30000);
+  }
+
+  @Test
+  public void scheduler_unknownWeightsUseMean() {
+    StaticStrideScheduler scheduler =
+        new StaticStrideScheduler(new double[] {0, 10, 30}, new AtomicInteger());
+    assertThat(scheduler.getScaledWeights()).asList().containsExactly(43690, 21845, 65535);
+  }
+
+  @Test
+  public void scheduler_allWeightsUnknown_picksEqually() {
+    StaticStrideScheduler scheduler =
+        new StaticStrideScheduler(new double[] {0, 0, 0}, new AtomicInteger());
+    int[] picks = new int[3];
+    for (int i = 0; i < 300; i++) {
+      picks[scheduler.pick()]++;
+    }
+    assertThat(picks).asList().containsExactly(100, 100, 100);
+  }
+
+  @Test
+  public void scheduler_clampsOutliers() {
+    // The mean is 100, so the first weight is raised to 10.
+    StaticStrideScheduler scheduler =
+        new StaticStrideScheduler(new double[] {1, 199}, new AtomicInteger());
+    assertThat(scheduler.getScaledWeights()).asList()
+        .containsExactly((int) Math.round(10 * 65535.0 / 199), 65535);
+  }
+
+  @Test
+  public void scheduler_sequenceWrapsAround() {
+    StaticStrideScheduler scheduler =
+        new StaticStrideScheduler(new double[] {1, 3}, new AtomicInteger(Integer.MAX_VALUE - 50));
+    int[] picks = new int[2];
+    for (int i = 0; i < 4000; i++) {
+      picks[scheduler.pick()]++;
+    }
+    assertThat((double) picks[0]).isWithin(100).of(1000);
+  }
+
+  @Test
+  public void noReports_picksRoundRobin() {
+    List<Subchannel> ready = resolveAndConnect(defaultConfig(), 3);
+    WeightedRoundRobinPicker picker = captureReadyPicker();
+    assertThat(picker.getList()).containsExactlyElementsIn(ready);
+
+    Map<Subchannel, Integer> picks = pick(picker, 300);
+    assertThat(picks.values()).containsExactly(100, 100, 100);
+  }
+
+  @Test
+  public void perRequestReporting_attachesTracerFactory() {
+    resolveAndConnect(defaultConfig(), 1);
+    PickResult result = captureReadyPicker().pickSubchannel(mock(PickSubchannelArgs.class));
+    assertThat(result.getStreamTracerFactory()).isNotNull();
+  }
+
+  @Test
+  public void oobReporting_noTracerFactory() {
+    WeightedRoundRobinConfig config = new WeightedRoundRobinConfig(
+        0, TimeUnit.MINUTES.toNanos(3), true, TimeUnit.SECONDS.toNanos(10),
+        TimeUnit.SECONDS.toNanos(1));
+    resolveAndConnect(config, 1);
+    PickResult result = captureReadyPicker().pickSubchannel(mock(PickSubchannelArgs.class));
+    assertThat(result.getSubchannel()).isNotNull();
+    assertThat(result.getStreamTracerFactory()).isNull();
+  }
+
+  @Test
+  public void oobReporting_stoppedWhenDisabled() {
+    WeightedRoundRobinConfig oobConfig = new WeightedRoundRobinConfig(
+        0, TimeUnit.MINUTES.toNanos(3), true, TimeUnit.SECONDS.toNanos(10),
+        TimeUnit.SECONDS.toNanos(1));
+    List<EquivalentAddressGroup> servers = createServerAddrs(1);
+    handleResolvedAddresses(oobConfig, servers);
+    Subchannel subchannel = subchannels.get(servers.get(0).getAddresses().get(0));
+    deliverSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+    ClientCall<?, ?> oobCall = oobCalls.get(subchannel);
+    verify(oobCall).halfClose();
+
+    handleResolvedAddresses(defaultConfig(), servers);
+    verify(oobCall).cancel(any(String.class), isNull());
+  }
+
+  @Test
+  public void weightsAppliedAfterBlackoutPeriod() {
+    List<Subchannel> ready = resolveAndConnect(defaultConfig(), 2);
+    WeightedRoundRobinPicker picker = captureReadyPicker();
+    // Same utilization, three times the requests per second.
+    report(ready.get(0), 100, 0.5);
+    report(ready.get(1), 300, 0.5);
+
+    fakeClock.forwardTime(1, TimeUnit.SECONDS);
+    assertThat(pick(picker, 400).values()).containsExactly(200, 200);
+
+    fakeClock.forwardTime(10, TimeUnit.SECONDS);
+    report(ready.get(0), 100, 0.5);
+    report(ready.get(1), 300, 0.5);
+    fakeClock.forwardTime(1, TimeUnit.SECONDS);
+    Map<Subchannel, Integer> picks = pick(picker, 4000);
+    assertThat((double) picks.get(ready.get(0))).isWithin(100).of(1000);
+    assertThat((double) picks.get(ready.get(1))).isWithin(100).of(3000);
+  }
+
+  @Test
+  public void weightsExpire() {
+    WeightedRoundRobinConfig config = new WeightedRoundRobinConfig(
+        0, TimeUnit.MINUTES.toNanos(1), false, TimeUnit.SECONDS.toNanos(10),
+        TimeUnit.SECONDS.toNanos(1));
+    List<Subchannel> ready = resolveAndConnect(config, 2);
+    WeightedRoundRobinPicker picker = captureReadyPicker();
+    report(ready.get(0), 100, 1);
+    report(ready.get(1), 300, 1);
+    fakeClock.forwardTime(1, TimeUnit.SECONDS);
+    Map<Subchannel, Integer> picks = pick(picker, 400);
+    assertThat((double) picks.get(ready.get(0))).isWithin(10).of(100);
+    assertThat((double) picks.get(ready.get(1))).isWithin(10).of(300);
+
+    fakeClock.forwardTime(1, TimeUnit.MINUTES);
+    assertThat(pick(picker, 400).values()).containsExactly(200, 200);
+  }
+
+  @Test
+  public void emptyReportsIgnored() {
+    List<Subchannel> ready = resolveAndConnect(
+        new WeightedRoundRobinConfig(
+            0, TimeUnit.MINUTES.toNanos(3), false, TimeUnit.SECONDS.toNanos(10),
+            TimeUnit.SECONDS.toNanos(1)),
+        2);
+    WeightedRoundRobinPicker picker = captureReadyPicker();
+    report(ready.get(0), 100, 0);
+    report(ready.get(1), 0, 0.5);
+    fakeClock.forwardTime(1, TimeUnit.SECONDS);
+    assertThat(pick(picker, 400).values()).containsExactly(200, 200);
+  }
+
+  @Test
+  public void noReadySubchannels_connecting() {
+    handleResolvedAddresses(defaultConfig(), createServerAddrs(2));
+    verify(helper).updateBalancingState(eq(CONNECTING), any(SubchannelPicker.class));
+  }
+
+  @Test
+  public void allSubchannelsFailed_transientFailure() {
+    handleResolvedAddresses(defaultConfig(), createServerAddrs(2));
+    for (Subchannel subchannel : subchannels.values()) {
+      deliverSubchannelState(
+          subchannel, ConnectivityStateInfo.forTransientFailure(Status.UNAVAILABLE));
+    }
+    verify(helper).updateBalancingState(eq(TRANSIENT_FAILURE), pickerCaptor.capture());
+    PickResult result = pickerCaptor.getValue().pickSubchannel(mock(PickSubchannelArgs.class));
+    assertThat(result.getStatus().getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+  }
+
+  @Test
+  public void emptyAddresses_transientFailure() {
+    handleResolvedAddresses(defaultConfig(), new ArrayList<EquivalentAddressGroup>());
+    verify(helper).updateBalancingState(eq(TRANSIENT_FAILURE), pickerCaptor.capture());
+    PickResult result = pickerCaptor.getValue().pickSubchannel(mock(PickSubchannelArgs.class));
+    assertThat(result.getStatus().getCode()).isEqualTo(Status.Code.UNAVAILABLE);
+  }
+
+  private static WeightedRoundRobinConfig defaultConfig() {
+    return WeightedRoundRobinConfig.DEFAULT;
+  }
+
+  private List<Subchannel> resolveAndConnect(WeightedRoundRobinConfig config, int count) {
+    List<EquivalentAddressGroup> servers = createServerAddrs(count);
+    handleResolvedAddresses(config, servers);
+    List<Subchannel> ready = new ArrayList<>();
+    for (EquivalentAddressGroup server : servers) {
+      Subchannel subchannel = subchannels.get(server.getAddresses().get(0));
+      deliverSubchannelState(subchannel, ConnectivityStateInfo.forNonError(READY));
+      ready.add(subchannel);
+    }
+    return ready;
+  }
+
+  private void handleResolvedAddresses(
+      final WeightedRoundRobinConfig config, final List<EquivalentAddressGroup> servers) {
+    syncContext.execute(new Runnable() {
+      @Override
+      public void run() {
+        loadBalancer.handleResolvedAddresses(
+            ResolvedAddresses.newBuilder()
+                .setAddresses(servers).setLoadBalancingPolicyConfig(config).build());
+      }
+    });
+  }
+
+  private WeightedRoundRobinPicker captureReadyPicker() {
+    verify(helper, atLeastOnce())
+        .updateBalancingState(eq(READY), pickerCaptor.capture());
+    return (WeightedRoundRobinPicker) pickerCaptor.getValue();
+  }
+
+  private void deliverSubchannelState(
+      final Subchannel subchannel, final ConnectivityStateInfo state) {
+    syncContext.execute(new Runnable() {
+      @Override
+      public void run() {
+        subchannelStateListeners.get(subchannel).onSubchannelState(state);
+      }
+    });
+  }
+
+  private static void report(Subchannel subchannel, long rps, double cpuUtilization) {
+    SubchannelWeight weight =
+        subchannel.getAttributes().get(WeightedRoundRobinLoadBalancer.WEIGHT);
+    weight.onLoadReport(
+        OrcaLoadReport.newBuilder().setRps(rps).setCpuUtilization(cpuUtilization).build());
+  }
+
+  /** Returns the number of times each subchannel is picked, keyed by the underlying mock. */
+  private Map<Subchannel, Integer> pick(SubchannelPicker picker, int count) {
+    Map<Subchannel, Integer> picks = new HashMap<>();
+    for (int i = 0; i < count; i++) {
+      PickResult result = picker.pickSubchannel(mock(PickSubchannelArgs.class));
+      Subchannel subchannel =
+          subchannels.get(result.getSubchannel().getAddresses().getAddresses().get(0));
+      Integer current = picks.get(subchannel);
+      picks.put(subchannel, current == null ? 1 : current + 1);
+    }
+    return picks;
+  }
+
+  private static List<EquivalentAddressGroup> createServerAddrs(int count) {
+    List<EquivalentAddressGroup> addrs = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      addrs.add(new EquivalentAddressGroup(new FakeSocketAddress("server" + i)));
+    }
+    return addrs;
+  }
+
+  private static final class FakeSocketAddress extends SocketAddress {
+    private final String name;
+
+    FakeSocketAddress(String name) {
+      this.name = name;
+    }
+
+    @Override
+    public String toString() {
+      return "FakeSocketAddress-" + name;
+    }
+  }
+}